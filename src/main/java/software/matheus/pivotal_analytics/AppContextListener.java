@@ -23,12 +23,20 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 
+import software.matheus.pivotal_analytics.io.ConnectionPool;
+import software.matheus.pivotal_analytics.io.DataSource;
+import software.matheus.pivotal_analytics.io.SnapshotStore;
 import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
+import software.matheus.pivotal_analytics.views.All;
+import software.matheus.pivotal_analytics.views.Overview;
 
 /**
  * The {@code AppContextListener} class initializes the application context.
  * It redirects the Pivotal API base URL to the local mock endpoints,
  * allowing the application to function without a real Pivotal Tracker account.
+ * It also configures the shared HTTP connections and the project cache,
+ * and releases them on shutdown.
  *
  * @version 1.0
  * @author Matheus Borges Teixeira
@@ -46,11 +54,76 @@ public class AppContextListener implements ServletContextListener {
         }
         PivotalAPI.API_LOCATION_URL = "http://localhost:" + port + "/services/v5";
         System.out.println("[INFO] Pivotal API redirected to local mock: " + PivotalAPI.API_LOCATION_URL);
+
+        ConnectionPool.MAX_PER_ROUTE = setting("HTTP_MAX_PER_ROUTE", ConnectionPool.MAX_PER_ROUTE);
+        ConnectionPool.KEEP_ALIVE = setting("HTTP_KEEP_ALIVE", (int) ConnectionPool.KEEP_ALIVE);
+        ConnectionPool.CONNECT_TIMEOUT = setting("HTTP_CONNECT_TIMEOUT", ConnectionPool.CONNECT_TIMEOUT);
+        ConnectionPool.SOCKET_TIMEOUT = setting("HTTP_SOCKET_TIMEOUT", ConnectionPool.SOCKET_TIMEOUT);
+        PivotalAPI.PARALLEL_DOWNLOADS = setting("PARALLEL_DOWNLOADS", PivotalAPI.PARALLEL_DOWNLOADS);
+        Overview.BURNDOWN_ITERATIONS = setting("BURNDOWN_ITERATIONS", Overview.BURNDOWN_ITERATIONS);
+        All.PAGE_SIZE = Math.max(1, setting("ALL_PAGE_SIZE", All.PAGE_SIZE));
+        DataSource.MAX_WEIGHT = setting("PROJECT_CACHE_MB", (int) (DataSource.MAX_WEIGHT / (1024 * 1024))) * 1024L * 1024L;
+        DataSource.IDLE_TIMEOUT = setting("PROJECT_IDLE_MINUTES", (int) (DataSource.IDLE_TIMEOUT / 60000)) * 60000L;
+        DataSource.REFRESH_AGE = setting("PROJECT_REFRESH_MINUTES", (int) (DataSource.REFRESH_AGE / 60000)) * 60000L;
+        DataSource.REFRESH_THREADS = setting("PROJECT_REFRESH_THREADS", DataSource.REFRESH_THREADS);
+        DataSource.AUTHORIZATION_AGE = setting("PROJECT_ACCESS_MINUTES", (int) (DataSource.AUTHORIZATION_AGE / 60000)) * 60000L;
+        FragmentCache.MAX_WEIGHT = setting("FRAGMENT_CACHE_MB", (int) (FragmentCache.MAX_WEIGHT / (1024 * 1024))) * 1024L * 1024L;
+        StaticCacheFilter.MAX_AGE = setting("STATIC_MAX_AGE_SECONDS", StaticCacheFilter.MAX_AGE);
+        CompressionFilter.ENABLED = setting("COMPRESSION", CompressionFilter.ENABLED ? 1 : 0) != 0;
+        SnapshotStore.DIRECTORY = setting("SNAPSHOT_DIR", SnapshotStore.DIRECTORY);
+        SnapshotStore.MEMORY_MAPPED = setting("SNAPSHOT_MMAP", SnapshotStore.MEMORY_MAPPED ? 1 : 0) != 0;
+        if (SnapshotStore.isEnabled() && setting("SNAPSHOT_EAGER", 0) != 0) {
+            System.out.println("[INFO] Project snapshots read from disk: " + DataSource.preload());
+        }
+        DataSource.startRefreshing();
     }
 
     /**
      * @see ServletContextListener#contextDestroyed(ServletContextEvent)
      */
     public void contextDestroyed(ServletContextEvent sce) {
+        DataSource.stopRefreshing();
+        PivotalAPI.shutdown();
+        ConnectionPool.shutdown();
+    }
+
+    /**
+     * Reads a numeric setting from the environment, or from a system property
+     * with the same name in lower case and dots (e.g. {@code http.keep.alive}).
+     *
+     * @param name the environment variable name.
+     * @param fallback the value used when the setting is missing or invalid.
+     * @return the configured value.
+     */
+    static int setting(String name, int fallback) {
+        String value = setting(name, (String) null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("[WARNING] Invalid value for " + name + ": " + value + ". Using default " + fallback + ".");
+            return fallback;
+        }
+    }
+
+    /**
+     * Reads a text setting from the environment, or from a system property
+     * with the same name in lower case and dots (e.g. {@code snapshot.dir}).
+     *
+     * @param name the environment variable name.
+     * @param fallback the value used when the setting is missing.
+     * @return the configured value.
+     */
+    static String setting(String name, String fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            value = System.getProperty(name.toLowerCase().replace('_', '.'));
+        }
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        return value;
     }
 }
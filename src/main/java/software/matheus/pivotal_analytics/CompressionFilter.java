@@ -0,0 +1,393 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import software.matheus.pivotal_analytics.managers.CacheManager;
+
+/**
+ * The {@code CompressionFilter} compresses pages with gzip for browsers which accept it.
+ *
+ * <p>Pages are streamed, so they are compressed as they are written, through a
+ * buffer of {@link #BUFFER_SIZE} bytes, and never held whole in memory.
+ * Compression only starts with the first byte written, so responses without a
+ * body (redirects, errors and 304) go out untouched. Images already compressed
+ * (anything but SVG) are passed through as they are.
+ *
+ * <p>An entity tag set by the servlet is {@linkplain CacheManager#gzipTag(String) marked}
+ * when the page is gzip encoded, as a strong tag must not be shared by two encodings.
+ *
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+@WebFilter("/*")
+public class CompressionFilter implements Filter {
+
+    /** Whether responses are compressed at all. **/
+    public static boolean ENABLED = true;
+
+    /** Size of the compression buffer, in bytes. **/
+    public static int BUFFER_SIZE = 8192;
+
+    /** File extensions of resources which are already compressed. **/
+    private static final String[] COMPRESSED = {".png", ".gif", ".jpg", ".jpeg", ".ico", ".zip", ".gz", ".jar"};
+
+    /**
+     * @see Filter#init(FilterConfig)
+     */
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    /**
+     * @see Filter#destroy()
+     */
+    public void destroy() {
+    }
+
+    /**
+     * @see Filter#doFilter(ServletRequest, ServletResponse, FilterChain)
+     */
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        if (!ENABLED || isCompressed(httpRequest.getRequestURI())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        httpResponse.addHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(httpRequest.getHeader("Accept-Encoding")) || "HEAD".equals(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        GzipResponseWrapper wrapper = new GzipResponseWrapper(httpResponse);
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            wrapper.finish();
+        }
+    }
+
+    /**
+     * Checks whether the browser accepts gzip, as told by the Accept-Encoding header.
+     * Encodings given a quality of zero are refused.
+     *
+     * @param header the Accept-Encoding header, may be null.
+     * @return true if gzip is accepted.
+     */
+    static boolean acceptsGzip(String header) {
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(",")) {
+            String[] fields = part.split(";");
+            String coding = fields[0].trim().toLowerCase(Locale.ENGLISH);
+            if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            float quality = 1;
+            for (int i = 1; i < fields.length; i++) {
+                String field = fields[i].trim();
+                if (field.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(field.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (quality > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a resource is already compressed, by its extension.
+     *
+     * @param path the requested path, may be null.
+     * @return true if compressing it again would be wasted.
+     */
+    static boolean isCompressed(String path) {
+        if (path == null) {
+            return false;
+        }
+        String lower = path.toLowerCase(Locale.ENGLISH);
+        for (String extension : COMPRESSED) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a content type should be compressed.
+     * Images are already compressed, except SVG which is markup.
+     *
+     * @param contentType the content type, null if not set.
+     * @return true if the content should be compressed.
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String lower = contentType.toLowerCase(Locale.ENGLISH);
+        return !lower.startsWith("image/") || lower.startsWith("image/svg");
+    }
+
+    /**
+     * Response wrapper which compresses everything written, starting with the first byte.
+     */
+    private static class GzipResponseWrapper extends HttpServletResponseWrapper {
+
+        /** The stream given to the servlet, null until asked for. **/
+        private GzipStream stream;
+
+        /** The writer given to the servlet, null until asked for. **/
+        private PrintWriter writer;
+
+        /** The entity tag set by the servlet, as it gave it, null if none. **/
+        private String tag;
+
+        GzipResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called on this response.");
+            }
+            if (stream == null) {
+                stream = new GzipStream(this);
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called on this response.");
+                }
+                stream = new GzipStream(this);
+                writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        /** The length is not known until compressed, so it is never sent. **/
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        /** The length is not known until compressed, so it is never sent. **/
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("ETag".equalsIgnoreCase(name)) {
+                tag = value;
+                super.setHeader(name, isCompressible(getContentType()) ? CacheManager.gzipTag(value) : value);
+            } else if (!"Content-Length".equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if ("ETag".equalsIgnoreCase(name)) {
+                setHeader(name, value);
+            } else if (!"Content-Length".equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            } else if (stream != null) {
+                stream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        /**
+         * Writes whatever is left and ends the compressed stream.
+         *
+         * @throws IOException in case of errors writing.
+         */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.finish();
+            }
+        }
+    }
+
+    /**
+     * Output stream which decides on the first byte whether to compress,
+     * then writes through a bounded gzip buffer or straight to the response.
+     */
+    private static class GzipStream extends ServletOutputStream {
+
+        /** The response written to. **/
+        private final GzipResponseWrapper response;
+
+        /** The stream of the wrapped response, null until the first byte. **/
+        private ServletOutputStream original;
+
+        /** Where bytes are written, after the first byte. **/
+        private OutputStream target;
+
+        /** The compressing stream, null if not compressing. **/
+        private GZIPOutputStream gzip;
+
+        GzipStream(GzipResponseWrapper response) {
+            this.response = response;
+        }
+
+        /**
+         * Chooses where bytes go, on the first byte written.
+         *
+         * @throws IOException in case of errors opening the response.
+         */
+        private void start() throws IOException {
+            if (target != null) {
+                return;
+            }
+            HttpServletResponse wrapped = (HttpServletResponse) response.getResponse();
+            int status = wrapped.getStatus();
+            boolean compress = status != HttpServletResponse.SC_NO_CONTENT
+                    && status != HttpServletResponse.SC_NOT_MODIFIED
+                    && !wrapped.containsHeader("Content-Encoding")
+                    && isCompressible(wrapped.getContentType());
+            original = wrapped.getOutputStream();
+            if (response.tag != null) {
+                /* A strong tag belongs to one encoding, the gzip form gets its own */
+                wrapped.setHeader("ETag", compress ? CacheManager.gzipTag(response.tag) : response.tag);
+            }
+            if (compress) {
+                wrapped.setHeader("Content-Encoding", "gzip");
+                gzip = new GZIPOutputStream(original, BUFFER_SIZE, true);
+                target = gzip;
+            } else {
+                target = original;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            start();
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            start();
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        /**
+         * Ends the compressed stream, leaving the response open for the container.
+         *
+         * @throws IOException in case of errors writing.
+         */
+        void finish() throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+            }
+            if (original != null) {
+                original.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        /**
+         * Tells if the wrapped stream takes bytes without blocking.
+         * Asynchronous writing is only supported when not compressing: a write to the
+         * gzip stream may write several times to the wrapped stream, so compressed
+         * responses are always written blocking.
+         */
+        @Override
+        public boolean isReady() {
+            return original == null || original.isReady();
+        }
+
+        /**
+         * Chooses whether to compress, then hands the listener to the wrapped stream
+         * if not compressing. Compressed responses cannot be written asynchronously.
+         *
+         * @throws UnsupportedOperationException if the response is compressed.
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                start();
+            } catch (IOException e) {
+                throw new IllegalStateException("The response could not be opened.", e);
+            }
+            if (gzip != null) {
+                throw new UnsupportedOperationException("Compressed responses are written blocking.");
+            }
+            original.setWriteListener(writeListener);
+        }
+    }
+}
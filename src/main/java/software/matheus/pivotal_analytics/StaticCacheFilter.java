@@ -0,0 +1,82 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The {@code StaticCacheFilter} lets browsers keep the static assets
+ * (icons, style sheets and images) instead of asking for them on every page.
+ *
+ * <p>Assets only change with a new deployment, so they are marked as
+ * cacheable by anyone for {@link #MAX_AGE} seconds.
+ *
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+@WebFilter({"/icons/*", "/css/*", "/imgs/*"})
+public class StaticCacheFilter implements Filter {
+
+    /** Time browsers keep the assets, in seconds; 0 asks them to check every time **/
+    public static int MAX_AGE = 24 * 60 * 60;
+
+    /**
+     * @see Filter#init(FilterConfig)
+     */
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    /**
+     * @see Filter#destroy()
+     */
+    public void destroy() {
+    }
+
+    /**
+     * @see Filter#doFilter(ServletRequest, ServletResponse, FilterChain)
+     */
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        ((HttpServletResponse) response).setHeader("Cache-Control", cacheControl(MAX_AGE));
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Builds the Cache-Control value for the assets.
+     *
+     * @param maxAge the time browsers keep the assets, in seconds.
+     * @return the header value.
+     */
+    static String cacheControl(int maxAge) {
+        if (maxAge <= 0) {
+            return "no-cache";
+        }
+        return "public, max-age=" + maxAge;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.io;
+
+/**
+ * The {@code AccessUnavailableException} class tells that access to a project
+ * could not be checked, because Pivotal could not be reached or answered with an error.
+ * It is not a denial: the same request may succeed later, so it is answered with 503.
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class AccessUnavailableException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Creates the exception.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @param cause specifies why access could not be checked.
+	 */
+	public AccessUnavailableException(int projectID, Throwable cause){
+		super("Access to project "+projectID+" could not be checked.", cause);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.io;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The {@code ConnectionPool} class holds the HTTP client shared by all downloads.
+ * Connections are pooled and kept alive, so consecutive requests to Pivotal
+ * reuse warm connections instead of doing a new handshake each time.
+ * Unless disabled, requests send {@code Accept-Encoding: gzip,deflate} and
+ * compressed responses are decompressed as their content is read.
+ *
+ * Settings are read when the client is first created.
+ * After a {@linkplain #shutdown() shutdown} a new client is created on demand.
+ *
+ * This class is entirely based on static behavior!
+ *
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class ConnectionPool {
+
+	/** Maximum amount of connections kept to the same host **/
+	public static int MAX_PER_ROUTE = 8;
+
+	/** Maximum amount of connections kept overall **/
+	public static int MAX_TOTAL = 32;
+
+	/** Time in ms to keep idle connections, unless the server says otherwise **/
+	public static long KEEP_ALIVE = 30000;
+
+	/** Time in ms to wait for a connection to be established **/
+	public static int CONNECT_TIMEOUT = 10000;
+
+	/** Time in ms to wait for data on an established connection **/
+	public static int SOCKET_TIMEOUT = 60000;
+
+	/** Defines if compressed (gzip or deflate) responses are asked for **/
+	public static boolean COMPRESSION = true;
+
+	/** Manager of the pooled connections **/
+	static private PoolingHttpClientConnectionManager manager;
+
+	/** Client shared by all downloads **/
+	static private CloseableHttpClient client;
+
+	/**
+	 * Gets the shared client, creating it if needed.
+	 * The client must never be closed by the callers.
+	 *
+	 * @return the shared HTTP client.
+	 */
+	static public synchronized CloseableHttpClient getClient(){
+		if(client == null){
+			manager = new PoolingHttpClientConnectionManager(KEEP_ALIVE, TimeUnit.MILLISECONDS);
+			manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+			manager.setMaxTotal(Math.max(MAX_TOTAL, MAX_PER_ROUTE));
+
+			RequestConfig config = RequestConfig.custom()
+					.setConnectTimeout(CONNECT_TIMEOUT)
+					.setConnectionRequestTimeout(CONNECT_TIMEOUT)
+					.setSocketTimeout(SOCKET_TIMEOUT)
+					.build();
+
+			HttpClientBuilder builder = HttpClientBuilder.create();
+			if(!COMPRESSION){
+				builder.disableContentCompression();
+			}
+			client = builder
+					.setConnectionManager(manager)
+					.setDefaultRequestConfig(config)
+					.setKeepAliveStrategy(new ConnectionKeepAliveStrategy(){
+						public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+							long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+							return duration > 0 ? duration : KEEP_ALIVE;
+						}
+					})
+					.evictExpiredConnections()
+					.evictIdleConnections(KEEP_ALIVE, TimeUnit.MILLISECONDS)
+					.build();
+		}
+		return client;
+	}
+
+	/**
+	 * Gets the current usage of the pool.
+	 *
+	 * @return the pool statistics, or null if no client was created.
+	 */
+	static public synchronized PoolStats getStats(){
+		if(manager == null){
+			return null;
+		}
+		return manager.getTotalStats();
+	}
+
+	/**
+	 * Closes the shared client and all its connections.
+	 */
+	static public synchronized void shutdown(){
+		if(client != null){
+			try {
+				client.close();
+			} catch (IOException e) {
+				System.out.println("[ERROR:IOException] Error while closing the HTTP connections, see error logs for stack trace.");
+				e.printStackTrace();
+			}
+			client = null;
+			manager = null;
+		}
+	}
+}
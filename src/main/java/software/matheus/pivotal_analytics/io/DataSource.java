@@ -19,15 +19,56 @@
  */
 package software.matheus.pivotal_analytics.io;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.Ticket;
 
 /**
  * The {@code DataSource} class handles in-memory Project data.
- * The Projects are stored in {@link java.util.HashMap Hash Maps}
- * that concatenate both User ID and Project ID, allowing each user
- * to have a different snapshot of the project independently.
+ * The Projects are stored in a {@link java.util.LinkedHashMap Linked Hash Map}
+ * keyed by Project ID, so all users of a project share the same snapshot
+ * and it is downloaded only once.
+ * 
+ * Before a user is handed a snapshot, Pivotal is asked if the token gives access
+ * to the project. The answer is trusted for {@link #AUTHORIZATION_AGE}, so
+ * the check is paid once in a while per user, not on every read.
+ * When Pivotal cannot be asked, a recent answer is trusted a while longer,
+ * or else an {@link AccessUnavailableException} is thrown rather than denying access.
+ * 
+ * Each entry holds the load of the snapshot rather than the snapshot itself,
+ * so concurrent first requests for the same project wait for a single download.
+ * Removing an entry never affects who already holds the snapshot.
+ * 
+ * The memory taken is bounded: once the estimated {@linkplain Project#getWeight() weight}
+ * of all snapshots goes over {@link #MAX_WEIGHT}, the least recently read ones are dropped.
+ * The {@linkplain Ticket#estimateSymbolWeight() symbols} shared by all snapshots are never dropped,
+ * but they count against the same bound, leaving less room for snapshots as they grow.
+ * Snapshots not read for {@link #IDLE_TIMEOUT} are dropped as well.
+ * 
+ * Once {@linkplain #startRefreshing() started}, snapshots older than {@link #REFRESH_AGE}
+ * are synchronized in the background, while readers keep the current stories
+ * until the new ones are swapped in. Refreshes are spread out in time and
+ * at most {@link #REFRESH_THREADS} run at once.
+ * 
+ * When the {@link SnapshotStore} is enabled, every downloaded or synchronized snapshot
+ * is written to disk in the background. A project not in memory is then read from disk
+ * and served at once, while it is synchronized in the background.
+ * Snapshots on disk can also be {@linkplain #preload() preloaded}, within the same memory bound.
  * 
  * This class is entirely based on static behavior!
  * 
@@ -36,45 +77,688 @@ import software.matheus.pivotal_analytics.pivotal.Project;
  */
 public class DataSource {
 	
-	/** HashMap with all user projects loaded in memory **/
-	static private HashMap<String,Project> loaded_projects;
+	/** Maximum estimated weight in bytes of all snapshots together, with the symbols they share **/
+	public static long MAX_WEIGHT = 256L*1024*1024;
+	
+	/** Time in ms after which a snapshot not read is dropped, 0 to keep it **/
+	public static long IDLE_TIMEOUT = 0;
+	
+	/** Age in ms after which snapshots are refreshed in the background, 0 to never refresh **/
+	public static long REFRESH_AGE = 0;
+	
+	/** Maximum amount of background refreshes running at once **/
+	public static int REFRESH_THREADS = 2;
+	
+	/** Time in ms between the starts of refreshes due at the same time **/
+	public static long REFRESH_STAGGER = 2000;
+	
+	/** Time in ms during which a token is trusted to access a project after a check **/
+	public static long AUTHORIZATION_AGE = 10*60*1000;
+	
+	/** Maximum amount of access checks kept **/
+	public static int AUTHORIZATION_CACHE_SIZE = 4096;
+	
+	/** Time until which each token is trusted with each project, least recently checked first **/
+	static private final LinkedHashMap<String,Long> authorizations = new LinkedHashMap<String,Long>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String,Long> eldest){
+			return size() > AUTHORIZATION_CACHE_SIZE;
+		}
+	};
+	
+	/** Access checks waiting for Pivotal, by project and token **/
+	static private final ConcurrentHashMap<String,FutureTask<Boolean>> checking = new ConcurrentHashMap<String,FutureTask<Boolean>>();
+	
+	/** Scheduler of the background refreshes, null when not started **/
+	static private ScheduledExecutorService refresher;
+	
+	/** Runs the writing of snapshots to disk and their catch up, null until needed **/
+	static private ExecutorService persister;
+	
+	/** Loads of all projects in memory, finished or in progress, least recently read first **/
+	static private final LinkedHashMap<Integer,Entry> loaded_projects = new LinkedHashMap<Integer,Entry>(16, 0.75f, true);
+	
+	/** Estimated weight of all snapshots, guarded by the map **/
+	static private long weight = 0;
+	
+	/** Reads which found the project loaded or loading **/
+	static private final AtomicLong hits = new AtomicLong();
+	
+	/** Reads which had to load the project **/
+	static private final AtomicLong misses = new AtomicLong();
+	
+	/** Snapshots dropped for weight or idleness **/
+	static private final AtomicLong evictions = new AtomicLong();
+	
+	/**
+	 * The {@code Entry} class holds the load of one snapshot.
+	 * All fields but the load are guarded by the map.
+	 */
+	private static class Entry {
+		/** Load of the snapshot **/
+		final FutureTask<Project> load;
+		/** Estimated weight, 0 until loaded **/
+		long weight = 0;
+		/** Last time the snapshot was read, in ms **/
+		long last_read;
+		/** Defines if the entry is still in the map **/
+		boolean cached = true;
+		/** Last time the snapshot was loaded or refreshed, in ms **/
+		long refreshed;
+		/** Defines if a background refresh is due or running **/
+		boolean refreshing = false;
+		/** Pivotal ID reference to the Project **/
+		final int projectID;
+		/** User API Token from Pivotal of the last user to read, used for refreshes, null if preloaded and not read yet **/
+		String token;
+		/** Defines if the snapshot was preloaded from disk and is not synchronized yet **/
+		boolean restored = false;
+		
+		Entry(FutureTask<Project> load, long now, int projectID, String token){
+			this.load = load;
+			this.last_read = now;
+			this.refreshed = now;
+			this.projectID = projectID;
+			this.token = token;
+		}
+	}
 
 	/**
 	 * Reads the given project to the given user and stores it in memory.
-	 * In case the project is already stored, it will use that copy.
-	 * If it is not stored, the newest snapshot of the project will be loaded.
-	 * Unless the project is {@linkplain #flushProject(int, String) flushed}, the snapshot won't be updated.
+	 * The user must have access to the project, see {@link #authorize(int, String)}.
+	 * In case the project is already stored, it will use that copy, even if loaded by another user.
+	 * If it is not stored, the snapshot kept on disk is read, or else the newest snapshot of the project will be loaded.
+	 * If it is being loaded by another request, that load is waited for.
+	 * Unless the project is {@linkplain #flushProject(int, String) flushed}, {@linkplain #syncProject(int, String) synchronized}
+	 * or evicted, the snapshot won't be updated.
 	 * 
 	 * @param projectID specifies Pivotal ID reference to the Project.
 	 * @param token specifies User API Token from Pivotal.
-	 * @return the last project snapshot requested by the given user.
+	 * @return the last project snapshot, null if the user has no access to the project.
+	 * @throws AccessUnavailableException if access to the project could not be checked.
 	 */
-	static public Project readProject(int projectID, String token){
-		if(loaded_projects == null){
-			loaded_projects = new HashMap<String,Project>();
+	static public Project readProject(final int projectID, final String token){
+		if(!authorize(projectID, token)){
+			System.out.println("[WARNING] Access to project "+projectID+" was denied.");
+			return null;
+		}
+		Integer key = projectID;
+		long now = System.currentTimeMillis();
+		Entry entry;
+		boolean loading = false;
+		boolean preloaded = false;
+		final boolean[] restored = new boolean[1];
+		synchronized(loaded_projects){
+			expire(now);
+			entry = loaded_projects.get(key);
+			if(entry == null){
+				entry = new Entry(new FutureTask<Project>(new Callable<Project>(){
+					public Project call(){
+						Project stored = SnapshotStore.load(projectID);
+						if(stored != null){
+							restored[0] = true;
+							return stored;
+						}
+						return new Project(projectID,token);
+					}
+				}), now, projectID, token);
+				loaded_projects.put(key, entry);
+				loading = true;
+			}
+			entry.last_read = now;
+			entry.token = token;
+			if(entry.restored){
+				entry.restored = false;
+				preloaded = true;
+			}
+		}
+		if(preloaded){
+			catchUp(key, entry);
 		}
-		Project selected = loaded_projects.get(projectID+"/"+token);
-		if(selected == null){
-			Project newone = new Project(projectID,token);
-			loaded_projects.put(projectID+"/"+token, newone);
-			return newone;
+		if(loading){
+			misses.incrementAndGet();
+			entry.load.run();
+			weigh(entry);
+			if(restored[0]){
+				catchUp(key, entry);
+			}
+			else{
+				persist(entry);
+			}
 		}
 		else{
-			return selected;
+			hits.incrementAndGet();
+		}
+		
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					return entry.load.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			/* A failed load is not kept, the next read tries again */
+			discard(key, entry);
+			System.out.println("[ERROR:ExecutionException] Error while loading project "+projectID+", see error logs for stack trace.");
+			e.printStackTrace();
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			if(e.getCause() instanceof Error){
+				throw (Error)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
 		}
 	}
+	
+	/**
+	 * Updates the weight of a loaded snapshot, dropping others if too heavy.
+	 * The snapshot itself is kept even if heavier than the maximum alone.
+	 * 
+	 * @param entry specifies the entry of the snapshot.
+	 */
+	private static void weigh(Entry entry){
+		Project loaded;
+		try {
+			loaded = entry.load.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			return;
+		}
+		long current = loaded.getWeight();
+		long symbols = Ticket.estimateSymbolWeight();
+		synchronized(loaded_projects){
+			if(!entry.cached){
+				return;
+			}
+			weight += current - entry.weight;
+			entry.weight = current;
+			Iterator<Map.Entry<Integer,Entry>> eldest = loaded_projects.entrySet().iterator();
+			while(weight + symbols > MAX_WEIGHT && eldest.hasNext()){
+				Entry e = eldest.next().getValue();
+				if(e != entry && e.load.isDone()){
+					eldest.remove();
+					e.cached = false;
+					weight -= e.weight;
+					evictions.incrementAndGet();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Drops the snapshots which were not read for too long.
+	 * Must be called holding the map.
+	 * 
+	 * @param now specifies the current time in ms.
+	 */
+	private static void expire(long now){
+		if(IDLE_TIMEOUT <= 0){
+			return;
+		}
+		Iterator<Map.Entry<Integer,Entry>> eldest = loaded_projects.entrySet().iterator();
+		while(eldest.hasNext()){
+			Entry e = eldest.next().getValue();
+			if(now - e.last_read <= IDLE_TIMEOUT){
+				break;
+			}
+			if(e.load.isDone()){
+				eldest.remove();
+				e.cached = false;
+				weight -= e.weight;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Removes an entry, unless it was already replaced.
+	 * 
+	 * @param key specifies the Pivotal ID reference to the Project of the entry.
+	 * @param entry specifies the entry.
+	 */
+	private static void discard(Integer key, Entry entry){
+		synchronized(loaded_projects){
+			if(entry.cached){
+				loaded_projects.remove(key);
+				entry.cached = false;
+				weight -= entry.weight;
+			}
+		}
+	}
+
+	/**
+	 * Brings the loaded snapshot of a given project up to date for a given user.
+	 * Only the changes since the snapshot was taken are downloaded.
+	 * If nothing is loaded, or it is still loading, nothing is done, the next read will have the newest snapshot.
+	 * Nothing is done either if the user has no access to the project.
+	 * 
+	 * @see Project#synchronize(String)
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @param token specifies User API Token from Pivotal.
+	 * @throws AccessUnavailableException if access to the project could not be checked.
+	 */
+	public static void syncProject(int projectID, String token) {
+		if(!authorize(projectID, token)){
+			return;
+		}
+		Integer key = projectID;
+		Entry entry;
+		synchronized(loaded_projects){
+			entry = loaded_projects.get(key);
+			if(entry != null){
+				entry.token = token;
+			}
+		}
+		if(entry != null && entry.load.isDone()){
+			Project selected;
+			try {
+				selected = entry.load.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				discard(key, entry);
+				return;
+			}
+			if(selected.synchronize(token)){
+				synchronized(loaded_projects){
+					entry.refreshed = System.currentTimeMillis();
+				}
+				weigh(entry);
+				persist(entry);
+			}
+			else{
+				/* Only drops the snapshot which failed, not a newer one */
+				discard(key, entry);
+			}
+		}
+		return;
+	}
 
 	/**
-	 * Removes the loaded snapshot of a given project for a given user.
+	 * Removes the loaded snapshot of a given project, also from disk, for all its users.
+	 * Requests holding the snapshot keep using it, the next read loads a new one.
+	 * The access check of the given user is forgotten as well.
+	 * A user without access to the project only forgets the access check.
 	 *
 	 * @param projectID specifies Pivotal ID reference to the Project.
 	 * @param token specifies User API Token from Pivotal.
+	 * @throws AccessUnavailableException if access to the project could not be checked.
 	 */
 	public static void flushProject(int projectID, String token) {
-		if(loaded_projects != null){
-			loaded_projects.remove(projectID+"/"+token);
+		boolean authorized = authorize(projectID, token);
+		synchronized(authorizations){
+			authorizations.remove(projectID+"/"+token);
 		}
+		if(!authorized){
+			return;
+		}
+		synchronized(loaded_projects){
+			Entry entry = loaded_projects.remove(projectID);
+			if(entry != null){
+				entry.cached = false;
+				weight -= entry.weight;
+			}
+		}
+		SnapshotStore.delete(projectID);
 		return;
 	}
+	
+	/**
+	 * Checks if a token gives access to a project.
+	 * A positive answer from Pivotal is trusted for {@link #AUTHORIZATION_AGE},
+	 * negative ones are never kept. Concurrent checks of the same token share one request.
+	 * If Pivotal cannot be asked, a positive answer expired less than {@link #AUTHORIZATION_AGE}
+	 * ago is still trusted, as not being able to ask is not a denial.
+	 * 
+	 * @see PivotalAPI#canAccess(int)
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @param token specifies User API Token from Pivotal.
+	 * @return true if the token gives access to the project, false if Pivotal denies it.
+	 * @throws AccessUnavailableException if Pivotal could not be asked and no recent answer is known.
+	 */
+	static boolean authorize(final int projectID, String token){
+		if(token == null){
+			return false;
+		}
+		String key = projectID+"/"+token;
+		long now = System.currentTimeMillis();
+		synchronized(authorizations){
+			Long until = authorizations.get(key);
+			if(until != null && until.longValue() > now){
+				return true;
+			}
+		}
+		/* Concurrent checks of the same token wait for a single answer */
+		final PivotalAPI api = new PivotalAPI(token);
+		FutureTask<Boolean> check = new FutureTask<Boolean>(new Callable<Boolean>(){
+			public Boolean call() throws IOException {
+				return api.canAccess(projectID);
+			}
+		});
+		FutureTask<Boolean> running = checking.putIfAbsent(key, check);
+		if(running == null){
+			check.run();
+			running = check;
+		}
+		boolean authorized = false;
+		Throwable failure = null;
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					authorized = running.get().booleanValue();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			failure = e.getCause();
+		} finally {
+			if(running == check){
+				synchronized(authorizations){
+					if(authorized){
+						authorizations.put(key, now + AUTHORIZATION_AGE);
+					}
+					else if(failure == null){
+						authorizations.remove(key);
+					}
+				}
+				checking.remove(key);
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(failure != null){
+			System.out.println("[ERROR:"+failure.getClass().getSimpleName()+"] Error while checking access to project "+projectID+", see error logs for stack trace.");
+			failure.printStackTrace();
+			synchronized(authorizations){
+				Long until = authorizations.get(key);
+				if(until != null && until.longValue() + AUTHORIZATION_AGE > now){
+					System.err.println("[WARNING] Trusting the last access check to project "+projectID+" until Pivotal answers.");
+					System.out.println("[WARNING] Trusting the last access check to project "+projectID+" until Pivotal answers.");
+					return true;
+				}
+			}
+			throw new AccessUnavailableException(projectID, failure);
+		}
+		return authorized;
+	}
+	
+	/**
+	 * Starts refreshing old snapshots in the background.
+	 * Nothing is done if already started, or if {@link #REFRESH_AGE} is not set.
+	 */
+	public static synchronized void startRefreshing(){
+		if(refresher != null || REFRESH_AGE <= 0){
+			return;
+		}
+		refresher = Executors.newScheduledThreadPool(Math.max(REFRESH_THREADS, 1), new ThreadFactory(){
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "project-refresh");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		long period = Math.max(REFRESH_AGE / 4, 10);
+		refresher.scheduleWithFixedDelay(new Runnable(){
+			public void run(){
+				scheduleRefreshes();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stops the background refreshes, interrupting the running ones.
+	 * Snapshots already being written to disk are finished.
+	 */
+	public static synchronized void stopRefreshing(){
+		if(refresher != null){
+			refresher.shutdownNow();
+			refresher = null;
+		}
+		if(persister != null){
+			persister.shutdown();
+			persister = null;
+		}
+	}
+	
+	/**
+	 * Schedules the refresh of every snapshot older than {@link #REFRESH_AGE}.
+	 * Refreshes due together are started {@link #REFRESH_STAGGER} apart.
+	 */
+	private static void scheduleRefreshes(){
+		long now = System.currentTimeMillis();
+		long delay = 0;
+		synchronized(loaded_projects){
+			for(Map.Entry<Integer,Entry> cached: loaded_projects.entrySet()){
+				final Integer key = cached.getKey();
+				final Entry entry = cached.getValue();
+				if(entry.refreshing || entry.token == null || !entry.load.isDone() || now - entry.refreshed < REFRESH_AGE){
+					continue;
+				}
+				ScheduledExecutorService scheduler = refresher;
+				if(scheduler == null || scheduler.isShutdown()){
+					return;
+				}
+				entry.refreshing = true;
+				scheduler.schedule(new Runnable(){
+					public void run(){
+						refresh(key, entry);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+				delay += REFRESH_STAGGER;
+			}
+		}
+	}
+	
+	/**
+	 * Synchronizes a snapshot in the background.
+	 * Readers keep the current stories until the synchronized ones are swapped in.
+	 * If it fails, the snapshot is kept as it is and tried again later.
+	 * Once synchronized, it is written to disk if the {@link SnapshotStore} is enabled.
+	 * 
+	 * @param key specifies the Pivotal ID reference to the Project of the entry.
+	 * @param entry specifies the entry of the snapshot.
+	 */
+	private static void refresh(Integer key, Entry entry){
+		boolean updated = false;
+		Project current = null;
+		String token;
+		synchronized(loaded_projects){
+			token = entry.token;
+		}
+		try {
+			current = entry.load.get();
+			updated = current.synchronize(token);
+			if(!updated){
+				System.out.println("[WARNING] Background refresh of project "+entry.projectID+" failed. Keeping the current snapshot.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			discard(key, entry);
+		} catch (RuntimeException e) {
+			System.out.println("[ERROR:"+e.getClass().getSimpleName()+"] Error while refreshing project "+entry.projectID+", see error logs for stack trace.");
+			e.printStackTrace();
+		}
+		synchronized(loaded_projects){
+			entry.refreshing = false;
+			entry.refreshed = System.currentTimeMillis();
+		}
+		if(updated){
+			weigh(entry);
+			SnapshotStore.save(current);
+		}
+	}
+	
+	/**
+	 * Gets a finished load, without waiting.
+	 * 
+	 * @param entry specifies the entry of the snapshot.
+	 * @return the snapshot, null if the load failed.
+	 */
+	private static Project loadedOrNull(Entry entry){
+		try {
+			return entry.load.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the executor for writing and catching up snapshots, starting it if needed.
+	 * @return the executor.
+	 */
+	private static synchronized ExecutorService persister(){
+		if(persister == null){
+			persister = Executors.newSingleThreadExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "project-snapshot");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return persister;
+	}
+	
+	/**
+	 * Writes a loaded snapshot to disk in the background.
+	 * Nothing is done if the {@link SnapshotStore} is not enabled.
+	 * 
+	 * @param entry specifies the entry of the snapshot.
+	 */
+	private static void persist(final Entry entry){
+		if(!SnapshotStore.isEnabled() || !entry.load.isDone()){
+			return;
+		}
+		final Project loaded = loadedOrNull(entry);
+		if(loaded == null){
+			return;
+		}
+		persister().execute(new Runnable(){
+			public void run(){
+				SnapshotStore.save(loaded);
+			}
+		});
+	}
+	
+	/**
+	 * Synchronizes a snapshot read from disk in the background.
+	 * It is written back to disk once up to date.
+	 * 
+	 * @param key specifies the Pivotal ID reference to the Project of the entry.
+	 * @param entry specifies the entry of the snapshot.
+	 */
+	private static void catchUp(final Integer key, final Entry entry){
+		synchronized(loaded_projects){
+			if(entry.refreshing){
+				return;
+			}
+			entry.refreshing = true;
+		}
+		persister().execute(new Runnable(){
+			public void run(){
+				refresh(key, entry);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the snapshots kept on disk ahead of time, while they fit in {@link #MAX_WEIGHT}.
+	 * They are weighed and evicted as any other snapshot, and nothing is read once full.
+	 * Each one is synchronized in the background on its first read, with the token of that user.
+	 * 
+	 * @return the amount of snapshots read.
+	 */
+	public static int preload(){
+		int count = 0;
+		for(int projectID: SnapshotStore.stored()){
+			Integer key = projectID;
+			synchronized(loaded_projects){
+				if(weight + Ticket.estimateSymbolWeight() >= MAX_WEIGHT){
+					break;
+				}
+				if(loaded_projects.containsKey(key)){
+					continue;
+				}
+			}
+			final Project stored = SnapshotStore.load(projectID);
+			if(stored == null){
+				continue;
+			}
+			FutureTask<Project> load = new FutureTask<Project>(new Callable<Project>(){
+				public Project call(){
+					return stored;
+				}
+			});
+			load.run();
+			Entry entry = new Entry(load, System.currentTimeMillis(), projectID, null);
+			entry.restored = true;
+			synchronized(loaded_projects){
+				if(weight + Ticket.estimateSymbolWeight() + stored.getWeight() > MAX_WEIGHT){
+					break;
+				}
+				if(loaded_projects.containsKey(key)){
+					continue;
+				}
+				loaded_projects.put(key, entry);
+			}
+			weigh(entry);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Gets the amount of reads which found the project loaded, or being loaded.
+	 * @return the amount of hits.
+	 */
+	public static long getHits(){
+		return hits.get();
+	}
+	
+	/**
+	 * Gets the amount of reads which had to load the project.
+	 * @return the amount of misses.
+	 */
+	public static long getMisses(){
+		return misses.get();
+	}
+	
+	/**
+	 * Gets the amount of snapshots dropped for being too heavy or idle.
+	 * Flushed snapshots are not counted.
+	 * @return the amount of evictions.
+	 */
+	public static long getEvictions(){
+		return evictions.get();
+	}
+	
+	/**
+	 * Gets the estimated weight of all snapshots in memory.
+	 * @return the weight in bytes.
+	 */
+	public static long getWeight(){
+		synchronized(loaded_projects){
+			return weight;
+		}
+	}
 
 }
@@ -0,0 +1,248 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectSnapshot;
+
+/**
+ * The {@code SnapshotStore} class keeps {@linkplain ProjectSnapshot project snapshots} on disk,
+ * so projects seen before a restart do not need to be downloaded again.
+ * 
+ * There is one file per project, named after the project ID, shared by all its users
+ * as the snapshots in memory are. Tokens are never written to disk, access to
+ * a snapshot read from disk is checked by the {@link DataSource} as usual.
+ * Files are replaced at once: a snapshot is written aside and then moved in place.
+ * 
+ * Snapshots are read when first needed, or ahead of time by {@link DataSource#preload()},
+ * which keeps them within its memory bound. They can be read through memory mapping instead of streams.
+ * 
+ * This class is entirely based on static behavior!
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class SnapshotStore {
+	
+	/** Directory where snapshots are kept, null or empty to keep none **/
+	public static String DIRECTORY = null;
+	
+	/** Defines if snapshots are read through memory mapping **/
+	public static boolean MEMORY_MAPPED = false;
+	
+	/** Beginning of the snapshot file names **/
+	private static final String PREFIX = "project-";
+	
+	/** Ending of the snapshot file names **/
+	private static final String EXTENSION = ".snapshot";
+	
+	/**
+	 * Checks if snapshots are kept.
+	 * @return true if a directory is configured.
+	 */
+	public static boolean isEnabled(){
+		return DIRECTORY != null && DIRECTORY.length() > 0;
+	}
+	
+	/**
+	 * Gets the file name of a project snapshot.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @return the file name.
+	 */
+	static String fileName(int projectID){
+		return PREFIX + projectID + EXTENSION;
+	}
+	
+	/**
+	 * Writes the snapshot of a project, replacing the previous one.
+	 * 
+	 * @param project specifies the project.
+	 * @return true if written, false if snapshots are not kept or in case of errors.
+	 */
+	public static boolean save(Project project){
+		if(!isEnabled() || project == null || project.getStories() == null){
+			return false;
+		}
+		File directory = new File(DIRECTORY);
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			System.out.println("[ERROR:IOException] Snapshot directory "+DIRECTORY+" cannot be created.");
+			return false;
+		}
+		String name = fileName(project.getID());
+		File written = null;
+		try {
+			written = File.createTempFile(name, ".tmp", directory);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(written), 1 << 16));
+			try {
+				ProjectSnapshot.write(project, out);
+			} finally {
+				out.close();
+			}
+			Files.move(written.toPath(), new File(directory, name).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			System.out.println("[ERROR:IOException] Error while writing snapshot of project "+project.getID()+", see error logs for stack trace.");
+			e.printStackTrace();
+			if(written != null){
+				written.delete();
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Reads the snapshot of a project, if there is one.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @return the project as last written, or null if none.
+	 */
+	public static Project load(int projectID){
+		if(!isEnabled()){
+			return null;
+		}
+		File file = new File(DIRECTORY, fileName(projectID));
+		return file.isFile() ? read(file) : null;
+	}
+	
+	/**
+	 * Lists the projects with a snapshot on disk, without reading them.
+	 * 
+	 * @return the Pivotal ID references of the Projects.
+	 */
+	public static int[] stored(){
+		if(!isEnabled()){
+			return new int[0];
+		}
+		String[] names = new File(DIRECTORY).list();
+		if(names == null){
+			return new int[0];
+		}
+		int[] found = new int[names.length];
+		int count = 0;
+		for(String name: names){
+			if(name.startsWith(PREFIX) && name.endsWith(EXTENSION)){
+				try {
+					found[count] = Integer.parseInt(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+					count++;
+				} catch (NumberFormatException e) {
+					/* Not a snapshot written here */
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+	
+	/**
+	 * Removes the snapshot of a project.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 */
+	public static void delete(int projectID){
+		if(!isEnabled()){
+			return;
+		}
+		new File(DIRECTORY, fileName(projectID)).delete();
+	}
+	
+	/**
+	 * Reads one snapshot file.
+	 * Broken files are ignored, they are replaced on the next write.
+	 * 
+	 * @param file specifies the file.
+	 * @return the project, or null in case of errors.
+	 */
+	private static Project read(File file){
+		try {
+			InputStream stream;
+			if(MEMORY_MAPPED){
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					FileChannel channel = raf.getChannel();
+					stream = new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+				} finally {
+					raf.close();
+				}
+			}
+			else{
+				stream = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+			}
+			DataInputStream in = new DataInputStream(stream);
+			try {
+				return ProjectSnapshot.read(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println("[ERROR:IOException] Error while reading snapshot "+file.getName()+", see error logs for stack trace.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * The {@code MappedInputStream} class reads a memory mapped file as a stream.
+	 */
+	private static class MappedInputStream extends InputStream {
+		/** Contents of the file **/
+		private final ByteBuffer buffer;
+		
+		MappedInputStream(MappedByteBuffer buffer){
+			this.buffer = buffer;
+		}
+		
+		public int read(){
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+		
+		public int read(byte[] b, int off, int len){
+			if(len == 0){
+				return 0;
+			}
+			if(!buffer.hasRemaining()){
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+		
+		public int available(){
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.managers;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
+
+/**
+ * The {@code CacheManager} class takes care of HTTP cache validation of the views.
+ * 
+ * A view is tagged by the {@linkplain ProjectState#getVersion() version} of the project stories,
+ * the view, the settings it is shown with and the day, as views measure time until now.
+ * Browsers keep the page and ask again with the tag, which is answered with
+ * 304 (Not Modified) while the tag still holds, before anything is rendered.
+ * The tag and the page must come from the same state, so a page is never
+ * sent with the tag of an older version.
+ * Tags also hold the start of the application, as versions start over on every start.
+ * 
+ * This class is entirely based on static behavior!
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class CacheManager {
+	/** Length of the time buckets in ms, a day **/
+	private static final long DAY = 24*60*60*1000;
+	
+	/** Moment the application started, versions are only unique since then **/
+	private static final long STARTED = System.currentTimeMillis();
+	
+	/** Encoding of the tagged texts **/
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/** Marks the tag of a gzip encoded page, which must differ from the plain one **/
+	public static final String GZIP_SUFFIX = "-gzip";
+	
+	/** Digits used for the tags **/
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * Builds the strong entity tag of a view.
+	 * 
+	 * @param project specifies the state of the project shown, the only one the view reads.
+	 * @param view defines the name of the view.
+	 * @param settings specifies every cookie and parameter the view depends on, nulls allowed.
+	 * @return the quoted tag, null if the state has no version.
+	 */
+	public static String tag(ProjectState project, String view, String[] settings){
+		long version = project.getVersion();
+		if(version == 0){
+			return null;
+		}
+		StringBuilder key = new StringBuilder();
+		key.append(STARTED).append('\n').append(project.getID()).append('\n').append(version);
+		key.append('\n').append(view).append('\n').append(System.currentTimeMillis() / DAY);
+		for(String setting: settings){
+			key.append('\n').append(setting == null ? "\0" : setting);
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes(UTF8));
+			StringBuilder tag = new StringBuilder("\"");
+			for(byte b: digest){
+				tag.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+			}
+			return tag.append('"').toString();
+		} catch (NoSuchAlgorithmException e) {
+			System.out.println("[ERROR:NoSuchAlgorithmException] SHA-1 is not available, views will not be tagged, see error logs for stack trace.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Tags the response of a view and checks whether the browser already has it.
+	 * Pages depend on the cookies of each user, so they are only kept by the browser
+	 * and always checked again before being shown.
+	 * 
+	 * @param request specifies the request, possibly carrying If-None-Match.
+	 * @param response specifies the response, answered with 304 when not modified.
+	 * @param tag specifies the tag of the view, null if not tagged.
+	 * @return true if the response is complete and nothing should be rendered.
+	 */
+	public static boolean notModified(HttpServletRequest request, HttpServletResponse response, String tag){
+		if(tag == null){
+			return false;
+		}
+		response.setHeader("ETag", tag);
+		response.setHeader("Cache-Control", "private, no-cache");
+		response.addHeader("Vary", "Cookie");
+		if(matches(request.getHeader("If-None-Match"), tag)){
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the tag of the gzip encoded form of a page.
+	 * 
+	 * @param tag specifies the tag of the plain page, quoted.
+	 * @return the tag with the gzip mark inside the quotes, unchanged if not quoted or already marked.
+	 */
+	public static String gzipTag(String tag){
+		if(tag == null || !tag.endsWith("\"") || tag.endsWith(GZIP_SUFFIX+"\"")){
+			return tag;
+		}
+		return tag.substring(0, tag.length() - 1) + GZIP_SUFFIX + "\"";
+	}
+	
+	/**
+	 * Checks an If-None-Match header against a tag, as a weak comparison.
+	 * The gzip encoded form of the page matches too, as it is the same page.
+	 * 
+	 * @param header specifies the header, a list of tags or "*".
+	 * @param tag specifies the tag.
+	 * @return true if any tag in the header matches.
+	 */
+	static boolean matches(String header, String tag){
+		if(header == null){
+			return false;
+		}
+		for(String candidate: header.split(",")){
+			candidate = candidate.trim();
+			if(candidate.startsWith("W/")){
+				candidate = candidate.substring(2);
+			}
+			if(candidate.equals("*") || candidate.equals(tag) || candidate.equals(gzipTag(tag))){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -101,6 +101,18 @@ public class CookieManager {
 		return null;
 	}
 	
+	/**
+	 * Gets the value of a particular Cookie in a given set.
+	 * 
+	 * @param set defines an array with all cookies.
+	 * @param name specifies the name of the cookie to be found.
+	 * @return null if the Cookie is not found, or the value of the first match otherwise.
+	 */
+	public static String readCookie(Cookie[] set, String name){
+		Cookie c = matchCookie(set, name);
+		return c == null ? null : c.getValue();
+	}
+	
 	/**
 	 * Breaks one special Cookie into an array of Strings.
 	 * This Cookie must contain the labels separated by comma.
@@ -20,16 +20,29 @@
 package software.matheus.pivotal_analytics.mock;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.Vector;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.bind.DatatypeConverter;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 /**
  * The {@code MockPivotalAPI} class simulates the Pivotal Tracker REST API v5.
@@ -41,6 +54,10 @@ import javax.servlet.http.HttpServletResponse;
  *   GET /services/v5/projects/{id}/memberships  - team members
  *   GET /services/v5/projects/{id}/iterations   - iteration history with stories
  *   GET /services/v5/projects/{id}/stories      - icebox (unscheduled) stories
+ *   GET /services/v5/projects/{id}/stories?updated_after={ms} - all stories changed after the given time
+ *
+ * Project metadata and memberships carry an ETag and honor If-None-Match.
+ * All responses are gzip compressed when the client sends Accept-Encoding: gzip.
  *
  * @version 1.0
  * @author Matheus Borges Teixeira
@@ -149,19 +166,91 @@ public class MockPivotalAPI extends HttpServlet {
 
         response.setContentType("application/json;charset=UTF-8");
         response.setCharacterEncoding("UTF-8");
-
-        PrintWriter out = response.getWriter();
+        response.setHeader("Vary", "Accept-Encoding");
 
         long startMs = System.currentTimeMillis() - (long) ITERATION_COUNT * ITERATION_DAYS * DAY_MS;
 
         if (pathInfo.endsWith("/iterations")) {
+            PrintWriter out = openOutput(request, response);
             handleIterations(response, out, startMs);
+            out.close();
         } else if (pathInfo.endsWith("/memberships")) {
-            handleMemberships(out);
+            StringWriter body = new StringWriter();
+            handleMemberships(new PrintWriter(body));
+            respondWithETag(request, response, body.toString());
+        } else if (pathInfo.endsWith("/stories") && request.getParameter("updated_after") != null) {
+            PrintWriter out = openOutput(request, response);
+            handleUpdatedStories(out, startMs, request.getParameter("updated_after"));
+            out.close();
         } else if (pathInfo.endsWith("/stories")) {
+            PrintWriter out = openOutput(request, response);
             handleStories(out, startMs);
+            out.close();
         } else {
-            handleProject(out, startMs);
+            StringWriter body = new StringWriter();
+            handleProject(new PrintWriter(body), startMs);
+            respondWithETag(request, response, body.toString());
+        }
+    }
+
+    /**
+     * Opens the response body, compressed with gzip when the client accepts it.
+     * The writer must be closed so the compressed stream is finished.
+     *
+     * @return the writer for the response body.
+     */
+    private PrintWriter openOutput(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String accepted = request.getHeader("Accept-Encoding");
+        if (accepted != null && accepted.toLowerCase().contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            return new PrintWriter(new OutputStreamWriter(new GZIPOutputStream(response.getOutputStream()), "UTF-8"));
+        }
+        return response.getWriter();
+    }
+
+    /**
+     * Writes a response tagged with an ETag derived from its content.
+     * When the client already holds the same content, answers 304 Not Modified without a body.
+     *
+     * @param body the complete response content.
+     */
+    private void respondWithETag(HttpServletRequest request, HttpServletResponse response,
+            String body) throws IOException {
+        String etag = etagOf(body);
+        response.setHeader("ETag", etag);
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals(etag) || tag.equals("*") || tag.equals("W/" + etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+        }
+        PrintWriter out = openOutput(request, response);
+        out.print(body);
+        out.close();
+    }
+
+    /**
+     * Computes a strong entity tag for a given content.
+     *
+     * @param body the content to tag.
+     * @return the quoted entity tag.
+     */
+    private String etagOf(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(body.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder("\"");
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.append("\"").toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        } catch (UnsupportedEncodingException e) {
+            return "\"" + Integer.toHexString(body.hashCode()) + "\"";
         }
     }
 
@@ -223,10 +312,59 @@ public class MockPivotalAPI extends HttpServlet {
      * Returns mock icebox (unscheduled) stories.
      */
     private void handleStories(PrintWriter out, long startMs) {
-        out.print("[");
+        out.print(buildIceboxStories(startMs));
+    }
+
+    /**
+     * Returns all mock stories, scheduled or not, changed after a given time.
+     * Stories are considered changed when accepted, or else when created.
+     *
+     * @param since the time in epoch milliseconds, as given in updated_after.
+     */
+    @SuppressWarnings("unchecked")
+    private void handleUpdatedStories(PrintWriter out, long startMs, String since) {
+        long sinceMs;
+        try {
+            sinceMs = Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            sinceMs = DatatypeConverter.parseDateTime(since).getTimeInMillis();
+        }
+        JSONArray updated = new JSONArray();
+        JSONParser parser = new JSONParser();
+        try {
+            Vector<String> pages = new Vector<String>();
+            pages.add(buildIceboxStories(startMs));
+            for (int iter = 1; iter <= ITERATION_COUNT; iter++) {
+                pages.add(buildIterationStories(iter, startMs));
+            }
+            for (String page : pages) {
+                for (Object o : (JSONArray) parser.parse(page)) {
+                    JSONObject story = (JSONObject) o;
+                    long updatedMs = DatatypeConverter.parseDateTime((String) story.get("updated_at")).getTimeInMillis();
+                    if (updatedMs > sinceMs) {
+                        updated.add(story);
+                    }
+                }
+            }
+        } catch (ParseException e) {
+            System.out.println("[ERROR:ParseException] There was a problem building the mocked stories.");
+            e.printStackTrace();
+        }
+        out.print(updated.toJSONString());
+    }
+
+    /**
+     * Builds a JSON array of the icebox (unscheduled) stories.
+     *
+     * @param startMs the project start time in epoch milliseconds.
+     * @return JSON string of the stories array.
+     */
+    private String buildIceboxStories(long startMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
         int baseId = 900000;
         for (int i = 0; i < 20; i++) {
-            if (i > 0) out.print(",");
+            if (i > 0) sb.append(",");
             long id = baseId + i;
             String type = (i % 3 == 0) ? "bug" : "feature";
             String title = (type.equals("bug"))
@@ -237,22 +375,24 @@ public class MockPivotalAPI extends HttpServlet {
             String createdAt = isoDate(startMs + (long)(i * 7) * DAY_MS);
             int estimate = (type.equals("feature")) ? ESTIMATES[i % ESTIMATES.length] : 0;
 
-            out.print("{");
-            out.print("\"id\":" + id + ",");
-            out.print("\"story_type\":\"" + type + "\",");
-            out.print("\"url\":\"https://github.com/matheuscodes/pivotal_analytics/issues/" + id + "\",");
+            sb.append("{");
+            sb.append("\"id\":" + id + ",");
+            sb.append("\"story_type\":\"" + type + "\",");
+            sb.append("\"url\":\"https://github.com/matheuscodes/pivotal_analytics/issues/" + id + "\",");
             if (estimate > 0) {
-                out.print("\"estimate\":" + estimate + ",");
+                sb.append("\"estimate\":" + estimate + ",");
             }
-            out.print("\"current_state\":\"unscheduled\",");
-            out.print("\"name\":\"" + escapeJson(title) + "\",");
-            out.print("\"requested_by_id\":" + requesterId + ",");
-            out.print("\"owner_ids\":[" + ownerId + "],");
-            out.print("\"created_at\":\"" + createdAt + "\",");
-            out.print("\"labels\":[]");
-            out.print("}");
+            sb.append("\"current_state\":\"unscheduled\",");
+            sb.append("\"name\":\"" + escapeJson(title) + "\",");
+            sb.append("\"requested_by_id\":" + requesterId + ",");
+            sb.append("\"owner_ids\":[" + ownerId + "],");
+            sb.append("\"created_at\":\"" + createdAt + "\",");
+            sb.append("\"updated_at\":\"" + createdAt + "\",");
+            sb.append("\"labels\":[]");
+            sb.append("}");
         }
-        out.print("]");
+        sb.append("]");
+        return sb.toString();
     }
 
     /**
@@ -392,7 +532,8 @@ public class MockPivotalAPI extends HttpServlet {
         sb.append("\"name\":\"").append(escapeJson(title)).append("\",");
         sb.append("\"requested_by_id\":").append(requestedById).append(",");
         sb.append("\"owner_ids\":[").append(ownerId).append("],");
-        sb.append("\"created_at\":\"").append(createdAt).append("\"");
+        sb.append("\"created_at\":\"").append(createdAt).append("\",");
+        sb.append("\"updated_at\":\"").append(acceptedAt != null ? acceptedAt : createdAt).append("\"");
         if (acceptedAt != null) {
             sb.append(",\"accepted_at\":\"").append(acceptedAt).append("\"");
         }
@@ -0,0 +1,220 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.Date;
+
+/**
+ * The {@code OwnerStatistics} class summarizes the work of every owner in a {@link TicketSet}.
+ * It is computed once per set, and kept until the set changes.
+ * 
+ * For each owner it keeps, in acceptance order, the acceptance dates of
+ * their Tickets and the running total of the feature points accepted,
+ * so the history from any moment on is found with binary searches.
+ * Active Tickets, those not yet accepted, are summed up directly.
+ * 
+ * A Ticket shared by many owners accounts for each one of them,
+ * as {@link TicketSet#queryOwner(String)} does.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet#queryOwnerStatistics()
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class OwnerStatistics {
+	/** Earliest acceptance of an accepted Ticket, by owner code **/
+	private final long[] oldest;
+	/** Acceptance dates in ascending order, by owner code **/
+	private final long[][] accepted;
+	/** Feature points accepted up to each acceptance, plus 0 before the first, by owner code **/
+	private final int[][] points;
+	/** Amount of active Tickets, by owner code **/
+	private final int[] active;
+	/** Feature points of the active Tickets, by owner code **/
+	private final int[] active_points;
+	/** Modification count of the set when computed **/
+	final int modification;
+	
+	/**
+	 * The {@code Summary} class holds the figures of one owner.
+	 */
+	public static class Summary {
+		/** Earliest acceptance, NONE if nothing was accepted **/
+		private final long first;
+		/** Tickets accepted after the earliest acceptance **/
+		private final int accepted_count;
+		/** Feature points accepted after the earliest acceptance **/
+		private final int accepted_points;
+		/** Tickets currently active **/
+		private final int active_count;
+		/** Feature points currently active **/
+		private final int active_points;
+		
+		Summary(long first, int accepted_count, int accepted_points, int active_count, int active_points){
+			this.first = first;
+			this.accepted_count = accepted_count;
+			this.accepted_points = accepted_points;
+			this.active_count = active_count;
+			this.active_points = active_points;
+		}
+		
+		/**
+		 * Gets the earliest acceptance of a Ticket from the owner.
+		 * @return the date, or null if nothing was accepted.
+		 */
+		public Date getFirstAccepted(){
+			return first == Ticket.NONE ? null : new Date(first);
+		}
+		
+		/**
+		 * Gets the amount of Tickets accepted strictly after the earliest acceptance.
+		 * @return the amount of Tickets.
+		 */
+		public int getAcceptedCount(){
+			return accepted_count;
+		}
+		
+		/**
+		 * Gets the feature points accepted strictly after the earliest acceptance.
+		 * @return the amount of points.
+		 */
+		public int getAcceptedPoints(){
+			return accepted_points;
+		}
+		
+		/**
+		 * Gets the amount of Tickets not yet accepted.
+		 * @return the amount of Tickets.
+		 */
+		public int getActiveCount(){
+			return active_count;
+		}
+		
+		/**
+		 * Gets the feature points not yet accepted.
+		 * @return the amount of points.
+		 */
+		public int getActivePoints(){
+			return active_points;
+		}
+	}
+	
+	/**
+	 * Computes the statistics of a set.
+	 * 
+	 * @param owners specifies the owner codes, by position.
+	 * @param states specifies the state code, by position.
+	 * @param types specifies the type code, by position.
+	 * @param estimates specifies the estimated size, by position.
+	 * @param dates specifies the acceptance date, by position.
+	 * @param timeline specifies the positions in acceptance order.
+	 * @param modification specifies the modification count of the set.
+	 */
+	OwnerStatistics(int[][] owners, byte[] states, byte[] types, int[] estimates, long[] dates, TicketTimeline timeline, int modification){
+		int symbols = Ticket.PEOPLE.size();
+		for(int[] codes: owners){
+			for(int owner: codes){
+				symbols = Math.max(symbols, owner + 1);
+			}
+		}
+		this.modification = modification;
+		this.oldest = new long[symbols];
+		this.accepted = new long[symbols][];
+		this.points = new int[symbols][];
+		this.active = new int[symbols];
+		this.active_points = new int[symbols];
+		
+		int[] count = new int[symbols];
+		for(int p = 0; p < owners.length; p++){
+			int size = types[p] == Ticket.FEATURE ? estimates[p] : 0;
+			for(int owner: owners[p]){
+				if(states[p] != Ticket.ACCEPTED){
+					active[owner]++;
+					active_points[owner] += size;
+				}
+				if(dates[p] != Ticket.NONE){
+					count[owner]++;
+				}
+			}
+		}
+		for(int owner = 0; owner < symbols; owner++){
+			oldest[owner] = Ticket.NONE;
+			accepted[owner] = new long[count[owner]];
+			points[owner] = new int[count[owner] + 1];
+			count[owner] = 0;
+		}
+		for(int e = 0; e < timeline.entries(); e++){
+			int p = timeline.position(e);
+			for(int owner: owners[p]){
+				int k = count[owner]++;
+				accepted[owner][k] = dates[p];
+				points[owner][k + 1] = points[owner][k] + (types[p] == Ticket.FEATURE ? estimates[p] : 0);
+				if(states[p] == Ticket.ACCEPTED && oldest[owner] == Ticket.NONE){
+					oldest[owner] = dates[p];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds the first acceptance of an owner after a moment.
+	 * 
+	 * @param dates specifies the acceptance dates of the owner.
+	 * @param moment specifies the moment in ms.
+	 * @param inclusive defines if an acceptance exactly at the moment counts as after it.
+	 * @return the index of the acceptance, or the amount of acceptances if none.
+	 */
+	private static int first(long[] dates, long moment, boolean inclusive){
+		int low = 0, high = dates.length;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(dates[middle] < moment || (!inclusive && dates[middle] == moment)){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Summarizes the work of an owner up to a given moment.
+	 * The history starts at the earliest acceptance of the owner, exclusive.
+	 * 
+	 * @param owner specifies the owner name.
+	 * @param now specifies the moment in ms where the history ends, exclusive.
+	 * @return the figures of the owner.
+	 */
+	public Summary summarize(String owner, long now){
+		int code = Ticket.PEOPLE.find(owner);
+		if(code < 0 || code >= oldest.length){
+			return new Summary(Ticket.NONE, 0, 0, 0, 0);
+		}
+		long first = oldest[code];
+		int accepted_count = 0, accepted_size = 0;
+		if(first != Ticket.NONE){
+			int from = first(accepted[code], first, false);
+			int to = Math.max(from, first(accepted[code], now, true));
+			accepted_count = to - from;
+			accepted_size = points[code][to] - points[code][from];
+		}
+		return new Summary(first, accepted_count, accepted_size, active[code], active_points[code]);
+	}
+}
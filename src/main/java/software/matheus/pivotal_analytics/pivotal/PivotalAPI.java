@@ -19,26 +19,43 @@
  */
 package software.matheus.pivotal_analytics.pivotal;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.apache.http.util.EntityUtils;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import software.matheus.pivotal_analytics.io.ConnectionPool;
+
 /**
  * The {@code PivotalAPI} class wraps Pivotal Tracker API.
  * 
  * The Pivotal Tracker API version called from here is v3.0
  * This only takes care of handling the downloads.
- * No information is extracted from the contents.
+ * No information is extracted from the contents,
+ * stories are streamed to a {@link StoryHandler} instead.
+ * All requests share the {@linkplain ConnectionPool pooled connections},
+ * which negotiate gzip; compressed pages are decompressed while being parsed.
+ * Project and membership responses are kept for conditional requests.
  * 
  * This class is entirely based on static behavior!
  * 
@@ -49,6 +66,19 @@ public class PivotalAPI {
 	
 	/** URL used for connecting to Pivotal Tracker API **/
 	public static String API_LOCATION_URL = "https://www.pivotaltracker.com/services/v5";
+	/** Maximum amount of pages downloaded at the same time, for all projects together **/
+	public static int PARALLEL_DOWNLOADS = 4;
+	/** Threads downloading pages, shared by all downloads, null until needed **/
+	private static ThreadPoolExecutor downloads;
+	/** Maximum amount of responses kept for conditional requests **/
+	public static int RESPONSE_CACHE_SIZE = 64;
+	/** Last responses with validators, by token and URL, least recently used first **/
+	private static final LinkedHashMap<String,CachedResponse> responses = new LinkedHashMap<String,CachedResponse>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String,CachedResponse> eldest){
+			return size() > RESPONSE_CACHE_SIZE;
+		}
+	};
 	/** User token to be used in API calls **/
 	String token = null;
 	/**
@@ -62,150 +92,242 @@ public class PivotalAPI {
 	
 	/**
 	 * Downloads the stories for a given project.
+	 * The content is never held as a whole, each page is streamed
+	 * into a {@link StoryHandler}, which builds the Tickets as they arrive.
+	 * 
+	 * Icebox and iterations are downloaded at the same time.
+	 * The result keeps the icebox first, followed by the iterations in order.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @param users provides a user lookup table for reading names from IDs.
+	 * @return all stories of the project, null in case of errors.
+	 */
+	public TicketSet downloadProjectContent(int projectID, UserLookup users){
+		/** Downloading the icebox (unscheduled) and Scheduled via Iterations for data transfer optimization **/
+		Page icebox = new Page(API_LOCATION_URL + "/projects/" + projectID + "/stories?with_state=unscheduled&", 0, 100000, users, -1);
+		Page iterations = new Page(API_LOCATION_URL + "/projects/" + projectID + "/iterations?", 0, 100000, users, 0);
+		return downloadAll(icebox, iterations);
+	}
+	
+	/**
+	 * Downloads the stories of a given project changed after a given moment.
+	 * Stories come without iteration labels, regardless of their state.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @param users provides a user lookup table for reading names from IDs.
+	 * @param since defines the moment after which changes are wanted.
+	 * @return the changed stories, null in case of errors.
+	 */
+	public TicketSet downloadUpdatedStories(int projectID, UserLookup users, Date since){
+		return downloadAll(new Page(API_LOCATION_URL + "/projects/" + projectID + "/stories?updated_after=" + since.getTime() + "&", 0, 100000, users, -1));
+	}
+	
+	/**
+	 * Downloads the stories of the current and backlog iterations of a given project.
+	 * Stories are labeled with the iteration Pivotal schedules them in.
 	 * 
 	 * @param projectID specifies Pivotal ID reference to the Project.
-	 * @return a vector with a JSON String in an array per iteration.
+	 * @param users provides a user lookup table for reading names from IDs.
+	 * @param current specifies the number of the current iteration.
+	 * @return the scheduled stories, null in case of errors.
 	 */
-	public Vector<String> downloadProjectContent(int projectID){
-		Vector<String> pages_iterations = new Vector<String>();
-		Vector<String> pages_icebox = new Vector<String>();
-		int max = 1;
-		int current = 0;
-		int page = 100000;
-		CloseableHttpClient httpclient = HttpClientBuilder.create().build();
+	public TicketSet downloadScheduledStories(int projectID, UserLookup users, int current){
+		return downloadAll(new Page(API_LOCATION_URL + "/projects/" + projectID + "/iterations?scope=current_backlog&", 0, 100000, users, Math.max(0, current - 1)));
+	}
+	
+	/**
+	 * Downloads all pages of the given resources.
+	 * First pages of all resources are requested at the same time.
+	 * Once a first page tells how many pages exist, the remaining ones
+	 * are downloaded concurrently, by the {@linkplain #executor() shared threads}.
+	 * The pages are waited for in this thread, never by each other,
+	 * so downloads sharing the threads cannot block each other.
+	 * 
+	 * @param firsts specifies the first page of each resource.
+	 * @return the stories of all resources, in the given order, null in case of errors.
+	 */
+	private TicketSet downloadAll(Page... firsts){
+		TicketSet stories = new TicketSet();
+		ThreadPoolExecutor downloads = executor();
+		Vector<Vector<Future<TicketSet>>> resources = new Vector<Vector<Future<TicketSet>>>();
 		System.out.println("----------------------------------------");
-        try {
-        	/** Downloading Scheduled via Iterations for data transfer optimization **/
-            System.out.println("-- Downloading iterations --");
-        	HttpGet httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "/iterations?limit=100000");
-            httpget.addHeader("X-TrackerToken", token);
-            System.out.println("Executing request for Project Content:\n" + httpget.getRequestLine());
-            HttpResponse response = httpclient.execute(httpget);
-            HttpEntity entity = response.getEntity();
-            System.out.println(response.getStatusLine());
-            if(response.getFirstHeader("X-Tracker-Pagination-Total") != null){
-            	max = Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Total").getValue());
-            }
-            if(response.getFirstHeader("X-Tracker-Pagination-Limit") != null){
-            	page = Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Limit").getValue());
-            }
-            while (entity != null && current < max) {
-            	System.out.println("Response content length: " + entity.getContentLength());
-            	String result = "";
-                int r = 0;
-                byte[] b = new byte[10240];
-                do{
-                	
-                	r = entity.getContent().read(b);
-                	if(r > 0){
-                		result += new String(b,0,r);
-                	}
-                } while(r > 0);
-                
-
-                pages_iterations.add(result);
-
-                current += page;
-                if(current < max){
-                	httpclient.close();
-                	httpclient = HttpClientBuilder.create().build();
-	                httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "/iterations?limit="+page+"&offset="+current);
-	                httpget.addHeader("X-TrackerToken", token);
-	                System.out.println("Executing request for Project Content:\n" + httpget.getRequestLine());
-	                response = httpclient.execute(httpget);
-	                entity = response.getEntity();
-	                System.out.println(response.getStatusLine());
-                }
-            }
-            httpclient.close();
-            
-            /** Downloading the icebox (unscheduled) **/
-            max = 1;
-    		current = 0;
-    		page = 100000;
-            httpclient = HttpClientBuilder.create().build();
-            
-            System.out.println("-- Downloading icebox --");
-            httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "/stories?limit=100000&with_state=unscheduled");
-            httpget.addHeader("X-TrackerToken", token);
-            System.out.println("Executing request for Project Content:\n" + httpget.getRequestLine());
-            response = httpclient.execute(httpget);
-            entity = response.getEntity();
-            System.out.println(response.getStatusLine());
-            if(response.getFirstHeader("X-Tracker-Pagination-Total") != null){
-            	max = Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Total").getValue());
-            }
-            if(response.getFirstHeader("X-Tracker-Pagination-Limit") != null){
-            	page = Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Limit").getValue());
-            }
-            while (entity != null && current < max) {
-            	System.out.println("Response content length: " + entity.getContentLength());
-            	String result = "";
-                int r = 0;
-                byte[] b = new byte[10240];
-                do{
-                	
-                	r = entity.getContent().read(b);
-                	if(r > 0){
-                		result += new String(b,0,r);
-                	}
-                } while(r > 0);
-                
-
-                pages_icebox.add(result);
-
-                current += page;
-                if(current < max){
-                	httpclient.close();
-                	httpclient = HttpClientBuilder.create().build();
-	                httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "/iterations?limit="+page+"&offset="+current);
-	                httpget.addHeader("X-TrackerToken", token);
-	                System.out.println("Executing request for Project Content:\n" + httpget.getRequestLine());
-	                response = httpclient.execute(httpget);
-	                entity = response.getEntity();
-	                System.out.println(response.getStatusLine());
-                }
-            }
-            /**Releasing System and Connection resources**/
-            httpclient.close();
-        } catch (ClientProtocolException e) {
-        	System.out.println("[ERROR:ClientProtocolException] Error while downloading file, see error logs for stack trace.");
-			e.printStackTrace();
-		} catch (IOException e) {
-			System.out.println("[ERROR:IOException] Error while saving the downloaded file, see error logs for stack trace.");
-			e.printStackTrace();
+		try {
+			for(Page first: firsts){
+				Vector<Future<TicketSet>> pages = new Vector<Future<TicketSet>>();
+				pages.add(downloads.submit(first));
+				resources.add(pages);
+			}
+			for(int i = 0; i < firsts.length; i++){
+				schedulePages(downloads, resources.get(i), firsts[i]);
+			}
+			for(Vector<Future<TicketSet>> pages: resources){
+				for(Future<TicketSet> page: pages){
+					stories.addAll(page.get());
+				}
+			}
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof ParseException){
+				System.out.println("[ERROR:ParseException] There was a problem parsing the iterations/icebox.");
+			}
+			else if(e.getCause() instanceof ClientProtocolException){
+				System.out.println("[ERROR:ClientProtocolException] Error while downloading file, see error logs for stack trace.");
+			}
+			else{
+				System.out.println("[ERROR:IOException] Error while saving the downloaded file, see error logs for stack trace.");
+			}
+			e.getCause().printStackTrace();
+			stories = null;
+		} catch (InterruptedException e) {
+			System.out.println("[ERROR:InterruptedException] Download of the project content was interrupted.");
+			Thread.currentThread().interrupt();
+			stories = null;
 		}
-        System.out.println("----------------------------------------");
-        
-        JSONParser jp = new JSONParser();
-        Vector<String> iterations = new Vector<String>();
-        try {
-        	if(pages_icebox.size() > 0){
-	        	String icebox = "[";
-	        	for(String p: pages_icebox){
-	        		icebox += p.substring(1, p.length()-1) + ",";
-	        	}
-	        	icebox = icebox.substring(0, icebox.length()-1)+"]";
-	        	iterations.add(icebox);
-        	}
-        	else{
-        		iterations.add("[]");
-        	}
-	        for(String p: pages_iterations){
-				JSONArray ja = (JSONArray)jp.parse(p);
-				for(Object i: ja.toArray()){
-					JSONArray stories = (JSONArray)((JSONObject)i).get("stories");
-					iterations.add(stories.toJSONString());
+		finally {
+			/* Pages still waiting are of no use once the download failed */
+			for(Vector<Future<TicketSet>> pages: resources){
+				for(Future<TicketSet> page: pages){
+					page.cancel(true);
 				}
-	        }
-        } catch (ParseException e) {
-        	System.out.println("[ERROR:ParseException] There was a problem parsing the iterations/icebox.");
-			e.printStackTrace();
+			}
 		}
-        
-        return iterations;
+		System.out.println("----------------------------------------");
+		return stories;
 	}
+	
+	/**
+	 * Gets the threads downloading pages, started on first use.
+	 * At most {@link #PARALLEL_DOWNLOADS} run at once, idle ones stop after a minute.
+	 * 
+	 * @return the executor shared by all downloads.
+	 */
+	private static synchronized ThreadPoolExecutor executor(){
+		int size = Math.max(1, PARALLEL_DOWNLOADS);
+		if(downloads == null){
+			downloads = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "pivotal-download");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			downloads.allowCoreThreadTimeOut(true);
+		}
+		else if(downloads.getMaximumPoolSize() < size){
+			downloads.setMaximumPoolSize(size);
+			downloads.setCorePoolSize(size);
+		}
+		else if(downloads.getMaximumPoolSize() > size){
+			downloads.setCorePoolSize(size);
+			downloads.setMaximumPoolSize(size);
+		}
+		return downloads;
+	}
+	
+	/**
+	 * Stops the threads downloading pages, downloads still running are interrupted.
+	 * A later download starts them again.
+	 */
+	public static synchronized void shutdown(){
+		if(downloads != null){
+			downloads.shutdownNow();
+			downloads = null;
+		}
+	}
+	
+	/**
+	 * Schedules the download of the remaining pages of a paginated resource.
+	 * Waits for the first page, which tells the pagination given by Pivotal.
+	 * 
+	 * @param downloads specifies the executor running the downloads.
+	 * @param pages contains the first page, the remaining ones are appended in order.
+	 * @param first specifies the download of the first page.
+	 * @throws InterruptedException if interrupted while waiting for the first page.
+	 * @throws ExecutionException if the first page could not be downloaded.
+	 */
+	private void schedulePages(ThreadPoolExecutor downloads, Vector<Future<TicketSet>> pages, Page first) throws InterruptedException, ExecutionException{
+		pages.firstElement().get();
+		for(int offset = first.limit; offset < first.total; offset += first.limit){
+			pages.add(downloads.submit(new Page(first.query, offset, first.limit, first.users, first.before)));
+		}
+	}
+	
+	/**
+	 * The {@code Page} class downloads a single page of stories.
+	 * After the download, it informs the pagination given by Pivotal.
+	 */
+	private class Page implements Callable<TicketSet> {
+		/** Resource URL, ready for appending parameters **/
+		String query;
+		/** Amount of items before this page **/
+		int offset;
+		/** Page size, updated with the one given by Pivotal **/
+		int limit;
+		/** Total amount of items, as given by Pivotal **/
+		int total = 0;
+		/** User names lookup list **/
+		UserLookup users;
+		/** Amount of iterations before the resource, -1 if it contains plain stories **/
+		int before;
 		
+		/**
+		 * Creates the download for a given page.
+		 * 
+		 * @param query specifies the resource URL, ready for appending parameters.
+		 * @param offset defines the amount of items before this page.
+		 * @param limit defines the page size.
+		 * @param users provides a user lookup table for reading names from IDs.
+		 * @param before defines the amount of iterations before the resource, -1 if it contains plain stories.
+		 */
+		Page(String query, int offset, int limit, UserLookup users, int before){
+			this.query = query;
+			this.offset = offset;
+			this.limit = limit;
+			this.users = users;
+			this.before = before;
+		}
+		
+		/**
+		 * Downloads and parses the page.
+		 * Pagination follows the X-Tracker-Pagination headers given by Pivotal.
+		 * 
+		 * @return the stories in the page.
+		 * @throws IOException if the download fails or Pivotal does not answer with the page.
+		 * @throws ParseException if the content is not valid JSON.
+		 */
+		public TicketSet call() throws IOException, ParseException{
+			TicketSet stories = new TicketSet();
+			CloseableHttpResponse response = execute(new HttpGet(query + "limit=" + limit + "&offset=" + offset), "Project Content");
+			try {
+				HttpEntity entity = response.getEntity();
+				int status = response.getStatusLine().getStatusCode();
+				if(status != HttpStatus.SC_OK){
+					throw new IOException("Pivotal answered "+status+" for "+query);
+				}
+				if(response.getFirstHeader("X-Tracker-Pagination-Total") != null){
+					total = Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Total").getValue());
+				}
+				if(response.getFirstHeader("X-Tracker-Pagination-Limit") != null){
+					limit = Math.max(1, Integer.parseInt(response.getFirstHeader("X-Tracker-Pagination-Limit").getValue()));
+				}
+				if(entity != null){
+					System.out.println("Response content length: " + entity.getContentLength());
+					StoryHandler handler = new StoryHandler(stories, users);
+					if(before >= 0){
+						handler.expectIterations(before + offset);
+					}
+					else{
+						handler.expectIcebox();
+					}
+					new JSONParser().parse(new BufferedReader(new InputStreamReader(entity.getContent(), "UTF-8")), handler);
+				}
+			}
+			finally {
+				release(response);
+			}
+			return stories;
+		}
+	}
+	
 	/**
 	 * Downloads the basic data for a given project.
 	 * 
@@ -213,43 +335,59 @@ public class PivotalAPI {
 	 * @return a JSON string with project information.
 	 */
 	public String downloadProject(int projectID){
-		String result = null;
-		CloseableHttpClient httpclient = HttpClientBuilder.create().build();
-
-        System.out.println("----------------------------------------");
-        try {
-        	HttpGet httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "");
-            httpget.addHeader("X-TrackerToken", token);
-            System.out.println("Executing request for Project:\n" + httpget.getRequestLine());
-            HttpResponse response = httpclient.execute(httpget);
-            HttpEntity entity = response.getEntity();
+		return download(API_LOCATION_URL + "/projects/" + projectID + "");
+	}
 
-            System.out.println(response.getStatusLine());
-            if (entity != null) {
-                System.out.println("Response content length: " + entity.getContentLength());
-                result = "";
-                int r = 0;
-                byte[] b = new byte[4096];
-                do{
-                	r = entity.getContent().read(b);
-                	if(r > 0){
-                		result += new String(b,0,r);
-                	}
-                } while(r > 0);
-            }
-            /**Releasing System and Connection resources**/
-            httpclient.close();
-        } catch (ClientProtocolException e) {
-        	System.out.println("[ERROR:ClientProtocolException] Error while downloading file, see error logs for stack trace.");
-			e.printStackTrace();
-		} catch (IOException e) {
-			System.out.println("[ERROR:IOException] Error while saving the downloaded file, see error logs for stack trace.");
-			e.printStackTrace();
+	/**
+	 * Checks if the token gives access to a project.
+	 * The project is requested conditionally, and kept, so the check costs
+	 * little and a download of the project right after is answered from memory.
+	 * Only a refusal from Pivotal is a denial, not being able to ask is an error.
+	 * 
+	 * @param projectID specifies Pivotal ID reference to the Project.
+	 * @return true if Pivotal grants access, false if it answers 401, 403 or 404.
+	 * @throws IOException if Pivotal could not be reached or gave any other answer.
+	 */
+	public boolean canAccess(int projectID) throws IOException {
+		String url = API_LOCATION_URL + "/projects/" + projectID + "";
+		String key = token + " " + url;
+		CachedResponse cached;
+		synchronized(responses){
+			cached = responses.get(key);
+		}
+		HttpGet httpget = new HttpGet(url);
+		if(cached != null && cached.etag != null){
+			httpget.addHeader("If-None-Match", cached.etag);
+		}
+		if(cached != null && cached.last_modified != null){
+			httpget.addHeader("If-Modified-Since", cached.last_modified);
+		}
+		CloseableHttpResponse response = execute(httpget, "Project Access");
+		try {
+			int status = response.getStatusLine().getStatusCode();
+			switch(status){
+				case HttpStatus.SC_NOT_MODIFIED:
+					if(cached != null){
+						return true;
+					}
+					break;
+				case HttpStatus.SC_OK:
+					if(response.getEntity() != null){
+						remember(key, response, EntityUtils.toString(response.getEntity(), "UTF-8"));
+					}
+					return true;
+				case HttpStatus.SC_UNAUTHORIZED:
+				case HttpStatus.SC_FORBIDDEN:
+				case HttpStatus.SC_NOT_FOUND:
+					return false;
+			}
+			throw new IOException("Pivotal answered "+status+" when checking access to project "+projectID);
+		}
+		finally {
+			release(response);
 		}
-        System.out.println("----------------------------------------");
-        return result;
 	}
-
+	
 	/**
 	 * Downloads the list of members inside a project.
 	 * 
@@ -257,42 +395,154 @@ public class PivotalAPI {
 	 * @return a JSON string with an array of user information.
 	 */
 	public String downloadUsers(int projectID) {
+		return download(API_LOCATION_URL + "/projects/" + projectID + "/memberships");
+	}
+	
+	/**
+	 * Downloads a whole resource as a String.
+	 * Responses carrying an ETag or Last-Modified are kept, so the next download
+	 * of the same resource with the same token is a conditional request.
+	 * When Pivotal answers 304 Not Modified, the kept content is reused.
+	 * 
+	 * @param url specifies the resource to download.
+	 * @return the downloaded content, null in case of errors.
+	 */
+	private String download(String url){
 		String result = null;
-		CloseableHttpClient httpclient = HttpClientBuilder.create().build();
-
-        System.out.println("----------------------------------------");
-        try {
-        	HttpGet httpget = new HttpGet(API_LOCATION_URL + "/projects/" + projectID + "/memberships");
-            httpget.addHeader("X-TrackerToken", token);
-            System.out.println("Executing request for Project:\n" + httpget.getRequestLine());
-            HttpResponse response = httpclient.execute(httpget);
-            HttpEntity entity = response.getEntity();
-
-            System.out.println(response.getStatusLine());
-            if (entity != null) {
-                System.out.println("Response content length: " + entity.getContentLength());
-                result = "";
-                int r = 0;
-                byte[] b = new byte[4096];
-                do{
-                	r = entity.getContent().read(b);
-                	if(r > 0){
-                		result += new String(b,0,r);
-                	}
-                } while(r > 0);
-            }
-            /**Releasing System and Connection resources**/
-            httpclient.close();
-        } catch (ClientProtocolException e) {
-        	System.out.println("[ERROR:ClientProtocolException] Error while downloading file, see error logs for stack trace.");
+		String key = token + " " + url;
+		CachedResponse cached;
+		synchronized(responses){
+			cached = responses.get(key);
+		}
+		System.out.println("----------------------------------------");
+		try {
+			HttpGet httpget = new HttpGet(url);
+			if(cached != null){
+				if(cached.etag != null){
+					httpget.addHeader("If-None-Match", cached.etag);
+				}
+				if(cached.last_modified != null){
+					httpget.addHeader("If-Modified-Since", cached.last_modified);
+				}
+			}
+			CloseableHttpResponse response = execute(httpget, "Project");
+			try {
+				HttpEntity entity = response.getEntity();
+				int status = response.getStatusLine().getStatusCode();
+				if(status == HttpStatus.SC_NOT_MODIFIED && cached != null){
+					System.out.println("Response not modified, reusing content.");
+					result = cached.content;
+				}
+				else if (entity != null) {
+					System.out.println("Response content length: " + entity.getContentLength());
+					result = EntityUtils.toString(entity, "UTF-8");
+					if(status == HttpStatus.SC_OK){
+						remember(key, response, result);
+					}
+				}
+			}
+			finally {
+				release(response);
+			}
+		} catch (ClientProtocolException e) {
+			System.out.println("[ERROR:ClientProtocolException] Error while downloading file, see error logs for stack trace.");
 			e.printStackTrace();
 		} catch (IOException e) {
 			System.out.println("[ERROR:IOException] Error while saving the downloaded file, see error logs for stack trace.");
 			e.printStackTrace();
 		}
-        System.out.println("----------------------------------------");
-        return result;
+		System.out.println("----------------------------------------");
+		return result;
+	}
+	
+	/**
+	 * Keeps a response for later conditional requests.
+	 * Responses without validators are not kept.
+	 * 
+	 * @param key specifies the token and URL of the request.
+	 * @param response specifies the response with the validators.
+	 * @param content specifies the downloaded content.
+	 */
+	private static void remember(String key, CloseableHttpResponse response, String content){
+		Header etag = response.getFirstHeader("ETag");
+		Header last_modified = response.getFirstHeader("Last-Modified");
+		synchronized(responses){
+			if(etag == null && last_modified == null){
+				responses.remove(key);
+			}
+			else{
+				String etag_value = etag == null ? null : etag.getValue();
+				String last_modified_value = last_modified == null ? null : last_modified.getValue();
+				responses.put(key, new CachedResponse(etag_value, last_modified_value, content));
+			}
+		}
+	}
+	
+	/**
+	 * Forgets all responses kept for conditional requests.
+	 */
+	public static void clearResponses(){
+		synchronized(responses){
+			responses.clear();
+		}
+	}
+	
+	/**
+	 * The {@code CachedResponse} class holds a downloaded content with its validators.
+	 */
+	private static class CachedResponse {
+		/** Entity tag given by Pivotal **/
+		final String etag;
+		/** Last modification date given by Pivotal **/
+		final String last_modified;
+		/** Downloaded content **/
+		final String content;
+		
+		/**
+		 * Creates a kept response.
+		 * 
+		 * @param etag specifies the entity tag, null if not given.
+		 * @param last_modified specifies the modification date, null if not given.
+		 * @param content specifies the downloaded content.
+		 */
+		CachedResponse(String etag, String last_modified, String content){
+			this.etag = etag;
+			this.last_modified = last_modified;
+			this.content = content;
+		}
 	}
 	
-	//TODO Refactor to have a single point of reference for the download.
+	/**
+	 * Single point of reference for all requests to Pivotal.
+	 * Requests go through the {@linkplain ConnectionPool shared client},
+	 * so the response must always be {@linkplain #release(CloseableHttpResponse) released}.
+	 * 
+	 * @param httpget specifies the request, the token is added here.
+	 * @param description names the request in the logs.
+	 * @return the response, with the content not yet read.
+	 * @throws IOException if the request fails.
+	 */
+	private CloseableHttpResponse execute(HttpGet httpget, String description) throws IOException{
+		httpget.addHeader("X-TrackerToken", token);
+		System.out.println("Executing request for " + description + ":\n" + httpget.getRequestLine());
+		CloseableHttpResponse response = ConnectionPool.getClient().execute(httpget);
+		System.out.println(response.getStatusLine());
+		return response;
+	}
+	
+	/**
+	 * Gives the connection of a response back to the pool.
+	 * Remaining content is consumed so the connection can be kept alive.
+	 * 
+	 * @param response specifies the response to be released.
+	 * @throws IOException if the connection could not be released.
+	 */
+	private void release(CloseableHttpResponse response) throws IOException{
+		try {
+			EntityUtils.consume(response.getEntity());
+		}
+		finally {
+			response.close();
+		}
+	}
 }
@@ -23,7 +23,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Vector;
+import java.util.HashSet;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -34,16 +34,22 @@ import org.json.simple.parser.JSONParser;
  * 
  * Not all information provided by the Pivotal Tracker API is processed.
  * Only data relevant to Pivotal Analytics is extracted from the documents.
+ * 
+ * What changes over time is kept in an immutable {@link ProjectState}: the stories,
+ * always a {@linkplain TicketSet#freeze() frozen} set, the current iteration, the members
+ * and the latest change known. Synchronizing builds a new state and swaps it in at once,
+ * so it can be read by many threads without locking. Requests should take the
+ * {@linkplain #getState() state} once and read only from it.
  *  
  * @version 1.0
  * @author Matheus Borges Teixeira
  */
 public class Project {
-	/** All Project Stories (Bugs, Features, Chores and Releases) **/
-	private TicketSet stories;
+	/** Stories, current iteration, members and latest change, swapped at once **/
+	volatile ProjectState state;
 	
-	/** Current Iteration Number **/
-	int current_iteration = 0;
+	/** Pivotal ID reference to the Project **/
+	int id;
 	
 	/** Iteration size in ms **/
 	long iteration_size = 0;
@@ -57,21 +63,32 @@ public class Project {
 	/** Name of the Company using the Project **/
 	String company;
 	
-	/** User names lookup list **/
-	UserLookup users;
-	
 	/** Map of stories per iteration according to Pivotal **/
 	HashMap<String,Long> iteration_map;
 	
+	/**
+	 * Constructs an empty project, to be filled from a snapshot.
+	 * 
+	 * @see ProjectSnapshot#read(java.io.DataInput)
+	 */
+	Project(){
+	}
+	
 	/**
 	 * Downloads and constructs a given project.
+	 * A project is never built from a partial download, so it is not taken for an empty one.
 	 * 
 	 * @param projectID specifies Pivotal ID reference to the Project.
 	 * @param token specifies User API Token from Pivotal.
+	 * @throws IllegalStateException if the project could not be downloaded or read.
 	 */
 	public Project(int projectID, String token){
+		id = projectID;
 		PivotalAPI api = new PivotalAPI(token);
 		String downloaded = api.downloadProject(projectID);
+		if(downloaded == null){
+			throw new IllegalStateException("Project "+projectID+" could not be downloaded.");
+		}
 		JSONParser jp = new JSONParser();
 		try {
 			JSONObject jo = (JSONObject) jp.parse(downloaded);
@@ -83,7 +100,7 @@ public class Project {
 				iterations_start = new SimpleDateFormat("yyyy-MM-dd").parse(date_start);
 			}
 			 
-			current_iteration = ((Long)jo.get("current_iteration_number")).intValue();
+			int current_iteration = ((Long)jo.get("current_iteration_number")).intValue();
 			
 			long size = ((Long)jo.get("iteration_length")).longValue();
 			iteration_size = size*7*24*60*60*1000;
@@ -92,21 +109,20 @@ public class Project {
 			company = (Long)jo.get("account_id")+"";
 			
 			downloaded = api.downloadUsers(projectID);
-			
-			JSONArray ja = (JSONArray) jp.parse(downloaded);
-			
-			users = new UserLookup();
-			for(Object pm: ja.toArray()){
-				users.addUser((JSONObject)(((JSONObject)pm).get("person")));
+			if(downloaded == null){
+				throw new IllegalStateException("Members of project "+projectID+" could not be downloaded.");
 			}
+			UserLookup users = readUsers(downloaded);
 					
-			loadStories(projectID,token);		
+			loadStories(projectID,token,current_iteration,users);		
 		} catch (ParseException e) {
 			System.out.println("[ERROR:ParseException] There was an Exception while parsing Pivotal Project Content, see error logs for stack trace.");
 			e.printStackTrace();
+			throw new IllegalStateException(e);
 		} catch (org.json.simple.parser.ParseException e) {
 			System.out.println("[ERROR:ParseException] There was an Exception while parsing Pivotal Project JSON, see error logs for stack trace.");
 			e.printStackTrace();
+			throw new IllegalStateException(e);
 		}		
 	}
 	
@@ -116,36 +132,235 @@ public class Project {
 	 * 
 	 * @param projectID specifies Pivotal ID reference to the Project.
 	 * @param token specifies User API Token from Pivotal.
+	 * @param current_iteration specifies the current iteration.
+	 * @param users provides a user lookup table for reading names from IDs.
+	 * @throws IllegalStateException if the stories could not be downloaded.
 	 */
-	private void loadStories(int projectID, String token){
+	private void loadStories(int projectID, String token, int current_iteration, UserLookup users){
 		PivotalAPI api = new PivotalAPI(token);
-		Vector<String> downloaded = api.downloadProjectContent(projectID);
-		JSONParser jp = new JSONParser();
-		JSONArray list;
-		try {
-			stories = new TicketSet();
-			int iteration = 0;
-			for(String d: downloaded){
-				list = (JSONArray)jp.parse(d);
-				for(int i = 0; i < list.size(); i++){
-					Ticket t = new Ticket((JSONObject)list.get(i),users);
-					stories.add(t);
-					if(iteration > 0) t.addMissingIterationLabel(iteration);
+		Date requested = new Date();
+		TicketSet downloaded = api.downloadProjectContent(projectID, users);
+		if(downloaded == null){
+			throw new IllegalStateException("Stories of project "+projectID+" could not be downloaded.");
+		}
+		state = new ProjectState(this, downloaded.freeze(), current_iteration, users, latestUpdate(downloaded, requested));
+	}
+	
+	/**
+	 * Reads the members of a project.
+	 * 
+	 * @param downloaded specifies the memberships as given by Pivotal.
+	 * @return the user lookup table.
+	 * @throws org.json.simple.parser.ParseException if the memberships are not valid JSON.
+	 */
+	private static UserLookup readUsers(String downloaded) throws org.json.simple.parser.ParseException{
+		JSONArray ja = (JSONArray) new JSONParser().parse(downloaded);
+		UserLookup users = new UserLookup();
+		for(Object pm: ja.toArray()){
+			users.addUser((JSONObject)(((JSONObject)pm).get("person")));
+		}
+		return users;
+	}
+	
+	/**
+	 * Brings the stories up to date without downloading the whole project.
+	 * Only stories changed since the last download or synchronization are requested.
+	 * They replace the old stories with the same ID, new stories are appended.
+	 * The members are read again, so new owners are known by name.
+	 * 
+	 * When anything changed, the current and backlog iterations are read again as well.
+	 * Their stories take the iteration Pivotal schedules them in, including
+	 * unchanged stories rolled over into a new current iteration.
+	 * 
+	 * The new stories, current iteration and members are swapped in at once as a new state,
+	 * readers keep a consistent state meanwhile.
+	 * A change of the current iteration alone also gives a new set, so the version tells it.
+	 * Stories deleted in Pivotal are not noticed, for those the project must be flushed.
+	 * 
+	 * @param token specifies User API Token from Pivotal.
+	 * @return true if the project is up to date, false in case of errors.
+	 */
+	public synchronized boolean synchronize(String token){
+		ProjectState current = state;
+		if(current == null || current.users == null){
+			return false;
+		}
+		UserLookup users = current.users;
+		TicketSet stories = current.stories;
+		PivotalAPI api = new PivotalAPI(token);
+		Date requested = new Date();
+		String downloaded = api.downloadProject(id);
+		int iteration = current.current_iteration;
+		if(downloaded != null){
+			try {
+				JSONObject jo = (JSONObject) new JSONParser().parse(downloaded);
+				iteration = ((Long)jo.get("current_iteration_number")).intValue();
+			} catch (org.json.simple.parser.ParseException e) {
+				System.out.println("[ERROR:ParseException] There was an Exception while parsing Pivotal Project JSON, see error logs for stack trace.");
+				e.printStackTrace();
+			}
+		}
+		
+		downloaded = api.downloadUsers(id);
+		if(downloaded != null){
+			try {
+				users = readUsers(downloaded);
+			} catch (org.json.simple.parser.ParseException e) {
+				System.out.println("[ERROR:ParseException] There was an Exception while parsing Pivotal Project JSON, see error logs for stack trace.");
+				e.printStackTrace();
+			}
+		}
+		
+		Date last_update = current.getLastUpdate();
+		TicketSet changed = api.downloadUpdatedStories(id, users, last_update == null ? requested : last_update);
+		if(changed == null){
+			return false;
+		}
+		if(!changed.isEmpty() || iteration != current.current_iteration){
+			TicketSet scheduled = api.downloadScheduledStories(id, users, iteration);
+			if(scheduled == null){
+				return false;
+			}
+			TicketSet merged = new TicketSet();
+			merged.addAll(stories);
+			HashMap<Long,Integer> positions = new HashMap<Long,Integer>();
+			for(int i = 0; i < merged.size(); i++){
+				positions.put(merged.get(i).getID(), i);
+			}
+			HashSet<Long> labeled = new HashSet<Long>();
+			for(Ticket t: scheduled){
+				labeled.add(t.getID());
+			}
+			for(Ticket t: changed){
+				if(labeled.contains(t.getID())){
+					continue;
+				}
+				Integer position = positions.get(t.getID());
+				Ticket old = position == null ? null : merged.get(position);
+				int iteration_of = iterationOf(t, old, iteration);
+				if(iteration_of > 0){
+					t.addMissingIterationLabel(iteration_of);
 				}
-				iteration++;
+				merge(merged, positions, t);
 			}
-		} catch (org.json.simple.parser.ParseException e) {
-			System.out.println("[ERROR:json.ParseException] Error while parsing JSON information for the project.");
-			e.printStackTrace();
+			for(Ticket t: scheduled){
+				merge(merged, positions, t);
+			}
+			stories = merged.freeze();
+		}
+		Date latest = latestUpdate(changed, requested);
+		if(last_update != null && !latest.after(last_update)){
+			latest = last_update;
 		}
+		state = new ProjectState(this, stories, iteration, users, latest);
+		return true;
+	}
+	
+	/**
+	 * Replaces the story with the same ID, or appends the story if new.
+	 * 
+	 * @param merged specifies the stories being merged.
+	 * @param positions maps the ID of each story to its position in the merged stories.
+	 * @param t specifies the story to merge.
+	 */
+	private static void merge(TicketSet merged, HashMap<Long,Integer> positions, Ticket t){
+		Integer position = positions.get(t.getID());
+		if(position == null){
+			positions.put(t.getID(), merged.size());
+			merged.add(t);
+		}
+		else{
+			merged.set(position, t);
+		}
+	}
+	
+	/**
+	 * Finds out which iteration a changed story belongs to,
+	 * when it is not in the current or backlog iterations.
+	 * Stories keep the iteration they had when nothing suggests a move,
+	 * otherwise it is derived as the iterations endpoint would do:
+	 * accepted stories by acceptance date, others in the current iteration.
+	 * 
+	 * @param changed specifies the story as downloaded.
+	 * @param old specifies the same story before the change, null if new.
+	 * @param current_iteration specifies the current iteration.
+	 * @return the iteration number, 0 if not in any iteration.
+	 */
+	int iterationOf(Ticket changed, Ticket old, int current_iteration){
+		if(changed.getState() == null || changed.getState().compareTo("unscheduled") == 0){
+			return 0;
+		}
+		if(changed.getAccepted() != null){
+			if(old != null && old.getAccepted() != null && old.getIteration() > 0){
+				return old.getIteration();
+			}
+			if(iteration_size <= 0){
+				return 0;
+			}
+			int iteration = (int)((changed.getAccepted().getTime() - iterations_start.getTime()) / iteration_size) + 1;
+			return Math.max(1, Math.min(iteration, current_iteration));
+		}
+		if(old != null && old.getIteration() > current_iteration){
+			return old.getIteration();
+		}
+		return current_iteration;
+	}
+	
+	/**
+	 * Finds the latest change among the given stories.
+	 * 
+	 * @param tickets specifies the stories to check.
+	 * @param fallback defines the result when no story tells when it was changed.
+	 * @return the latest change date.
+	 */
+	static Date latestUpdate(TicketSet tickets, Date fallback){
+		Date latest = null;
+		for(Ticket t: tickets){
+			if(t.getUpdated() != null && (latest == null || t.getUpdated().after(latest))){
+				latest = t.getUpdated();
+			}
+		}
+		return latest == null ? fallback : latest;
+	}
+
+	/**
+	 * Gets the Pivotal ID reference to the Project.
+	 * @return the project ID.
+	 */
+	public int getID(){
+		return id;
 	}
 
 	/**
-	 * Gets all stories.
+	 * Gets the current state: stories, current iteration, members and latest change.
+	 * A request reading several of them should take the state once and read it alone.
+	 * 
+	 * @return the state, null if nothing was loaded.
+	 */
+	public ProjectState getState(){
+		return state;
+	}
+	
+	/**
+	 * Gets all stories of the current state.
 	 * @return stories.
 	 */
 	public TicketSet getStories(){
-		return stories;
+		ProjectState current = state;
+		return current == null ? null : current.stories;
+	}
+	
+	/**
+	 * Gets the version of the stories.
+	 * Each download or synchronization which changes anything gives a new, larger version,
+	 * so results computed from the stories can be kept by version.
+	 * 
+	 * @see TicketSet#getVersion()
+	 * @return the version, 0 if nothing was loaded.
+	 */
+	public long getVersion(){
+		ProjectState current = state;
+		return current == null ? 0 : current.getVersion();
 	}
 	
 	/**
@@ -157,11 +372,12 @@ public class Project {
 	}
 	
 	/**
-	 * Gets the current iteration.
+	 * Gets the current iteration of the current state.
 	 * @return the current iteration.
 	 */
 	public int getCurrentIteration() {
-		return current_iteration;
+		ProjectState current = state;
+		return current == null ? 0 : current.current_iteration;
 	}
 	
 	/**
@@ -172,6 +388,21 @@ public class Project {
 		return iteration_size;
 	}
 
+	/**
+	 * Estimates how much memory the Project takes, in bytes.
+	 * Shared data, such as interned names and labels, is not accounted.
+	 * 
+	 * @return the estimated size.
+	 */
+	public long getWeight(){
+		long weight = 512;
+		if(name != null) weight += 40 + 2*name.length();
+		if(iteration_map != null) weight += 64L*iteration_map.size();
+		ProjectState current = state;
+		if(current != null) weight += current.stories.estimateWeight();
+		return weight;
+	}
+
 	/**
 	 * Gets the project title.
 	 * @return the project title.
@@ -0,0 +1,329 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code ProjectSnapshot} class writes Projects in a compact binary form and reads them back.
+ * 
+ * Every distinct text (types, states, people, labels and locations) is written
+ * once in a table at the start, and Tickets refer to it by position, the same
+ * way they refer to their {@linkplain SymbolTable symbols} in memory.
+ * Numbers and dates are written as they are kept, titles in UTF-8.
+ * 
+ * A snapshot read back is a Project as it was when written, including
+ * the mark used to {@linkplain Project#synchronize(String) synchronize} it.
+ * 
+ * This class is entirely based on static behavior!
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class ProjectSnapshot {
+	/** Marks the start of a snapshot: "PAS" and the format version **/
+	private static final int MAGIC = 0x50415302;
+	
+	/** Encoding of all texts **/
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/** Longest text accepted when reading, anything longer means a broken snapshot **/
+	private static final int MAX_TEXT = 1 << 24;
+	
+	/** Largest amount of items accepted when reading, anything larger means a broken snapshot **/
+	private static final int MAX_COUNT = 1 << 20;
+	
+	/** Value of dates not set **/
+	private static final long NONE = Ticket.NONE;
+	
+	/**
+	 * Writes a project.
+	 * The state is taken once, so the stories always match the mark.
+	 * 
+	 * @param project specifies the project.
+	 * @param out specifies where to write.
+	 * @throws IOException in case of errors writing, or if nothing was loaded.
+	 */
+	public static void write(Project project, DataOutput out) throws IOException {
+		ProjectState state = project.getState();
+		if(state == null){
+			throw new IOException("Project "+project.id+" has nothing loaded to write.");
+		}
+		TicketSet stories = state.stories;
+		
+		out.writeInt(MAGIC);
+		out.writeInt(project.id);
+		writeText(out, project.name);
+		writeText(out, project.company);
+		out.writeLong(project.iterations_start == null ? NONE : project.iterations_start.getTime());
+		out.writeInt(state.current_iteration);
+		out.writeLong(project.iteration_size);
+		out.writeLong(state.last_update);
+		
+		Map<String,String> users = state.users == null ? new HashMap<String,String>() : state.users.users;
+		out.writeInt(state.users == null ? -1 : users.size());
+		for(Map.Entry<String,String> user: users.entrySet()){
+			writeText(out, user.getKey());
+			writeText(out, user.getValue());
+		}
+		
+		/* Table of texts, by position of first use */
+		HashMap<String,Integer> positions = new HashMap<String,Integer>();
+		ArrayList<String> texts = new ArrayList<String>();
+		for(Ticket t: stories){
+			collect(Ticket.TYPES.get(t.type), positions, texts);
+			collect(Ticket.STATES.get(t.state), positions, texts);
+			collect(Ticket.PEOPLE.get(t.requester), positions, texts);
+			for(int owner: t.owners){
+				collect(Ticket.PEOPLE.get(owner), positions, texts);
+			}
+			collect(Ticket.LOCATIONS.get(t.location), positions, texts);
+			for(int label: t.labels){
+				collect(Ticket.LABELS.get(label), positions, texts);
+			}
+		}
+		out.writeInt(texts.size());
+		for(String text: texts){
+			writeText(out, text);
+		}
+		
+		out.writeInt(stories.size());
+		for(Ticket t: stories){
+			out.writeLong(t.ID);
+			writeText(out, t.title);
+			out.writeInt(t.Iteration);
+			out.writeInt(position(Ticket.TYPES.get(t.type), positions));
+			out.writeInt(t.estimate);
+			out.writeInt(position(Ticket.STATES.get(t.state), positions));
+			out.writeLong(t.created);
+			out.writeLong(t.accepted);
+			out.writeLong(t.updated);
+			out.writeInt(position(Ticket.PEOPLE.get(t.requester), positions));
+			out.writeInt(t.owners.length);
+			for(int owner: t.owners){
+				out.writeInt(position(Ticket.PEOPLE.get(owner), positions));
+			}
+			out.writeInt(position(Ticket.LOCATIONS.get(t.location), positions));
+			out.writeBoolean(t.location_by_id);
+			out.writeInt(t.labels.length);
+			for(int label: t.labels){
+				out.writeInt(position(Ticket.LABELS.get(label), positions));
+			}
+		}
+	}
+	
+	/**
+	 * Reads a project.
+	 * 
+	 * @param in specifies where to read from.
+	 * @return the project as it was written.
+	 * @throws IOException in case of errors reading, or if this is not a snapshot.
+	 */
+	public static Project read(DataInput in) throws IOException {
+		if(in.readInt() != MAGIC){
+			throw new IOException("Not a project snapshot, or written by another version.");
+		}
+		Project project = new Project();
+		project.id = in.readInt();
+		project.name = readText(in);
+		project.company = readText(in);
+		project.iterations_start = readDate(in);
+		int current_iteration = in.readInt();
+		project.iteration_size = in.readLong();
+		Date last_update = readDate(in);
+		
+		UserLookup lookup = null;
+		int users = in.readInt();
+		if(users != -1){
+			users = readCount(users, "users");
+			lookup = new UserLookup();
+			for(int i = 0; i < users; i++){
+				String id = readText(in);
+				lookup.users.put(id, readText(in));
+			}
+		}
+		
+		String[] texts = new String[readCount(in.readInt(), "texts")];
+		for(int i = 0; i < texts.length; i++){
+			texts[i] = readText(in);
+		}
+		/* Codes of each text, by table, found on first use */
+		int[][] codes = new int[5][texts.length];
+		for(int[] table: codes){
+			Arrays.fill(table, -2);
+		}
+		
+		int count = readCount(in.readInt(), "stories");
+		TicketSet stories = new TicketSet();
+		for(int i = 0; i < count; i++){
+			Ticket t = new Ticket();
+			t.ID = in.readLong();
+			t.title = readText(in);
+			t.Iteration = in.readInt();
+			t.type = (byte)code(Ticket.TYPES, 0, in.readInt(), texts, codes);
+			t.estimate = in.readInt();
+			t.state = (byte)code(Ticket.STATES, 1, in.readInt(), texts, codes);
+			t.created = in.readLong();
+			t.accepted = in.readLong();
+			t.updated = in.readLong();
+			t.requester = code(Ticket.PEOPLE, 2, in.readInt(), texts, codes);
+			int owners = readCount(in.readInt(), "owners");
+			if(owners > 0){
+				t.owners = new int[owners];
+				for(int o = 0; o < owners; o++){
+					t.owners[o] = code(Ticket.PEOPLE, 2, in.readInt(), texts, codes);
+				}
+			}
+			t.location = code(Ticket.LOCATIONS, 3, in.readInt(), texts, codes);
+			t.location_by_id = in.readBoolean();
+			int labels = readCount(in.readInt(), "labels");
+			if(labels > 0){
+				t.labels = new int[labels];
+				for(int l = 0; l < labels; l++){
+					t.labels[l] = code(Ticket.LABELS, 4, in.readInt(), texts, codes);
+				}
+			}
+			stories.add(t);
+		}
+		project.state = new ProjectState(project, stories.freeze(), current_iteration, lookup, last_update);
+		return project;
+	}
+	
+	/**
+	 * Adds a text to the table, if not yet in it.
+	 * 
+	 * @param text specifies the text, nulls are not added.
+	 * @param positions specifies the position of each text in the table.
+	 * @param texts specifies the table.
+	 */
+	private static void collect(String text, HashMap<String,Integer> positions, ArrayList<String> texts){
+		if(text != null && !positions.containsKey(text)){
+			positions.put(text, texts.size());
+			texts.add(text);
+		}
+	}
+	
+	/**
+	 * Gets the position of a text in the table.
+	 * 
+	 * @param text specifies the text.
+	 * @param positions specifies the position of each text in the table.
+	 * @return the position, -1 for null.
+	 */
+	private static int position(String text, HashMap<String,Integer> positions){
+		return text == null ? -1 : positions.get(text).intValue();
+	}
+	
+	/**
+	 * Gets the symbol code of a text in the table, interning it on first use.
+	 * 
+	 * @param symbols specifies the symbols the text belongs to.
+	 * @param table specifies which codes cache to use for the symbols.
+	 * @param position specifies the position of the text, -1 for none.
+	 * @param texts specifies the table.
+	 * @param codes specifies the codes already found, by table and position.
+	 * @return the code, -1 for none.
+	 * @throws IOException if the position is not in the table.
+	 */
+	private static int code(SymbolTable symbols, int table, int position, String[] texts, int[][] codes) throws IOException {
+		if(position < 0){
+			return -1;
+		}
+		if(position >= texts.length){
+			throw new IOException("Snapshot refers to an unknown text: "+position);
+		}
+		if(codes[table][position] == -2){
+			codes[table][position] = symbols.intern(texts[position]);
+		}
+		return codes[table][position];
+	}
+	
+	/**
+	 * Writes a text which might be null.
+	 * 
+	 * @param out specifies where to write.
+	 * @param text specifies the text.
+	 * @throws IOException in case of errors writing.
+	 */
+	private static void writeText(DataOutput out, String text) throws IOException {
+		if(text == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Reads a text which might be null.
+	 * 
+	 * @param in specifies where to read from.
+	 * @return the text.
+	 * @throws IOException in case of errors reading.
+	 */
+	private static String readText(DataInput in) throws IOException {
+		int length = in.readInt();
+		if(length < 0){
+			return null;
+		}
+		if(length > MAX_TEXT){
+			throw new IOException("Snapshot text too long: "+length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+	
+	/**
+	 * Checks an amount of items read, before anything is made for them.
+	 * 
+	 * @param count specifies the amount read.
+	 * @param what specifies what is counted, for the error.
+	 * @return the amount.
+	 * @throws IOException if the amount is negative or too large.
+	 */
+	private static int readCount(int count, String what) throws IOException {
+		if(count < 0 || count > MAX_COUNT){
+			throw new IOException("Snapshot has a broken amount of "+what+": "+count);
+		}
+		return count;
+	}
+	
+	/**
+	 * Reads a date which might not be set.
+	 * 
+	 * @param in specifies where to read from.
+	 * @return the date, null if not set.
+	 * @throws IOException in case of errors reading.
+	 */
+	private static Date readDate(DataInput in) throws IOException {
+		long date = in.readLong();
+		return date == NONE ? null : new Date(date);
+	}
+}
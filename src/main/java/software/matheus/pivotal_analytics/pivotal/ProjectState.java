@@ -0,0 +1,133 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.Date;
+
+/**
+ * The {@code ProjectState} class holds what a {@link Project} knows at one moment.
+ * 
+ * A state never changes: synchronizing builds a new one and swaps it in at once.
+ * Requests take the state once and read only from it, so a page never mixes
+ * the stories of one synchronization with the current iteration of another.
+ * 
+ * @see Project#getState()
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class ProjectState {
+	/** Project this is the state of **/
+	private final Project project;
+	
+	/** All Project Stories, frozen **/
+	final TicketSet stories;
+	
+	/** Current Iteration Number **/
+	final int current_iteration;
+	
+	/** User names lookup list, never changed once in a state **/
+	final UserLookup users;
+	
+	/** Latest story change known in ms, used for synchronizing **/
+	final long last_update;
+	
+	/**
+	 * Creates the state of a project.
+	 * 
+	 * @param project specifies the project.
+	 * @param stories specifies the stories, frozen.
+	 * @param current_iteration specifies the current iteration.
+	 * @param users specifies the user lookup table, not to be changed afterwards.
+	 * @param last_update specifies the latest story change known.
+	 */
+	ProjectState(Project project, TicketSet stories, int current_iteration, UserLookup users, Date last_update){
+		this.project = project;
+		this.stories = stories;
+		this.current_iteration = current_iteration;
+		this.users = users;
+		this.last_update = last_update == null ? Ticket.NONE : last_update.getTime();
+	}
+	
+	/**
+	 * Gets the Pivotal ID reference to the Project.
+	 * @return the project ID.
+	 */
+	public int getID(){
+		return project.getID();
+	}
+	
+	/**
+	 * Gets all stories.
+	 * @return stories.
+	 */
+	public TicketSet getStories(){
+		return stories;
+	}
+	
+	/**
+	 * Gets the version of the stories.
+	 * 
+	 * @see Project#getVersion()
+	 * @return the version.
+	 */
+	public long getVersion(){
+		return stories.getVersion();
+	}
+	
+	/**
+	 * Gets the current iteration.
+	 * @return the current iteration.
+	 */
+	public int getCurrentIteration(){
+		return current_iteration;
+	}
+	
+	/**
+	 * Gets the latest story change known.
+	 * @return the date of the change, null if not known.
+	 */
+	public Date getLastUpdate(){
+		return last_update == Ticket.NONE ? null : new Date(last_update);
+	}
+	
+	/**
+	 * Gets when the Project (and iterations) started.
+	 * @return the date when iterations started.
+	 */
+	public Date getStart(){
+		return project.getStart();
+	}
+	
+	/**
+	 * Gets the iteration size in ms.
+	 * @return the iteration size.
+	 */
+	public long getIterationSize(){
+		return project.getIterationSize();
+	}
+	
+	/**
+	 * Gets the project title.
+	 * @return the project title.
+	 */
+	public String getDisplayName(){
+		return project.getDisplayName();
+	}
+}
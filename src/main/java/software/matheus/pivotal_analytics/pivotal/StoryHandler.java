@@ -0,0 +1,254 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.LinkedList;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * The {@code StoryHandler} class turns a streamed JSON document into Tickets.
+ *
+ * Two kinds of documents are understood: a page of iterations, where stories
+ * are inside the "stories" array of each iteration, and a plain page of stories
+ * such as the icebox. Only one story is held in memory at a time, everything
+ * outside the stories is skipped as it is read.
+ *
+ * Stories coming from iterations are labeled with their iteration number,
+ * as given by the "number" of the iteration, or counted from the offset
+ * when an iteration does not tell it before its stories.
+ *
+ * @see software.matheus.pivotal_analytics.pivotal.PivotalAPI#downloadProjectContent(int, UserLookup)
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class StoryHandler implements ContentHandler {
+	/** Destination of all parsed stories **/
+	private TicketSet stories;
+
+	/** User names lookup list **/
+	private UserLookup users;
+
+	/** Defines if the document is a list of iterations or a plain list of stories **/
+	private boolean iterations = false;
+
+	/** Number of the iteration being read, 0 when outside iterations **/
+	private int iteration = 0;
+
+	/** Depth of the containers being skipped around the stories **/
+	private int depth = 0;
+
+	/** Last entry read in an iteration object **/
+	private String entry = null;
+
+	/** Defines if the "stories" array of an iteration is being read **/
+	private boolean in_stories = false;
+
+	/** Containers of the story currently being read **/
+	private LinkedList<Object> stack = new LinkedList<Object>();
+
+	/** Entries of the story currently being read **/
+	private LinkedList<String> keys = new LinkedList<String>();
+
+	/**
+	 * Creates a handler which adds all parsed stories to a given set.
+	 *
+	 * @param stories specifies where the Tickets will be added.
+	 * @param users provides a user lookup table for reading names from IDs.
+	 */
+	public StoryHandler(TicketSet stories, UserLookup users){
+		this.stories = stories;
+		this.users = users;
+	}
+
+	/**
+	 * Prepares the handler for a page of unscheduled stories.
+	 */
+	public void expectIcebox(){
+		this.iterations = false;
+		this.iteration = 0;
+	}
+
+	/**
+	 * Prepares the handler for a page of iterations.
+	 *
+	 * @param offset defines how many iterations came before this page.
+	 */
+	public void expectIterations(int offset){
+		this.iterations = true;
+		this.iteration = offset;
+	}
+
+	/**
+	 * Checks if the next object is a story.
+	 * @return true if the object about to start is a story.
+	 */
+	private boolean isStory(){
+		if(iterations){
+			return in_stories && depth == 3;
+		}
+		return depth == 1;
+	}
+
+	/**
+	 * Adds a value to the container currently being read.
+	 * @param value defines what is to be added.
+	 */
+	@SuppressWarnings("unchecked")
+	private void attach(Object value){
+		Object parent = stack.getLast();
+		if(parent instanceof JSONArray){
+			((JSONArray)parent).add(value);
+		}
+		else{
+			((JSONObject)parent).put(keys.getLast(), value);
+		}
+	}
+
+	/**
+	 * @see ContentHandler#startJSON()
+	 */
+	public void startJSON(){
+		depth = 0;
+		entry = null;
+		in_stories = false;
+		stack.clear();
+		keys.clear();
+	}
+
+	/**
+	 * @see ContentHandler#endJSON()
+	 */
+	public void endJSON(){
+	}
+
+	/**
+	 * @see ContentHandler#startObject()
+	 */
+	public boolean startObject(){
+		if(!stack.isEmpty() || isStory()){
+			JSONObject jo = new JSONObject();
+			if(!stack.isEmpty()){
+				attach(jo);
+			}
+			stack.addLast(jo);
+		}
+		else{
+			depth++;
+			if(iterations && depth == 2){
+				iteration++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#endObject()
+	 */
+	public boolean endObject(){
+		if(!stack.isEmpty()){
+			JSONObject jo = (JSONObject)stack.removeLast();
+			if(stack.isEmpty()){
+				Ticket t = new Ticket(jo,users);
+				if(iteration > 0) t.addMissingIterationLabel(iteration);
+				stories.add(t);
+			}
+		}
+		else{
+			depth--;
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#startObjectEntry(String)
+	 */
+	public boolean startObjectEntry(String key){
+		if(!stack.isEmpty()){
+			keys.addLast(key);
+		}
+		else{
+			entry = key;
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#endObjectEntry()
+	 */
+	public boolean endObjectEntry(){
+		if(!stack.isEmpty()){
+			keys.removeLast();
+		}
+		else{
+			entry = null;
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#startArray()
+	 */
+	public boolean startArray(){
+		if(!stack.isEmpty()){
+			JSONArray ja = new JSONArray();
+			attach(ja);
+			stack.addLast(ja);
+		}
+		else{
+			depth++;
+			if(iterations && depth == 3 && "stories".equals(entry)){
+				in_stories = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#endArray()
+	 */
+	public boolean endArray(){
+		if(!stack.isEmpty()){
+			stack.removeLast();
+		}
+		else{
+			if(in_stories && depth == 3){
+				in_stories = false;
+			}
+			depth--;
+		}
+		return true;
+	}
+
+	/**
+	 * @see ContentHandler#primitive(Object)
+	 */
+	public boolean primitive(Object value){
+		if(!stack.isEmpty()){
+			attach(value);
+		}
+		else if(iterations && depth == 2 && "number".equals(entry) && value instanceof Number){
+			iteration = ((Number)value).intValue();
+		}
+		return true;
+	}
+}
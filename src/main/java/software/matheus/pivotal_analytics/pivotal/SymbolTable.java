@@ -0,0 +1,161 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code SymbolTable} class interns repeated Strings as small integer codes.
+ * Tickets keep codes instead of their own copies of types, states, people and labels,
+ * so each distinct value is stored only once and compared as a number.
+ * 
+ * Codes are never reused nor removed, they are given in order starting at 0.
+ * The code -1 stands for null.
+ * Reading is lock-free, only new symbols are added under a lock.
+ * 
+ * As symbols are never removed, a table only grows with the distinct values seen.
+ * The tables of {@link Ticket} are shared by all projects, so their
+ * {@linkplain #estimateWeight() weight} is counted against the bound of
+ * {@link software.matheus.pivotal_analytics.io.DataSource#MAX_WEIGHT} as well.
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class SymbolTable {
+	/** Code of each known symbol **/
+	private final ConcurrentHashMap<String,Integer> codes = new ConcurrentHashMap<String,Integer>();
+	
+	/** Known symbols, indexed by code **/
+	private volatile String[] symbols;
+	
+	/** Amount of known symbols **/
+	private volatile int size = 0;
+	
+	/** Estimated weight in bytes of the known symbols **/
+	private volatile long weight = 0;
+	
+	/**
+	 * Creates a table with some symbols already known.
+	 * The given symbols get the codes in the given order.
+	 * 
+	 * @param known specifies the symbols to be known from start.
+	 */
+	public SymbolTable(String... known){
+		symbols = new String[Math.max(16, known.length)];
+		for(String symbol: known){
+			intern(symbol);
+		}
+	}
+	
+	/**
+	 * Gets the code of a symbol, adding it if not yet known.
+	 * 
+	 * @param symbol specifies the symbol.
+	 * @return the code of the symbol, -1 for null.
+	 */
+	public int intern(String symbol){
+		if(symbol == null){
+			return -1;
+		}
+		Integer code = codes.get(symbol);
+		if(code != null){
+			return code.intValue();
+		}
+		synchronized(this){
+			code = codes.get(symbol);
+			if(code != null){
+				return code.intValue();
+			}
+			String[] current = symbols;
+			if(size == current.length){
+				String[] grown = new String[current.length * 2];
+				System.arraycopy(current, 0, grown, 0, size);
+				current = grown;
+			}
+			current[size] = symbol;
+			symbols = current;
+			codes.put(symbol, size);
+			/* String, its entry and code in the map and its slot in the array */
+			weight += 40 + 2*symbol.length() + 64 + 8;
+			return size++;
+		}
+	}
+	
+	/**
+	 * Gets the code of a symbol without adding it.
+	 * 
+	 * @param symbol specifies the symbol.
+	 * @return the code of the symbol, -1 if not known.
+	 */
+	public int find(String symbol){
+		if(symbol == null){
+			return -1;
+		}
+		Integer code = codes.get(symbol);
+		return code == null ? -1 : code.intValue();
+	}
+	
+	/**
+	 * Gets the symbol of a code.
+	 * 
+	 * @param code specifies the code.
+	 * @return the symbol, null if the code is not known.
+	 */
+	public String get(int code){
+		String[] current = symbols;
+		if(code < 0 || code >= current.length){
+			return null;
+		}
+		return current[code];
+	}
+	
+	/**
+	 * Finds out which symbols contain a given text.
+	 * 
+	 * @param part specifies the text to look for.
+	 * @return flags indexed by code, true where the symbol contains the text.
+	 */
+	public boolean[] matching(String part){
+		int known = size;
+		String[] current = symbols;
+		boolean[] result = new boolean[known];
+		for(int i = 0; i < known; i++){
+			result[i] = current[i].indexOf(part) >= 0;
+		}
+		return result;
+	}
+	
+	/**
+	 * Estimates how much memory the known symbols take, in bytes.
+	 * 
+	 * @return the estimated size.
+	 */
+	long estimateWeight(){
+		return weight;
+	}
+	
+	/**
+	 * Gets the amount of known symbols.
+	 * @return the amount of symbols.
+	 */
+	public int size(){
+		return size;
+	}
+}
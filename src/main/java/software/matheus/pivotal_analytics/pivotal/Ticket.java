@@ -21,6 +21,7 @@ package software.matheus.pivotal_analytics.pivotal;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Date;
 
 import javax.xml.bind.DatatypeConverter;
@@ -34,35 +35,88 @@ import org.json.simple.JSONObject;
  * 
  * Not all information provided by the Pivotal Tracker API is processed.
  * Only data relevant to Pivotal Analytics is extracted from the documents.
+ * 
+ * Tickets are kept compact: repeated values (types, states, people, labels)
+ * are {@linkplain SymbolTable interned} and stored as codes, dates as epoch ms
+ * and the URL is only built when requested.
  *  
  * @version 1.0
  * @author Matheus Borges Teixeira
  */
 public class Ticket {
+	/** Value of dates not set **/
+	static final long NONE = Long.MIN_VALUE;
+	/** Codes of the Ticket types **/
+	static final byte BUG = 0, CHORE = 1, FEATURE = 2, RELEASE = 3;
+	/** Codes of the Ticket states **/
+	static final byte ACCEPTED = 0, REJECTED = 1, DELIVERED = 2, FINISHED = 3, STARTED = 4, UNSTARTED = 5, UNSCHEDULED = 6;
+	/** Ticket without labels **/
+	private static final int[] NO_LABELS = new int[0];
+	/** Ticket without owners **/
+	static final int[] NO_OWNERS = new int[0];
+	
+	/** All known Ticket types **/
+	static final SymbolTable TYPES = new SymbolTable("bug","chore","feature","release");
+	/** All known Ticket states **/
+	static final SymbolTable STATES = new SymbolTable("accepted","rejected","delivered","finished","started","unstarted","unscheduled");
+	/** All known requesters and owners **/
+	static final SymbolTable PEOPLE = new SymbolTable();
+	/** All known labels **/
+	static final SymbolTable LABELS = new SymbolTable();
+	/** All known URL locations, without the Ticket ID **/
+	static final SymbolTable LOCATIONS = new SymbolTable();
+	
+	/**
+	 * Estimates how much memory the symbols shared by all Tickets take, in bytes.
+	 * The symbols of every project ever loaded are kept, so this only grows.
+	 * 
+	 * @return the estimated size.
+	 */
+	public static long estimateSymbolWeight(){
+		return TYPES.estimateWeight() + STATES.estimateWeight() + PEOPLE.estimateWeight()
+				+ LABELS.estimateWeight() + LOCATIONS.estimateWeight();
+	}
+	
 	/** Unique ID for the Ticket **/
 	long ID;
 	/** Ticket summary **/
 	String title;
-	/** Comma separated list of labels **/
-	String labels;
+	/** Codes of the labels **/
+	int[] labels = NO_LABELS;
+	/** Defines if the Ticket belongs to a frozen set and can no longer change **/
+	boolean frozen = false;
+	/** Columns holding the Ticket while not frozen, told when it gets labels **/
+	private TicketColumns[] holders;
 	/** Iteration the Ticket is currently assigned to **/
 	int Iteration;
-	/** Ticket type **/
-	String StoryType;
+	/** Code of the Ticket type **/
+	byte type = -1;
 	/** Estimated size of the Ticket **/
 	int estimate;
-	/** Defines the state of the ticket **/
-	String currentState;
-	/** Creation date **/
-	Date createdAt;
-	/** Closure date **/
-	Date acceptedAt;
-	/** Requester of the Ticket **/
-	String requestedBy;
-	/** Owner of the Ticket **/
-	String ownedBy;
-	/** URL to open the Ticket directly in Pivotal **/
-	URL URL;
+	/** Code of the Ticket state **/
+	byte state = -1;
+	/** Creation date in ms **/
+	long created = NONE;
+	/** Closure date in ms **/
+	long accepted = NONE;
+	/** Last change date in ms, if given by Pivotal **/
+	long updated = NONE;
+	/** Code of the requester of the Ticket **/
+	int requester = -1;
+	/** Codes of the owners of the Ticket **/
+	int[] owners = NO_OWNERS;
+	/** Code of the location of the Ticket in Pivotal **/
+	int location = -1;
+	/** Defines if the location needs the ID appended **/
+	boolean location_by_id = false;
+	
+	/**
+	 * Constructs an empty Ticket, to be filled from a snapshot.
+	 * 
+	 * @see ProjectSnapshot#read(java.io.DataInput)
+	 */
+	Ticket(){
+	}
 	
 	/**
 	 * Constructs the Ticket based on an XML node given by the API.
@@ -73,49 +127,51 @@ public class Ticket {
 	public Ticket(JSONObject jo,UserLookup users){
 		try{
 			this.ID = ((Long)jo.get("id")).intValue();
-			this.StoryType = (String)jo.get("story_type");
-			this.URL = new URL((String)jo.get("url"));
+			this.type = (byte)TYPES.intern((String)jo.get("story_type"));
+			String url = (String)jo.get("url");
+			new URL(url);
+			String id = String.valueOf(this.ID);
+			this.location_by_id = url.endsWith(id);
+			this.location = LOCATIONS.intern(location_by_id ? url.substring(0, url.length() - id.length()) : url);
 			if(jo.get("estimate") != null){
 				this.estimate = ((Long)jo.get("estimate")).intValue();
 			}
 			else{
 				this.estimate = 0;
 			}
-			this.currentState = (String)jo.get("current_state");
+			this.state = (byte)STATES.intern((String)jo.get("current_state"));
 			this.title = (String)jo.get("name");
-			this.requestedBy = users.getUser(jo.get("requested_by_id").toString());
+			this.requester = PEOPLE.intern(users.getUser(jo.get("requested_by_id").toString()));
 
-			this.ownedBy = null;
 			if(jo.get("owner_ids") != null){
-				JSONArray owners = (JSONArray)jo.get("owner_ids");
-				for(Object o: owners.toArray()){
-					if(this.ownedBy != null){
-						this.ownedBy += ",";
-						this.ownedBy += users.getUser(o.toString());
-					}
-					else{
-						this.ownedBy = users.getUser(o.toString());
+				JSONArray ids = (JSONArray)jo.get("owner_ids");
+				int[] found = new int[ids.size()];
+				int count = 0;
+				for(Object o: ids){
+					int code = PEOPLE.intern(users.getUser(o.toString()));
+					if(code >= 0){
+						found[count++] = code;
 					}
 				}
+				if(count > 0){
+					this.owners = Arrays.copyOf(found, count);
+				}
 			}
 			
-			this.createdAt = DatatypeConverter.parseDateTime((String)jo.get("created_at")).getTime();
-			if(currentState.compareTo("accepted") == 0){
-				this.acceptedAt = DatatypeConverter.parseDateTime((String)jo.get("accepted_at")).getTime();
+			this.created = DatatypeConverter.parseDateTime((String)jo.get("created_at")).getTimeInMillis();
+			if(state == ACCEPTED){
+				this.accepted = DatatypeConverter.parseDateTime((String)jo.get("accepted_at")).getTimeInMillis();
 			}
-			else{
-				this.acceptedAt = null;
+			if(jo.get("updated_at") != null){
+				this.updated = DatatypeConverter.parseDateTime((String)jo.get("updated_at")).getTimeInMillis();
 			}
 			
-			this.labels = null;
-			for(Object l: ((JSONArray)jo.get("labels")).toArray()){
-				if(this.labels != null){
-					this.labels += ","+((JSONObject)l).get("name");
-				}
-				else{
-					this.labels = ((JSONObject)l).get("name").toString();
+			JSONArray names = (JSONArray)jo.get("labels");
+			if(names.size() > 0){
+				this.labels = new int[names.size()];
+				for(int i = 0; i < labels.length; i++){
+					this.labels[i] = LABELS.intern(((JSONObject)names.get(i)).get("name").toString());
 				}
-				
 			}
 		}
 		catch (MalformedURLException e){
@@ -149,7 +205,7 @@ public class Ticket {
 	 * @return the created date.
 	 */
 	public Date getCreated(){
-		return createdAt;
+		return created == NONE ? null : new Date(created);
 	}
 	
 	/**
@@ -157,7 +213,15 @@ public class Ticket {
 	 * @return the accepted date.
 	 */
 	public Date getAccepted(){
-		return acceptedAt;
+		return accepted == NONE ? null : new Date(accepted);
+	}
+	
+	/**
+	 * Gets the date when the Ticket was last changed.
+	 * @return the updated date, null if not given by Pivotal.
+	 */
+	public Date getUpdated(){
+		return updated == NONE ? null : new Date(updated);
 	}
 	
 	/**
@@ -165,7 +229,15 @@ public class Ticket {
 	 * @return the direct link to Pivotal.
 	 */
 	public URL getURL(){
-		return URL;
+		String url = LOCATIONS.get(location);
+		if(url == null){
+			return null;
+		}
+		try {
+			return new URL(location_by_id ? url + ID : url);
+		} catch (MalformedURLException e) {
+			return null;
+		}
 	}
 
 	/**
@@ -175,7 +247,7 @@ public class Ticket {
 	 * @return the type.
 	 */
 	public String getType() {
-		return StoryType;
+		return TYPES.get(type);
 	}
 
 	/**
@@ -185,7 +257,7 @@ public class Ticket {
 	 * @return the state.
 	 */
 	public String getState() {
-		return currentState;
+		return STATES.get(state);
 	}
 
 	/**
@@ -193,15 +265,41 @@ public class Ticket {
 	 * @return the labels.
 	 */
 	public String getLabels() {
-		return labels;
+		if(labels.length == 0){
+			return null;
+		}
+		StringBuilder joined = new StringBuilder(LABELS.get(labels[0]));
+		for(int i = 1; i < labels.length; i++){
+			joined.append(',').append(LABELS.get(labels[i]));
+		}
+		return joined.toString();
 	}
 
 	/**
-	 * Gets the owner of the Ticket.
-	 * @return the owner.
+	 * Gets the comma separated names of the owners of the Ticket.
+	 * @return the owners, null if none.
 	 */
 	public String getOwner() {
-		return ownedBy;
+		if(owners.length == 0){
+			return null;
+		}
+		if(owners.length == 1){
+			return PEOPLE.get(owners[0]);
+		}
+		StringBuilder joined = new StringBuilder(PEOPLE.get(owners[0]));
+		for(int i = 1; i < owners.length; i++){
+			joined.append(',').append(PEOPLE.get(owners[i]));
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Gets the iteration the Ticket was labeled with.
+	 * @see #addMissingIterationLabel(int)
+	 * @return the iteration, 0 if unknown.
+	 */
+	public int getIteration() {
+		return Iteration;
 	}
 
 	/**
@@ -212,6 +310,46 @@ public class Ticket {
 		return ID;
 	}
 	
+	/**
+	 * Checks if any of the labels contains a given text.
+	 * 
+	 * @param matching specifies which label codes contain the text.
+	 * @see SymbolTable#matching(String)
+	 * @return true if at least one label contains the text.
+	 */
+	boolean hasLabel(boolean[] matching){
+		for(int label: labels){
+			if(label < matching.length && matching[label]){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Registers columns holding the Ticket, so they know when it gets labels.
+	 * Frozen Tickets no longer change, so they keep no columns.
+	 * 
+	 * @param columns specifies the columns.
+	 */
+	synchronized void heldBy(TicketColumns columns){
+		if(frozen){
+			holders = null;
+			return;
+		}
+		if(holders == null){
+			holders = new TicketColumns[]{columns};
+			return;
+		}
+		for(TicketColumns held: holders){
+			if(held == columns){
+				return;
+			}
+		}
+		holders = Arrays.copyOf(holders, holders.length + 1);
+		holders[holders.length - 1] = columns;
+	}
+	
 	/**
 	 * @see Object#toString()
 	 */
@@ -225,14 +363,30 @@ public class Ticket {
 	 * To trace plans overlapping precisely, please maintain labels manually.
 	 * 
 	 * @param i defines the iteration the ticket should belong to.
+	 * @throws IllegalStateException if the Ticket belongs to a {@linkplain TicketSet#freeze() frozen} set.
 	 */
-	public void addMissingIterationLabel(int i) {
-		if(this.StoryType.compareTo("feature") == 0){
-			if(this.labels == null){
-				this.labels = "["+i+"]";
+	public synchronized void addMissingIterationLabel(int i) {
+		if(frozen){
+			throw new IllegalStateException("Ticket "+ID+" belongs to a frozen TicketSet and cannot change.");
+		}
+		this.Iteration = i;
+		if(this.type == FEATURE){
+			String label = "["+i+"]";
+			boolean missing = true;
+			for(int code: labels){
+				if(LABELS.get(code).indexOf(label) >= 0){
+					missing = false;
+				}
 			}
-			else if(!this.labels.contains("["+i+"]")){
-				this.labels += ",["+i+"]";
+			if(missing){
+				int[] added = Arrays.copyOf(labels, labels.length + 1);
+				added[labels.length] = LABELS.intern(label);
+				this.labels = added;
+				if(holders != null){
+					for(TicketColumns held: holders){
+						held.relabeled();
+					}
+				}
 			}
 		}
 	}
@@ -0,0 +1,312 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.ArrayList;
+
+/**
+ * The {@code TicketBuckets} class holds the weekly, daily or per iteration
+ * series of a {@link TicketSet}, all filled in a single pass over its Tickets.
+ * 
+ * Time is split in buckets of the same width from a start moment on.
+ * As with the date queries, a Ticket exactly on the limit between two buckets
+ * is in neither of them.
+ * Every bucket counts the Tickets created and accepted in it, and for the
+ * accepted ones also sums their points and measures how many days they took
+ * from creation to acceptance.
+ * 
+ * Series are kept for all Tickets and, optionally, grouped by type, owner
+ * or label. A Ticket with many labels counts for each of them.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet#aggregate(long, long, int, int)
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class TicketBuckets {
+	/** Groupings of the series **/
+	public static final int ALL = 0, TYPE = 1, OWNER = 2, LABEL = 3;
+	
+	/** One day in ms **/
+	private static final long DAY = 24*60*60*1000L;
+	
+	/** Start of the first bucket in ms **/
+	private final long start;
+	
+	/** Width of each bucket in ms **/
+	private final long width;
+	
+	/** Amount of buckets **/
+	private final int buckets;
+	
+	/** Names of the group codes, null when not grouped **/
+	private final SymbolTable symbols;
+	
+	/** Series of all Tickets **/
+	private final Series all;
+	
+	/** Series of each group, by code **/
+	private Series[] groups = new Series[0];
+	
+	/**
+	 * The {@code Series} class holds the buckets of one group.
+	 */
+	private static class Series {
+		/** Tickets created per bucket **/
+		final int[] created;
+		/** Tickets accepted per bucket **/
+		final int[] accepted;
+		/** Points accepted per bucket **/
+		final int[] points;
+		/** Total days taken by the accepted Tickets per bucket **/
+		final int[] days;
+		/** Fewest days taken by an accepted Ticket per bucket **/
+		final int[] shortest;
+		/** Most days taken by an accepted Ticket per bucket, at least 0 **/
+		final int[] longest;
+		
+		Series(int buckets){
+			created = new int[buckets];
+			accepted = new int[buckets];
+			points = new int[buckets];
+			days = new int[buckets];
+			shortest = new int[buckets];
+			longest = new int[buckets];
+		}
+	}
+	
+	/**
+	 * Creates empty buckets.
+	 * 
+	 * @param start specifies the start of the first bucket in ms.
+	 * @param width specifies the width of each bucket in ms.
+	 * @param buckets specifies the amount of buckets.
+	 * @param grouping specifies how Tickets are grouped: ALL, TYPE, OWNER or LABEL.
+	 */
+	TicketBuckets(long start, long width, int buckets, int grouping){
+		if(width <= 0){
+			throw new IllegalArgumentException("Bucket width must be positive: "+width);
+		}
+		this.start = start;
+		this.width = width;
+		this.buckets = Math.max(buckets, 0);
+		this.all = new Series(this.buckets);
+		switch(grouping){
+			case TYPE: symbols = Ticket.TYPES; break;
+			case OWNER: symbols = Ticket.PEOPLE; break;
+			case LABEL: symbols = Ticket.LABELS; break;
+			default: symbols = null;
+		}
+	}
+	
+	/**
+	 * Finds the bucket of a moment.
+	 * 
+	 * @param date specifies the moment in ms.
+	 * @return the bucket, or -1 if in none.
+	 */
+	int bucket(long date){
+		if(date == Ticket.NONE || date <= start){
+			return -1;
+		}
+		long offset = date - start;
+		if(offset % width == 0 || offset / width >= buckets){
+			return -1;
+		}
+		return (int)(offset / width);
+	}
+	
+	/**
+	 * Counts a Ticket in a group.
+	 * 
+	 * @param code specifies the group code, negative for all Tickets only.
+	 * @param created specifies the bucket of the creation, -1 if none.
+	 * @param accepted specifies the bucket of the acceptance, -1 if none.
+	 * @param points specifies the points of the Ticket.
+	 * @param days specifies the days from creation to acceptance.
+	 */
+	void record(int code, int created, int accepted, int points, int days){
+		Series series = all;
+		if(code >= 0){
+			if(code >= groups.length){
+				Series[] grown = new Series[Math.max(code + 1, groups.length * 2)];
+				System.arraycopy(groups, 0, grown, 0, groups.length);
+				groups = grown;
+			}
+			if(groups[code] == null){
+				groups[code] = new Series(buckets);
+			}
+			series = groups[code];
+		}
+		if(created >= 0){
+			series.created[created]++;
+		}
+		if(accepted >= 0){
+			if(series.accepted[accepted] == 0 || days < series.shortest[accepted]){
+				series.shortest[accepted] = days;
+			}
+			if(days > series.longest[accepted]){
+				series.longest[accepted] = days;
+			}
+			series.accepted[accepted]++;
+			series.points[accepted] += points;
+			series.days[accepted] += days;
+		}
+	}
+	
+	/**
+	 * Measures the whole days between creation and acceptance.
+	 * 
+	 * @param created specifies the creation in ms.
+	 * @param accepted specifies the acceptance in ms.
+	 * @return the days, 0 if the creation is unknown.
+	 */
+	static int days(long created, long accepted){
+		if(created == Ticket.NONE){
+			return 0;
+		}
+		return (int)((accepted - created)/DAY);
+	}
+	
+	/**
+	 * Gets the series of a group.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the series, or null if no Ticket is in the group.
+	 */
+	private Series series(String group){
+		if(group == null){
+			return all;
+		}
+		int code = symbols == null ? -1 : symbols.find(group);
+		if(code < 0 || code >= groups.length){
+			return null;
+		}
+		return groups[code];
+	}
+	
+	/**
+	 * Gets the amount of buckets.
+	 * @return the amount of buckets.
+	 */
+	public int size(){
+		return buckets;
+	}
+	
+	/**
+	 * Gets the start of a bucket.
+	 * 
+	 * @param bucket specifies the bucket.
+	 * @return the start in ms.
+	 */
+	public long getStart(int bucket){
+		return start + bucket * width;
+	}
+	
+	/**
+	 * Gets the groups with at least one Ticket in the buckets.
+	 * @return the group names, none when not grouped.
+	 */
+	public String[] getGroups(){
+		ArrayList<String> names = new ArrayList<String>();
+		for(int code = 0; code < groups.length; code++){
+			if(groups[code] != null){
+				names.add(symbols.get(code));
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+	
+	/**
+	 * Gets the Tickets created per bucket.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the counts by bucket.
+	 */
+	public int[] getCreated(String group){
+		Series s = series(group);
+		return s == null ? new int[buckets] : s.created.clone();
+	}
+	
+	/**
+	 * Gets the Tickets accepted per bucket.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the counts by bucket.
+	 */
+	public int[] getAccepted(String group){
+		Series s = series(group);
+		return s == null ? new int[buckets] : s.accepted.clone();
+	}
+	
+	/**
+	 * Gets the points accepted per bucket.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the sums by bucket.
+	 */
+	public int[] getPoints(String group){
+		Series s = series(group);
+		return s == null ? new int[buckets] : s.points.clone();
+	}
+	
+	/**
+	 * Gets the fewest days an accepted Ticket took per bucket.
+	 * Buckets without accepted Tickets have 0.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the minimums by bucket.
+	 */
+	public int[] getShortest(String group){
+		Series s = series(group);
+		return s == null ? new int[buckets] : s.shortest.clone();
+	}
+	
+	/**
+	 * Gets the most days an accepted Ticket took per bucket.
+	 * Buckets without accepted Tickets, or only negative ones, have 0.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the maximums by bucket.
+	 */
+	public int[] getLongest(String group){
+		Series s = series(group);
+		return s == null ? new int[buckets] : s.longest.clone();
+	}
+	
+	/**
+	 * Gets the average days the accepted Tickets took per bucket.
+	 * Buckets without accepted Tickets have 0.
+	 * 
+	 * @param group specifies the group, null for all Tickets.
+	 * @return the averages by bucket.
+	 */
+	public int[] getAverage(String group){
+		int[] average = new int[buckets];
+		Series s = series(group);
+		if(s != null){
+			for(int b = 0; b < buckets; b++){
+				if(s.accepted[b] > 0){
+					average[b] = s.days[b] / s.accepted[b];
+				}
+			}
+		}
+		return average;
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code TicketColumns} class stores Tickets field by field.
+ * Each field used by queries is kept in its own primitive array,
+ * so scanning one field reads contiguous memory instead of visiting each Ticket.
+ * The Tickets themselves are kept alongside, for when rows are needed.
+ * 
+ * Rows are only ever appended, a row never changes once written.
+ * Many {@link TicketSet TicketSets} can then share the same columns safely,
+ * each one referring to its own rows.
+ * Once {@linkplain #freeze() frozen}, labels are no longer checked for changes.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+class TicketColumns {
+	/** The Tickets of each row **/
+	volatile Ticket[] tickets;
+	/** Creation dates in ms **/
+	volatile long[] created;
+	/** Acceptance dates in ms **/
+	volatile long[] accepted;
+	/** State codes **/
+	volatile byte[] state;
+	/** Type codes **/
+	volatile byte[] type;
+	/** Estimated sizes **/
+	volatile int[] estimate;
+	/** Owner codes **/
+	volatile int[][] owners;
+	/** Label codes **/
+	private volatile int[][] labels;
+	/** Amount of labels added to the Tickets after being written **/
+	private final AtomicInteger relabels = new AtomicInteger();
+	/** Relabel count the labels were read at **/
+	private volatile int labels_read = 0;
+	/** Amount of rows written **/
+	private volatile int size = 0;
+	/** Defines if the Tickets of all rows are frozen **/
+	private volatile boolean frozen = false;
+	
+	/**
+	 * Creates empty columns.
+	 */
+	TicketColumns(){
+		this(16);
+	}
+	
+	/**
+	 * Creates empty columns with room for a given amount of rows.
+	 * @param capacity specifies the amount of rows expected.
+	 */
+	TicketColumns(int capacity){
+		capacity = Math.max(capacity, 16);
+		tickets = new Ticket[capacity];
+		created = new long[capacity];
+		accepted = new long[capacity];
+		state = new byte[capacity];
+		type = new byte[capacity];
+		estimate = new int[capacity];
+		owners = new int[capacity][];
+		labels = new int[capacity][];
+	}
+	
+	/**
+	 * Writes a Ticket as a new row.
+	 * 
+	 * @param t specifies the Ticket.
+	 * @return the row written.
+	 */
+	synchronized int append(Ticket t){
+		if(t == null){
+			throw new NullPointerException("Tickets in a TicketSet cannot be null.");
+		}
+		int row = size;
+		if(row == tickets.length){
+			grow(row * 2);
+		}
+		tickets[row] = t;
+		created[row] = t.created;
+		accepted[row] = t.accepted;
+		state[row] = t.state;
+		type[row] = t.type;
+		estimate[row] = t.estimate;
+		owners[row] = t.owners;
+		labels[row] = t.labels;
+		t.heldBy(this);
+		size = row + 1;
+		frozen = frozen && t.frozen;
+		return row;
+	}
+	
+	/**
+	 * Gets the label codes of all rows.
+	 * Tickets labeled after being written are read again.
+	 * 
+	 * @see Ticket#addMissingIterationLabel(int)
+	 * @return the label codes, by row.
+	 */
+	int[][] labels(){
+		if(!frozen && labels_read != relabels.get()){
+			synchronized(this){
+				int read = relabels.get();
+				int[][] current = new int[labels.length][];
+				for(int row = 0; row < size; row++){
+					current[row] = tickets[row].labels;
+				}
+				labels = current;
+				labels_read = read;
+			}
+		}
+		return labels;
+	}
+	
+	/**
+	 * Freezes the Tickets of all rows, so their labels are read a last time.
+	 * 
+	 * @see Ticket#addMissingIterationLabel(int)
+	 */
+	synchronized void freeze(){
+		for(int row = 0; row < size; row++){
+			tickets[row].frozen = true;
+			tickets[row].heldBy(this);
+		}
+		labels_read = -1;
+		labels();
+		frozen = true;
+	}
+	
+	/**
+	 * Notes that a Ticket in these columns got a new label.
+	 * Called by the Ticket, which knows the columns holding it.
+	 */
+	void relabeled(){
+		relabels.incrementAndGet();
+	}
+	
+	/**
+	 * Gets the amount of labels added to the Tickets after being written.
+	 * @return the relabel count.
+	 */
+	int relabels(){
+		return relabels.get();
+	}
+	
+	/**
+	 * Gets the amount of rows written.
+	 * @return the amount of rows.
+	 */
+	int size(){
+		return size;
+	}
+	
+	/**
+	 * Makes room for more rows.
+	 * Arrays are replaced, never changed in place, so readers keep valid copies.
+	 * 
+	 * @param capacity specifies the new amount of rows.
+	 */
+	private void grow(int capacity){
+		Ticket[] grown_tickets = new Ticket[capacity];
+		long[] grown_created = new long[capacity];
+		long[] grown_accepted = new long[capacity];
+		byte[] grown_state = new byte[capacity];
+		byte[] grown_type = new byte[capacity];
+		int[] grown_estimate = new int[capacity];
+		int[][] grown_owners = new int[capacity][];
+		int[][] grown_labels = new int[capacity][];
+		System.arraycopy(tickets, 0, grown_tickets, 0, size);
+		System.arraycopy(created, 0, grown_created, 0, size);
+		System.arraycopy(accepted, 0, grown_accepted, 0, size);
+		System.arraycopy(state, 0, grown_state, 0, size);
+		System.arraycopy(type, 0, grown_type, 0, size);
+		System.arraycopy(estimate, 0, grown_estimate, 0, size);
+		System.arraycopy(owners, 0, grown_owners, 0, size);
+		System.arraycopy(labels, 0, grown_labels, 0, size);
+		tickets = grown_tickets;
+		created = grown_created;
+		accepted = grown_accepted;
+		state = grown_state;
+		type = grown_type;
+		estimate = grown_estimate;
+		owners = grown_owners;
+		labels = grown_labels;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+import java.util.BitSet;
+
+/**
+ * The {@code TicketIndex} class lists, for each code of a field,
+ * the positions of the Tickets having that code in a {@link TicketSet}.
+ * 
+ * Positions of all codes are kept in a single array, grouped by code
+ * and in ascending order within each code.
+ * An index is only valid for the set contents it was built from.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+class TicketIndex {
+	/** Where the positions of each code start, plus the end of the last one **/
+	private final int[] start;
+	/** Positions, grouped by code **/
+	private final int[] positions;
+	/** Modification count of the set when indexed **/
+	final int modification;
+	/** Amount of relabels when indexed **/
+	final int relabels;
+	
+	/**
+	 * Indexes code entries.
+	 * Entries must be given in ascending position order.
+	 * 
+	 * @param symbols specifies the amount of possible codes.
+	 * @param codes specifies the code of each entry, negative codes are skipped.
+	 * @param at specifies the position of each entry.
+	 * @param entries specifies the amount of entries.
+	 * @param modification specifies the modification count of the set.
+	 * @param relabels specifies the amount of relabels.
+	 */
+	TicketIndex(int symbols, int[] codes, int[] at, int entries, int modification, int relabels){
+		this.start = new int[symbols + 1];
+		this.modification = modification;
+		this.relabels = relabels;
+		for(int e = 0; e < entries; e++){
+			if(codes[e] >= 0 && codes[e] < symbols){
+				start[codes[e] + 1]++;
+			}
+		}
+		for(int c = 0; c < symbols; c++){
+			start[c + 1] += start[c];
+		}
+		this.positions = new int[start[symbols]];
+		int[] next = new int[symbols];
+		System.arraycopy(start, 0, next, 0, symbols);
+		for(int e = 0; e < entries; e++){
+			if(codes[e] >= 0 && codes[e] < symbols){
+				positions[next[codes[e]]++] = at[e];
+			}
+		}
+	}
+	
+	/**
+	 * Selects the positions having any of the given codes.
+	 * 
+	 * @param matching specifies which codes are wanted.
+	 * @param size specifies the amount of positions in the set.
+	 * @return the selected positions.
+	 */
+	BitSet select(boolean[] matching, int size){
+		BitSet selected = new BitSet(size);
+		int symbols = Math.min(matching.length, start.length - 1);
+		for(int c = 0; c < symbols; c++){
+			if(matching[c]){
+				for(int p = start[c]; p < start[c + 1]; p++){
+					selected.set(positions[p]);
+				}
+			}
+		}
+		return selected;
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+/**
+ * The {@code TicketOrder} class lists the positions of a {@link TicketSet}
+ * in a given order, so any page of the set is read without sorting it again.
+ * 
+ * Orders by date come from the {@linkplain TicketTimeline timeline} of the date,
+ * Tickets without the date are listed after all others, in position order,
+ * also when the order is reversed.
+ * Orders by state follow the workflow codes, positions with the same state
+ * stay in ascending order.
+ * An order is only valid for the set contents it was built from.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+class TicketOrder {
+	/** Positions of the set in order **/
+	private final int[] positions;
+	/** Amount of positions which can be reversed, the others are always last **/
+	private final int ordered;
+	/** Modification count of the set when ordered **/
+	final int modification;
+	
+	/**
+	 * Orders a set by one of its dates.
+	 * 
+	 * @param timeline specifies the timeline of the date.
+	 * @param size specifies the amount of positions in the set.
+	 * @param modification specifies the modification count of the set.
+	 */
+	TicketOrder(TicketTimeline timeline, int size, int modification){
+		this.modification = modification;
+		this.positions = new int[size];
+		this.ordered = timeline.entries();
+		boolean[] dated = new boolean[size];
+		for(int e = 0; e < ordered; e++){
+			int p = timeline.position(e);
+			positions[e] = p;
+			dated[p] = true;
+		}
+		int o = ordered;
+		for(int p = 0; p < size; p++){
+			if(!dated[p]){
+				positions[o++] = p;
+			}
+		}
+	}
+	
+	/**
+	 * Orders a set by a code, in a counting sort.
+	 * Positions without a code are listed last.
+	 * 
+	 * @param codes specifies the code of each position.
+	 * @param size specifies the amount of positions in the set.
+	 * @param modification specifies the modification count of the set.
+	 */
+	TicketOrder(int[] codes, int size, int modification){
+		this.modification = modification;
+		this.positions = new int[size];
+		int max = -1;
+		for(int i = 0; i < size; i++){
+			max = Math.max(max, codes[i]);
+		}
+		int[] start = new int[max + 2];
+		int coded = 0;
+		for(int i = 0; i < size; i++){
+			if(codes[i] >= 0){
+				start[codes[i] + 1]++;
+				coded++;
+			}
+		}
+		for(int c = 1; c < start.length; c++){
+			start[c] += start[c - 1];
+		}
+		int uncoded = coded;
+		for(int i = 0; i < size; i++){
+			if(codes[i] >= 0){
+				positions[start[codes[i]]++] = i;
+			}
+			else{
+				positions[uncoded++] = i;
+			}
+		}
+		this.ordered = coded;
+	}
+	
+	/**
+	 * Gets the position at a given place of the order.
+	 * 
+	 * @param entry specifies the place, from 0 to the size of the set.
+	 * @param descending defines if the order is reversed.
+	 * @return the position in the set.
+	 */
+	int position(int entry, boolean descending){
+		if(descending && entry < ordered){
+			return positions[ordered - 1 - entry];
+		}
+		return positions[entry];
+	}
+}
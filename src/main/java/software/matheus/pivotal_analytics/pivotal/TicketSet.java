@@ -19,31 +19,326 @@
  */
 package software.matheus.pivotal_analytics.pivotal;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Vector;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * The {@code TicketSet} class models a group of Tickets extending an array.
+ * The {@code TicketSet} class models a group of Tickets as a list.
  * This class also handles all search queries for Tickets.
  *  
- * The methods are implemented very simply, a lot of optimization can be done.
+ * Tickets are stored {@linkplain TicketColumns by columns}, one primitive array
+ * per field, so queries are tight loops over the fields they need.
+ * Query results share the columns of the queried set and only keep the rows
+ * they contain; Tickets are only looked up when rows are read.
+ * Lookups by state, type, owner and label use {@linkplain TicketIndex indexes}
+ * built on demand, and chained lookups intersect them.
+ * Lookups by date range likewise use {@linkplain TicketTimeline timelines}.
+ * Pages of a set in a given {@linkplain TicketOrder order} are read straight from it.
+ * 
  * Due to intrinsic connection, and to keep code simple, makes reference
  * directly to Ticket fields instead of getters. 
+ * Text queries are matched once against the {@linkplain SymbolTable symbols}
+ * and then compared by code on every Ticket.
+ * 
+ * Once loaded, a set is {@linkplain #freeze() frozen}: it cannot change anymore
+ * and gets a version. Indexes, timelines and statistics are then built without locking,
+ * so many threads can query the same set at once.
  *  
  * @see software.matheus.pivotal_analytics.pivotal.Ticket
  * @version 1.0
  * @author Matheus Borges Teixeira
  */
-public class TicketSet extends Vector<Ticket> {
-	/** Mandatory serial version **/
-	private static final long serialVersionUID = 1L;
+public class TicketSet extends AbstractList<Ticket> implements RandomAccess {
+	/** Columns holding the Tickets **/
+	private TicketColumns columns;
+	
+	/** Rows of the columns in this set, null when all rows in order **/
+	private int[] rows;
+	
+	/** Defines if the columns belong to this set, or are shared with the set it was selected from **/
+	private boolean owned;
+	
+	/** Amount of Tickets in this set **/
+	private int size;
+	
+	/** Fields which can be indexed **/
+	private static final int STATE = 0, TYPE = 1, OWNER = 2, LABEL = 3;
+	
+	/** Indexes of this set by field, built on demand **/
+	private TicketIndex[] indexes = new TicketIndex[4];
+	
+	/** Amount of lookups by field done without index **/
+	private int unindexed = 0;
+	
+	/** Dates which can be ordered **/
+	private static final int CREATED = 0, ACCEPTED = 1;
+	
+	/** Timelines of this set by date, built on demand **/
+	private TicketTimeline[] timelines = new TicketTimeline[2];
+	
+	/** Amount of lookups by date done without timeline **/
+	private int unordered = 0;
+	
+	/** Orders in which a set can be listed: by creation, acceptance or state **/
+	public static final int BY_CREATED = CREATED, BY_ACCEPTED = ACCEPTED, BY_STATE = 2;
+	
+	/** Positions of this set by order, built on demand **/
+	private TicketOrder[] orders = new TicketOrder[3];
+	
+	/** Statistics of the owners, computed on demand **/
+	private OwnerStatistics owner_statistics;
+	
+	/** Set this one was selected from, null if none **/
+	private TicketSet origin;
+	
+	/** Positions in the origin selected to this set, ascending, null if given as members **/
+	private int[] positions;
+	
+	/** Positions in the origin selected to this set, built from the positions when first needed **/
+	private BitSet members;
+	
+	/** Modification count of the origin when selected **/
+	private int origin_modification;
+	
+	/** Defines if the set can no longer change **/
+	private boolean frozen = false;
+	
+	/** Version of the set, 0 while not frozen **/
+	private long version = 0;
+	
+	/** Last version given to a frozen set **/
+	private static final AtomicLong VERSIONS = new AtomicLong();
 
 	/**
-	 * Constructs the TicketSet calling its Vector parent constructor.
+	 * Constructs an empty TicketSet.
 	 */
 	public TicketSet(){
-		super();
+		this.columns = new TicketColumns();
+		this.rows = null;
+		this.size = 0;
+		this.owned = true;
+	}
+	
+	/**
+	 * Constructs a TicketSet over some rows of existing columns.
+	 * 
+	 * @param columns specifies the columns holding the Tickets.
+	 * @param rows specifies the rows in this set.
+	 * @param size specifies how many of the rows are used.
+	 */
+	private TicketSet(TicketColumns columns, int[] rows, int size){
+		this.columns = columns;
+		this.rows = rows;
+		this.size = size;
+	}
+	
+	/**
+	 * Constructs a TicketSet from some positions of another set.
+	 * 
+	 * @param origin specifies the set the Tickets were selected from.
+	 * @param members specifies the positions selected.
+	 */
+	private TicketSet(TicketSet origin, BitSet members){
+		this(origin.columns, new int[members.cardinality()], 0);
+		for(int p = members.nextSetBit(0); p >= 0; p = members.nextSetBit(p + 1)){
+			rows[size++] = origin.row(p);
+		}
+		this.origin = origin;
+		this.members = members;
+		this.origin_modification = origin.modCount;
+		this.frozen = origin.frozen;
+		this.version = origin.version;
+	}
+	
+	/**
+	 * Constructs a TicketSet from a list of positions of another set.
+	 * The positions are kept as they are, and only made into
+	 * {@linkplain #members() members} if this set is filtered again.
+	 * 
+	 * @param origin specifies the set the Tickets were selected from.
+	 * @param positions specifies the positions selected, in ascending order.
+	 * @param count specifies how many of the positions are used.
+	 */
+	private TicketSet(TicketSet origin, int[] positions, int count){
+		this(origin.columns, new int[count], count);
+		for(int i = 0; i < count; i++){
+			rows[i] = origin.row(positions[i]);
+		}
+		this.origin = origin;
+		this.positions = positions;
+		this.origin_modification = origin.modCount;
+		this.frozen = origin.frozen;
+		this.version = origin.version;
+	}
+	
+	/**
+	 * Gets the positions in the origin selected to this set, as a mask.
+	 * Built on first use for sets selected as a list of positions.
+	 * As timelines, the mask is built without locking.
+	 * 
+	 * @return the positions selected.
+	 */
+	private BitSet members(){
+		BitSet mask = members;
+		if(mask == null){
+			mask = new BitSet(origin.size);
+			for(int i = 0; i < size; i++){
+				mask.set(positions[i]);
+			}
+			members = mask;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Freezes the set, it cannot be changed from now on and neither can its Tickets.
+	 * The set gets a new version, larger than any given before, so results derived
+	 * from it can be kept by version. Sets queried from it are frozen with the same version.
+	 * Freezing a frozen set does nothing.
+	 * 
+	 * @see Ticket#addMissingIterationLabel(int)
+	 * @return this set.
+	 */
+	public TicketSet freeze(){
+		if(!frozen){
+			columns.freeze();
+			version = VERSIONS.incrementAndGet();
+			frozen = true;
+		}
+		return this;
+	}
+	
+	/**
+	 * Checks if the set is frozen.
+	 * @return true if the set can no longer change.
+	 */
+	public boolean isFrozen(){
+		return frozen;
+	}
+	
+	/**
+	 * Gets the version of the set.
+	 * Each frozen set has its own version, sets queried from it share it.
+	 * 
+	 * @return the version, 0 if not frozen.
+	 */
+	public long getVersion(){
+		return version;
+	}
+	
+	/**
+	 * Makes sure the set can still be changed.
+	 * A set sharing the columns of the set it was selected from is first
+	 * copied to its own columns, so writes never reach the other set.
+	 * 
+	 * @throws UnsupportedOperationException if the set is frozen.
+	 */
+	private void modifying(){
+		if(frozen){
+			throw new UnsupportedOperationException("A frozen TicketSet cannot be changed.");
+		}
+		if(!owned){
+			TicketColumns copy = new TicketColumns(size + 1);
+			for(int i = 0; i < size; i++){
+				copy.append(columns.tickets[row(i)]);
+			}
+			columns = copy;
+			rows = null;
+			owned = true;
+		}
+	}
+	
+	/**
+	 * Gets the row in the columns of a position in this set.
+	 * 
+	 * @param i specifies the position.
+	 * @return the row.
+	 */
+	private int row(int i){
+		return rows == null ? i : rows[i];
+	}
+	
+	/**
+	 * @see java.util.List#get(int)
+	 */
+	public Ticket get(int i){
+		if(i < 0 || i >= size){
+			throw new IndexOutOfBoundsException("Index: "+i+", Size: "+size);
+		}
+		return columns.tickets[row(i)];
+	}
+	
+	/**
+	 * @see java.util.List#size()
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Adds a Ticket at the end of the set.
+	 * Null Tickets are not accepted, neither are changes to frozen sets.
+	 * 
+	 * @see java.util.List#add(Object)
+	 */
+	public boolean add(Ticket t){
+		modifying();
+		int row = columns.append(t);
+		if(rows == null && row == size){
+			size++;
+		}
+		else{
+			place(size++, row);
+		}
+		modCount++;
+		origin = null;
+		positions = null;
+		members = null;
+		return true;
+	}
+	
+	/**
+	 * Replaces the Ticket at a given position.
+	 * The Ticket is written as a new row, other sets sharing the columns are not affected.
+	 * Frozen sets cannot be changed.
+	 * 
+	 * @see java.util.List#set(int, Object)
+	 */
+	public Ticket set(int i, Ticket t){
+		modifying();
+		Ticket old = get(i);
+		place(i, columns.append(t));
+		modCount++;
+		origin = null;
+		positions = null;
+		members = null;
+		return old;
+	}
+	
+	/**
+	 * Puts a row in a position of this set, listing the rows if needed.
+	 * 
+	 * @param i specifies the position.
+	 * @param row specifies the row.
+	 */
+	private void place(int i, int row){
+		if(rows == null){
+			rows = new int[Math.max(16, size * 2)];
+			for(int j = 0; j < size; j++){
+				rows[j] = j;
+			}
+		}
+		else if(i >= rows.length){
+			int[] grown = new int[Math.max(16, rows.length * 2)];
+			System.arraycopy(rows, 0, grown, 0, rows.length);
+			rows = grown;
+		}
+		rows[i] = row;
 	}
 	
 	/**
@@ -55,15 +350,7 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return Tickets accepted in between the dates.
 	 */
 	public TicketSet queryAcceptedBetween(Date start, Date end){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.acceptedAt!= null && t.acceptedAt.before(end) && t.acceptedAt.after(start)){
-				result.add(t);
-			}
-		}
-		return result;
+		return between(ACCEPTED, start.getTime(), end.getTime());
 	}
 	
 	
@@ -76,32 +363,321 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return Tickets created in between the dates.
 	 */
 	public TicketSet queryCreatedBetween(Date start, Date end){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.createdAt!= null && t.createdAt.before(end) && t.createdAt.after(start)){
-				result.add(t);
+		return between(CREATED, start.getTime(), end.getTime());
+	}
+	
+	/**
+	 * Returns all Tickets with a date strictly between two moments.
+	 * 
+	 * As with lookups by field, results remember where they were selected from
+	 * and a set is scanned on its first lookup, and ordered by date from the second on.
+	 * On a timeline the range is found with two binary searches, and only the
+	 * Tickets in it are visited: the result lists their positions, in the order of the set.
+	 * 
+	 * @param date specifies the date, created or accepted.
+	 * @param start defines the start in ms.
+	 * @param end defines the end in ms.
+	 * @return Tickets in between the moments.
+	 */
+	private TicketSet between(int date, long start, long end){
+		TicketSet base = this;
+		if(origin != null && origin.modCount == origin_modification){
+			base = origin;
+		}
+		else if(timelines[date] == null && unordered++ == 0){
+			long[] dates = date == CREATED ? columns.created : columns.accepted;
+			BitSet found = new BitSet(size);
+			for(int i = 0; i < size; i++){
+				long moment = dates[row(i)];
+				if(moment != Ticket.NONE && moment < end && moment > start){
+					found.set(i);
+				}
+			}
+			return new TicketSet(this, found);
+		}
+		TicketTimeline timeline = base.timeline(date);
+		int from = timeline.from(start);
+		int to = timeline.to(end);
+		BitSet wanted = base == this ? null : members();
+		int[] found = new int[Math.max(to - from, 0)];
+		int count = 0;
+		for(int e = from; e < to; e++){
+			int p = timeline.position(e);
+			if(wanted == null || wanted.get(p)){
+				found[count++] = p;
+			}
+		}
+		Arrays.sort(found, 0, count);
+		return new TicketSet(base, found, count);
+	}
+	
+	/**
+	 * Gets the timeline of a date, building it if missing or outdated.
+	 * No lock is taken: timelines never change once built, so threads racing
+	 * on a missing one at worst build it twice.
+	 * 
+	 * @param date specifies the date, created or accepted.
+	 * @return the timeline.
+	 */
+	private TicketTimeline timeline(int date){
+		TicketTimeline timeline = timelines[date];
+		if(timeline != null && timeline.modification == modCount){
+			return timeline;
+		}
+		long[] column = date == CREATED ? columns.created : columns.accepted;
+		long[] dates = new long[size];
+		for(int i = 0; i < size; i++){
+			dates[i] = column[row(i)];
+		}
+		timeline = new TicketTimeline(dates, size, modCount);
+		timelines[date] = timeline;
+		return timeline;
+	}
+	
+	/**
+	 * Returns one page of the Tickets, listed in a given order.
+	 * 
+	 * The order is built on the first page asked and kept, so further pages
+	 * only read the Tickets they show. Query results are listed in the order
+	 * of the set they were selected from, skipping the Tickets not selected.
+	 * Tickets without the date being ordered by are always listed last.
+	 * 
+	 * @param order specifies the order, {@link #BY_CREATED}, {@link #BY_ACCEPTED} or {@link #BY_STATE}.
+	 * @param descending defines if the order is reversed, newest or last state first.
+	 * @param offset specifies how many Tickets to skip.
+	 * @param limit specifies the most Tickets in the page.
+	 * @return the Tickets in the page, in order.
+	 */
+	public TicketSet queryPage(int order, boolean descending, int offset, int limit){
+		TicketSet base = this;
+		BitSet wanted = null;
+		if(origin != null && origin.modCount == origin_modification){
+			base = origin;
+			wanted = members();
+		}
+		TicketOrder ordered = base.order(order);
+		offset = Math.max(offset, 0);
+		int[] selected = new int[Math.max(0, Math.min(limit, size - offset))];
+		int found = 0;
+		if(wanted == null){
+			for(int e = offset; found < selected.length; e++){
+				selected[found++] = base.row(ordered.position(e, descending));
+			}
+		}
+		else{
+			int skipped = 0;
+			for(int e = 0; e < base.size && found < selected.length; e++){
+				int p = ordered.position(e, descending);
+				if(wanted.get(p) && skipped++ >= offset){
+					selected[found++] = base.row(p);
+				}
+			}
+		}
+		TicketSet page = new TicketSet(columns, selected, found);
+		page.frozen = frozen;
+		page.version = version;
+		return page;
+	}
+	
+	/**
+	 * Gets an order of the set, building it if missing or outdated.
+	 * As timelines, orders are built without locking.
+	 * 
+	 * @param order specifies the order.
+	 * @return the positions in order.
+	 */
+	private TicketOrder order(int order){
+		TicketOrder ordered = orders[order];
+		if(ordered != null && ordered.modification == modCount){
+			return ordered;
+		}
+		if(order == BY_STATE){
+			ordered = new TicketOrder(codes(STATE), size, modCount);
+		}
+		else{
+			ordered = new TicketOrder(timeline(order), size, modCount);
+		}
+		orders[order] = ordered;
+		return ordered;
+	}
+	
+	/**
+	 * Splits the Tickets in buckets of time, in a single pass.
+	 * Replaces one pair of date queries per bucket when plotting series.
+	 * 
+	 * @param start specifies the start of the first bucket in ms.
+	 * @param width specifies the width of each bucket in ms, like a day, week or iteration.
+	 * @param buckets specifies the amount of buckets.
+	 * @param grouping specifies how Tickets are grouped, see {@link TicketBuckets}.
+	 * @return the series of the buckets.
+	 */
+	public TicketBuckets aggregate(long start, long width, int buckets, int grouping){
+		TicketBuckets result = new TicketBuckets(start, width, buckets, grouping);
+		long[] created = columns.created;
+		long[] accepted = columns.accepted;
+		int[] estimate = columns.estimate;
+		byte[] types = columns.type;
+		int[][] owners = columns.owners;
+		int[][] labels = grouping == TicketBuckets.LABEL ? columns.labels() : null;
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			int c = result.bucket(created[row]);
+			int a = result.bucket(accepted[row]);
+			if(c < 0 && a < 0){
+				continue;
+			}
+			int days = a < 0 ? 0 : TicketBuckets.days(created[row], accepted[row]);
+			result.record(-1, c, a, estimate[row], days);
+			switch(grouping){
+				case TicketBuckets.TYPE:
+					result.record(types[row], c, a, estimate[row], days);
+					break;
+				case TicketBuckets.OWNER:
+					for(int code: owners[row]){
+						result.record(code, c, a, estimate[row], days);
+					}
+					break;
+				case TicketBuckets.LABEL:
+					for(int code: labels[row]){
+						result.record(code, c, a, estimate[row], days);
+					}
+					break;
 			}
 		}
 		return result;
 	}
 	
 	/**
-	 * Returns all Tickets which are not in state "accepted"
+	 * Counts the Tickets created, and those created and also accepted,
+	 * from a start up to each of a series of evenly spaced moments.
+	 * The counts are the sizes of {@link #queryCreatedBetween(Date, Date)} and
+	 * {@link #queryCreatedAndAcceptedBetween(Date, Date)} from the start to each moment,
+	 * found with one pass to count per interval and a running total over the intervals.
 	 * 
-	 * @return all not yet accepted Tickets.
+	 * @param start specifies the start in ms, which is also the first moment.
+	 * @param width specifies the time between moments in ms.
+	 * @param moments specifies the amount of moments.
+	 * @return the created counts by moment, followed by the created and accepted counts.
 	 */
-	public TicketSet queryActive() {
-		TicketSet result = new TicketSet();
+	public int[][] cumulativeFlow(long start, long width, int moments){
+		if(width <= 0){
+			throw new IllegalArgumentException("Moment spacing must be positive: "+width);
+		}
+		int[][] flow = new int[2][Math.max(moments, 0)];
+		long[] created = columns.created;
+		long[] accepted = columns.accepted;
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			long c = created[row];
+			if(c == Ticket.NONE || c <= start){
+				continue;
+			}
+			/* First moment strictly after the date */
+			long opened = (c - start)/width + 1;
+			if(opened < moments){
+				flow[0][(int)opened]++;
+			}
+			long a = accepted[row];
+			if(a != Ticket.NONE && a > start){
+				long closed = Math.max(opened, (a - start)/width + 1);
+				if(closed < moments){
+					flow[1][(int)closed]++;
+				}
+			}
+		}
+		for(int m = 1; m < moments; m++){
+			flow[0][m] += flow[0][m - 1];
+			flow[1][m] += flow[1][m - 1];
+		}
+		return flow;
+	}
+	
+	/**
+	 * Counts, for each iteration in a range, the Tickets labeled with it which
+	 * were not yet accepted at each of a series of evenly spaced moments.
+	 * An iteration label is matched as {@link #queryLabel(String)} does with "[iteration]".
+	 * 
+	 * Tickets are grouped by iteration in a single pass, which also counts
+	 * their acceptances per interval; running totals then give every series.
+	 * 
+	 * @param first specifies the first iteration.
+	 * @param last specifies the last iteration.
+	 * @param start specifies the start in ms, which is also the first moment.
+	 * @param width specifies the time between moments in ms.
+	 * @param moments specifies the amount of moments.
+	 * @return the remaining Tickets by moment, for each iteration from the first one.
+	 */
+	public int[][] burnDown(int first, int last, long start, long width, int moments){
+		if(width <= 0){
+			throw new IllegalArgumentException("Moment spacing must be positive: "+width);
+		}
+		int iterations = Math.max(last - first + 1, 0);
+		moments = Math.max(moments, 0);
+		int[][] remaining = new int[iterations][moments];
 		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t != null && t.currentState.compareTo("accepted") != 0){
-				result.add(t);
+		/* Iterations matched by each label code */
+		boolean[][] matching = new boolean[iterations][];
+		int symbols = 0;
+		for(int k = 0; k < iterations; k++){
+			matching[k] = Ticket.LABELS.matching("["+(first + k)+"]");
+			symbols = Math.max(symbols, matching[k].length);
+		}
+		int[] found = new int[symbols];
+		for(int k = 0; k < iterations; k++){
+			for(int code = 0; code < matching[k].length; code++){
+				if(matching[k][code]) found[code]++;
 			}
 		}
-		return result;
+		int[][] matched = new int[symbols][];
+		for(int code = 0; code < symbols; code++){
+			matched[code] = new int[found[code]];
+			found[code] = 0;
+		}
+		for(int k = 0; k < iterations; k++){
+			for(int code = 0; code < matching[k].length; code++){
+				if(matching[k][code]) matched[code][found[code]++] = k;
+			}
+		}
+		
+		int[] total = new int[iterations];
+		int[] seen = new int[iterations];
+		Arrays.fill(seen, -1);
+		int[][] labels = columns.labels();
+		long[] accepted = columns.accepted;
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			long a = accepted[row];
+			/* First moment strictly after the acceptance */
+			long moment = a != Ticket.NONE && a > start ? (a - start)/width + 1 : -1;
+			for(int code: labels[row]){
+				if(code >= symbols) continue;
+				for(int k: matched[code]){
+					if(seen[k] == i) continue;
+					seen[k] = i;
+					total[k]++;
+					if(moment >= 0 && moment < moments){
+						remaining[k][(int)moment]++;
+					}
+				}
+			}
+		}
+		for(int k = 0; k < iterations; k++){
+			int done = 0;
+			for(int m = 0; m < moments; m++){
+				done += remaining[k][m];
+				remaining[k][m] = total[k] - done;
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * Returns all Tickets which are not in state "accepted"
+	 * 
+	 * @return all not yet accepted Tickets.
+	 */
+	public TicketSet queryActive() {
+		return select(STATE, code(Ticket.ACCEPTED), false);
 	}
 	
 	/**
@@ -123,33 +699,18 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return all tickets of the state.
 	 */
 	public TicketSet queryState(String state) {
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.currentState.equals(state)){
-				result.add(t);
-			}
-		}
-		return result;
+		return select(STATE, code(Ticket.STATES.find(state)), true);
 	}
 	
 	/**
 	 * Returns all Tickets that are assigned to a given owner.
+	 * Tickets shared by many owners are assigned to each one of them.
 	 * 
-	 * @param owner specifies the desired owner.
+	 * @param owner specifies the name of the desired owner.
 	 * @return all tickets assigned to the owner.
 	 */
 	public TicketSet queryOwner(String owner){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.ownedBy != null &&  t.ownedBy.indexOf(owner) >= 0){
-				result.add(t);
-			}
-		}
-		return result;
+		return select(OWNER, code(Ticket.PEOPLE.find(owner)), true);
 	}
 	
 	/**
@@ -161,15 +722,7 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return all tickets which contain the given label.
 	 */
 	public TicketSet queryLabel(String label){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.labels!=null && t.labels.indexOf(label) >= 0){
-				result.add(t);
-			}
-		}
-		return result;
+		return select(LABEL, Ticket.LABELS.matching(label), true);
 	}
 	
 	/**
@@ -181,23 +734,148 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return all tickets which do not contain the given label.
 	 */
 	public TicketSet queryNotLabel(String label){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null){
-				if(t.labels!=null && t.labels.indexOf(label) < 0){
-					result.add(t);
-				}
-				else{
-					if(t.labels ==null){
-						result.add(t);
+		return select(LABEL, Ticket.LABELS.matching(label), false);
+	}
+	
+	/**
+	 * Marks a single code as wanted.
+	 * 
+	 * @param code specifies the code, negative for none.
+	 * @return flags indexed by code, true only for the given one.
+	 */
+	private static boolean[] code(int code){
+		boolean[] matching = new boolean[Math.max(code + 1, 0)];
+		if(code >= 0){
+			matching[code] = true;
+		}
+		return matching;
+	}
+	
+	/**
+	 * Returns all Tickets with, or without, any of the given codes in a field.
+	 * 
+	 * Results remember where they were selected from: further lookups
+	 * on them intersect with the index of the original set instead of scanning.
+	 * A set is scanned on its first lookup, and indexed from the second on.
+	 * 
+	 * @param field specifies the field.
+	 * @param matching specifies which codes are looked for.
+	 * @param with defines if Tickets with the codes, or without them, are wanted.
+	 * @return the Tickets wanted.
+	 */
+	private TicketSet select(int field, boolean[] matching, boolean with){
+		TicketSet base = this;
+		if(origin != null && origin.modCount == origin_modification){
+			base = origin;
+		}
+		else if(indexes[field] == null && unindexed++ == 0){
+			return new TicketSet(this, scan(field, matching, with));
+		}
+		BitSet selected = base.index(field).select(matching, base.size);
+		if(!with){
+			selected.flip(0, base.size);
+		}
+		if(base != this){
+			selected.and(members());
+		}
+		return new TicketSet(base, selected);
+	}
+	
+	/**
+	 * Finds the positions with, or without, any of the given codes in a field.
+	 * 
+	 * @param field specifies the field.
+	 * @param matching specifies which codes are looked for.
+	 * @param with defines if Tickets with the codes, or without them, are wanted.
+	 * @return the positions found.
+	 */
+	private BitSet scan(int field, boolean[] matching, boolean with){
+		BitSet found = new BitSet(size);
+		if(field == LABEL || field == OWNER){
+			int[][] column = field == LABEL ? columns.labels() : columns.owners;
+			for(int i = 0; i < size; i++){
+				boolean has = false;
+				for(int code: column[row(i)]){
+					if(code < matching.length && matching[code]){
+						has = true;
+						break;
 					}
 				}
+				if(has == with){
+					found.set(i);
+				}
 			}
-				
 		}
-		return result;
+		else{
+			int[] codes = codes(field);
+			for(int i = 0; i < size; i++){
+				int code = codes[i];
+				if((code >= 0 && code < matching.length && matching[code]) == with){
+					found.set(i);
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Gets the code of a single code field for every position.
+	 * 
+	 * @param field specifies the field, state or type.
+	 * @return the codes, by position.
+	 */
+	private int[] codes(int field){
+		int[] codes = new int[size];
+		byte[] column = field == STATE ? columns.state : columns.type;
+		for(int i = 0; i < size; i++){
+			codes[i] = column[row(i)];
+		}
+		return codes;
+	}
+	
+	/**
+	 * Gets the index of a field, building it if missing or outdated.
+	 * Indexes are dropped when Tickets are added or replaced,
+	 * and the label index when Tickets get new labels, which frozen sets never do.
+	 * As timelines, indexes are built without locking.
+	 * 
+	 * @param field specifies the field.
+	 * @return the index.
+	 */
+	private TicketIndex index(int field){
+		TicketIndex index = indexes[field];
+		int relabels = columns.relabels();
+		if(index != null && index.modification == modCount && (field != LABEL || frozen || index.relabels == relabels)){
+			return index;
+		}
+		if(field == LABEL || field == OWNER){
+			int[][] column = field == LABEL ? columns.labels() : columns.owners;
+			int entries = 0;
+			for(int i = 0; i < size; i++){
+				entries += column[row(i)].length;
+			}
+			int[] codes = new int[entries];
+			int[] at = new int[entries];
+			int e = 0;
+			for(int i = 0; i < size; i++){
+				for(int code: column[row(i)]){
+					codes[e] = code;
+					at[e++] = i;
+				}
+			}
+			SymbolTable symbols = field == LABEL ? Ticket.LABELS : Ticket.PEOPLE;
+			index = new TicketIndex(symbols.size(), codes, at, entries, modCount, relabels);
+		}
+		else{
+			int[] at = new int[size];
+			for(int i = 0; i < size; i++){
+				at[i] = i;
+			}
+			SymbolTable symbols = field == STATE ? Ticket.STATES : Ticket.TYPES;
+			index = new TicketIndex(symbols.size(), codes(field), at, size, modCount, relabels);
+		}
+		indexes[field] = index;
+		return index;
 	}
 	
 	/**
@@ -206,15 +884,7 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return all tickets of the type.
 	 */
 	public TicketSet queryType(String type){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.StoryType!=null && t.StoryType.equals(type)){
-				result.add(t);
-			}
-		}
-		return result;
+		return select(TYPE, code(Ticket.TYPES.find(type)), true);
 	}
 	
 	/**
@@ -225,12 +895,13 @@ public class TicketSet extends Vector<Ticket> {
 	 */
 	public String[] queryUniqueOwners(){
 		HashSet<String> owners = new HashSet<String>();
+		int[][] codes = columns.owners;
 		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t!=null && t.ownedBy != null){
-				if(t.ownedBy.length()>0){
-					owners.add(t.ownedBy);
+		for(int i = 0; i < size; i++){
+			for(int code: codes[row(i)]){
+				String owner = Ticket.PEOPLE.get(code);
+				if(owner.length()>0){
+					owners.add(owner);
 				}
 			}
 		}
@@ -242,6 +913,36 @@ public class TicketSet extends Vector<Ticket> {
 		return results;
 	}
 	
+	/**
+	 * Returns the statistics of all owners in this set.
+	 * They are computed once, and again only after the set changes.
+	 * As timelines, statistics are computed without locking.
+	 * 
+	 * @return the owner statistics.
+	 */
+	public OwnerStatistics queryOwnerStatistics(){
+		OwnerStatistics statistics = owner_statistics;
+		if(statistics != null && statistics.modification == modCount){
+			return statistics;
+		}
+		int[][] owners = new int[size][];
+		byte[] states = new byte[size];
+		byte[] types = new byte[size];
+		int[] estimates = new int[size];
+		long[] dates = new long[size];
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			owners[i] = columns.owners[row];
+			states[i] = columns.state[row];
+			types[i] = columns.type[row];
+			estimates[i] = columns.estimate[row];
+			dates[i] = columns.accepted[row];
+		}
+		statistics = new OwnerStatistics(owners, states, types, estimates, dates, timeline(ACCEPTED), modCount);
+		owner_statistics = statistics;
+		return statistics;
+	}
+	
 	/**
 	 * Returns all possible Ticket states.
 	 * @return all possible Ticket states.
@@ -264,14 +965,16 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return the oldest active Ticket.
 	 */
 	public Ticket queryOldestActive(){
-		TicketSet result = this.queryActive();
-		Ticket oldest = null;
-		for(Ticket t: result){
-			if(oldest == null || oldest.getCreated().getTime() > t.getCreated().getTime()){
-				oldest = t;
+		byte[] states = columns.state;
+		long[] created = columns.created;
+		int oldest = -1;
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			if(states[row] != Ticket.ACCEPTED && (oldest < 0 || created[oldest] > created[row])){
+				oldest = row;
 			}
 		}
-		return oldest;
+		return oldest < 0 ? null : columns.tickets[oldest];
 	}
 	
 	/**
@@ -280,13 +983,16 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return the oldest accepted Ticket.
 	 */
 	public Ticket queryOldestAccepted(){
-		Ticket oldest = null;
-		for(Ticket t: this){
-			if(t != null && t.getState().compareTo("accepted") == 0 && (oldest == null || oldest.getAccepted().getTime() > t.getAccepted().getTime())){
-				oldest = t;
+		byte[] states = columns.state;
+		long[] accepted = columns.accepted;
+		int oldest = -1;
+		for(int i = 0; i < size; i++){
+			int row = row(i);
+			if(states[row] == Ticket.ACCEPTED && (oldest < 0 || accepted[oldest] > accepted[row])){
+				oldest = row;
 			}
 		}
-		return oldest;
+		return oldest < 0 ? null : columns.tickets[oldest];
 	}
 	
 	/**
@@ -295,28 +1001,36 @@ public class TicketSet extends Vector<Ticket> {
 	 * @return all tickets which are not in the state.
 	 */
 	public TicketSet queryNotState(String state){
-		TicketSet result = new TicketSet();
-		
-		for(Object o: elementData){
-			Ticket t = (Ticket)o;
-			if(t != null && t.currentState.compareTo(state) != 0){
-				result.add(t);
-			}
+		return select(STATE, code(Ticket.STATES.find(state)), false);
+	}
+	
+	/**
+	 * Estimates how much memory the Tickets of this set take, in bytes.
+	 * Each Ticket accounts for its object, title and labels, its row in the
+	 * columns and its position in the set.
+	 * 
+	 * @return the estimated size.
+	 */
+	long estimateWeight(){
+		long weight = 64;
+		for(int i = 0; i < size; i++){
+			Ticket t = columns.tickets[row(i)];
+			/* Ticket object, row in the columns and position */
+			weight += 96 + 48 + 4;
+			if(t.title != null) weight += 40 + 2*t.title.length();
+			weight += 16 + 4*t.labels.length + 16 + 4*t.owners.length;
 		}
-		return result;
+		return weight;
 	}
 	
 	/**
 	 * @see Object#toString()
 	 */
 	public String toString(){
-		String printed = "TicketSet: "+this.size()+"\n";
-		for(Object o: elementData){
-			if(o != null){
-				Ticket t = (Ticket)o;
-				printed = printed.concat(t+"\n");
-			}
+		StringBuilder printed = new StringBuilder("TicketSet: "+this.size()+"\n");
+		for(Ticket t: this){
+			printed.append(t+"\n");
 		}
-		return printed;
+		return printed.toString();
 	}
 }
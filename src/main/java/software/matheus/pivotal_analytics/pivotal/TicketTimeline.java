@@ -0,0 +1,156 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.pivotal;
+
+/**
+ * The {@code TicketTimeline} class orders the positions of a {@link TicketSet}
+ * by one of the dates of their Tickets, so date ranges are found with
+ * two binary searches instead of a scan.
+ * 
+ * Tickets without the date are left out.
+ * A timeline is only valid for the set contents it was built from.
+ * 
+ * @see software.matheus.pivotal_analytics.pivotal.TicketSet
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+class TicketTimeline {
+	/** Dates in ascending order **/
+	private final long[] dates;
+	/** Position of each date **/
+	private final int[] positions;
+	/** Modification count of the set when ordered **/
+	final int modification;
+	
+	/**
+	 * Orders the dates of a set.
+	 * Positions with the same date stay in ascending order.
+	 * 
+	 * @param column specifies the dates, by position.
+	 * @param size specifies the amount of positions in the set.
+	 * @param modification specifies the modification count of the set.
+	 */
+	TicketTimeline(long[] column, int size, int modification){
+		this.modification = modification;
+		int count = 0;
+		for(int i = 0; i < size; i++){
+			if(column[i] != Ticket.NONE) count++;
+		}
+		long[] d = new long[count];
+		int[] p = new int[count];
+		count = 0;
+		for(int i = 0; i < size; i++){
+			if(column[i] != Ticket.NONE){
+				d[count] = column[i];
+				p[count++] = i;
+			}
+		}
+		long[] dt = new long[count];
+		int[] pt = new int[count];
+		for(int width = 1; width < count; width *= 2){
+			for(int low = 0; low < count; low += 2 * width){
+				int middle = Math.min(low + width, count);
+				int high = Math.min(low + 2 * width, count);
+				int a = low, b = middle, o = low;
+				while(a < middle && b < high){
+					if(d[b] < d[a]){
+						dt[o] = d[b];
+						pt[o++] = p[b++];
+					}
+					else{
+						dt[o] = d[a];
+						pt[o++] = p[a++];
+					}
+				}
+				while(a < middle){
+					dt[o] = d[a];
+					pt[o++] = p[a++];
+				}
+				while(b < high){
+					dt[o] = d[b];
+					pt[o++] = p[b++];
+				}
+			}
+			long[] ds = d; d = dt; dt = ds;
+			int[] ps = p; p = pt; pt = ps;
+		}
+		this.dates = d;
+		this.positions = p;
+	}
+	
+	/**
+	 * Finds the first entry with a date after a moment.
+	 * 
+	 * @param moment specifies the moment in ms.
+	 * @param inclusive defines if an entry exactly at the moment counts as after it.
+	 * @return the entry, or the amount of entries if none.
+	 */
+	private int first(long moment, boolean inclusive){
+		int low = 0, high = dates.length;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(dates[middle] < moment || (!inclusive && dates[middle] == moment)){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Gets the amount of positions having the date.
+	 * @return the amount of entries.
+	 */
+	int entries(){
+		return dates.length;
+	}
+	
+	/**
+	 * Gets the position of an entry, entries being in date order.
+	 * 
+	 * @param entry specifies the entry.
+	 * @return the position in the set.
+	 */
+	int position(int entry){
+		return positions[entry];
+	}
+	
+	/**
+	 * Finds the first entry with a date strictly after a moment.
+	 * 
+	 * @param start defines the moment in ms.
+	 * @return the entry, or the amount of entries if none.
+	 */
+	int from(long start){
+		return first(start, false);
+	}
+	
+	/**
+	 * Finds the end of the entries with a date strictly before a moment.
+	 * 
+	 * @param end defines the moment in ms.
+	 * @return the first entry at or after the moment, or the amount of entries if none.
+	 */
+	int to(long end){
+		return first(end, true);
+	}
+}
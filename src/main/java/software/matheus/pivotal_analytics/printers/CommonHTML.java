@@ -19,6 +19,9 @@
  */
 package software.matheus.pivotal_analytics.printers;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 import software.matheus.pivotal_analytics.pivotal.Ticket;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 
@@ -27,6 +30,10 @@ import software.matheus.pivotal_analytics.pivotal.TicketSet;
  * that is common to all pages is here. Each method return an entire and
  * complete HTML Tag.
  * 
+ * Every tag is written straight to a given {@link PrintWriter}, usually the
+ * page being answered, so pages are sent as they are built. The methods
+ * returning Strings write to a buffer instead, for when the tag is needed as a whole.
+ * 
  * This class is entirely based on static behavior!
  * 
  * @version 1.0
@@ -43,41 +50,53 @@ public class CommonHTML {
 	 *         String.
 	 */
 	public static String getMenu(String indent) {
-		String output = new String();
-		output += indent + "<div id='main_menu'>\n";
+		StringWriter output = new StringWriter();
+		printMenu(new PrintWriter(output), indent);
+		return output.toString();
+	}
+
+	/**
+	 * Writes the top menu which contains links to control and other pages.
+	 * 
+	 * @param page
+	 *            specifies where to write.
+	 * @param indent
+	 *            defines the string which will prefix all printed lines.
+	 */
+	public static void printMenu(PrintWriter page, String indent) {
+		page.print(indent + "<div id='main_menu'>\n");
 
-		output += indent + "  <a class='menu_item' href='Overview'>";
-		output += "Overview" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='Overview'>");
+		page.print("Overview" + "</a>\n");
 
-		output += indent + "  <a class='menu_item' href='Starvation'>";
-		output += "Starvation" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='Starvation'>");
+		page.print("Starvation" + "</a>\n");
 
-		output += indent + "  <a class='menu_item' href='Throughput'>";
-		output += "Throughput" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='Throughput'>");
+		page.print("Throughput" + "</a>\n");
 
-		output += indent + "  <a class='menu_item' href='Developers'>";
-		output += "Developers" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='Developers'>");
+		page.print("Developers" + "</a>\n");
 
-		output += indent + "  <a class='menu_item' href='PlanningFollowup'>";
-		output += "Planning Follow Up" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='PlanningFollowup'>");
+		page.print("Planning Follow Up" + "</a>\n");
 
-		output += indent + "  <a class='menu_item' href='All'>";
-		output += "All Stories" + "</a>\n";
+		page.print(indent + "  <a class='menu_item' href='All'>");
+		page.print("All Stories" + "</a>\n");
 
-		output += indent + "  <a class='button' href='About'>";
-		output += "<img src='icons/info.png' /></a>\n";
+		page.print(indent + "  <a class='button' href='About'>");
+		page.print("<img src='icons/info.png' /></a>\n");
 
-		output += indent + "  <a class='button' href='Config'>";
-		output += "<img src='icons/tools.png' /></a>\n";
+		page.print(indent + "  <a class='button' href='Config'>");
+		page.print("<img src='icons/tools.png' /></a>\n");
 
-		output += indent + "  <a class='button' href='Refresh'>";
-		output += "<img src='icons/refresh.png' /></a>\n";
-		
-		output += indent + "  <a class='button' href='Refresh?purge=true'>";
-		output += "<img src='icons/download.png' /></a>\n";
+		page.print(indent + "  <a class='button' href='Refresh'>");
+		page.print("<img src='icons/refresh.png' /></a>\n");
 
-		output += indent + "</div>\n";
-		return output;
+		page.print(indent + "  <a class='button' href='Refresh?purge=true'>");
+		page.print("<img src='icons/download.png' /></a>\n");
+
+		page.print(indent + "</div>\n");
 	}
 
 	/**
@@ -89,24 +108,36 @@ public class CommonHTML {
 	 *         form of a String.
 	 */
 	public static String getFooter(String indent) {
-		String output = new String();
-		output += indent + "<div id='footer'>\n";
+		StringWriter output = new StringWriter();
+		printFooter(new PrintWriter(output), indent);
+		return output.toString();
+	}
 
-		output += indent + "  <table id='copyright' width=100%>\n";
-		output += indent + "    <tr>\n";
-		output += indent + "      <td width=50% align=right>Copyright &copy; 2014</td>\n";
-		output += indent + "      <td><img src='icons/logo.svg' width=24/></td>\n";
-		output += indent + "      <td width=50%>Matheus Borges Teixeira</td>\n";
-		output += indent + "    </tr>\n";
-		output += indent + "  </table>\n";
+	/**
+	 * Writes the footer which contains all copyright notices.
+	 * 
+	 * @param page
+	 *            specifies where to write.
+	 * @param indent
+	 *            defines the string which will prefix all printed lines.
+	 */
+	public static void printFooter(PrintWriter page, String indent) {
+		page.print(indent + "<div id='footer'>\n");
 
-		output += indent + "  Icon Design by <a href='http://www.dryicons.com/'>DryIcons.com</a> <br>\n";
+		page.print(indent + "  <table id='copyright' width=100%>\n");
+		page.print(indent + "    <tr>\n");
+		page.print(indent + "      <td width=50% align=right>Copyright &copy; 2014</td>\n");
+		page.print(indent + "      <td><img src='icons/logo.svg' width=24/></td>\n");
+		page.print(indent + "      <td width=50%>Matheus Borges Teixeira</td>\n");
+		page.print(indent + "    </tr>\n");
+		page.print(indent + "  </table>\n");
 
-		output += indent + "  Pivotal Tracker is project management tool from <a href='http://pivotallabs.com/'>Pivotal Labs, Inc.</a><br/>";
-		output += indent + "  Pivotal Analytics is released under <a href='GNUAffero'>GNU Affero GPL</a>\n";
+		page.print(indent + "  Icon Design by <a href='http://www.dryicons.com/'>DryIcons.com</a> <br>\n");
 
-		output += indent + "</div>\n";
-		return output;
+		page.print(indent + "  Pivotal Tracker is project management tool from <a href='http://pivotallabs.com/'>Pivotal Labs, Inc.</a><br/>");
+		page.print(indent + "  Pivotal Analytics is released under <a href='GNUAffero'>GNU Affero GPL</a>\n");
+
+		page.print(indent + "</div>\n");
 	}
 
 	/**
@@ -117,15 +148,27 @@ public class CommonHTML {
 	 * @return the whole HTML {@code <head>} tag in form of a String.
 	 */
 	public static String getBasicHeaders(String title) {
-		String output = new String();
-		output += "<head>\n";
-		output += "  <meta charset='ISO-8859-1'>\n";
-		output += "  <link rel='stylesheet' type='text/css' href='css/basic.css'>\n";
-		output += "  <link rel='stylesheet' type='text/css' href='css/pivotal.css'>\n";
-		output += "  <link rel='icon' type='image/png' href='icons/logo_small.png'>\n";
-		output += "  <title>" + title + "</title>\n";
-		output += "</head>\n";
-		return output;
+		StringWriter output = new StringWriter();
+		printBasicHeaders(new PrintWriter(output), title);
+		return output.toString();
+	}
+
+	/**
+	 * Writes the generic headers with a given title.
+	 * 
+	 * @param page
+	 *            specifies where to write.
+	 * @param title
+	 *            defines the desired page title.
+	 */
+	public static void printBasicHeaders(PrintWriter page, String title) {
+		page.print("<head>\n");
+		page.print("  <meta charset='ISO-8859-1'>\n");
+		page.print("  <link rel='stylesheet' type='text/css' href='css/basic.css'>\n");
+		page.print("  <link rel='stylesheet' type='text/css' href='css/pivotal.css'>\n");
+		page.print("  <link rel='icon' type='image/png' href='icons/logo_small.png'>\n");
+		page.print("  <title>" + title + "</title>\n");
+		page.print("</head>\n");
 	}
 
 	/**
@@ -144,17 +187,49 @@ public class CommonHTML {
 	 * @return the whole HTML {@code <div>} tag in form of a String.
 	 */
 	public static String wrapWindow(String secondaryclass, String title, String content, String indent) {
-		String output = new String();
-		output += indent + "<div class='content-box " + secondaryclass + "'>\n";
-		output += indent + "  <div class='content-box-header'>\n";
-		output += indent + "    <h3>" + title + "</h3>\n";
-		output += indent + "    <div class='clear'></div>\n";
-		output += indent + "  </div>\n";
-		output += indent + "  <div class='content-box-content'>\n";
-		output += content;
-		output += indent + "  </div>\n";
-		output += indent + "</div>\n";
-		return output;
+		StringWriter output = new StringWriter();
+		PrintWriter page = new PrintWriter(output);
+		openWindow(page, secondaryclass, title, indent);
+		page.print(content);
+		closeWindow(page, indent);
+		return output.toString();
+	}
+
+	/**
+	 * Writes the start of a window-like HTML {@code <div>} tag, as in
+	 * {@link #wrapWindow(String, String, String, String)}. The content is
+	 * written next, and then the window is {@linkplain #closeWindow(PrintWriter, String) closed}.
+	 * 
+	 * @param page
+	 *            specifies where to write.
+	 * @param secondaryclass
+	 *            defines a auxiliary CSS class.
+	 * @param title
+	 *            defines the title of the {@code <div>} window.
+	 * @param indent
+	 *            defines the string which will prefix all printed lines.
+	 */
+	public static void openWindow(PrintWriter page, String secondaryclass, String title, String indent) {
+		page.print(indent + "<div class='content-box " + secondaryclass + "'>\n");
+		page.print(indent + "  <div class='content-box-header'>\n");
+		page.print(indent + "    <h3>" + title + "</h3>\n");
+		page.print(indent + "    <div class='clear'></div>\n");
+		page.print(indent + "  </div>\n");
+		page.print(indent + "  <div class='content-box-content'>\n");
+	}
+
+	/**
+	 * Writes the end of a window-like HTML {@code <div>} tag.
+	 * 
+	 * @see #openWindow(PrintWriter, String, String, String)
+	 * @param page
+	 *            specifies where to write.
+	 * @param indent
+	 *            defines the string which will prefix all printed lines.
+	 */
+	public static void closeWindow(PrintWriter page, String indent) {
+		page.print(indent + "  </div>\n");
+		page.print(indent + "</div>\n");
 	}
 
 	/**
@@ -172,32 +247,72 @@ public class CommonHTML {
 	 * @return the whole HTML {@code <table>} tag in form of a String.
 	 */
 	public static String ticketTable(String title, TicketSet content, String indent) {
-		String output = new String();
-		output += indent + "<table class='tickets' width='100%' border=0 cellspacing=0 cellpadding=0>\n";
-		output += indent + "  <tr class='tickets_title'>\n";
-		output += indent + "    <td scope='col' colspan='4'>" + title + "</td>\n";
-		output += indent + "  </tr>\n";
+		StringWriter output = new StringWriter();
+		ticketTable(new PrintWriter(output), title, content, indent);
+		return output.toString();
+	}
+
+	/**
+	 * Writes a set of stories wrapped around a HTML {@code <table>} tag, as in
+	 * {@link #ticketTable(String, TicketSet, String)}. Each story is written as
+	 * it is read, nothing is built for the whole table.
+	 * 
+	 * @param page
+	 *            specifies where to write.
+	 * @param title
+	 *            defines a title to be given in this window-like table.
+	 * @param content
+	 *            specifies which stories are to be printed.
+	 * @param indent
+	 *            defines the string which will prefix all printed lines.
+	 */
+	public static void ticketTable(PrintWriter page, String title, TicketSet content, String indent) {
+		page.print(indent);
+		page.print("<table class='tickets' width='100%' border=0 cellspacing=0 cellpadding=0>\n");
+		page.print(indent);
+		page.print("  <tr class='tickets_title'>\n");
+		page.print(indent);
+		page.print("    <td scope='col' colspan='4'>");
+		page.print(title);
+		page.print("</td>\n");
+		page.print(indent);
+		page.print("  </tr>\n");
 		for (Ticket t : content) {
-			output += indent + "  <tr class='" + t.getState() + "'>\n";
-			output += indent + "    <td>";
-			output += "<img src='icons/" + t.getType() + ".png' />";
-			output += "</td>\n";
-			output += indent + "    <td>\n";
-			output += indent + "      <a href='" + t.getURL() + "'>";
-			output += t.getTitle();
-			output += "</a>\n";
-			if (t.getLabels() != null) {
-				output += indent + "      <span class='labels'>" + t.getLabels() + "</span>\n";
+			page.print(indent);
+			page.print("  <tr class='");
+			page.print(t.getState());
+			page.print("'>\n");
+			page.print(indent);
+			page.print("    <td><img src='icons/");
+			page.print(t.getType());
+			page.print(".png' /></td>\n");
+			page.print(indent);
+			page.print("    <td>\n");
+			page.print(indent);
+			page.print("      <a href='");
+			page.print(t.getURL());
+			page.print("'>");
+			page.print(t.getTitle());
+			page.print("</a>\n");
+			String labels = t.getLabels();
+			if (labels != null) {
+				page.print(indent);
+				page.print("      <span class='labels'>");
+				page.print(labels);
+				page.print("</span>\n");
 			}
-			output += indent + "    </td>\n";
-			output += indent + "    <td class='owner'>";
+			page.print(indent);
+			page.print("    </td>\n");
+			page.print(indent);
+			page.print("    <td class='owner'>");
 			if (t.getOwner() != null)
-				output += t.getOwner();
-			output += "</td>\n";
-			output += indent + "  </tr>\n";
+				page.print(t.getOwner());
+			page.print("</td>\n");
+			page.print(indent);
+			page.print("  </tr>\n");
 		}
-		output += indent + "</table>\n";
-		return output;
+		page.print(indent);
+		page.print("</table>\n");
 	}
 
 }
@@ -0,0 +1,208 @@
+/**
+ *  Copyright (C) 2014 Matheus Borges Teixeira
+ *  
+ *  This file is part of Pivotal Analytics, a web tool for statistical
+ *  observation and measurement of Pivotal Projects.
+ *
+ *  Pivotal Analytics is free software: you can redistribute it and/or 
+ *  modify it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with Pivotal Analytics.  If not, see <http://www.gnu.org/licenses/>
+ */
+package software.matheus.pivotal_analytics.printers;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
+
+/**
+ * The {@code FragmentCache} class keeps rendered parts of pages, so views
+ * of a project which did not change are not computed again.
+ * 
+ * A fragment is kept by the {@linkplain ProjectState#getVersion() version} of the project stories,
+ * the view, the settings it was rendered with and the day, as views measure time until now.
+ * Synchronizing the project gives a new version, so fragments of older versions are
+ * never read again and leave as the least recently used once the cache is full.
+ * 
+ * The version in the key and the content rendered come from the same state,
+ * which the fragment must read alone, so a synchronization meanwhile never
+ * keeps newer content under an older version.
+ * 
+ * Fragments are rendered without locking: two requests missing the same fragment
+ * at once both render it, and one of them is kept.
+ * 
+ * This class is entirely based on static behavior!
+ * 
+ * @version 1.0
+ * @author Matheus Borges Teixeira
+ */
+public class FragmentCache {
+	/** Maximum estimated weight of all fragments kept, in bytes; 0 disables the cache **/
+	public static long MAX_WEIGHT = 16L * 1024 * 1024;
+	
+	/** Length of the time buckets in ms, a day **/
+	private static final long DAY = 24*60*60*1000;
+	
+	/** Rendered fragments, least recently read first **/
+	static private final LinkedHashMap<String,String> fragments = new LinkedHashMap<String,String>(16, 0.75f, true);
+	
+	/** Estimated weight of all fragments, guarded by the map **/
+	static private long weight = 0;
+	
+	/** Prints which found the fragment kept **/
+	static private final AtomicLong hits = new AtomicLong();
+	
+	/** Prints which had to render the fragment **/
+	static private final AtomicLong misses = new AtomicLong();
+	
+	/**
+	 * The {@code Fragment} interface renders one part of a page.
+	 */
+	public interface Fragment {
+		/**
+		 * Renders the fragment.
+		 * @param page specifies where to write.
+		 */
+		void render(PrintWriter page);
+	}
+	
+	/**
+	 * Prints a fragment, from the cache if kept, rendering and keeping it otherwise.
+	 * States without version, not yet frozen, are always rendered.
+	 * 
+	 * @param page specifies where to write.
+	 * @param project specifies the state of the project shown, the only one the fragment reads.
+	 * @param view defines the name of the view the fragment belongs to.
+	 * @param settings specifies every cookie and parameter the fragment depends on, nulls allowed.
+	 * @param fragment defines how to render the fragment.
+	 */
+	public static void print(PrintWriter page, ProjectState project, String view, String[] settings, Fragment fragment){
+		long version = project.getVersion();
+		if(version == 0 || MAX_WEIGHT <= 0){
+			fragment.render(page);
+			return;
+		}
+		String key = key(version, view, System.currentTimeMillis() / DAY, settings);
+		String rendered;
+		synchronized(fragments){
+			rendered = fragments.get(key);
+		}
+		if(rendered != null){
+			hits.incrementAndGet();
+			page.write(rendered);
+			return;
+		}
+		misses.incrementAndGet();
+		StringWriter output = new StringWriter();
+		fragment.render(new PrintWriter(output));
+		rendered = output.toString();
+		keep(key, rendered);
+		page.write(rendered);
+	}
+	
+	/**
+	 * Builds the key of a fragment.
+	 * Parts are separated by line breaks, which cookies and parameters cannot hold unescaped.
+	 * 
+	 * @param version specifies the version of the project stories.
+	 * @param view defines the name of the view.
+	 * @param day specifies the day bucket.
+	 * @param settings specifies the settings.
+	 * @return the key.
+	 */
+	static String key(long version, String view, long day, String[] settings){
+		StringBuilder key = new StringBuilder();
+		key.append(version).append('\n').append(view).append('\n').append(day);
+		for(String setting: settings){
+			key.append('\n').append(setting == null ? "\0" : setting);
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Keeps a fragment, dropping the least recently read ones while too heavy.
+	 * Fragments heavier than the whole cache are not kept.
+	 * 
+	 * @param key specifies the key.
+	 * @param rendered specifies the fragment.
+	 */
+	private static void keep(String key, String rendered){
+		long added = weigh(key, rendered);
+		if(added > MAX_WEIGHT){
+			return;
+		}
+		synchronized(fragments){
+			String old = fragments.put(key, rendered);
+			weight += added;
+			if(old != null){
+				weight -= weigh(key, old);
+			}
+			Iterator<Map.Entry<String,String>> eldest = fragments.entrySet().iterator();
+			while(weight > MAX_WEIGHT && eldest.hasNext()){
+				Map.Entry<String,String> e = eldest.next();
+				weight -= weigh(e.getKey(), e.getValue());
+				eldest.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Estimates how much memory a fragment takes, in bytes.
+	 * 
+	 * @param key specifies the key.
+	 * @param rendered specifies the fragment.
+	 * @return the estimated size.
+	 */
+	private static long weigh(String key, String rendered){
+		return 128 + 2L*key.length() + 2L*rendered.length();
+	}
+	
+	/**
+	 * Drops all fragments.
+	 */
+	public static void clear(){
+		synchronized(fragments){
+			fragments.clear();
+			weight = 0;
+		}
+	}
+	
+	/**
+	 * Gets the estimated weight of all fragments kept.
+	 * @return the weight in bytes.
+	 */
+	public static long getWeight(){
+		synchronized(fragments){
+			return weight;
+		}
+	}
+	
+	/**
+	 * Gets how many prints found the fragment kept.
+	 * @return the amount of hits.
+	 */
+	public static long getHits(){
+		return hits.get();
+	}
+	
+	/**
+	 * Gets how many prints had to render the fragment.
+	 * @return the amount of misses.
+	 */
+	public static long getMisses(){
+		return misses.get();
+	}
+}
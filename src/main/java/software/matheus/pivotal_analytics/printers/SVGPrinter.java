@@ -19,6 +19,8 @@
  */
 package software.matheus.pivotal_analytics.printers;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.Map;
 
 /**
@@ -26,6 +28,9 @@ import java.util.Map;
  * Implementation accordingly to Scalable Vector Graphics (SVG) 1.1 (Second Edition).
  * W3C Recommendation 16 August 2011.
  * 
+ * Images are written straight to a given {@link PrintWriter}, the methods returning
+ * Strings are kept for images needed as a whole.
+ * 
  * This class is entirely based on static behavior!
  * 
  * @version 1.0
@@ -66,60 +71,81 @@ public class SVGPrinter {
 	 * @return a complete SVG image with the plotted data in form of a String.
 	 */
 	public static String labeledLineGraph(Map<String,int[]> data,int min_value, int max_value, String[] points, String indent, int skip){
-		String output = new String();
+		StringWriter output = new StringWriter();
+		labeledLineGraph(new PrintWriter(output), data, min_value, max_value, points, indent, skip);
+		return output.toString();
+	}
+	
+	/**
+	 * Writes a SVG image with a line graph, as in {@link #labeledLineGraph(Map, int, int, String[], String, int)}.
+	 *
+	 * @param page specifies where to write.
+	 * @param data defines the data to be plotted on the graph.
+	 * @param min_value informs the minimum value inside the data set.
+	 * @param max_value informs the maximum value inside (or desired for) the data set.
+	 * @param points defines the labels for X axis.
+	 * @param indent defines the string which will prefix all printed lines.
+	 * @param skip specifies an amount of X axis labels to skip, in case of long sets of data.
+	 */
+	public static void labeledLineGraph(PrintWriter page, Map<String,int[]> data,int min_value, int max_value, String[] points, String indent, int skip){
 		float y_canvas = height - BOTTOM_GAP - 2*BORDER;
 		float unit =  y_canvas / (float)(max_value-min_value);
 		float gap = (width - LABEL_GAP - LEFT_GAP - 2*BORDER) / (float)points.length;
 
-		output += indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' viewBox='0 0 "+width+" "+height+"' preserveAspectRatio='xMidYMid meet'>\n";
+		page.print(indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' viewBox='0 0 "+width+" "+height+"' preserveAspectRatio='xMidYMid meet'>\n");
 		if(data.entrySet().size() <= 0){
-			output += indent+"</svg>";
-			return output;
+			page.print(indent+"</svg>");
+			return;
 		}
 		
 		for(int layer = 0; layer < 10; layer++){
 			float level = height-layer*unit*(max_value-min_value)/10.0f-BOTTOM_GAP+BORDER;
-			output += indent+"  <path d='M "+ (LEFT_GAP + BORDER) +" "+ level;
-			output += " L "+(width - LABEL_GAP - BORDER)+" "+level+"' stroke='#CCC'/>\n";
-			output += indent+"  <text text-anchor='end' x='"+(LEFT_GAP+BORDER)+"' y='"+level+"' font-size='85%'>";
-			output += (int)(min_value+(layer*(max_value-min_value)/10.0f))+"";
-			output += "</text>\n";
+			page.print(indent+"  <path d='M "+ (LEFT_GAP + BORDER) +" "+ level);
+			page.print(" L "+(width - LABEL_GAP - BORDER)+" "+level+"' stroke='#CCC'/>\n");
+			page.print(indent+"  <text text-anchor='end' x='"+(LEFT_GAP+BORDER)+"' y='"+level+"' font-size='85%'>");
+			page.print((int)(min_value+(layer*(max_value-min_value)/10.0f)));
+			page.print("</text>\n");
 		}
 		
 		int i = 0;
+		/* The last curve command becomes a line, so the path is kept until then */
+		StringBuilder s = new StringBuilder();
 		for(Map.Entry<String, int[]> d: data.entrySet()){
-			String s = "<path class='"+d.getKey()+"' d='M ";
+			s.setLength(0);
+			s.append("<path class='").append(d.getKey()).append("' d='M ");
 			int j = 0;
 			for(int k: d.getValue()){
+				float y = height-(k*unit)-BOTTOM_GAP+min_value*unit;
 				if(j == 0){
-					s += (LEFT_GAP+BORDER+j*gap)+" "+(height-(k*unit)-BOTTOM_GAP+min_value*unit)+" C "+(LEFT_GAP+BORDER+j*gap+gap)+","+(height-(k*unit)-BOTTOM_GAP+min_value*unit)+" ";
+					s.append(LEFT_GAP+BORDER+j*gap).append(' ').append(y).append(" C ").append(LEFT_GAP+BORDER+j*gap+gap).append(',').append(y).append(' ');
 				}
 				else {
-					s += (LEFT_GAP+BORDER+j*gap-gap)+","+(height-(k*unit)-BOTTOM_GAP+min_value*unit)+" "+(LEFT_GAP+BORDER+j*gap)+" "+(height-(k*unit)-BOTTOM_GAP+min_value*unit)+" S ";
+					s.append(LEFT_GAP+BORDER+j*gap-gap).append(',').append(y).append(' ').append(LEFT_GAP+BORDER+j*gap).append(' ').append(y).append(" S ");
 				}
 				j++;
 			}
 			
-			char[] temp = s.toCharArray();
-			temp[temp.length-2] = 'L';
-			s = String.valueOf(temp);
-			s += (LEFT_GAP+BORDER+(j-1)*gap)+" "+(height-BOTTOM_GAP);
-			s += " L "+(LEFT_GAP+BORDER)+" "+(height-BOTTOM_GAP);
-			output += indent+"  " + s + "' ";
-			output += "fill='"+colors[i%colors.length]+"' fill-opacity='0.5' ";
-			output += "stroke='"+colors[i%colors.length]+"' stroke-width='2'/>\n";
+			s.setCharAt(s.length()-2, 'L');
+			s.append(LEFT_GAP+BORDER+(j-1)*gap).append(' ').append(height-BOTTOM_GAP);
+			s.append(" L ").append(LEFT_GAP+BORDER).append(' ').append(height-BOTTOM_GAP);
+			page.print(indent);
+			page.print("  ");
+			page.append(s);
+			page.print("' ");
+			page.print("fill='"+colors[i%colors.length]+"' fill-opacity='0.5' ");
+			page.print("stroke='"+colors[i%colors.length]+"' stroke-width='2'/>\n");
 			i++;
 		}
 		i = 0;
-		for(String s: points){
+		for(String label: points){
 			/** Skipping on graphs with too many labels **/
 			if(i % skip == 0 && i > 1){
-				output += indent+"  <g transform='translate("+(int)(LEFT_GAP+i*gap+BORDER)+","+(height-BOTTOM_GAP+BORDER)+")'>\n";
-				output += indent+"    <g transform=rotate(-60)>\n";
-				output += indent+"      <text text-anchor='end' x='-5' y='5' font-size='85%'>";
-				output += s + "</text>\n";
-				output += indent+"    </g>\n";
-				output += indent+"  </g>\n";
+				page.print(indent+"  <g transform='translate("+(int)(LEFT_GAP+i*gap+BORDER)+","+(height-BOTTOM_GAP+BORDER)+")'>\n");
+				page.print(indent+"    <g transform=rotate(-60)>\n");
+				page.print(indent+"      <text text-anchor='end' x='-5' y='5' font-size='85%'>");
+				page.print(label + "</text>\n");
+				page.print(indent+"    </g>\n");
+				page.print(indent+"  </g>\n");
 			}
 			i++;
 		}
@@ -135,23 +161,23 @@ public class SVGPrinter {
 			 * 10 is the gap between data-line-text
 			 * 20 is the length of the line 
 			 */
-			output += indent+"  <path  class='"+d.getKey()+"' d=' M "+(width - LABEL_GAP + 10 - BORDER)+" "+label;
-			output += " L "+(width - LABEL_GAP + 10 + 20 - BORDER)+" "+label;
-			output += "' stroke-width='2' stroke='"+colors[i%colors.length]+"'/>\n";
-			output += indent+"  <text text-anchor='start' x='"+(width - LABEL_GAP + 10 + 20 + 10 - BORDER)+"' y='"+label+"' font-size='85%'>";
-			output += d.getKey() + "</text>\n";
+			page.print(indent+"  <path  class='"+d.getKey()+"' d=' M "+(width - LABEL_GAP + 10 - BORDER)+" "+label);
+			page.print(" L "+(width - LABEL_GAP + 10 + 20 - BORDER)+" "+label);
+			page.print("' stroke-width='2' stroke='"+colors[i%colors.length]+"'/>\n");
+			page.print(indent+"  <text text-anchor='start' x='"+(width - LABEL_GAP + 10 + 20 + 10 - BORDER)+"' y='"+label+"' font-size='85%'>");
+			page.print(d.getKey() + "</text>\n");
 			i++;
 			label += labels_gap;
 		}
 			
-		output += indent+"</svg>\n";
-		return output;		
+		page.print(indent+"</svg>\n");
 	}
 	
 	/**
 	 * Draws only a slice of the pie chart.
 	 * This is a helper method for the main printer method.
 	 * 
+	 * @param page specifies where to write.
 	 * @param center_x defines the x coordinate of the center of the pie in the image.
 	 * @param center_y defines the y coordinate of the center of the pie in the image.
 	 * @param radius defines the radius of the pie.
@@ -159,11 +185,8 @@ public class SVGPrinter {
 	 * @param percentage defines the size, in proportion, of the slice.
 	 * @param title defines the name (CSS class) of the slice.
 	 * @param color defines a color for the slice.
-	 * @return the complete {@code <path>} node for the slice in form of a String.
 	 */
-	static private String pieSlice(int center_x, int center_y, int radius, float percentage_start, float percentage, String title, String color){
-		String output = new String();
-		
+	static private void pieSlice(PrintWriter page, int center_x, int center_y, int radius, float percentage_start, float percentage, String title, String color){
 		float start_dx = (float) (Math.cos(2*Math.PI*percentage_start)*radius);
 		float start_dy = (float) (Math.sin(2*Math.PI*percentage_start)*radius);
 		
@@ -171,27 +194,26 @@ public class SVGPrinter {
 		float end_dy = (float) (Math.sin(2*Math.PI*(percentage_start+percentage))*radius);
 		
 		if(percentage < 1.0f){		
-			output += "<path class='"+title+"' d='";
-			output += "M "+ center_x + " " + center_y + " ";
-			output += "l "+ start_dx + " " + start_dy + " ";
+			page.print("<path class='"+title+"' d='");
+			page.print("M "+ center_x + " " + center_y + " ");
+			page.print("l "+ start_dx + " " + start_dy + " ");
 			
-			output += "a "+ radius + " " + radius + " ";
+			page.print("a "+ radius + " " + radius + " ");
 			
 			if(percentage > 0.5f){
-				output += "0 1 1 ";
+				page.print("0 1 1 ");
 			}
 			else{
-				output += "0 0 1 ";
+				page.print("0 0 1 ");
 			}
 			
-			output += (end_dx-start_dx) + " " + (end_dy-start_dy) + " z' ";
-			output += "fill='"+color+"' stroke='none' />\n";
+			page.print((end_dx-start_dx) + " " + (end_dy-start_dy) + " z' ");
+			page.print("fill='"+color+"' stroke='none' />\n");
 		}
 		else{
-			output += "<circle class='"+title+"' cx='"+center_x+"' cy='"+center_y+"' ";
-			output += "r='"+radius+"' fill='"+color+"' stroke='none' />";
+			page.print("<circle class='"+title+"' cx='"+center_x+"' cy='"+center_y+"' ");
+			page.print("r='"+radius+"' fill='"+color+"' stroke='none' />");
 		}
-		return output;
 	}
 	
 	/**
@@ -206,7 +228,21 @@ public class SVGPrinter {
 	 * @return a complete SVG image with the divided pie graph in form of a String.
 	 */
 	public static String percentualPieChart(Map<String,float[]> data, int width, int height, String indent){
-		String output = new String();
+		StringWriter output = new StringWriter();
+		percentualPieChart(new PrintWriter(output), data, width, height, indent);
+		return output.toString();
+	}
+	
+	/**
+	 * Writes a SVG image with a pie chart graph, as in {@link #percentualPieChart(Map, int, int, String)}.
+	 * 
+	 * @param page specifies where to write.
+	 * @param data defines the data with all parts to be in the chart.
+	 * @param width defines the image width.
+	 * @param height defines the image height.
+	 * @param indent defines the string which will prefix all printed lines.
+	 */
+	public static void percentualPieChart(PrintWriter page, Map<String,float[]> data, int width, int height, String indent){
 		int LABEL_GAP = 120;
 		int radius;
 		if(8*(width - LABEL_GAP)/10 > 8*height/10){
@@ -218,16 +254,17 @@ public class SVGPrinter {
 		
 		
 		
-		output += indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n";
+		page.print(indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n");
 		if(data.entrySet().size() <= 0){
-			output += indent+"</svg>";
-			return output;
+			page.print(indent+"</svg>");
+			return;
 		}
 		
 		float position = 0f;
 		int i = 0;
 		for(Map.Entry<String, float[]> d: data.entrySet()){
-			output += indent+"  "+pieSlice((width - LABEL_GAP)/2,height/2,radius,position,d.getValue()[0],d.getKey(),colors[i%colors.length]);
+			page.print(indent+"  ");
+			pieSlice(page,(width - LABEL_GAP)/2,height/2,radius,position,d.getValue()[0],d.getKey(),colors[i%colors.length]);
 			position += d.getValue()[0];
 			i++;
 		}
@@ -237,17 +274,16 @@ public class SVGPrinter {
 		
 		i = 0;
 		for(Map.Entry<String, float[]> d: data.entrySet()){
-			output += indent+"  <rect class='"+d.getKey()+"' x='"+(width - LABEL_GAP + 10)+"' y='"+(label-10)+"' ";
-			output += "height='10' width='10'";
-			output += "stroke='black' fill='"+colors[i%colors.length]+"'/>\n";
-			output += indent+"  <text text-anchor='start' x='"+(width - LABEL_GAP + 10 + 30)+"' y='"+label+"' font-size='85%'>";
-			output += d.getKey() + "</text>\n";
+			page.print(indent+"  <rect class='"+d.getKey()+"' x='"+(width - LABEL_GAP + 10)+"' y='"+(label-10)+"' ");
+			page.print("height='10' width='10'");
+			page.print("stroke='black' fill='"+colors[i%colors.length]+"'/>\n");
+			page.print(indent+"  <text text-anchor='start' x='"+(width - LABEL_GAP + 10 + 30)+"' y='"+label+"' font-size='85%'>");
+			page.print(d.getKey() + "</text>\n");
 			i++;
 			label += labels_gap;
 		}
 		
-		output += indent+"</svg>";
-		return output;
+		page.print(indent+"</svg>");
 	}
 	
 	/**
@@ -264,18 +300,34 @@ public class SVGPrinter {
 	 * @return a complete SVG image filled according to the state in form of a String.
 	 */
 	public static String horizontalProgressBar(int data, int max_value, int height, int width, String color_fill, String color_text, String indent){
-		String output = new String();
+		StringWriter output = new StringWriter();
+		horizontalProgressBar(new PrintWriter(output), data, max_value, height, width, color_fill, color_text, indent);
+		return output.toString();
+	}
+	
+	/**
+	 * Writes a SVG image with a progress bar, as in {@link #horizontalProgressBar(int, int, int, int, String, String, String)}.
+	 *
+	 * @param page specifies where to write.
+	 * @param data specifies the current state of the progress bar.
+	 * @param max_value specifies what value is considered to be 100%
+	 * @param width defines the image width.
+	 * @param height defines the image height.
+	 * @param color_fill defines a color for the filling by name or hex code.
+	 * @param color_text defines a color for the text by name or hex code.
+	 * @param indent defines the string which will prefix all printed lines.
+	 */
+	public static void horizontalProgressBar(PrintWriter page, int data, int max_value, int height, int width, String color_fill, String color_text, String indent){
 		float unit = width / (float)max_value;
-		output += indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n";
-		output += indent+"  <rect x='0' y='0' width='"+(int)(data*unit)+"' height='"+height+"'";
-		output += "fill='"+color_fill+"' stroke='none'/>\n";
-		output += indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'";
-		output += "fill='none' stroke='black' stroke-width='1'/>\n";
-		output += indent+"  <text x='"+width/2+"' y='"+(height-4)+"' text-anchor='middle'>\n";
-		output += indent+"    <tspan font-size='80%' font-weight='bold' fill='black' >"+data+"</tspan>\n";
-		output += indent+"  </text>\n";
-		output += indent+"</svg>";
-		return output;		
+		page.print(indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n");
+		page.print(indent+"  <rect x='0' y='0' width='"+(int)(data*unit)+"' height='"+height+"'");
+		page.print("fill='"+color_fill+"' stroke='none'/>\n");
+		page.print(indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'");
+		page.print("fill='none' stroke='black' stroke-width='1'/>\n");
+		page.print(indent+"  <text x='"+width/2+"' y='"+(height-4)+"' text-anchor='middle'>\n");
+		page.print(indent+"    <tspan font-size='80%' font-weight='bold' fill='black' >"+data+"</tspan>\n");
+		page.print(indent+"  </text>\n");
+		page.print(indent+"</svg>");
 	}
 	
 	/**
@@ -293,33 +345,47 @@ public class SVGPrinter {
 	 * @return a complete SVG image filled according to the state in form of a String.
 	 */
 	public static String horizontalLoadBar(float data, float max_value, int height, int width, String indent){
-		String output = new String();
+		StringWriter output = new StringWriter();
+		horizontalLoadBar(new PrintWriter(output), data, max_value, height, width, indent);
+		return output.toString();
+	}
+	
+	/**
+	 * Writes a SVG image with a load bar, as in {@link #horizontalLoadBar(float, float, int, int, String)}.
+	 *
+	 * @param page specifies where to write.
+	 * @param data specifies the current state of the progress bar.
+	 * @param max_value specifies what value is considered to be 100%
+	 * @param width defines the image width.
+	 * @param height defines the image height.
+	 * @param indent defines the string which will prefix all printed lines.
+	 */
+	public static void horizontalLoadBar(PrintWriter page, float data, float max_value, int height, int width, String indent){
 		int redism_level = (int)(((data-1)/(max_value-1))*255);
 
-		output += indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n";
+		page.print(indent+"<svg xmlns='http://www.w3.org/2000/svg' version='1.1' width='"+width+"' height='"+height+"'>\n");
 		
 		if(data >= 1){
-			output += indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'";
-			output += "fill='#"+to2ByteHex(redism_level)+"0000' stroke='none'/>\n";			
+			page.print(indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'");
+			page.print("fill='#"+to2ByteHex(redism_level)+"0000' stroke='none'/>\n");			
 		}
 		else{
-			output += indent+"  <rect x='0' y='0' width='"+(int)(data*width)+"' height='"+height+"'";
-			output += "fill='black' stroke='none'/>\n";
+			page.print(indent+"  <rect x='0' y='0' width='"+(int)(data*width)+"' height='"+height+"'");
+			page.print("fill='black' stroke='none'/>\n");
 		}
 		
 		
-		output += indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'";
-		output += "fill='none' stroke='black' stroke-width='1'/>\n";
-		output += indent+"  <text x='"+width/2+"' y='"+(height-4)+"' text-anchor='middle'>\n";
+		page.print(indent+"  <rect x='0' y='0' width='"+width+"' height='"+height+"'");
+		page.print("fill='none' stroke='black' stroke-width='1'/>\n");
+		page.print(indent+"  <text x='"+width/2+"' y='"+(height-4)+"' text-anchor='middle'>\n");
 		if(redism_level > 0){
-			output += indent+"    <tspan font-size='80%' font-weight='bold' fill='#"+to2ByteHex(redism_level)+"0000' >"+(int)(data*100)+"%</tspan>\n";
+			page.print(indent+"    <tspan font-size='80%' font-weight='bold' fill='#"+to2ByteHex(redism_level)+"0000' >"+(int)(data*100)+"%</tspan>\n");
 		}
 		else{
-			output += indent+"    <tspan font-size='80%' font-weight='bold' fill='#CCC' >"+(int)(data*100)+"%</tspan>\n";
+			page.print(indent+"    <tspan font-size='80%' font-weight='bold' fill='#CCC' >"+(int)(data*100)+"%</tspan>\n");
 		}
-		output += indent+"  </text>\n";
-		output += indent+"</svg>";
-		return output;		
+		page.print(indent+"  </text>\n");
+		page.print(indent+"</svg>");
 	}
 	
 	/**
@@ -47,10 +47,12 @@ public class About extends HttpServlet {
 		PrintWriter page = response.getWriter();
 		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - About"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - About");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
 		page.println("  <div class='content' id='text'>");
 		
 		page.println("    <h1>About Pivotal Analytics</h1>");
@@ -177,7 +179,8 @@ public class About extends HttpServlet {
 		page.println("    <p>Displays a list with all downloaded stories in the project. </p>");
 		page.println("  </div>");
 
-		page.println(CommonHTML.getFooter("  "));
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
 		page.println("</body>");
 		page.println("</html>");
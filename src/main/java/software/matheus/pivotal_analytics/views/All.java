@@ -21,6 +21,8 @@ package software.matheus.pivotal_analytics.views;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URLEncoder;
+import java.util.Arrays;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -29,15 +31,28 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
 
 /**
  * The {@code All} class serves Pivotal Analytics page with all stories.
- * It prints a simple table with all stories fetched from Pivotal.
+ * It prints a table with the stories fetched from Pivotal, one page at a time.
+ * 
+ * Stories can be sorted by creation, acceptance or state, and filtered
+ * by type, state, owner and label, all given as request parameters:
+ * - page: which page to show, starting at 1.
+ * - sort: created, accepted or state.
+ * - order: asc or desc.
+ * - type, state, owner and label: filters, optional.
+ * 
+ * Pages are read from the orders kept in the project stories,
+ * so showing one does not depend on how many stories the project has.
  *  
  * @version 1.0
  * @author Matheus Borges Teixeira
@@ -45,6 +60,15 @@ import software.matheus.pivotal_analytics.printers.CommonHTML;
 @WebServlet("/All")
 public class All extends HttpServlet {
 	private static final long serialVersionUID = 1L;
+	
+	/** Stories shown in each page **/
+	public static int PAGE_SIZE = 100;
+	
+	/** Names of the orders, by TicketSet order **/
+	private static final String[] SORTS = {"created","accepted","state"};
+	
+	/** Filters which can be given, by name **/
+	private static final String[] FILTERS = {"type","state","owner","label"};
        
    /**
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
@@ -59,23 +83,166 @@ public class All extends HttpServlet {
 		}
 		
 		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
-		Project project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue()); 
-		TicketSet all = project.getStories();
+		Project project;
+		try{
+			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+		}
+		catch (AccessUnavailableException e){
+			response.sendError(503,"Project access could not be checked, try again later!");
+			return;
+		}
+		if(project == null){
+			response.sendError(403,"Project could not be accessed!");
+			return;
+		}
+		/* One state for the whole request, even if synchronized meanwhile */
+		ProjectState state = project.getState();
+		String[] settings = new String[4 + FILTERS.length];
+		settings[0] = request.getParameter("page");
+		settings[1] = request.getParameter("sort");
+		settings[2] = request.getParameter("order");
+		settings[3] = CookieManager.readCookie(cookies, "special_labels");
+		for(int f = 0; f < FILTERS.length; f++){
+			settings[4 + f] = request.getParameter(FILTERS[f]);
+		}
+		if(CacheManager.notModified(request, response, CacheManager.tag(state, "All", settings))){
+			return;
+		}
+		TicketSet all = state.getStories();
+		
+		int sort = Math.max(0, Arrays.asList(SORTS).indexOf(request.getParameter("sort")));
+		boolean descending = "desc".equals(request.getParameter("order"));
+		String[] filters = new String[FILTERS.length];
+		TicketSet selected = all;
+		for(int f = 0; f < FILTERS.length; f++){
+			filters[f] = request.getParameter(FILTERS[f]);
+			if(filters[f] == null || filters[f].length() == 0){
+				filters[f] = null;
+				continue;
+			}
+			switch(f){
+				case 0:
+					selected = selected.queryType(filters[f]);
+					break;
+				case 1:
+					selected = selected.queryState(filters[f]);
+					break;
+				case 2:
+					selected = selected.queryOwner(filters[f]);
+					break;
+				default:
+					selected = selected.queryLabel(filters[f]);
+					break;
+			}
+		}
+		
+		int pages = Math.max(1, (selected.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+		int current = 1;
+		try{
+			if(request.getParameter("page") != null){
+				current = Integer.parseInt(request.getParameter("page"));
+			}
+		}
+		catch (NumberFormatException e){
+			System.err.println("[WARNING] Parsing exception on page. Using default 1.");
+			System.out.println("[WARNING] Parsing exception on page. Using default 1.");
+		}
+		current = Math.max(1, Math.min(current, pages));
+		int first = (current - 1) * PAGE_SIZE;
+		TicketSet shown = selected.queryPage(sort, descending, first, PAGE_SIZE);
 		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - All Stories"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - All Stories");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
 		page.println("  <div class='content' id='text'>");
 				
 		page.println("  <h1>All Tickets</h1>");
-		page.println(CommonHTML.ticketTable("Open Stories", all, "    "));
+		
+		page.println("<center>");
+		page.print("Sort by: ");
+		for(int s = 0; s < SORTS.length; s++){
+			boolean reverse = s == sort && !descending;
+			page.print("<a href='"+link(s, reverse, filters, -1, null, 1)+"'>"+SORTS[s]+(s == sort ? (descending ? " &darr;" : " &uarr;") : "")+"</a>");
+			page.print(s < SORTS.length - 1 ? " | " : "<br>\n");
+		}
+		printFilter(page, "Type", sort, descending, filters, 0, all.queryUniqueTypes());
+		printFilter(page, "State", sort, descending, filters, 1, all.queryUniqueStates());
+		String[] owners = all.queryUniqueOwners();
+		Arrays.sort(owners);
+		printFilter(page, "Owner", sort, descending, filters, 2, owners);
+		printFilter(page, "Label", sort, descending, filters, 3, CookieManager.extractLabels(cookies).toArray(new String[0]));
+		page.println("</center>");
+		
+		String title = selected.size() == 0 ? "No Stories" : "Stories "+(first + 1)+" to "+(first + shown.size())+" of "+selected.size();
+		CommonHTML.ticketTable(page,title, shown, "    ");
+		page.println();
+		
+		page.println("<center>");
+		if(current > 1){
+			page.print("<a href='"+link(sort, descending, filters, -1, null, current - 1)+"'>Previous</a> | ");
+		}
+		page.print("Page "+current+" of "+pages);
+		if(current < pages){
+			page.print(" | <a href='"+link(sort, descending, filters, -1, null, current + 1)+"'>Next</a>");
+		}
+		page.println();
+		page.println("</center>");
 		page.println("  </div>");
 
-		page.println(CommonHTML.getFooter("  "));
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
 		page.println("</body>");
 		page.println("</html>");
 	}
+	
+	/**
+	 * Prints the links to filter by one field, keeping the other filters and the order.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param name defines the name of the field shown.
+	 * @param sort specifies the current order.
+	 * @param descending specifies if the current order is reversed.
+	 * @param filters specifies the current filters, null where not filtered.
+	 * @param filter specifies which filter the links change.
+	 * @param values specifies the values which can be chosen.
+	 */
+	private void printFilter(PrintWriter page, String name, int sort, boolean descending, String[] filters, int filter, String[] values) throws IOException {
+		page.print(name+": ");
+		page.print("<a href='"+link(sort, descending, filters, filter, null, 1)+"'>"+(filters[filter] == null ? "<b>any</b>" : "any")+"</a>");
+		for(String value: values){
+			page.print(" | <a href='"+link(sort, descending, filters, filter, value, 1)+"'>");
+			page.print(value.equals(filters[filter]) ? "<b>"+value+"</b>" : value);
+			page.print("</a>");
+		}
+		page.println("<br>");
+	}
+	
+	/**
+	 * Builds the address of a page of this view.
+	 * 
+	 * @param sort specifies the order.
+	 * @param descending specifies if the order is reversed.
+	 * @param filters specifies the filters, null where not filtered.
+	 * @param filter specifies a filter to replace, negative for none.
+	 * @param value specifies the value of the replaced filter, null to remove it.
+	 * @param number specifies the page number.
+	 * @return the relative address.
+	 */
+	private static String link(int sort, boolean descending, String[] filters, int filter, String value, int number) throws IOException {
+		StringBuilder link = new StringBuilder("All?sort=").append(SORTS[sort]);
+		link.append("&amp;order=").append(descending ? "desc" : "asc");
+		for(int f = 0; f < FILTERS.length; f++){
+			String used = f == filter ? value : filters[f];
+			if(used != null){
+				link.append("&amp;").append(FILTERS[f]).append('=').append(URLEncoder.encode(used, "UTF-8"));
+			}
+		}
+		link.append("&amp;page=").append(number);
+		return link.toString();
+	}
 }
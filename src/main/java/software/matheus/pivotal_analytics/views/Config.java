@@ -30,18 +30,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import software.matheus.pivotal_analytics.io.DataSource;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
 
 /**
  * The {@code Config} class serves Pivotal Analytics configuration page.
- * There are six configurations:
+ * There are seven configurations:
  * - token: user defined key for accessing Pivotal.
  * - project_id: code for which project to load.
  * - special_labels: comma separated labels for highlight.
  * - iteration_start: which iteration to start counting from.
  * - date_start: what date is important to start observing the project.
+ * - burndown_iterations: how many past iterations the burn-down plots, optional.
  * @version 1.0
  * @author Matheus Borges Teixeira
  */
@@ -56,10 +56,12 @@ public class Config extends HttpServlet {
 		PrintWriter page = response.getWriter();
 		Cookie[] cookies = request.getCookies();
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - Configurations"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - Configurations");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
 		page.println("  <div class='content' id='text'>");
 		
 		page.println("    <h1>Configuring a project to Pivotal Analytics</h1>");
@@ -110,11 +112,21 @@ public class Config extends HttpServlet {
 		}
 		page.println("      <input id='date_start' name='date_start' type='text' size='100%' /><br>");
 		
+		page.println("      <h3>Iterations in the Burn-Down:</h3>");
+		if(CookieManager.matchCookie(cookies, "burndown_iterations") != null){
+			page.println("      Current value: "+CookieManager.matchCookie(cookies, "burndown_iterations").getValue()+"<br>");
+		}
+		else{
+			page.println("      Current value: "+Overview.BURNDOWN_ITERATIONS+" (default)<br>");
+		}
+		page.println("      <input id='burndown_iterations' name='burndown_iterations' type='text' size='100%' /><br>");
+		
 		page.println("      <input type='submit' name='button' value='Save Configurations' />");
 		page.println("    </form>");
 		page.println("  </div>");
 
-		page.println(CommonHTML.getFooter("  "));
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
 		page.println("</body>");
 		page.println("</html>");
@@ -140,16 +152,13 @@ public class Config extends HttpServlet {
 		if(request.getParameter("date_start").length()>0){
 			data_to_save.put("date_start", request.getParameter("date_start"));
 		}
+		String iterations = request.getParameter("burndown_iterations");
+		if(iterations != null && iterations.length()>0){
+			data_to_save.put("burndown_iterations", iterations);
+		}
 		for(Cookie c: CookieManager.createCookies(data_to_save)){
 			response.addCookie(c);
 		}
-		Cookie cproject = CookieManager.matchCookie(request.getCookies(), "project_id");
-		Cookie ctoken = CookieManager.matchCookie(request.getCookies(), "token");
-		if(cproject != null && ctoken!= null){
-			int projectID = new Integer(cproject.getValue()).intValue();
-			String token = ctoken.getValue();
-			DataSource.flushProject(projectID,token);
-		}
 		response.sendRedirect("Overview");
 	}
 
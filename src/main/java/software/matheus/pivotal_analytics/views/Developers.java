@@ -36,13 +36,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
 import software.matheus.pivotal_analytics.managers.CalculationManager;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
+import software.matheus.pivotal_analytics.pivotal.OwnerStatistics;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
 import software.matheus.pivotal_analytics.pivotal.Ticket;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 import software.matheus.pivotal_analytics.printers.SVGPrinter;
 
 /**
@@ -68,7 +73,7 @@ public class Developers extends HttpServlet {
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		Cookie[] cookies = request.getCookies();
+		final Cookie[] cookies = request.getCookies();
 		
 		if(!CookieManager.countCookies(request.getCookies())){
 			response.sendRedirect("Config");
@@ -79,98 +84,45 @@ public class Developers extends HttpServlet {
 		
 		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
 		
-		Project project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
-		TicketSet active = project.getStories().queryActive();
+		final Project project;
+		try{
+			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+		}
+		catch (AccessUnavailableException e){
+			response.sendError(503,"Project access could not be checked, try again later!");
+			return;
+		}
+		if(project == null){
+			response.sendError(403,"Project could not be accessed!");
+			return;
+		}
+		/* One state for the whole request, even if synchronized meanwhile */
+		final ProjectState state = project.getState();
+		
+		final String dev = request.getParameter("dev");
+		String[] settings = {
+			dev,
+			CookieManager.readCookie(cookies, "date_start"),
+			CookieManager.readCookie(cookies, "special_labels")};
+		if(CacheManager.notModified(request, response, CacheManager.tag(state, "Developers", settings))){
+			return;
+		}
 		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - Developers"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - Developers");
+		page.println();
 		page.println("<body>");
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
 		
-		if(request.getParameter("dev") != null && request.getParameter("dev").length()>0){
-			/** There is a developer selected, so print the overview **/
-			page.println("  <div class='content'>");
-			page.println("    <h1>Developers Overview</h1>");
-			
-			page.println("    <center>");
-
-			for(String s: active.queryUniqueOwners()){
-					page.print("<a href='Developers?dev="+s+"'>"+s+"</a> | ");	
+		FragmentCache.print(page, state, "Developers", settings, new FragmentCache.Fragment(){
+			public void render(PrintWriter content){
+				printContent(content, dev, cookies, state);
 			}
-			page.println("<a href='Developers'>All</a><br>");
-					
-			page.println("    </center>");
-			
-			printDeveloper(request.getParameter("dev"),page,active,cookies,project);
-		}
-		else{
-			/** There is no developer selected, so print the task load **/
-			page.println("  <div class='content' id='text'>");
-			page.println("    <h1>Developers Overview</h1>");
-			
-			for(String s: active.queryUniqueOwners()){
-				TicketSet currentdev = project.getStories().queryOwner(s);
-				long now = System.currentTimeMillis();
-				long start = now;
-				/** Count start from oldest completed task **/
-				if(currentdev.queryOldestAccepted() != null){
-					start = currentdev.queryOldestAccepted().getAccepted().getTime();
-				}
-				
-				/** Sum up ticket count and story points **/
-				int storypoints = 0;
-				int ticketcount = 0;
-				for(Ticket t: currentdev.queryAcceptedBetween(new Date(start), new Date(now))){
-					if(t.getType().compareTo("feature") == 0){
-						storypoints += t.getPoints(); 
-					}
-					ticketcount += 1;
-				}
-				
-				/** Gather current assignments **/
-				int current_storypoints = 0;
-				int current_ticketcount = 0;
-				for(Ticket t: currentdev.queryActive()){
-					if(t.getType().compareTo("feature") == 0){
-						current_storypoints += t.getPoints(); 
-					}
-					current_ticketcount += 1;
-				}
-				
-				int oneday = (1000*60*60*24);
-				int size = (int) (project.getIterationSize()/oneday);
-				int days = (int)((now - start)/oneday);
-				
-				/** The load is calculated using two informations
-				 * 1) The amount of tickets that the developer can deliver.
-				 * 2) The amount of story points per assigned ticket.
-				 * 
-				 * Current data is compared to history average to define loads.
-				 * Average load from the two systems is used to draw the bar.
-				 * 
-				 * The project iteration size is taken into consideration!
-				 */
-				
-				float average_storyperticket = storypoints/(float)ticketcount;
-				float average_ticketperiteration = ticketcount*size/(float) days;
-				float current_storyperticket = current_storypoints/(float)current_ticketcount;
-				float load = ((current_storyperticket/average_storyperticket)+(current_ticketcount/average_ticketperiteration))/2;
-				
-				/** Print the load bar, set up to max 20% extra **/
-				page.println("    <table cellspacing=0 cellpadding=2 border=0>");
-				page.println("      <tr>");
-				page.println("        <td>");
-				page.println(SVGPrinter.horizontalLoadBar(load, 1.2f, 30, 200, "          "));
-				page.println("        </td>");
-				page.println("        <td><a href='Developers?dev="+s+"'>"+s+"</a></td>");
-				page.println("      </tr>");
-			}
-			page.println("    </table>");
-		}	
+		});
 		
-		page.println("  </div>");
-
-		page.println(CommonHTML.getFooter("  "));
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
 		page.println("</body>");
 		page.println("</html>");
@@ -185,11 +137,11 @@ public class Developers extends HttpServlet {
 	 * @param cookies provides the configuration cookies.
 	 * @param p specifies the project which is currently active.
 	 */
-	private void printDeveloper(String s, PrintWriter page, TicketSet active, Cookie[] cookies, Project p){
-		String content = new String();
+	private void printDeveloper(String s, PrintWriter page, TicketSet active, Cookie[] cookies, ProjectState p){
 		TicketSet currentdev = active.queryOwner(s);
+		CommonHTML.openWindow(page,"developer",s,"    ");
 		/** Starting status box**/
-		content +="<div class='developer_status'>\n";		
+		page.print("<div class='developer_status'>\n");
 		
 		/** Type Distribution **/
 		Map<String,float[]> piedata;
@@ -199,7 +151,8 @@ public class Developers extends HttpServlet {
 			float percentage = temp.size()/(float)currentdev.size();
 			piedata.put(t+"s", new float[]{percentage});
 		}
-		content += SVGPrinter.percentualPieChart(piedata,300,200,"              ")+"\n";
+		SVGPrinter.percentualPieChart(page,piedata,300,200,"              ");
+		page.print("\n");
 		
 		/** Status Distribution **/
 		piedata = new LinkedHashMap<String,float[]>();
@@ -208,7 +161,8 @@ public class Developers extends HttpServlet {
 			float percentage = temp.size()/(float)currentdev.size();
 			piedata.put(t, new float[]{percentage});
 		}
-		content += SVGPrinter.percentualPieChart(piedata,300,200,"              ")+"\n";
+		SVGPrinter.percentualPieChart(page,piedata,300,200,"              ");
+		page.print("\n");
 		
 		/** Tag Distribution **/
 		piedata = new LinkedHashMap<String,float[]>();
@@ -220,10 +174,11 @@ public class Developers extends HttpServlet {
 			sum += temp.size();
 		}
 		piedata.put("others", new float[]{(currentdev.size()-sum)/(float)currentdev.size()});		
-		content += SVGPrinter.percentualPieChart(piedata,300,200,"              ")+"\n";
+		SVGPrinter.percentualPieChart(page,piedata,300,200,"              ");
+		page.print("\n");
 		
 		/** Closing status box **/
-		content +="</div>\n";
+		page.print("</div>\n");
 		
 		/** Calculating performance related data **/
 		long now = System.currentTimeMillis();
@@ -302,9 +257,10 @@ public class Developers extends HttpServlet {
 		data.put("Chores Completed", chores);
 
 		/** Printing performance HTML data **/
-		content += "<div class='developer_performance'>\n";
-		content += SVGPrinter.labeledLineGraph(data, 0, top_limit, labels, "        ",2)+"\n";
-		content += "</div>\n";
+		page.print("<div class='developer_performance'>\n");
+		SVGPrinter.labeledLineGraph(page,data, 0, top_limit, labels, "        ",2);
+		page.print("\n");
+		page.print("</div>\n");
 		
 		/** Based on performance, calculating velocities **/
 		data = new LinkedHashMap<String,int[]>();
@@ -312,14 +268,100 @@ public class Developers extends HttpServlet {
 		data.put("Velocity in Story Count", CalculationManager.calculateVelocity(features));
 		
 		/** Printing velocity HTML data **/
-		content += "<div class='developer_performance'>";
-		content += SVGPrinter.labeledLineGraph(data, 0, top_limit, labels, "        ",2)+"\n";
-		content += "</div>";
+		page.print("<div class='developer_performance'>");
+		SVGPrinter.labeledLineGraph(page,data, 0, top_limit, labels, "        ",2);
+		page.print("\n");
+		page.print("</div>");
 		
 		/** Printing stories HTML data **/
-		content += "<div class='developer_stories'>";
-		content += CommonHTML.ticketTable("Recent assigned stories", currentdev, "              ");
-		content += "</div>";
-		page.println(CommonHTML.wrapWindow("developer",s, content,"    "));
+		page.print("<div class='developer_stories'>");
+		CommonHTML.ticketTable(page,"Recent assigned stories", currentdev, "              ");
+		page.print("</div>");
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
+	}
+	
+	/**
+	 * Prints the content of the page: the details of a developer, or the load of all.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param dev defines the developer selected, null for all.
+	 * @param cookies provides the configuration cookies.
+	 * @param project specifies the project which is currently active.
+	 */
+	private void printContent(PrintWriter page, String dev, Cookie[] cookies, ProjectState project){
+		TicketSet active = project.getStories().queryActive();
+		if(dev != null && dev.length()>0){
+			/** There is a developer selected, so print the overview **/
+			page.println("  <div class='content'>");
+			page.println("    <h1>Developers Overview</h1>");
+			
+			page.println("    <center>");
+
+			for(String s: active.queryUniqueOwners()){
+					page.print("<a href='Developers?dev="+s+"'>"+s+"</a> | ");	
+			}
+			page.println("<a href='Developers'>All</a><br>");
+					
+			page.println("    </center>");
+			
+			printDeveloper(dev,page,active,cookies,project);
+		}
+		else{
+			/** There is no developer selected, so print the task load **/
+			page.println("  <div class='content' id='text'>");
+			page.println("    <h1>Developers Overview</h1>");
+			
+			OwnerStatistics statistics = project.getStories().queryOwnerStatistics();
+			for(String s: active.queryUniqueOwners()){
+				long now = System.currentTimeMillis();
+				OwnerStatistics.Summary summary = statistics.summarize(s, now);
+				long start = now;
+				/** Count start from oldest completed task **/
+				if(summary.getFirstAccepted() != null){
+					start = summary.getFirstAccepted().getTime();
+				}
+				
+				/** Sum up ticket count and story points **/
+				int storypoints = summary.getAcceptedPoints();
+				int ticketcount = summary.getAcceptedCount();
+				
+				/** Gather current assignments **/
+				int current_storypoints = summary.getActivePoints();
+				int current_ticketcount = summary.getActiveCount();
+				
+				int oneday = (1000*60*60*24);
+				int size = (int) (project.getIterationSize()/oneday);
+				int days = (int)((now - start)/oneday);
+				
+				/** The load is calculated using two informations
+				 * 1) The amount of tickets that the developer can deliver.
+				 * 2) The amount of story points per assigned ticket.
+				 * 
+				 * Current data is compared to history average to define loads.
+				 * Average load from the two systems is used to draw the bar.
+				 * 
+				 * The project iteration size is taken into consideration!
+				 */
+				
+				float average_storyperticket = storypoints/(float)ticketcount;
+				float average_ticketperiteration = ticketcount*size/(float) days;
+				float current_storyperticket = current_storypoints/(float)current_ticketcount;
+				float load = ((current_storyperticket/average_storyperticket)+(current_ticketcount/average_ticketperiteration))/2;
+				
+				/** Print the load bar, set up to max 20% extra **/
+				page.println("    <table cellspacing=0 cellpadding=2 border=0>");
+				page.println("      <tr>");
+				page.println("        <td>");
+				SVGPrinter.horizontalLoadBar(page,load, 1.2f, 30, 200, "          ");
+				page.println();
+				page.println("        </td>");
+				page.println("        <td><a href='Developers?dev="+s+"'>"+s+"</a></td>");
+				page.println("      </tr>");
+			}
+			page.println("    </table>");
+		}	
+		
+		page.println("  </div>");
 	}
 }
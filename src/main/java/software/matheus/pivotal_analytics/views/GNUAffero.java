@@ -44,10 +44,12 @@ public class GNUAffero extends HttpServlet {
 		PrintWriter page = response.getWriter();
 		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - GNU Affero General Public License"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - GNU Affero General Public License");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
 		page.println("  <div class='affero content' id='text'>");
 		
 		page.println("    <h3>GNU AFFERO GENERAL PUBLIC LICENSE</h3>");
@@ -172,7 +174,8 @@ public class GNUAffero extends HttpServlet {
 		page.println("    </center>");
 		page.println("  </div>");
 
-		page.println(CommonHTML.getFooter("  "));
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
 		page.println("</body>");
 		page.println("</html>");
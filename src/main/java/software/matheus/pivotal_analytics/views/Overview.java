@@ -37,13 +37,17 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
 import software.matheus.pivotal_analytics.managers.CalculationManager;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.pivotal.Project;
-import software.matheus.pivotal_analytics.pivotal.Ticket;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
+import software.matheus.pivotal_analytics.pivotal.TicketBuckets;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 import software.matheus.pivotal_analytics.printers.SVGPrinter;
 
 /**
@@ -64,12 +68,15 @@ import software.matheus.pivotal_analytics.printers.SVGPrinter;
 public class Overview extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	
+	/** Iterations plotted in the burn-down when the user did not configure it **/
+	public static int BURNDOWN_ITERATIONS = 8;
+	
 	/**
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		PrintWriter page = response.getWriter();
-		Cookie[] cookies = request.getCookies();
+		final Cookie[] cookies = request.getCookies();
 				
 		if(!CookieManager.countCookies(request.getCookies())){
 			response.sendRedirect("Config");
@@ -77,16 +84,62 @@ public class Overview extends HttpServlet {
 		}
 		
 		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
-		Project project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
-		TicketSet non_resolved = project.getStories().queryActive();
+		final Project project;
+		try{
+			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+		}
+		catch (AccessUnavailableException e){
+			response.sendError(503,"Project access could not be checked, try again later!");
+			return;
+		}
+		if(project == null){
+			response.sendError(403,"Project could not be accessed!");
+			return;
+		}
+		/* One state for the whole request, even if synchronized meanwhile */
+		final ProjectState state = project.getState();
 		
 		 
 		
+		String[] settings = {
+			CookieManager.readCookie(cookies, "date_start"),
+			CookieManager.readCookie(cookies, "iteration_start"),
+			CookieManager.readCookie(cookies, "burndown_iterations"),
+			CookieManager.readCookie(cookies, "special_labels")};
+		if(CacheManager.notModified(request, response, CacheManager.tag(state, "Overview", settings))){
+			return;
+		}
+		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - Overview"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - Overview");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
+		
+		FragmentCache.print(page, state, "Overview", settings, new FragmentCache.Fragment(){
+			public void render(PrintWriter content){
+				printContent(content, cookies, state);
+			}
+		});
+		
+		CommonHTML.printFooter(page,"  ");
+		page.println();
+		
+		page.println("</body>");
+		page.println("</html>");
+	}
+	
+	/**
+	 * Prints the content of the page: all graphs and the current status.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param cookies provides the configuration cookies.
+	 * @param project specifies the project which is currently active.
+	 */
+	private void printContent(PrintWriter page, Cookie[] cookies, ProjectState project){
+		TicketSet non_resolved = project.getStories().queryActive();
 		page.println("  <div class='content'>");
 		
 		
@@ -116,31 +169,26 @@ public class Overview extends HttpServlet {
 			start = configured_time;
 		}
 		
-		int[] features = new int[(int)((now-start)/oneweek)+1];
-		int[] story_points = new int[(int)((now-start)/oneweek)+1];
+		int weeks = (int)((now-start)/oneweek)+1;
+		TicketBuckets buckets = all.aggregate(start, oneweek, weeks, TicketBuckets.TYPE);
+		int[] features = buckets.getAccepted("feature");
+		int[] story_points = buckets.getPoints("feature");
 		int k = 0;
-		labels = new String[(int)((now-start)/oneweek)+1];
+		labels = new String[weeks];
 		int max_points = 0;
 		long time = start;
 		while(time < now){
 			Date current = new Date(time);
 			Date next = new Date(time+oneweek);
 			
-			features[k] = all.queryType("feature").queryAcceptedBetween(current, next).size();
-			int points = 0;
-			for(Ticket t: all.queryType("feature").queryAcceptedBetween(current, next)){
-				points += t.getPoints();
-			}
-			story_points[k] = points;
-			
 			GregorianCalendar help = new GregorianCalendar();
 			help.setTime(current);
 			labels[k] = help.get(Calendar.YEAR)+"."+(help.get(Calendar.MONTH)+1)+"."+help.get(Calendar.DATE)+" - ";
 			help.setTime(next);
 			labels[k] += (help.get(Calendar.MONTH)+1)+"."+help.get(Calendar.DATE);
 			
-			if(points > max_points){
-				max_points = points;
+			if(story_points[k] > max_points){
+				max_points = story_points[k];
 			}
 			time+=oneweek;
 			k++;
@@ -150,43 +198,18 @@ public class Overview extends HttpServlet {
 		data.put("Velocity in Story Points", CalculationManager.calculateVelocity(story_points));
 		data.put("Velocity in Story Count", CalculationManager.calculateVelocity(features));
 		
-		page.println(CommonHTML.wrapWindow("overview","Team Velocity for Features", SVGPrinter.labeledLineGraph(data, 0, max_points, labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"overview","Team Velocity for Features","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max_points, labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
-		time = start;
-		int[] max = new int[(int)((now-time)/oneweek)+1];
-		int[] min = new int[(int)((now-time)/oneweek)+1];
-		int[] avg = new int[(int)((now-time)/oneweek)+1];
+		int[] max = buckets.getLongest(null);
+		int[] min = buckets.getShortest(null);
+		int[] avg = buckets.getAverage(null);
 		
-		k = 0;
 		max_points = 0;
-		while(time < now){
-			Date current = new Date(time);
-			Date next = new Date(time+oneweek);
-			
-			max[k] = 0;
-			min[k] = 999999999;
-			int total = all.queryAcceptedBetween(current, next).size();
-						
-			int tickets_time = 0;
-			for(Ticket t: all.queryAcceptedBetween(current, next)){
-				long difference = (t.getAccepted().getTime() - t.getCreated().getTime())/oneday;
-				tickets_time += (int) difference;
-				if(difference > max[k]) max[k] = (int) difference;
-				if(difference < min[k]) min[k] = (int) difference;
-				if(difference > max_points) max_points = (int) difference;
-			}
-			/* To avoid jumps up in the graph in case nothing is delivered*/
-			if(min[k]==999999999) min[k] = 0;
-			
-			if(total > 0){
-				avg[k] = tickets_time/total;
-			}
-			else{
-				avg[k] = 0;
-			}
-			
-			time+=oneweek;
-			k++;
+		for(int longest: max){
+			if(longest > max_points) max_points = longest;
 		}
 		
 		data = new LinkedHashMap<String,int[]>();
@@ -194,7 +217,10 @@ public class Overview extends HttpServlet {
 		data.put("Average", avg);
 		data.put("Min", min);
 		
-		page.println(CommonHTML.wrapWindow("overview","Request Response Time in Days", SVGPrinter.labeledLineGraph(data, 0, max_points, labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"overview","Request Response Time in Days","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max_points, labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
 		long oldest = System.currentTimeMillis();
 		if(all.queryOldestActive() != null){
@@ -206,9 +232,10 @@ public class Overview extends HttpServlet {
 		labels = new String[days];
 		int constant_open = all.queryCreatedBetween(new Date(0),new Date(oldest)).size();
 		int constant_closed = all.queryAcceptedBetween(new Date(0),new Date(oldest)).size();
+		int[][] flow = all.cumulativeFlow(oldest, oneday, days);
 		for(int i = 0; i < days; i++){
-			open[i] = all.queryCreatedBetween(new Date(oldest), new Date(oldest+i*(oneday))).size() + constant_open;
-			closed[i] = all.queryCreatedAndAcceptedBetween(new Date(oldest), new Date(oldest+i*(oneday))).size() + constant_closed;
+			open[i] = flow[0][i] + constant_open;
+			closed[i] = flow[1][i] + constant_closed;
 			if(i % 7 == 0){
 				GregorianCalendar help = new GregorianCalendar();
 				help.setTime(new Date(oldest+i*(oneday)));
@@ -223,14 +250,27 @@ public class Overview extends HttpServlet {
 		data.put("Opened", open);
 		data.put("Closed", closed);
 		
-		page.println(CommonHTML.wrapWindow("overview","Backlog Daily Activity", SVGPrinter.labeledLineGraph(data, closed[0], open[open.length-1], labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"overview","Backlog Daily Activity","    ");
+		SVGPrinter.labeledLineGraph(page,data, closed[0], open[open.length-1], labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
-		//TODO Optimize performance so more iterations can be plotted.
-		int iteration_start = project.getCurrentIteration()- 8;
+		int plotted = BURNDOWN_ITERATIONS;
+		try{
+			Cookie setting = CookieManager.matchCookie(cookies, "burndown_iterations");
+			if(setting != null){
+				plotted = Math.max(1, Integer.parseInt(setting.getValue()));
+			}
+		}
+		catch (NumberFormatException e){
+			System.err.println("[WARNING] Parsing exception on burn-down iterations. Using default "+BURNDOWN_ITERATIONS+".");
+			System.out.println("[WARNING] Parsing exception on burn-down iterations. Using default "+BURNDOWN_ITERATIONS+".");
+		}
+		int iteration_start = project.getCurrentIteration()- plotted;
 		try{
 			iteration_start = new Integer(CookieManager.matchCookie(cookies, "iteration_start").getValue()).intValue();
-			if(project.getCurrentIteration() - iteration_start > 8){
-				iteration_start = project.getCurrentIteration() - 8;
+			if(project.getCurrentIteration() - iteration_start > plotted){
+				iteration_start = project.getCurrentIteration() - plotted;
 			}
 		}
 		catch (NumberFormatException e){
@@ -240,14 +280,15 @@ public class Overview extends HttpServlet {
 		start = project.getStart().getTime() + (iteration_start-1)*project.getIterationSize();
 		data = new LinkedHashMap<String,int[]>();
 		int max_all = 0;
+		int moments = Math.max((int)((now-start)/oneday)+2, 1);
+		int[][] burndown = project.getStories().burnDown(iteration_start, project.getCurrentIteration(), start, oneday, moments);
 		for(int iteration = iteration_start; iteration <= project.getCurrentIteration();iteration++){
-			int[] weekly = new int[(int)((now-start)/oneday)+2];
-			int allstories = project.getStories().queryLabel("["+iteration+"]").size();
+			int[] remaining = burndown[iteration-iteration_start];
+			int[] weekly = new int[moments];
+			int allstories = remaining[0];
 			if(allstories > 0){
 				for(long i = start + (iteration-iteration_start)*project.getIterationSize(); i < now; i+=oneday){
-					int accepted = project.getStories().queryLabel("["+iteration+"]").queryAcceptedBetween(new Date(start), new Date(i)).size();
-					weekly[(int)((i-start)/oneday)] = allstories - accepted;
-					
+					weekly[(int)((i-start)/oneday)] = remaining[(int)((i-start)/oneday)];
 				}
 				if(allstories > max_all){
 					max_all = allstories;
@@ -269,9 +310,12 @@ public class Overview extends HttpServlet {
 			}
 		}
 		
-		page.println(CommonHTML.wrapWindow("overview","Planning Daily Burn-Down", SVGPrinter.labeledLineGraph(data, 0, max_all, labels, "      ",1),"    "));
+		CommonHTML.openWindow(page,"overview","Planning Daily Burn-Down","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max_all, labels, "      ",1);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
-		String s = "";
+		CommonHTML.openWindow(page,"overview_status","Current Status","    ");
 				
 		HashMap<String,float[]> piechart;
 		piechart = new HashMap<String,float[]>();
@@ -281,17 +325,17 @@ public class Overview extends HttpServlet {
 		piechart.put("backlog", new float[]{non_resolved.queryState("unstarted").size()/total});
 		piechart.put("started", new float[]{rest/total});
 		
-		s+="    <table width='100%' cellpadding=0 cellspacing=0 border=0>\n";
-		s+="      <tr>\n";
-		s+="        <td width='300' align='center' valign='top'>\n";
-		s+=SVGPrinter.percentualPieChart(piechart,300,200,"          ");
+		page.print("    <table width='100%' cellpadding=0 cellspacing=0 border=0>\n");
+		page.print("      <tr>\n");
+		page.print("        <td width='300' align='center' valign='top'>\n");
+		SVGPrinter.percentualPieChart(page,piechart,300,200,"          ");
 
 		piechart = new HashMap<String,float[]>();
 		piechart.put("bugs", new float[]{non_resolved.queryType("bug").size()/total});
 		piechart.put("chores", new float[]{non_resolved.queryType("chore").size()/total});
 		piechart.put("features", new float[]{non_resolved.queryType("feature").size()/total});
 		piechart.put("releases", new float[]{non_resolved.queryType("release").size()/total});
-		s+=SVGPrinter.percentualPieChart(piechart,300,200,"          ");
+		SVGPrinter.percentualPieChart(page,piechart,300,200,"          ");
 		
 		piechart = new HashMap<String,float[]>();
 		int sum = 0;
@@ -303,24 +347,21 @@ public class Overview extends HttpServlet {
 		}
 		piechart.put("others", new float[]{(non_resolved.size()-sum)/(float)non_resolved.size()});
 				
-		s+=SVGPrinter.percentualPieChart(piechart,300,200,"          ");
+		SVGPrinter.percentualPieChart(page,piechart,300,200,"          ");
 		
-		s+="        </td>\n";
-		s+="      </tr>\n";
-		s+="      <tr>\n";
-		s+="        <td colspan='2'>\n";
-		s+=CommonHTML.ticketTable("Open Stories", non_resolved, "          ")+"\n";
-		s+="        </td>\n";
-		s+="      </tr>\n";
-		s+="    </table>\n";
+		page.print("        </td>\n");
+		page.print("      </tr>\n");
+		page.print("      <tr>\n");
+		page.print("        <td colspan='2'>\n");
+		CommonHTML.ticketTable(page,"Open Stories", non_resolved, "          ");
+		page.print("\n");
+		page.print("        </td>\n");
+		page.print("      </tr>\n");
+		page.print("    </table>\n");
 		
-		page.println(CommonHTML.wrapWindow("overview_status","Current Status", s,"    "));
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
 		page.println("  </div>");
-
-		page.println(CommonHTML.getFooter("  "));
-		
-		page.println("</body>");
-		page.println("</html>");
 	}
 }
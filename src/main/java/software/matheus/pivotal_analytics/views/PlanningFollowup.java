@@ -32,11 +32,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 import software.matheus.pivotal_analytics.printers.SVGPrinter;
 
 /**
@@ -69,14 +73,27 @@ public class PlanningFollowup extends HttpServlet {
 		
 		PrintWriter page = response.getWriter();
 		Project project = null;
+		ProjectState state = null;
 		int iteration_start = 1;
 		try{
 			int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
-			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+			try{
+				project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+			}
+			catch (AccessUnavailableException e){
+				response.sendError(503,"Project access could not be checked, try again later!");
+				return;
+			}
+			if(project == null){
+				response.sendError(403,"Project could not be accessed!");
+				return;
+			}
+			/* One state for the whole request, even if synchronized meanwhile */
+			state = project.getState();
 			
 			iteration_start = new Integer(CookieManager.matchCookie(cookies, "iteration_start").getValue()).intValue();
-			if(project.getCurrentIteration() - iteration_start > 9){
-				iteration_start = project.getCurrentIteration() - 9;
+			if(state.getCurrentIteration() - iteration_start > 9){
+				iteration_start = state.getCurrentIteration() - 9;
 			}
 		}
 		catch (NumberFormatException e){
@@ -89,12 +106,44 @@ public class PlanningFollowup extends HttpServlet {
 			return;
 		}
 		
+		final String chosen = request.getParameter("iteration");
+		final int first_iteration = iteration_start;
+		final ProjectState shown = state;
+		String[] settings = {chosen, String.valueOf(iteration_start)};
+		if(CacheManager.notModified(request, response, CacheManager.tag(shown, "PlanningFollowup", settings))){
+			return;
+		}
+		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - Planning Follow Up"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - Planning Follow Up");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
+		
+		FragmentCache.print(page, shown, "PlanningFollowup", settings, new FragmentCache.Fragment(){
+			public void render(PrintWriter content){
+				printContent(content, chosen, first_iteration, shown);
+			}
+		});
+		
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
+		page.println("</body>");
+		page.println("</html>");
+	}
+	
+	/**
+	 * Prints the content of the page: the follow up of the chosen iteration and past distributions.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param chosen defines the iteration chosen, null for the current one.
+	 * @param iteration_start specifies the first iteration plotted.
+	 * @param project specifies the project which is currently active.
+	 */
+	private void printContent(PrintWriter page, String chosen, int iteration_start, ProjectState project){
 		page.println("  <div class='content' id='text'>");
 		
 		
@@ -112,8 +161,8 @@ public class PlanningFollowup extends HttpServlet {
 		page.println("    </p>");
 		//TODO Remove indentations from strings, as it is useless.
 		int iteration = project.getCurrentIteration();
-		if(request.getParameter("iteration") != null && request.getParameter("iteration").length()>0){
-			iteration = new Integer(request.getParameter("iteration")).intValue();
+		if(chosen != null && chosen.length()>0){
+			iteration = new Integer(chosen).intValue();
 		}
 		TicketSet completed = project.getStories().queryAcceptedBetween(new Date(project.getStart().getTime()+(iteration-1)*project.getIterationSize()), new Date(project.getStart().getTime()+(iteration)*project.getIterationSize()));
 		TicketSet planned = project.getStories().queryLabel("["+iteration+"]");
@@ -127,11 +176,14 @@ public class PlanningFollowup extends HttpServlet {
 			page.println("    <h2>No stories planned for iteration "+iteration+"</h2>");
 		}
 		
-		page.println(CommonHTML.ticketTable("Stories Planned for Iteration "+iteration, planned, "      "));
+		CommonHTML.ticketTable(page,"Stories Planned for Iteration "+iteration, planned, "      ");
+		page.println();
 		page.println("      <br>");
-		page.println(CommonHTML.ticketTable("Sidetracking Stories created and completed during Iteration "+iteration, sidetracked, "      "));
+		CommonHTML.ticketTable(page,"Sidetracking Stories created and completed during Iteration "+iteration, sidetracked, "      ");
+		page.println();
 		page.println("      <br>");
-		page.println(CommonHTML.ticketTable("Previously Accumulated Stories decluttered during Iteration "+iteration, acumulated, "      "));
+		CommonHTML.ticketTable(page,"Previously Accumulated Stories decluttered during Iteration "+iteration, acumulated, "      ");
+		page.println();
 		page.println("      <br>");
 		
 		page.println("    <h2>Past distributions for plannings</h2>");
@@ -153,7 +205,8 @@ public class PlanningFollowup extends HttpServlet {
 				three.put("Planned", new float[]{(thisiteration)/all});
 				page.println("        <td width='33%'>");
 				page.println("          <h4>Iteration "+i+"'s completed tasks from:</h4>");
-				page.println(SVGPrinter.percentualPieChart(three, 300, 300, "          "));
+				SVGPrinter.percentualPieChart(page,three, 300, 300, "          ");
+				page.println();
 				page.println("        </td>");
 			}
 			else{
@@ -169,10 +222,5 @@ public class PlanningFollowup extends HttpServlet {
 		page.println("      </tr>");
 		page.println("    </table>");
 		page.println("  </div>");
-
-		page.println(CommonHTML.getFooter("  "));
-		
-		page.println("</body>");
-		page.println("</html>");
 	}
 }
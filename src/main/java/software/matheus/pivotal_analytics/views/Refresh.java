@@ -29,13 +29,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
 
 /**
  * The {@code Refresh} class serves Pivotal Analytics to reload projects.
- * No page is returned, simply caches are released and user redirected.
+ * No page is returned, simply caches are synchronized and user redirected.
+ * When purging, caches are released and a confirmation page is returned.
  *  
  * @version 1.0
  * @author Matheus Borges Teixeira
@@ -57,12 +59,19 @@ public class Refresh extends HttpServlet {
 		
 		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
 		String token = CookieManager.matchCookie(cookies, "token").getValue();
-		DataSource.flushProject(projectID,token);
 		if(request.getParameter("purge") != null){
+			try{
+				DataSource.flushProject(projectID,token);
+			}
+			catch (AccessUnavailableException e){
+				response.sendError(503,"Project access could not be checked, try again later!");
+				return;
+			}
 			PrintWriter page = response.getWriter();
 			
 			page.println("<html>");
-			page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - Configurations"));
+			CommonHTML.printBasicHeaders(page,"Pivotal Analytics - Configurations");
+			page.println();
 			page.println("<body>");
 			Cookie c = null;
 			if(CookieManager.matchCookie(cookies, "token") != null){
@@ -100,18 +109,34 @@ public class Refresh extends HttpServlet {
 				c.setHttpOnly(true);
 				response.addCookie(c);
 			}
-			page.println(CommonHTML.getMenu("  "));
+			if(CookieManager.matchCookie(cookies, "burndown_iterations") != null){
+				c = CookieManager.matchCookie(cookies, "burndown_iterations");
+				c.setMaxAge(0);
+				c.setSecure(true);
+				c.setHttpOnly(true);
+				response.addCookie(c);
+			}
+			CommonHTML.printMenu(page,"  ");
+			page.println();
 			page.println("  <div class='content' id='text'>");
 			page.println("      <h1>All your data was flushed!</h1>");
 			page.println("      <p>Your project data was flushed from our caches and all cookies deleted.</p>");
 			page.println("  </div>");
 
-			page.println(CommonHTML.getFooter("  "));
+			CommonHTML.printFooter(page,"  ");
+			page.println();
 			
 			page.println("</body>");
 			page.println("</html>");
 		}
 		else{
+			try{
+				DataSource.syncProject(projectID,token);
+			}
+			catch (AccessUnavailableException e){
+				response.sendError(503,"Project access could not be checked, try again later!");
+				return;
+			}
 			response.sendRedirect(request.getHeader("referer"));		
 		}
 	}
@@ -30,12 +30,16 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
 import software.matheus.pivotal_analytics.pivotal.Ticket;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 import software.matheus.pivotal_analytics.printers.SVGPrinter;
 
 /**
@@ -74,14 +78,65 @@ public class Starvation extends HttpServlet {
 		}
 		
 		PrintWriter page = response.getWriter();
+		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
+		final Project project;
+		try{
+			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+		}
+		catch (AccessUnavailableException e){
+			response.sendError(503,"Project access could not be checked, try again later!");
+			return;
+		}
+		if(project == null){
+			response.sendError(403,"Project could not be accessed!");
+			return;
+		}
+		/* One state for the whole request, even if synchronized meanwhile */
+		final ProjectState state = project.getState();
+		
+		final String filter_setting = request.getParameter("filter");
+		String[] settings = {filter_setting};
+		if(CacheManager.notModified(request, response, CacheManager.tag(state, "Starvation", settings))){
+			return;
+		}
+		
+		page.println("<html>");
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - Starvation");
+		page.println();
+		page.println("<body>");
+		
+		CommonHTML.printMenu(page,"  ");
+		page.println();
+		
+		FragmentCache.print(page, state, "Starvation", settings, new FragmentCache.Fragment(){
+			public void render(PrintWriter content){
+				printContent(content, filter_setting, state);
+			}
+		});
+		
+		CommonHTML.printFooter(page,"  ");
+		page.println();
+		
+		page.println("</body>");
+		page.println("</html>");
+	}
+	
+	/**
+	 * Prints the content of the page: the stories starving in the chosen period.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param filter_setting defines the period chosen, null for all.
+	 * @param project specifies the project which is currently active.
+	 */
+	private void printContent(PrintWriter page, String filter_setting, ProjectState project){
 		long today = System.currentTimeMillis();
 		long oneday = 24*60*60*1000;
 		
 		Date start = null;
 		Date end = null;
 		
-		if(request.getParameter("filter") != null && request.getParameter("filter").length()>0){
-			int filter = new Integer(request.getParameter("filter")).intValue();
+		if(filter_setting != null && filter_setting.length()>0){
+			int filter = new Integer(filter_setting).intValue();
 			long now = System.currentTimeMillis();
 			switch(filter){
 				case LESS_ONE_WEEK:
@@ -115,17 +170,9 @@ public class Starvation extends HttpServlet {
 			end = new Date(System.currentTimeMillis());
 		}
 		
-		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
-		Project project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
 		TicketSet queryUnscheduled = project.getStories().queryState("unscheduled");
 		queryUnscheduled = queryUnscheduled.queryCreatedBetween(start, end);
 		
-		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - Starvation"));
-		page.println("<body>");
-		
-		page.println(CommonHTML.getMenu("  "));
-		
 		page.println("  <div class='content' id='text'>");
 		
 		page.println("    <h1>Starvation on the unscheduled stories</h1>");
@@ -152,7 +199,8 @@ public class Starvation extends HttpServlet {
 			}
 			page.println("      <tr>");
 			page.println("        <td>");
-			page.println(SVGPrinter.horizontalProgressBar(help, 365, 20, 300, color, "black", "        "));
+			SVGPrinter.horizontalProgressBar(page,help, 365, 20, 300, color, "black", "        ");
+			page.println();
 			page.println("        </td>");
 			page.println("        <td><img src='icons/"+t.getType()+".png' /></td>");
 			page.println("        <td>");
@@ -196,7 +244,8 @@ public class Starvation extends HttpServlet {
 			}
 			page.println("      <tr>");
 			page.println("        <td>");
-			page.println(SVGPrinter.horizontalProgressBar(help, 365, 20, 300, color, "black", "        "));
+			SVGPrinter.horizontalProgressBar(page,help, 365, 20, 300, color, "black", "        ");
+			page.println();
 			page.println("        </td>");
 			page.println("        <td><img src='icons/"+t.getType()+".png' /></td>");
 			page.println("        <td>");
@@ -213,10 +262,5 @@ public class Starvation extends HttpServlet {
 		page.println("    </table>");
 		
 		page.println("  </div>");
-
-		page.println(CommonHTML.getFooter("  "));
-		
-		page.println("</body>");
-		page.println("</html>");
 	}
 }
@@ -36,11 +36,16 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import software.matheus.pivotal_analytics.io.AccessUnavailableException;
 import software.matheus.pivotal_analytics.io.DataSource;
+import software.matheus.pivotal_analytics.managers.CacheManager;
 import software.matheus.pivotal_analytics.managers.CookieManager;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
+import software.matheus.pivotal_analytics.pivotal.TicketBuckets;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.printers.CommonHTML;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 import software.matheus.pivotal_analytics.printers.SVGPrinter;
 
 /**
@@ -60,7 +65,7 @@ public class Throughput extends HttpServlet {
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		Cookie[] cookies = request.getCookies();
+		final Cookie[] cookies = request.getCookies();
 		
 		if(!CookieManager.countCookies(request.getCookies())){
 			response.sendRedirect("Config");
@@ -72,18 +77,56 @@ public class Throughput extends HttpServlet {
 		int projectID = new Integer(CookieManager.matchCookie(cookies, "project_id").getValue()).intValue();
 		
 		/*Queries*/
-		Project project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
-		TicketSet queryAll = project.getStories();
-		TicketSet queryFeatures = queryAll.queryType("feature");
-		TicketSet queryBugs = queryAll.queryType("bug");
-		TicketSet queryChores = queryAll.queryType("chore");
+		final Project project;
+		try{
+			project = DataSource.readProject(projectID,CookieManager.matchCookie(cookies, "token").getValue());
+		}
+		catch (AccessUnavailableException e){
+			response.sendError(503,"Project access could not be checked, try again later!");
+			return;
+		}
+		if(project == null){
+			response.sendError(403,"Project could not be accessed!");
+			return;
+		}
+		/* One state for the whole request, even if synchronized meanwhile */
+		final ProjectState state = project.getState();
+		
+		String[] settings = {CookieManager.readCookie(cookies, "date_start")};
+		if(CacheManager.notModified(request, response, CacheManager.tag(state, "Throughput", settings))){
+			return;
+		}
 		
 		page.println("<html>");
-		page.println(CommonHTML.getBasicHeaders("Pivotal Analytics - "+project.getDisplayName()+" - Throughput"));
+		CommonHTML.printBasicHeaders(page,"Pivotal Analytics - "+project.getDisplayName()+" - Throughput");
+		page.println();
 		page.println("<body>");
 		
-		page.println(CommonHTML.getMenu("  "));
+		CommonHTML.printMenu(page,"  ");
+		page.println();
+		
+		FragmentCache.print(page, state, "Throughput", settings, new FragmentCache.Fragment(){
+			public void render(PrintWriter content){
+				printContent(content, cookies, state);
+			}
+		});
+		
+		CommonHTML.printFooter(page,"  ");
+		page.println();
 		
+		page.println("</body>");
+		page.println("</html>");
+	}
+	
+	/**
+	 * Prints the content of the page: the throughput graphs.
+	 * 
+	 * @param page defines the reference where the page is to be printed.
+	 * @param cookies provides the configuration cookies.
+	 * @param project specifies the project which is currently active.
+	 */
+	private void printContent(PrintWriter page, Cookie[] cookies, ProjectState project){
+		TicketSet queryAll = project.getStories();
 		page.println("  <div class='content'>");
 		
 		page.println("    <h1>Throughput Overview</h1>");
@@ -118,28 +161,19 @@ public class Throughput extends HttpServlet {
 		}
 				
 		/*Buffer for graph data*/
-		int[][] bugs = new int[2][(int) ((now-start)/oneweek+1)];
-		int[][] chores = new int[2][(int) ((now-start)/oneweek)+1];
-		int[][] features = new int[2][(int) ((now-start)/oneweek)+1];
-		int[][] all = new int[2][(int) ((now-start)/oneweek)+1];
-		String[] labels = new String[(int) ((now-start)/oneweek+1)];
+		int weeks = (int)((now-start)/oneweek)+1;
+		TicketBuckets buckets = queryAll.aggregate(start, oneweek, weeks, TicketBuckets.TYPE);
+		int[][] bugs = {buckets.getAccepted("bug"), buckets.getCreated("bug")};
+		int[][] chores = {buckets.getAccepted("chore"), buckets.getCreated("chore")};
+		int[][] features = {buckets.getAccepted("feature"), buckets.getCreated("feature")};
+		int[][] all = {buckets.getAccepted(null), buckets.getCreated(null)};
+		String[] labels = new String[weeks];
 		int max = 0;
 		long i = start;
 		while(i < now){
 			int count = (int)((i - start)/oneweek);
 			Date current = new Date(i);
 			Date next = new Date(i+oneweek);
-			bugs[ACCEPTED][count] = queryBugs.queryAcceptedBetween(current,next).size();
-			bugs[CREATED][count] = queryBugs.queryCreatedBetween(current,next).size();
-			
-			features[ACCEPTED][count] = queryFeatures.queryAcceptedBetween(current,next).size();
-			features[CREATED][count] = queryFeatures.queryCreatedBetween(current,next).size();
-			
-			chores[ACCEPTED][count] = queryChores.queryAcceptedBetween(current,next).size();
-			chores[CREATED][count] = queryChores.queryCreatedBetween(current,next).size();
-			
-			all[ACCEPTED][count] = queryAll.queryAcceptedBetween(current,next).size();
-			all[CREATED][count] = queryAll.queryCreatedBetween(current,next).size();
 			
 			GregorianCalendar help = new GregorianCalendar();
 			help.setTime(current);
@@ -158,31 +192,38 @@ public class Throughput extends HttpServlet {
 		data.put("Accepted Stories", all[ACCEPTED]);
 		data.put("Requested Stories", all[CREATED]);		
 		
-		page.println(CommonHTML.wrapWindow("throughput","Throughput on all stories",SVGPrinter.labeledLineGraph(data, 0, max+10, labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"throughput","Throughput on all stories","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max+10, labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 				
 		data = new LinkedHashMap<String,int[]>();
 		data.put("Accepted Features", features[ACCEPTED]);
 		data.put("Requested Features", features[CREATED]);		
 		
-		page.println(CommonHTML.wrapWindow("throughput","Throughput only for Features",SVGPrinter.labeledLineGraph(data, 0, max+10, labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"throughput","Throughput only for Features","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max+10, labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
 		data = new LinkedHashMap<String,int[]>();
 		data.put("Accepted Bugs", bugs[ACCEPTED]);
 		data.put("Requested Bugs", bugs[CREATED]);		
 		
-		page.println(CommonHTML.wrapWindow("throughput","Throughput only for Bugs",SVGPrinter.labeledLineGraph(data, 0, max+10, labels, "        ",2),"    "));
+		CommonHTML.openWindow(page,"throughput","Throughput only for Bugs","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max+10, labels, "        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
 		data = new LinkedHashMap<String,int[]>();
 		data.put("Accepted Chores", chores[ACCEPTED]);
 		data.put("Requested Chores", chores[CREATED]);		
 		
-		page.println(CommonHTML.wrapWindow("throughput","Throughput only for Chores",SVGPrinter.labeledLineGraph(data, 0, max+10, labels,"        ",2),"    "));
+		CommonHTML.openWindow(page,"throughput","Throughput only for Chores","    ");
+		SVGPrinter.labeledLineGraph(page,data, 0, max+10, labels,"        ",2);
+		CommonHTML.closeWindow(page,"    ");
+		page.println();
 		
 		page.println("  </div>");
-		
-		page.println(CommonHTML.getFooter("  "));
-		
-		page.println("</body>");
-		page.println("</html>");
 	}
 }
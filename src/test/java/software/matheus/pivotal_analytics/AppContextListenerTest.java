@@ -32,4 +32,29 @@ public class AppContextListenerTest {
         assertNotNull(url);
         assertTrue(url.startsWith("http://localhost:"));
     }
+
+    @Test
+    public void testSettingFallsBackWhenMissing() {
+        assertEquals(42, AppContextListener.setting("PA_TEST_MISSING_SETTING", 42));
+    }
+
+    @Test
+    public void testSettingFromSystemProperty() {
+        System.setProperty("pa.test.setting", "7");
+        try {
+            assertEquals(7, AppContextListener.setting("PA_TEST_SETTING", 42));
+        } finally {
+            System.clearProperty("pa.test.setting");
+        }
+    }
+
+    @Test
+    public void testSettingInvalidValueFallsBack() {
+        System.setProperty("pa.test.invalid", "many");
+        try {
+            assertEquals(42, AppContextListener.setting("PA_TEST_INVALID", 42));
+        } finally {
+            System.clearProperty("pa.test.invalid");
+        }
+    }
 }
@@ -0,0 +1,201 @@
+package software.matheus.pivotal_analytics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressionFilterTest {
+
+    private static final String PAGE;
+
+    static {
+        StringBuilder page = new StringBuilder("<html>\n");
+        for (int i = 0; i < 500; i++) {
+            page.append("      <tr><td>row ").append(i).append("</td></tr>\n");
+        }
+        PAGE = page.append("</html>\n").toString();
+    }
+
+    @After
+    public void restoreEnabled() {
+        CompressionFilter.ENABLED = true;
+    }
+
+    private static MockHttpRequest request(String acceptEncoding) {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        if (acceptEncoding != null) headers.put("Accept-Encoding", acceptEncoding);
+        return new MockHttpRequest(null, new HashMap<String, String>(), headers);
+    }
+
+    private static FilterChain writing(final String contentType, final String body) {
+        return new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                if (contentType != null) response.setContentType(contentType);
+                PrintWriter page = response.getWriter();
+                page.print(body);
+            }
+        };
+    }
+
+    /** The mock response keeps each byte written to its stream as one char. **/
+    private static byte[] bytes(MockHttpResponse res) {
+        String output = res.getOutput();
+        byte[] bytes = new byte[output.length()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) output.charAt(i);
+        return bytes;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read = in.read(buffer); read > 0; read = in.read(buffer)) out.write(buffer, 0, read);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertFalse(CompressionFilter.acceptsGzip(null));
+        assertTrue(CompressionFilter.acceptsGzip("gzip, deflate, br"));
+        assertTrue(CompressionFilter.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"));
+        assertTrue(CompressionFilter.acceptsGzip("*"));
+        assertFalse(CompressionFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(CompressionFilter.acceptsGzip("deflate, br"));
+    }
+
+    @Test
+    public void testCompressedAndCompressible() {
+        assertTrue(CompressionFilter.isCompressed("/pa/icons/bug.PNG"));
+        assertFalse(CompressionFilter.isCompressed("/pa/Overview"));
+        assertFalse(CompressionFilter.isCompressed(null));
+        assertTrue(CompressionFilter.isCompressible(null));
+        assertTrue(CompressionFilter.isCompressible("text/html; charset=UTF-8"));
+        assertTrue(CompressionFilter.isCompressible("image/svg+xml"));
+        assertFalse(CompressionFilter.isCompressible("image/png"));
+    }
+
+    @Test
+    public void testPageIsCompressed() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, writing(null, PAGE));
+        assertEquals("gzip", res.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", res.getHeader("Vary"));
+        byte[] compressed = bytes(res);
+        assertTrue(compressed.length * 4 < PAGE.length());
+        assertEquals(PAGE, gunzip(compressed));
+    }
+
+    @Test
+    public void testPageIsPlainWithoutGzip() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("identity"), res, writing(null, PAGE));
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals(PAGE, res.getOutput());
+
+        CompressionFilter.ENABLED = false;
+        res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, writing(null, PAGE));
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals(PAGE, res.getOutput());
+    }
+
+    @Test
+    public void testImagesAreNotCompressed() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, writing("image/png", "PNG"));
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals("PNG", res.getOutput());
+    }
+
+    private static FilterChain listening(final String contentType, final WriteListener listener) {
+        return new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                response.setContentType(contentType);
+                response.getOutputStream().setWriteListener(listener);
+            }
+        };
+    }
+
+    private static final WriteListener LISTENER = new WriteListener() {
+        public void onWritePossible() {}
+        public void onError(Throwable t) {}
+    };
+
+    @Test
+    public void testWriteListenerGivenToPlainResponse() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, listening("image/png", LISTENER));
+        assertNull(res.getHeader("Content-Encoding"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testWriteListenerRefusedWhenCompressing() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, listening("text/html", LISTENER));
+    }
+
+    @Test
+    public void testNotModifiedHasNoBody() throws Exception {
+        MockHttpResponse res = new MockHttpResponse();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                response.getWriter();
+                ((HttpServletResponse) response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+        };
+        new CompressionFilter().doFilter(request("gzip"), res, chain);
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals("", res.getOutput());
+    }
+
+    @Test
+    public void testCompressedPageHasItsOwnTag() throws Exception {
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                HttpServletResponse http = (HttpServletResponse) response;
+                http.addHeader("Vary", "Cookie");
+                http.setHeader("ETag", "\"abc\"");
+                response.getWriter().print(PAGE);
+            }
+        };
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, chain);
+        assertEquals("\"abc-gzip\"", res.getHeader("ETag"));
+        assertTrue(res.getHeaders("Vary").contains("Accept-Encoding"));
+        assertTrue(res.getHeaders("Vary").contains("Cookie"));
+
+        res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("identity"), res, chain);
+        assertEquals("\"abc\"", res.getHeader("ETag"));
+    }
+
+    @Test
+    public void testUncompressedImageKeepsItsTag() throws Exception {
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                ((HttpServletResponse) response).setHeader("ETag", "\"abc\"");
+                response.setContentType("image/png");
+                response.getWriter().print("PNG");
+            }
+        };
+        MockHttpResponse res = new MockHttpResponse();
+        new CompressionFilter().doFilter(request("gzip"), res, chain);
+        assertEquals("\"abc\"", res.getHeader("ETag"));
+        assertNull(res.getHeader("Content-Encoding"));
+    }
+}
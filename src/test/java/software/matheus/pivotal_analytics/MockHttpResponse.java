@@ -13,7 +13,7 @@ public class MockHttpResponse implements HttpServletResponse {
     private final StringWriter sw = new StringWriter();
     private final PrintWriter pw = new PrintWriter(sw);
     private final List<Cookie> addedCookies = new ArrayList<Cookie>();
-    private final Map<String, String> headers = new HashMap<String, String>();
+    private final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
     private String redirect = null;
     private String contentType = null;
     private String encoding = "UTF-8";
@@ -28,8 +28,11 @@ public class MockHttpResponse implements HttpServletResponse {
     public void addCookie(Cookie cookie) { addedCookies.add(cookie); }
     public void setContentType(String type) { this.contentType = type; }
     public void setCharacterEncoding(String charset) { this.encoding = charset; }
-    public void setHeader(String name, String value) { headers.put(name, value); }
-    public void addHeader(String name, String value) { headers.put(name, value); }
+    public void setHeader(String name, String value) { headers.remove(name); addHeader(name, value); }
+    public void addHeader(String name, String value) {
+        if (!headers.containsKey(name)) headers.put(name, new ArrayList<String>());
+        headers.get(name).add(value);
+    }
     public void setStatus(int sc) { this.status = sc; }
     public void setStatus(int sc, String sm) { this.status = sc; }
     public int getStatus() { return status; }
@@ -51,10 +54,10 @@ public class MockHttpResponse implements HttpServletResponse {
     public void setIntHeader(String name, int value) {}
     public void addIntHeader(String name, int value) {}
     public boolean containsHeader(String name) { return headers.containsKey(name); }
-    public String getHeader(String name) { return headers.get(name); }
+    public String getHeader(String name) { return headers.containsKey(name) ? headers.get(name).get(0) : null; }
     public Collection<String> getHeaders(String name) {
         List<String> result = new ArrayList<String>();
-        if (headers.containsKey(name)) result.add(headers.get(name));
+        if (headers.containsKey(name)) result.addAll(headers.get(name));
         return result;
     }
     public Collection<String> getHeaderNames() { return headers.keySet(); }
@@ -0,0 +1,49 @@
+package software.matheus.pivotal_analytics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class StaticCacheFilterTest {
+
+    private final int maxAge = StaticCacheFilter.MAX_AGE;
+
+    @After
+    public void restoreMaxAge() {
+        StaticCacheFilter.MAX_AGE = maxAge;
+    }
+
+    @Test
+    public void testCacheControl() {
+        assertEquals("public, max-age=3600", StaticCacheFilter.cacheControl(3600));
+        assertEquals("no-cache", StaticCacheFilter.cacheControl(0));
+    }
+
+    @Test
+    public void testDoFilterSetsCacheControlAndContinues() throws Exception {
+        StaticCacheFilter filter = new StaticCacheFilter();
+        filter.init(null);
+        StaticCacheFilter.MAX_AGE = 600;
+        MockHttpRequest req = new MockHttpRequest(null, new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+
+        final boolean[] called = new boolean[1];
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) throws java.io.IOException, javax.servlet.ServletException {
+                called[0] = true;
+            }
+        };
+
+        filter.doFilter(req, res, chain);
+        filter.destroy();
+        assertTrue(called[0]);
+        assertEquals("public, max-age=600", res.getHeader("Cache-Control"));
+    }
+}
@@ -4,10 +4,13 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Minimal in-process HTTP server that simulates the Pivotal Tracker API v5
@@ -17,6 +20,12 @@ public class TestApiServer {
 
     private final HttpServer server;
     private final int port;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger gzipped = new AtomicInteger();
+    private final AtomicInteger projectRequests = new AtomicInteger();
+
+    /** Tokens starting with this are refused with 403 Forbidden. */
+    public static final String DENIED_TOKEN = "denied";
 
     private static final String MEMBERS_JSON =
         "[{\"person\":{\"id\":1001,\"name\":\"Alice Test\",\"username\":\"alicetest\"}}]";
@@ -40,6 +49,42 @@ public class TestApiServer {
 
     private static final String STORIES_JSON = "[]";
 
+    /** Stories changed since the first download: 1002 got accepted, 1003 is new. */
+    private static final String UPDATED_JSON =
+        "[{\"id\":1002,\"story_type\":\"bug\",\"url\":\"https://www.pivotaltracker.com/story/show/1002\"," +
+        "\"current_state\":\"accepted\",\"name\":\"Test Bug\"," +
+        "\"requested_by_id\":1001,\"owner_ids\":[1001]," +
+        "\"created_at\":\"2023-01-05T00:00:00Z\",\"accepted_at\":\"2023-01-20T00:00:00Z\"," +
+        "\"updated_at\":\"2023-01-20T00:00:00Z\",\"labels\":[]}," +
+        "{\"id\":1003,\"story_type\":\"feature\",\"url\":\"https://www.pivotaltracker.com/story/show/1003\"," +
+        "\"estimate\":2,\"current_state\":\"started\",\"name\":\"New Feature\"," +
+        "\"requested_by_id\":1001,\"owner_ids\":[1001]," +
+        "\"created_at\":\"2023-01-18T00:00:00Z\",\"updated_at\":\"2023-01-21T00:00:00Z\",\"labels\":[]}]";
+
+    /** Current and backlog iterations after the changes: 1003 is in the current iteration. */
+    private static final String BACKLOG_JSON =
+        "[{\"number\":10,\"stories\":[" +
+        "{\"id\":1003,\"story_type\":\"feature\",\"url\":\"https://www.pivotaltracker.com/story/show/1003\"," +
+        "\"estimate\":2,\"current_state\":\"started\",\"name\":\"New Feature\"," +
+        "\"requested_by_id\":1001,\"owner_ids\":[1001]," +
+        "\"created_at\":\"2023-01-18T00:00:00Z\",\"updated_at\":\"2023-01-21T00:00:00Z\",\"labels\":[]}" +
+        "]},{\"number\":11,\"stories\":[]}]";
+
+    private volatile String updated = UPDATED_JSON;
+
+    private volatile String backlog = BACKLOG_JSON;
+
+    private volatile boolean failing = false;
+
+    private volatile boolean unavailable = false;
+
+    /** Project served one item per page, for checking pagination. */
+    public static final int PAGED_PROJECT = 88888;
+
+    private static final int PAGED_ITERATIONS = 3;
+
+    private static final int PAGED_ICEBOX = 2;
+
     public TestApiServer() throws IOException {
         server = HttpServer.create(new InetSocketAddress(0), 0);
         port = server.getAddress().getPort();
@@ -48,18 +93,52 @@ public class TestApiServer {
             public void handle(HttpExchange exchange) throws IOException {
                 String path = exchange.getRequestURI().getPath();
                 String body;
-                if (path.endsWith("/memberships")) {
+                String token = exchange.getRequestHeaders().getFirst("X-TrackerToken");
+                if (unavailable) {
+                    byte[] error = "{\"code\":\"unavailable\",\"kind\":\"error\"}".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(503, error.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(error);
+                    os.close();
+                    return;
+                }
+                if (token != null && token.startsWith(DENIED_TOKEN)) {
+                    byte[] denied = "{\"code\":\"unauthorized_operation\",\"kind\":\"error\"}".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(403, denied.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(denied);
+                    os.close();
+                    return;
+                }
+                if (path.contains("/" + PAGED_PROJECT + "/") && !path.endsWith("/memberships")) {
+                    respondPaged(exchange, path.endsWith("/iterations"));
+                } else if (path.endsWith("/memberships")) {
                     body = MEMBERS_JSON;
-                    respond(exchange, body, null, null);
+                    respondWithETag(exchange, body);
+                } else if (path.endsWith("/iterations") && exchange.getRequestURI().getQuery() != null
+                        && exchange.getRequestURI().getQuery().contains("scope=current_backlog")) {
+                    body = backlog;
+                    respond(exchange, body, "2", "100000");
+                } else if (path.endsWith("/iterations") && failing) {
+                    byte[] error = "{\"code\":\"server_error\",\"kind\":\"error\"}".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(500, error.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(error);
+                    os.close();
                 } else if (path.endsWith("/iterations")) {
                     body = ITERATION_JSON;
                     respond(exchange, body, "1", "100000");
+                } else if (path.endsWith("/stories") && exchange.getRequestURI().getQuery() != null
+                        && exchange.getRequestURI().getQuery().contains("updated_after=")) {
+                    body = updated;
+                    respond(exchange, body, "2", "100000");
                 } else if (path.endsWith("/stories")) {
                     body = STORIES_JSON;
                     respond(exchange, body, "0", "100000");
                 } else {
+                    projectRequests.incrementAndGet();
                     body = PROJECT_JSON;
-                    respond(exchange, body, null, null);
+                    respondWithETag(exchange, body);
                 }
             }
         });
@@ -67,9 +146,56 @@ public class TestApiServer {
         server.start();
     }
 
+    private void respondWithETag(HttpExchange ex, String body) throws IOException {
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        ex.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        respond(ex, body, null, null);
+    }
+
+    private void respondPaged(HttpExchange ex, boolean iterations) throws IOException {
+        int offset = 0;
+        String query = ex.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("offset=")) {
+                    offset = Integer.parseInt(param.substring("offset=".length()));
+                }
+            }
+        }
+        int total = iterations ? PAGED_ITERATIONS : PAGED_ICEBOX;
+        StringBuilder body = new StringBuilder("[");
+        if (offset < total) {
+            int id = (iterations ? 2000 : 3000) + offset + 1;
+            String story = "{\"id\":" + id + ",\"story_type\":\"feature\"," +
+                "\"url\":\"https://www.pivotaltracker.com/story/show/" + id + "\"," +
+                "\"current_state\":\"" + (iterations ? "accepted" : "unscheduled") + "\"," +
+                "\"name\":\"Story " + id + "\",\"requested_by_id\":1001,\"owner_ids\":[]," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"labels\":[]}";
+            body.append(iterations ? "{\"number\":" + (offset + 1) + ",\"stories\":[" + story + "]}" : story);
+        }
+        body.append("]");
+        respond(ex, body.toString(), String.valueOf(total), "1");
+    }
+
     private void respond(HttpExchange ex, String body, String total, String limit) throws IOException {
         byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
         ex.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        String accepted = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accepted != null && accepted.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(bytes);
+            gzip.close();
+            bytes = compressed.toByteArray();
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            gzipped.incrementAndGet();
+        }
         if (total != null) {
             ex.getResponseHeaders().set("X-Tracker-Pagination-Total", total);
         }
@@ -82,6 +208,37 @@ public class TestApiServer {
         os.close();
     }
 
+    /** Replaces the changed stories and the current and backlog iterations served, null restores the defaults. */
+    public void setSynchronization(String updated, String backlog) {
+        this.updated = updated == null ? UPDATED_JSON : updated;
+        this.backlog = backlog == null ? BACKLOG_JSON : backlog;
+    }
+
+    /** Makes the iterations of the project answer 500 Internal Server Error, or stop doing so. */
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    /** Makes every request for a project answer 503 Service Unavailable, or stop doing so. */
+    public void setUnavailable(boolean unavailable) {
+        this.unavailable = unavailable;
+    }
+
+    /** Amount of 304 Not Modified answers given so far. */
+    public int getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /** Amount of requests for the project itself so far, answered or not modified. */
+    public int getProjectRequestCount() {
+        return projectRequests.get();
+    }
+
+    /** Amount of gzip compressed answers given so far. */
+    public int getGzippedCount() {
+        return gzipped.get();
+    }
+
     public int getPort() {
         return port;
     }
@@ -0,0 +1,75 @@
+package software.matheus.pivotal_analytics.io;
+
+import org.apache.http.pool.PoolStats;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import software.matheus.pivotal_analytics.TestApiServer;
+import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTest {
+
+    private static TestApiServer server;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new TestApiServer();
+        PivotalAPI.API_LOCATION_URL = server.getBaseUrl() + "/services/v5";
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        ConnectionPool.shutdown();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void testClientIsShared() {
+        assertSame(ConnectionPool.getClient(), ConnectionPool.getClient());
+    }
+
+    @Test
+    public void testShutdownCreatesNewClientOnDemand() {
+        Object before = ConnectionPool.getClient();
+        ConnectionPool.shutdown();
+        assertNull(ConnectionPool.getStats());
+        assertNotSame(before, ConnectionPool.getClient());
+    }
+
+    @Test
+    public void testShutdownWithoutClient() {
+        ConnectionPool.shutdown();
+        ConnectionPool.shutdown();
+        assertNull(ConnectionPool.getStats());
+    }
+
+    @Test
+    public void testConnectionsAreReleasedAndReused() {
+        ConnectionPool.shutdown();
+        PivotalAPI api = new PivotalAPI("test-token");
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(api.downloadProject(99999));
+            assertNotNull(api.downloadUsers(99999));
+        }
+        PoolStats stats = ConnectionPool.getStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    @Test
+    public void testCompressionCanBeDisabled() {
+        ConnectionPool.shutdown();
+        ConnectionPool.COMPRESSION = false;
+        try {
+            int before = server.getGzippedCount();
+            PivotalAPI api = new PivotalAPI("test-token");
+            assertEquals(2, api.downloadProjectContent(99999, new software.matheus.pivotal_analytics.pivotal.UserLookup()).size());
+            assertEquals(before, server.getGzippedCount());
+        } finally {
+            ConnectionPool.COMPRESSION = true;
+            ConnectionPool.shutdown();
+        }
+    }
+}
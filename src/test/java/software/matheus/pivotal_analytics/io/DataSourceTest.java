@@ -6,6 +6,9 @@ import org.junit.Test;
 import software.matheus.pivotal_analytics.TestApiServer;
 import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
 import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.Ticket;
+
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.*;
 
@@ -63,13 +66,324 @@ public class DataSourceTest {
     }
 
     @Test
-    public void testReadProjectDifferentTokens() {
+    public void testReadProjectSharedAcrossTokens() {
         DataSource.flushProject(99999, "token-a");
-        DataSource.flushProject(99999, "token-b");
+        long misses = DataSource.getMisses();
         Project pa = DataSource.readProject(99999, "token-a");
         Project pb = DataSource.readProject(99999, "token-b");
-        assertNotSame(pa, pb);
+        assertSame(pa, pb);
+        assertEquals(misses + 1, DataSource.getMisses());
+        DataSource.flushProject(99999, "token-a");
+    }
+
+    @Test
+    public void testReadProjectDeniedToken() {
+        DataSource.flushProject(99999, "token-a");
+        Project shared = DataSource.readProject(99999, "token-a");
+        assertNotNull(shared);
+        assertNull(DataSource.readProject(99999, TestApiServer.DENIED_TOKEN + "-read"));
+        assertFalse(DataSource.authorize(99999, TestApiServer.DENIED_TOKEN + "-read"));
+        assertFalse(DataSource.authorize(99999, null));
+        DataSource.flushProject(99999, "token-a");
+    }
+
+    @Test
+    public void testDeniedTokenCannotFlush() {
         DataSource.flushProject(99999, "token-a");
-        DataSource.flushProject(99999, "token-b");
+        Project shared = DataSource.readProject(99999, "token-a");
+        DataSource.flushProject(99999, TestApiServer.DENIED_TOKEN + "-flush");
+        assertSame(shared, DataSource.readProject(99999, "token-a"));
+        DataSource.flushProject(99999, "token-a");
+    }
+
+    @Test
+    public void testAuthorizationIsCached() {
+        DataSource.flushProject(99999, "checked-token");
+        DataSource.readProject(99999, "checked-token");
+        int requests = server.getProjectRequestCount();
+        DataSource.readProject(99999, "checked-token");
+        DataSource.readProject(99999, "checked-token");
+        assertEquals(requests, server.getProjectRequestCount());
+        DataSource.readProject(99999, "another-checked-token");
+        assertEquals(requests + 1, server.getProjectRequestCount());
+        DataSource.flushProject(99999, "checked-token");
+    }
+
+    @Test
+    public void testExpiredAuthorizationIsChecked() throws Exception {
+        long age = DataSource.AUTHORIZATION_AGE;
+        DataSource.flushProject(99999, "expired-token");
+        try {
+            DataSource.AUTHORIZATION_AGE = 1;
+            DataSource.readProject(99999, "expired-token");
+            Thread.sleep(10);
+            int requests = server.getProjectRequestCount();
+            DataSource.readProject(99999, "expired-token");
+            assertEquals(requests + 1, server.getProjectRequestCount());
+        } finally {
+            DataSource.AUTHORIZATION_AGE = age;
+            DataSource.flushProject(99999, "expired-token");
+        }
+    }
+
+    @Test
+    public void testUnreachablePivotalIsNotADenial() {
+        DataSource.flushProject(99999, "unchecked-token");
+        server.setUnavailable(true);
+        try {
+            DataSource.readProject(99999, "unchecked-token");
+            fail("Access which could not be checked must not be denied");
+        } catch (AccessUnavailableException e) {
+            // expected, answered with 503 rather than 403
+        } finally {
+            server.setUnavailable(false);
+        }
+        assertNotNull(DataSource.readProject(99999, "unchecked-token"));
+        DataSource.flushProject(99999, "unchecked-token");
+    }
+
+    @Test
+    public void testRecentCheckTrustedWhilePivotalUnreachable() throws Exception {
+        long age = DataSource.AUTHORIZATION_AGE;
+        DataSource.flushProject(99999, "trusted-token");
+        try {
+            DataSource.AUTHORIZATION_AGE = 300;
+            Project p = DataSource.readProject(99999, "trusted-token");
+            Thread.sleep(350);
+            server.setUnavailable(true);
+            // Expired, but recent enough to be trusted while Pivotal cannot answer
+            assertSame(p, DataSource.readProject(99999, "trusted-token"));
+            Thread.sleep(350);
+            try {
+                DataSource.readProject(99999, "trusted-token");
+                fail("An old check must not be trusted");
+            } catch (AccessUnavailableException e) {
+                // expected
+            }
+        } finally {
+            server.setUnavailable(false);
+            DataSource.AUTHORIZATION_AGE = age;
+            DataSource.flushProject(99999, "trusted-token");
+        }
+    }
+
+    @Test
+    public void testSyncProjectKeepsSnapshot() {
+        DataSource.flushProject(99999, "test-token");
+        Project p1 = DataSource.readProject(99999, "test-token");
+        DataSource.syncProject(99999, "test-token");
+        Project p2 = DataSource.readProject(99999, "test-token");
+        assertSame(p1, p2);
+        assertEquals(3, p2.getStories().size());
+        DataSource.flushProject(99999, "test-token");
+    }
+
+    @Test
+    public void testFailedDownloadIsNotKept() {
+        DataSource.flushProject(99999, "test-token");
+        server.setFailing(true);
+        try {
+            DataSource.readProject(99999, "test-token");
+            fail("A failed download must not give a project");
+        } catch (IllegalStateException e) {
+            // expected, the next read tries again
+        } finally {
+            server.setFailing(false);
+        }
+        Project p = DataSource.readProject(99999, "test-token");
+        assertEquals(2, p.getStories().size());
+        DataSource.syncProject(99999, "test-token");
+        assertSame(p, DataSource.readProject(99999, "test-token"));
+        assertEquals(3, p.getStories().size());
+        DataSource.flushProject(99999, "test-token");
+    }
+
+    @Test
+    public void testSyncProjectWhenNothingLoaded() {
+        DataSource.syncProject(99999, "no-such-token");
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneLoad() throws Exception {
+        DataSource.flushProject(99999, "concurrent-token");
+        final int readers = 8;
+        final Project[] read = new Project[readers];
+        final CountDownLatch ready = new CountDownLatch(1);
+        Thread[] threads = new Thread[readers];
+        for (int i = 0; i < readers; i++) {
+            final int slot = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        ready.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    read[slot] = DataSource.readProject(99999, "concurrent-token");
+                }
+            });
+            threads[i].start();
+        }
+        ready.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < readers; i++) {
+            assertNotNull(read[i]);
+            assertSame(read[0], read[i]);
+        }
+        DataSource.flushProject(99999, "concurrent-token");
+    }
+
+    @Test
+    public void testFlushKeepsHeldSnapshot() {
+        DataSource.flushProject(99999, "test-token");
+        Project held = DataSource.readProject(99999, "test-token");
+        int size = held.getStories().size();
+        DataSource.flushProject(99999, "test-token");
+        assertEquals(size, held.getStories().size());
+        assertNotSame(held, DataSource.readProject(99999, "test-token"));
+        DataSource.flushProject(99999, "test-token");
+    }
+
+    @Test
+    public void testReadKeepsInterruptStatus() {
+        DataSource.flushProject(99999, "test-token");
+        Thread.currentThread().interrupt();
+        try {
+            // An interrupted download gives no project
+            DataSource.readProject(99999, "test-token");
+            fail("An interrupted download must not give a project");
+        } catch (IllegalStateException e) {
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(2, DataSource.readProject(99999, "test-token").getStories().size());
+        DataSource.flushProject(99999, "test-token");
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        DataSource.flushProject(99999, "counted-token");
+        long hits = DataSource.getHits();
+        long misses = DataSource.getMisses();
+        DataSource.readProject(99999, "counted-token");
+        DataSource.readProject(99999, "counted-token");
+        DataSource.readProject(99999, "counted-token");
+        assertEquals(misses + 1, DataSource.getMisses());
+        assertEquals(hits + 2, DataSource.getHits());
+        DataSource.flushProject(99999, "counted-token");
+    }
+
+    @Test
+    public void testWeightFollowsLoadsAndFlushes() {
+        DataSource.flushProject(99999, "weighed-token");
+        long before = DataSource.getWeight();
+        Project p = DataSource.readProject(99999, "weighed-token");
+        assertTrue(p.getWeight() > 0);
+        assertEquals(before + p.getWeight(), DataSource.getWeight());
+        DataSource.flushProject(99999, "weighed-token");
+        assertEquals(before, DataSource.getWeight());
+    }
+
+    @Test
+    public void testLeastRecentlyReadEvictedWhenTooHeavy() {
+        long max = DataSource.MAX_WEIGHT;
+        DataSource.flushProject(99999, "heavy-a");
+        DataSource.flushProject(77777, "heavy-b");
+        try {
+            Project a = DataSource.readProject(99999, "heavy-a");
+            DataSource.MAX_WEIGHT = a.getWeight();
+            long evictions = DataSource.getEvictions();
+            Project b = DataSource.readProject(77777, "heavy-b");
+            assertTrue(DataSource.getEvictions() > evictions);
+            assertTrue(DataSource.getWeight() <= Math.max(DataSource.MAX_WEIGHT, b.getWeight()));
+            // The evicted snapshot is still usable by who holds it
+            assertEquals(2, a.getStories().size());
+            assertSame(b, DataSource.readProject(77777, "heavy-b"));
+            assertNotSame(a, DataSource.readProject(99999, "heavy-a"));
+        } finally {
+            DataSource.MAX_WEIGHT = max;
+            DataSource.flushProject(99999, "heavy-a");
+            DataSource.flushProject(77777, "heavy-b");
+        }
+    }
+
+    @Test
+    public void testSharedSymbolsCountAgainstMaxWeight() {
+        long max = DataSource.MAX_WEIGHT;
+        DataSource.flushProject(99999, "symbols-a");
+        DataSource.flushProject(77777, "symbols-b");
+        try {
+            Project a = DataSource.readProject(99999, "symbols-a");
+            long b = new Project(77777, "symbols-b").getWeight();
+            // Snapshots alone fit, with the symbols they do not
+            DataSource.MAX_WEIGHT = DataSource.getWeight() + b + Ticket.estimateSymbolWeight() - 1;
+            long evictions = DataSource.getEvictions();
+            DataSource.readProject(77777, "symbols-b");
+            assertTrue(DataSource.getEvictions() > evictions);
+            assertNotSame(a, DataSource.readProject(99999, "symbols-a"));
+        } finally {
+            DataSource.MAX_WEIGHT = max;
+            DataSource.flushProject(99999, "symbols-a");
+            DataSource.flushProject(77777, "symbols-b");
+        }
+    }
+
+    @Test
+    public void testIdleSnapshotsExpire() throws Exception {
+        long idle = DataSource.IDLE_TIMEOUT;
+        DataSource.flushProject(99999, "idle-token");
+        try {
+            Project first = DataSource.readProject(99999, "idle-token");
+            DataSource.IDLE_TIMEOUT = 1;
+            Thread.sleep(20);
+            long evictions = DataSource.getEvictions();
+            Project second = DataSource.readProject(99999, "idle-token");
+            assertNotSame(first, second);
+            assertTrue(DataSource.getEvictions() > evictions);
+        } finally {
+            DataSource.IDLE_TIMEOUT = idle;
+            DataSource.flushProject(99999, "idle-token");
+        }
+    }
+
+    @Test
+    public void testOldSnapshotsRefreshedInBackground() throws Exception {
+        long age = DataSource.REFRESH_AGE;
+        long stagger = DataSource.REFRESH_STAGGER;
+        DataSource.flushProject(99999, "refreshed-token");
+        try {
+            Project p = DataSource.readProject(99999, "refreshed-token");
+            assertEquals(2, p.getStories().size());
+            DataSource.REFRESH_AGE = 20;
+            DataSource.REFRESH_STAGGER = 0;
+            DataSource.startRefreshing();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (p.getStories().size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // The same snapshot was brought up to date, readers never waited for it
+            assertEquals(3, p.getStories().size());
+            assertSame(p, DataSource.readProject(99999, "refreshed-token"));
+        } finally {
+            DataSource.stopRefreshing();
+            DataSource.REFRESH_AGE = age;
+            DataSource.REFRESH_STAGGER = stagger;
+            DataSource.flushProject(99999, "refreshed-token");
+        }
+    }
+
+    @Test
+    public void testRefreshingNotStartedWithoutAge() {
+        long age = DataSource.REFRESH_AGE;
+        try {
+            DataSource.REFRESH_AGE = 0;
+            DataSource.startRefreshing();
+            DataSource.stopRefreshing();
+        } finally {
+            DataSource.REFRESH_AGE = age;
+        }
     }
 }
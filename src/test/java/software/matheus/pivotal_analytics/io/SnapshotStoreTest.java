@@ -0,0 +1,186 @@
+package software.matheus.pivotal_analytics.io;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import software.matheus.pivotal_analytics.TestApiServer;
+import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
+import software.matheus.pivotal_analytics.pivotal.Project;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SnapshotStoreTest {
+
+    private static TestApiServer server;
+    private File directory;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new TestApiServer();
+        PivotalAPI.API_LOCATION_URL = server.getBaseUrl() + "/services/v5";
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (server != null) server.stop();
+    }
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("snapshots").toFile();
+        SnapshotStore.DIRECTORY = directory.getPath();
+        SnapshotStore.MEMORY_MAPPED = false;
+    }
+
+    @After
+    public void removeDirectory() {
+        SnapshotStore.DIRECTORY = null;
+        SnapshotStore.MEMORY_MAPPED = false;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testDisabledKeepsNothing() {
+        SnapshotStore.DIRECTORY = null;
+        assertFalse(SnapshotStore.isEnabled());
+        assertFalse(SnapshotStore.save(new Project(99999, "store-token")));
+        assertNull(SnapshotStore.load(99999));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Project original = new Project(99999, "store-token");
+        assertTrue(SnapshotStore.save(original));
+        Project loaded = SnapshotStore.load(99999);
+        assertNotNull(loaded);
+        assertNotSame(original, loaded);
+        assertEquals(original.getStories().size(), loaded.getStories().size());
+    }
+
+    @Test
+    public void testLoadMemoryMapped() {
+        SnapshotStore.save(new Project(99999, "store-token"));
+        SnapshotStore.MEMORY_MAPPED = true;
+        Project loaded = SnapshotStore.load(99999);
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getStories().size());
+    }
+
+    @Test
+    public void testSnapshotsAreKeptPerProject() {
+        SnapshotStore.save(new Project(99999, "store-token"));
+        assertNull(SnapshotStore.load(12345));
+        assertNotNull(SnapshotStore.load(99999));
+    }
+
+    @Test
+    public void testBrokenSnapshotIsIgnored() throws Exception {
+        FileOutputStream out = new FileOutputStream(new File(directory, SnapshotStore.fileName(99999)));
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertNull(SnapshotStore.load(99999));
+    }
+
+    @Test
+    public void testDeleteRemovesSnapshot() {
+        SnapshotStore.save(new Project(99999, "store-token"));
+        SnapshotStore.delete(99999);
+        assertNull(SnapshotStore.load(99999));
+    }
+
+    @Test
+    public void testStoredListsSavedProjects() throws Exception {
+        assertEquals(0, SnapshotStore.stored().length);
+        SnapshotStore.save(new Project(99999, "store-token"));
+        SnapshotStore.save(new Project(77777, "store-token"));
+        new File(directory, "other.txt").createNewFile();
+        int[] stored = SnapshotStore.stored();
+        Arrays.sort(stored);
+        assertArrayEquals(new int[]{77777, 99999}, stored);
+    }
+
+    @Test
+    public void testPreloadReadsSnapshotsIntoDataSource() {
+        DataSource.flushProject(99999, "preload-token");
+        DataSource.flushProject(77777, "preload-token");
+        try {
+            SnapshotStore.save(new Project(99999, "preload-token"));
+            SnapshotStore.save(new Project(77777, "preload-token"));
+            long weight = DataSource.getWeight();
+            assertEquals(2, DataSource.preload());
+            assertTrue(DataSource.getWeight() > weight);
+            // Already preloaded snapshots are not read again
+            assertEquals(0, DataSource.preload());
+            long misses = DataSource.getMisses();
+            assertNotNull(DataSource.readProject(99999, "preload-token"));
+            assertEquals(misses, DataSource.getMisses());
+        } finally {
+            DataSource.flushProject(99999, "preload-token");
+            DataSource.flushProject(77777, "preload-token");
+        }
+    }
+
+    @Test
+    public void testPreloadKeepsWithinMaxWeight() {
+        long max = DataSource.MAX_WEIGHT;
+        DataSource.flushProject(99999, "preload-token");
+        try {
+            SnapshotStore.save(new Project(99999, "preload-token"));
+            DataSource.MAX_WEIGHT = 0;
+            long weight = DataSource.getWeight();
+            assertEquals(0, DataSource.preload());
+            assertEquals(weight, DataSource.getWeight());
+        } finally {
+            DataSource.MAX_WEIGHT = max;
+            DataSource.flushProject(99999, "preload-token");
+        }
+    }
+
+    @Test
+    public void testReadProjectRestoresFromDisk() throws Exception {
+        DataSource.flushProject(99999, "restore-token");
+        SnapshotStore.save(new Project(99999, "restore-token"));
+        Project restored = DataSource.readProject(99999, "restore-token");
+        assertNotNull(restored);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (restored.getStories().size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, restored.getStories().size());
+        assertSame(restored, DataSource.readProject(99999, "restore-token"));
+        DataSource.flushProject(99999, "restore-token");
+    }
+
+    @Test
+    public void testRestoredSnapshotStillNeedsAccess() {
+        DataSource.flushProject(99999, "restore-token");
+        SnapshotStore.save(new Project(99999, "restore-token"));
+        assertNull(DataSource.readProject(99999, TestApiServer.DENIED_TOKEN + "-restore"));
+        DataSource.flushProject(99999, "restore-token");
+    }
+
+    @Test
+    public void testReadProjectWritesToDisk() throws Exception {
+        DataSource.flushProject(99999, "written-token");
+        DataSource.readProject(99999, "written-token");
+        File file = new File(directory, SnapshotStore.fileName(99999));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!file.isFile() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(file.isFile());
+        DataSource.flushProject(99999, "written-token");
+        assertFalse(file.isFile());
+    }
+}
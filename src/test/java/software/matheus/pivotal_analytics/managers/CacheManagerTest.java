@@ -0,0 +1,100 @@
+package software.matheus.pivotal_analytics.managers;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import software.matheus.pivotal_analytics.MockHttpRequest;
+import software.matheus.pivotal_analytics.MockHttpResponse;
+import software.matheus.pivotal_analytics.TestApiServer;
+import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
+import software.matheus.pivotal_analytics.pivotal.Project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CacheManagerTest {
+
+    private static TestApiServer server;
+    private static Project project;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new TestApiServer();
+        PivotalAPI.API_LOCATION_URL = server.getBaseUrl() + "/services/v5";
+        project = new Project(99999, "cache-token");
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (server != null) server.stop();
+    }
+
+    private static MockHttpRequest request(String ifNoneMatch) {
+        Map<String, String> headers = new HashMap<String, String>();
+        if (ifNoneMatch != null) headers.put("If-None-Match", ifNoneMatch);
+        return new MockHttpRequest(null, new HashMap<String, String>(), headers);
+    }
+
+    @Test
+    public void testTagIsStableAndTellsSettings() {
+        String tag = CacheManager.tag(project.getState(), "View", new String[]{"a", null});
+        assertTrue(tag.startsWith("\"") && tag.endsWith("\""));
+        assertEquals(tag, CacheManager.tag(project.getState(), "View", new String[]{"a", null}));
+        assertFalse(tag.equals(CacheManager.tag(project.getState(), "View", new String[]{"a", ""})));
+        assertFalse(tag.equals(CacheManager.tag(project.getState(), "View", new String[]{"b", null})));
+        assertFalse(tag.equals(CacheManager.tag(project.getState(), "Other", new String[]{"a", null})));
+    }
+
+    @Test
+    public void testMatches() {
+        assertFalse(CacheManager.matches(null, "\"x\""));
+        assertTrue(CacheManager.matches("\"x\"", "\"x\""));
+        assertTrue(CacheManager.matches("\"y\", W/\"x\"", "\"x\""));
+        assertTrue(CacheManager.matches("*", "\"x\""));
+        assertFalse(CacheManager.matches("\"y\"", "\"x\""));
+    }
+
+    @Test
+    public void testNotModifiedAnswers304() {
+        String tag = CacheManager.tag(project.getState(), "View", new String[0]);
+        MockHttpResponse res = new MockHttpResponse();
+        assertTrue(CacheManager.notModified(request(tag), res, tag));
+        assertEquals(304, res.getStatus());
+        assertEquals(tag, res.getHeader("ETag"));
+        assertEquals("", res.getOutput());
+    }
+
+    @Test
+    public void testModifiedIsTaggedOnly() {
+        String tag = CacheManager.tag(project.getState(), "View", new String[0]);
+        MockHttpResponse res = new MockHttpResponse();
+        assertFalse(CacheManager.notModified(request("\"other\""), res, tag));
+        assertEquals(200, res.getStatus());
+        assertEquals(tag, res.getHeader("ETag"));
+        assertEquals("private, no-cache", res.getHeader("Cache-Control"));
+
+        res = new MockHttpResponse();
+        assertFalse(CacheManager.notModified(request(tag), res, null));
+        assertNull(res.getHeader("ETag"));
+    }
+
+    @Test
+    public void testGzipTag() {
+        assertEquals("\"x-gzip\"", CacheManager.gzipTag("\"x\""));
+        assertEquals("\"x-gzip\"", CacheManager.gzipTag("\"x-gzip\""));
+        assertNull(CacheManager.gzipTag(null));
+        assertTrue(CacheManager.matches("\"x-gzip\"", "\"x\""));
+        assertFalse(CacheManager.matches("\"x-gzip\"", "\"y\""));
+    }
+
+    @Test
+    public void testVaryIsAddedToOthers() {
+        MockHttpResponse res = new MockHttpResponse();
+        res.addHeader("Vary", "Accept-Encoding");
+        CacheManager.notModified(request(null), res, CacheManager.tag(project.getState(), "View", new String[0]));
+        assertTrue(res.getHeaders("Vary").contains("Accept-Encoding"));
+        assertTrue(res.getHeaders("Vary").contains("Cookie"));
+    }
+}
@@ -109,4 +109,100 @@ public class MockPivotalAPITest {
         assertTrue(output.contains("Bob Smith"));
         assertTrue(output.contains("Carol Davis"));
     }
+
+    @Test
+    public void testUpdatedStoriesEndpoint() throws Exception {
+        MockPivotalAPI servlet = new MockPivotalAPI();
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("updated_after", String.valueOf(System.currentTimeMillis() - 30L * 24 * 60 * 60 * 1000));
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], params, new HashMap<String, String>());
+        req.setPathInfo("/99999/stories");
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        String output = res.getOutput();
+        assertTrue(output.startsWith("["));
+        assertTrue(output.contains("updated_at"));
+        // Only recent iterations changed in the last month
+        assertFalse(output.contains("\"id\":1000,"));
+        assertTrue(output.contains("\"id\":52000,"));
+    }
+
+    @Test
+    public void testMembershipsETag() throws Exception {
+        MockPivotalAPI servlet = new MockPivotalAPI();
+        MockHttpResponse first = new MockHttpResponse();
+        servlet.doGet(makeRequest("/99999/memberships"), first);
+        String etag = first.getHeader("ETag");
+        assertNotNull(etag);
+
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", etag);
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], new HashMap<String, String>(), headers);
+        req.setPathInfo("/99999/memberships");
+        MockHttpResponse second = new MockHttpResponse();
+        servlet.doGet(req, second);
+        assertEquals(304, second.getStatus());
+        assertEquals("", second.getOutput());
+    }
+
+    @Test
+    public void testProjectETagMismatchServesBody() throws Exception {
+        MockPivotalAPI servlet = new MockPivotalAPI();
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", "\"stale\"");
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], new HashMap<String, String>(), headers);
+        req.setPathInfo("/99999");
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertNotEquals(304, res.getStatus());
+        assertTrue(res.getOutput().contains("Demo Analytics Project"));
+        assertNotNull(res.getHeader("ETag"));
+    }
+
+    @Test
+    public void testIterationsServedWithGzip() throws Exception {
+        MockPivotalAPI servlet = new MockPivotalAPI();
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept-Encoding", "gzip,deflate");
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], new HashMap<String, String>(), headers);
+        req.setPathInfo("/99999/iterations");
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertEquals("gzip", res.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", res.getHeader("Vary"));
+
+        // The mock output stream stores each byte as one char
+        String raw = res.getOutput();
+        byte[] bytes = new byte[raw.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) raw.charAt(i);
+        }
+        java.util.zip.GZIPInputStream in = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(bytes));
+        java.io.ByteArrayOutputStream plain = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+            plain.write(buffer, 0, n);
+        }
+        String output = plain.toString("UTF-8");
+        assertTrue(output.startsWith("[{"));
+        assertTrue(output.contains("stories"));
+        assertTrue(bytes.length * 5 < plain.size());
+    }
+
+    @Test
+    public void testNotModifiedHasNoCompressedBody() throws Exception {
+        MockPivotalAPI servlet = new MockPivotalAPI();
+        MockHttpResponse first = new MockHttpResponse();
+        servlet.doGet(makeRequest("/99999/memberships"), first);
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", first.getHeader("ETag"));
+        headers.put("Accept-Encoding", "gzip");
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], new HashMap<String, String>(), headers);
+        req.setPathInfo("/99999/memberships");
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertEquals(304, res.getStatus());
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals("", res.getOutput());
+    }
 }
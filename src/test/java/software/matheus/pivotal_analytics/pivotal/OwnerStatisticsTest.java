@@ -0,0 +1,132 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class OwnerStatisticsTest {
+
+    private UserLookup users;
+    private TicketSet stories;
+
+    private Ticket ticket(int id, String type, String state, String accepted, int estimate, long... owners) {
+        JSONObject jo = new JSONObject();
+        jo.put("id", Long.valueOf(id));
+        jo.put("story_type", type);
+        jo.put("url", "http://www.pivotaltracker.com/story/show/" + id);
+        jo.put("current_state", state);
+        jo.put("name", "Story " + id);
+        jo.put("estimate", Long.valueOf(estimate));
+        jo.put("requested_by_id", Long.valueOf(1L));
+        JSONArray ids = new JSONArray();
+        for (long owner : owners) {
+            ids.add(Long.valueOf(owner));
+        }
+        jo.put("owner_ids", ids);
+        jo.put("created_at", "2023-01-01T00:00:00Z");
+        if (accepted != null) {
+            jo.put("accepted_at", accepted);
+        }
+        jo.put("labels", new JSONArray());
+        return new Ticket(jo, users);
+    }
+
+    @Before
+    public void setUp() {
+        users = new UserLookup();
+        String[] names = {"Carol", "Dave", "Erin"};
+        for (int i = 0; i < names.length; i++) {
+            JSONObject user = new JSONObject();
+            user.put("id", Long.valueOf(11 + i));
+            user.put("name", names[i]);
+            users.addUser(user);
+        }
+        stories = new TicketSet();
+        String[] types = {"feature", "bug", "chore"};
+        String[] states = {"accepted", "started", "unstarted", "accepted"};
+        for (int i = 0; i < 200; i++) {
+            String state = states[i % 4];
+            String accepted = i % 4 == 1 ? null : String.format("2023-%02d-%02dT00:00:00Z", 1 + i % 12, 1 + i % 28);
+            long[] owners = i % 9 == 0 ? new long[]{11, 12} : new long[]{11 + i % 3};
+            stories.add(ticket(100 + i, types[i % 3], state, accepted, i % 5, owners));
+        }
+    }
+
+    private int[] naive(TicketSet set, String owner, long now) {
+        TicketSet currentdev = set.queryOwner(owner);
+        long start = now;
+        if (currentdev.queryOldestAccepted() != null) {
+            start = currentdev.queryOldestAccepted().getAccepted().getTime();
+        }
+        int points = 0, count = 0;
+        for (Ticket t : currentdev.queryAcceptedBetween(new Date(start), new Date(now))) {
+            if (t.getType().equals("feature")) points += t.getPoints();
+            count++;
+        }
+        int activePoints = 0, activeCount = 0;
+        for (Ticket t : currentdev.queryActive()) {
+            if (t.getType().equals("feature")) activePoints += t.getPoints();
+            activeCount++;
+        }
+        return new int[]{(int) (start == now ? -1 : start / 1000), count, points, activeCount, activePoints};
+    }
+
+    private int[] summarized(OwnerStatistics statistics, String owner, long now) {
+        OwnerStatistics.Summary summary = statistics.summarize(owner, now);
+        Date first = summary.getFirstAccepted();
+        return new int[]{first == null ? -1 : (int) (first.getTime() / 1000), summary.getAcceptedCount(),
+            summary.getAcceptedPoints(), summary.getActiveCount(), summary.getActivePoints()};
+    }
+
+    @Test
+    public void testSummariesMatchQueries() {
+        OwnerStatistics statistics = stories.queryOwnerStatistics();
+        long[] moments = {System.currentTimeMillis(), new Date(123, 5, 15).getTime()};
+        for (long now : moments) {
+            for (String owner : new String[]{"Carol", "Dave", "Erin", "Carol, Dave"}) {
+                assertArrayEquals(owner, naive(stories, owner, now), summarized(statistics, owner, now));
+            }
+        }
+    }
+
+    @Test
+    public void testOwnerWithoutAcceptances() {
+        TicketSet set = new TicketSet();
+        set.add(ticket(1, "feature", "started", null, 3, 13));
+        OwnerStatistics.Summary summary = set.queryOwnerStatistics().summarize("Erin", System.currentTimeMillis());
+        assertNull(summary.getFirstAccepted());
+        assertEquals(0, summary.getAcceptedCount());
+        assertEquals(1, summary.getActiveCount());
+        assertEquals(3, summary.getActivePoints());
+    }
+
+    @Test
+    public void testUnknownOwner() {
+        OwnerStatistics.Summary summary = stories.queryOwnerStatistics().summarize("Nobody", System.currentTimeMillis());
+        assertNull(summary.getFirstAccepted());
+        assertEquals(0, summary.getActiveCount());
+    }
+
+    @Test
+    public void testComputedOncePerSnapshot() {
+        OwnerStatistics statistics = stories.queryOwnerStatistics();
+        assertSame(statistics, stories.queryOwnerStatistics());
+        stories.add(ticket(999, "feature", "started", null, 8, 13));
+        OwnerStatistics updated = stories.queryOwnerStatistics();
+        assertNotSame(statistics, updated);
+        long now = System.currentTimeMillis();
+        assertEquals(statistics.summarize("Erin", now).getActivePoints() + 8, updated.summarize("Erin", now).getActivePoints());
+    }
+
+    @Test
+    public void testStatisticsOfQueryResults() {
+        TicketSet bugs = stories.queryType("bug");
+        long now = System.currentTimeMillis();
+        assertArrayEquals(naive(bugs, "Dave", now), summarized(bugs.queryOwnerStatistics(), "Dave", now));
+    }
+}
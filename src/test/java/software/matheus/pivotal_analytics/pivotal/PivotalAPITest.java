@@ -5,7 +5,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import software.matheus.pivotal_analytics.TestApiServer;
 
-import java.util.Vector;
+import java.io.IOException;
 
 import static org.junit.Assert.*;
 
@@ -45,16 +45,173 @@ public class PivotalAPITest {
     @Test
     public void testDownloadProjectContent() {
         PivotalAPI api = new PivotalAPI("test-token");
-        Vector<String> result = api.downloadProjectContent(99999);
-        assertNotNull(result);
+        TicketSet result = api.downloadProjectContent(99999, new UserLookup());
         assertFalse(result.isEmpty());
     }
 
     @Test
     public void testDownloadProjectContentHasIterationStories() {
         PivotalAPI api = new PivotalAPI("test-token");
-        Vector<String> result = api.downloadProjectContent(99999);
-        // First element is icebox (stories), second is iteration stories
-        assertTrue(result.size() >= 1);
+        TicketSet result = api.downloadProjectContent(99999, new UserLookup());
+        // Icebox is empty, both stories come from iteration 1
+        assertEquals(2, result.size());
+        assertEquals(1, result.queryLabel("[1]").size());
+    }
+
+    @Test
+    public void testDownloadProjectContentFetchesAllPages() {
+        PivotalAPI api = new PivotalAPI("test-token");
+        TicketSet result = api.downloadProjectContent(TestApiServer.PAGED_PROJECT, new UserLookup());
+        assertEquals(5, result.size());
+    }
+
+    @Test
+    public void testDownloadProjectContentKeepsPageOrder() {
+        int previous = PivotalAPI.PARALLEL_DOWNLOADS;
+        PivotalAPI.PARALLEL_DOWNLOADS = 3;
+        try {
+            PivotalAPI api = new PivotalAPI("test-token");
+            TicketSet result = api.downloadProjectContent(TestApiServer.PAGED_PROJECT, new UserLookup());
+            // Icebox comes first, then iterations in order
+            assertEquals("Story 3001", result.get(0).getTitle());
+            assertEquals("Story 3002", result.get(1).getTitle());
+            assertEquals("Story 2001", result.get(2).getTitle());
+            assertEquals("Story 2002", result.get(3).getTitle());
+            assertEquals("Story 2003", result.get(4).getTitle());
+            // Iteration labels follow the page offsets
+            assertEquals(1, result.queryLabel("[1]").size());
+            assertEquals(1, result.queryLabel("[2]").size());
+            assertEquals(1, result.queryLabel("[3]").size());
+            assertTrue(result.get(4).getLabels().contains("[3]"));
+        } finally {
+            PivotalAPI.PARALLEL_DOWNLOADS = previous;
+        }
+    }
+
+    @Test
+    public void testDownloadProjectContentSingleThread() {
+        int previous = PivotalAPI.PARALLEL_DOWNLOADS;
+        PivotalAPI.PARALLEL_DOWNLOADS = 0;
+        try {
+            PivotalAPI api = new PivotalAPI("test-token");
+            TicketSet result = api.downloadProjectContent(TestApiServer.PAGED_PROJECT, new UserLookup());
+            assertEquals(5, result.size());
+        } finally {
+            PivotalAPI.PARALLEL_DOWNLOADS = previous;
+        }
+    }
+
+    @Test
+    public void testDownloadUpdatedStories() {
+        PivotalAPI api = new PivotalAPI("test-token");
+        TicketSet result = api.downloadUpdatedStories(99999, new UserLookup(), new java.util.Date(0));
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertNotNull(result.get(0).getUpdated());
+    }
+
+    @Test
+    public void testDownloadProjectReusesNotModifiedResponse() {
+        PivotalAPI.clearResponses();
+        PivotalAPI api = new PivotalAPI("test-token");
+        int before = server.getNotModifiedCount();
+        String first = api.downloadProject(99999);
+        assertEquals(before, server.getNotModifiedCount());
+        String second = api.downloadProject(99999);
+        assertEquals(before + 1, server.getNotModifiedCount());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testConditionalRequestsAreKeptPerToken() {
+        PivotalAPI.clearResponses();
+        int before = server.getNotModifiedCount();
+        new PivotalAPI("token-a").downloadUsers(99999);
+        String other = new PivotalAPI("token-b").downloadUsers(99999);
+        assertEquals(before, server.getNotModifiedCount());
+        assertTrue(other.contains("Alice Test"));
+    }
+
+    @Test
+    public void testResponseCacheIsBounded() {
+        PivotalAPI.clearResponses();
+        int size = PivotalAPI.RESPONSE_CACHE_SIZE;
+        PivotalAPI.RESPONSE_CACHE_SIZE = 1;
+        try {
+            int before = server.getNotModifiedCount();
+            PivotalAPI api = new PivotalAPI("test-token");
+            api.downloadProject(99999);
+            api.downloadUsers(99999);
+            api.downloadProject(99999);
+            assertEquals(before, server.getNotModifiedCount());
+        } finally {
+            PivotalAPI.RESPONSE_CACHE_SIZE = size;
+        }
+    }
+
+    @Test
+    public void testDownloadProjectContentIsCompressed() {
+        int before = server.getGzippedCount();
+        PivotalAPI api = new PivotalAPI("test-token");
+        TicketSet result = api.downloadProjectContent(99999, new UserLookup());
+        assertEquals(2, result.size());
+        assertEquals(1, result.queryLabel("[1]").size());
+        // Icebox and iterations pages
+        assertTrue(server.getGzippedCount() >= before + 2);
+    }
+
+    @Test
+    public void testConcurrentDownloadsShareOneThread() throws Exception {
+        int previous = PivotalAPI.PARALLEL_DOWNLOADS;
+        PivotalAPI.PARALLEL_DOWNLOADS = 1;
+        try {
+            final int downloads = 4;
+            final TicketSet[] results = new TicketSet[downloads];
+            Thread[] threads = new Thread[downloads];
+            for (int i = 0; i < downloads; i++) {
+                final int slot = i;
+                threads[i] = new Thread(new Runnable() {
+                    public void run() {
+                        results[slot] = new PivotalAPI("test-token").downloadProjectContent(TestApiServer.PAGED_PROJECT, new UserLookup());
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread t : threads) {
+                t.join(10000);
+                assertFalse(t.isAlive());
+            }
+            for (TicketSet result : results) {
+                assertEquals(5, result.size());
+            }
+        } finally {
+            PivotalAPI.PARALLEL_DOWNLOADS = previous;
+        }
+    }
+
+    @Test
+    public void testDownloadAfterShutdown() {
+        PivotalAPI.shutdown();
+        PivotalAPI.shutdown();
+        TicketSet result = new PivotalAPI("test-token").downloadProjectContent(99999, new UserLookup());
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void testCanAccess() throws IOException {
+        assertTrue(new PivotalAPI("access-token").canAccess(99999));
+        // Asked again, conditionally
+        assertTrue(new PivotalAPI("access-token").canAccess(99999));
+        assertFalse(new PivotalAPI(TestApiServer.DENIED_TOKEN).canAccess(99999));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCanAccessFailsWhenPivotalUnavailable() throws IOException {
+        server.setUnavailable(true);
+        try {
+            new PivotalAPI("access-token").canAccess(99999);
+        } finally {
+            server.setUnavailable(false);
+        }
     }
 }
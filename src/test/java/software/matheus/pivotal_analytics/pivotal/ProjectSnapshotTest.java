@@ -0,0 +1,190 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import software.matheus.pivotal_analytics.TestApiServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ProjectSnapshotTest {
+
+    private static TestApiServer server;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new TestApiServer();
+        PivotalAPI.API_LOCATION_URL = server.getBaseUrl() + "/services/v5";
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (server != null) server.stop();
+    }
+
+    private static byte[] write(Project project) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ProjectSnapshot.write(project, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Project read(byte[] bytes) throws IOException {
+        return ProjectSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static Ticket find(Project project, long id) {
+        for (Ticket t : project.getStories()) {
+            if (t.getID() == id) return t;
+        }
+        return null;
+    }
+
+    @Test
+    public void testRoundTripKeepsProject() throws IOException {
+        Project original = new Project(99999, "snapshot-token");
+        Project copy = read(write(original));
+        assertEquals(99999, copy.getID());
+        assertEquals(original.getDisplayName(), copy.getDisplayName());
+        assertEquals(original.getStart(), copy.getStart());
+        assertEquals(original.getCurrentIteration(), copy.getCurrentIteration());
+        assertEquals(original.getIterationSize(), copy.getIterationSize());
+        assertEquals(original.getState().getLastUpdate(), copy.getState().getLastUpdate());
+        assertEquals(original.getStories().size(), copy.getStories().size());
+    }
+
+    @Test
+    public void testRoundTripKeepsStories() throws IOException {
+        Project original = new Project(99999, "snapshot-token");
+        Project copy = read(write(original));
+        for (Ticket t : original.getStories()) {
+            Ticket c = find(copy, t.getID());
+            assertNotNull(c);
+            assertEquals(t.getTitle(), c.getTitle());
+            assertEquals(t.getType(), c.getType());
+            assertEquals(t.getState(), c.getState());
+            assertEquals(t.getPoints(), c.getPoints());
+            assertEquals(t.getOwner(), c.getOwner());
+            assertEquals(t.getLabels(), c.getLabels());
+            assertEquals(t.getIteration(), c.getIteration());
+            assertEquals(t.getCreated(), c.getCreated());
+            assertEquals(t.getAccepted(), c.getAccepted());
+            assertEquals(t.getURL(), c.getURL());
+        }
+        assertEquals(1, find(copy, 1001).getIteration());
+        assertNull(find(copy, 1002).getAccepted());
+    }
+
+    @Test
+    public void testRoundTripKeepsSharedOwners() throws IOException {
+        Project original = new Project(99999, "snapshot-token");
+        UserLookup users = new UserLookup();
+        JSONObject alice = new JSONObject();
+        alice.put("id", Long.valueOf(1L));
+        alice.put("name", "Alice Test");
+        users.addUser(alice);
+        JSONObject bob = new JSONObject();
+        bob.put("id", Long.valueOf(2L));
+        bob.put("name", "Bob Test");
+        users.addUser(bob);
+        JSONObject jo = new JSONObject();
+        jo.put("id", Long.valueOf(1004L));
+        jo.put("story_type", "feature");
+        jo.put("url", "https://www.pivotaltracker.com/story/show/1004");
+        jo.put("current_state", "started");
+        jo.put("name", "Pair Feature");
+        jo.put("requested_by_id", Long.valueOf(1L));
+        JSONArray owners = new JSONArray();
+        owners.add(Long.valueOf(2L));
+        owners.add(Long.valueOf(1L));
+        jo.put("owner_ids", owners);
+        jo.put("created_at", "2023-01-05T00:00:00Z");
+        TicketSet stories = new TicketSet();
+        for (Ticket t : original.getStories()) {
+            stories.add(t);
+        }
+        stories.add(new Ticket(jo, users));
+        ProjectState state = original.getState();
+        original.state = new ProjectState(original, stories.freeze(), state.current_iteration, state.users, state.getLastUpdate());
+
+        Project copy = read(write(original));
+        assertEquals("Bob Test,Alice Test", find(copy, 1004).getOwner());
+        assertEquals(1, copy.getStories().queryOwner("Bob Test").size());
+        assertEquals(3, copy.getStories().queryOwner("Alice Test").size());
+    }
+
+    @Test
+    public void testReadSnapshotCanSynchronize() throws IOException {
+        Project copy = read(write(new Project(99999, "snapshot-token")));
+        assertTrue(copy.synchronize("snapshot-token"));
+        assertEquals(3, copy.getStories().size());
+        assertNotNull(find(copy, 1002).getAccepted());
+    }
+
+    @Test
+    public void testWriteIsRepeatable() throws IOException {
+        byte[] first = write(new Project(99999, "snapshot-token"));
+        byte[] again = write(read(first));
+        assertArrayEquals(first, again);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsOtherData() throws IOException {
+        read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsTruncatedSnapshot() throws IOException {
+        byte[] full = write(new Project(99999, "snapshot-token"));
+        byte[] truncated = new byte[full.length / 2];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+        read(truncated);
+    }
+
+    private static byte[] header(int texts, int stories) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(write(new Project(99999, "snapshot-token")), 0, 4);
+        out.writeInt(99999);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeLong(Ticket.NONE);
+        out.writeInt(1);
+        out.writeLong(7L);
+        out.writeLong(Ticket.NONE);
+        out.writeInt(-1);
+        out.writeInt(texts);
+        out.writeInt(stories);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testReadAcceptsEmptyTables() throws IOException {
+        assertEquals(0, read(header(0, 0)).getStories().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsHugeTextTable() throws IOException {
+        read(header(Integer.MAX_VALUE, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsNegativeTextTable() throws IOException {
+        read(header(-5, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsNegativeStoryCount() throws IOException {
+        read(header(0, -1));
+    }
+}
@@ -63,4 +63,145 @@ public class ProjectTest {
         assertNotNull(stories);
         assertTrue(stories.size() > 0);
     }
+
+    @Test
+    public void testSynchronizeMergesChangedStories() {
+        Project synced = new Project(99999, "test-token");
+        TicketSet before = synced.getStories();
+        assertTrue(synced.synchronize("test-token"));
+        TicketSet after = synced.getStories();
+        // Previous snapshot is untouched
+        assertEquals(2, before.size());
+        assertEquals(3, after.size());
+        assertEquals("started", before.get(1).getState());
+        // Changed story replaced in place, new story appended
+        assertEquals(1002, after.get(1).getID());
+        assertEquals("accepted", after.get(1).getState());
+        assertEquals(1003, after.get(2).getID());
+        // Unchanged story keeps its iteration label
+        assertSame(before.get(0), after.get(0));
+        assertEquals(1, after.get(0).getIteration());
+        // New scheduled story lands in the current iteration
+        assertEquals(10, after.get(2).getIteration());
+        assertTrue(after.get(2).getLabels().contains("[10]"));
+    }
+
+    @Test
+    public void testSynchronizeAdvancesHighWaterMark() {
+        Project synced = new Project(99999, "test-token");
+        java.util.Date loaded = synced.getState().getLastUpdate();
+        assertNotNull(loaded);
+        // Never goes back in time
+        assertTrue(synced.synchronize("test-token"));
+        assertEquals(loaded, synced.getState().getLastUpdate());
+        ProjectState state = synced.getState();
+        synced.state = new ProjectState(synced, state.stories, state.current_iteration, state.users, new java.util.Date(0));
+        assertTrue(synced.synchronize("test-token"));
+        assertEquals(javax.xml.bind.DatatypeConverter.parseDateTime("2023-01-21T00:00:00Z").getTime(), synced.getState().getLastUpdate());
+    }
+
+    @Test
+    public void testIterationOfAcceptedStoryUsesAcceptanceDate() {
+        Project synced = new Project(99999, "test-token");
+        Ticket accepted = synced.getStories().get(0);
+        // Accepted 9 days after start with 2-week iterations
+        assertEquals(1, synced.iterationOf(accepted, null, 10));
+        assertEquals(1, synced.iterationOf(accepted, accepted, 10));
+    }
+
+    @Test
+    public void testSynchronizeTakesIterationsFromPivotal() {
+        Project synced = new Project(99999, "test-token");
+        server.setSynchronization(null, "[{\"number\":10,\"stories\":[]},{\"number\":11,\"stories\":[" +
+            "{\"id\":1003,\"story_type\":\"feature\",\"url\":\"https://www.pivotaltracker.com/story/show/1003\"," +
+            "\"estimate\":2,\"current_state\":\"unstarted\",\"name\":\"New Feature\"," +
+            "\"requested_by_id\":1001,\"owner_ids\":[1001]," +
+            "\"created_at\":\"2023-01-18T00:00:00Z\",\"labels\":[]}]}]");
+        try {
+            assertTrue(synced.synchronize("test-token"));
+        } finally {
+            server.setSynchronization(null, null);
+        }
+        // Scheduled in the backlog, not in the current iteration
+        Ticket scheduled = synced.getStories().get(2);
+        assertEquals(1003, scheduled.getID());
+        assertEquals(11, scheduled.getIteration());
+        assertTrue(scheduled.getLabels().contains("[11]"));
+        assertFalse(scheduled.getLabels().contains("[10]"));
+    }
+
+    @Test
+    public void testSynchronizeRelabelsRolledOverStories() {
+        Project synced = new Project(99999, "test-token");
+        Ticket before = synced.getStories().get(1);
+        assertEquals(1, before.getIteration());
+        // Nothing changed, but Pivotal moved the unfinished story into the new current iteration
+        ProjectState state = synced.getState();
+        synced.state = new ProjectState(synced, state.stories, 9, state.users, state.getLastUpdate());
+        server.setSynchronization("[]", "[{\"number\":10,\"stories\":[" +
+            "{\"id\":1002,\"story_type\":\"bug\",\"url\":\"https://www.pivotaltracker.com/story/show/1002\"," +
+            "\"current_state\":\"started\",\"name\":\"Test Bug\"," +
+            "\"requested_by_id\":1001,\"owner_ids\":[1001]," +
+            "\"created_at\":\"2023-01-05T00:00:00Z\",\"labels\":[]}]}]");
+        try {
+            assertTrue(synced.synchronize("test-token"));
+        } finally {
+            server.setSynchronization(null, null);
+        }
+        assertEquals(10, synced.getCurrentIteration());
+        assertEquals(2, synced.getStories().size());
+        assertEquals(1002, synced.getStories().get(1).getID());
+        assertEquals(10, synced.getStories().get(1).getIteration());
+        assertEquals(1, synced.getStories().get(0).getIteration());
+        assertEquals(1, before.getIteration());
+    }
+
+    @Test
+    public void testSynchronizeRefreshesMembers() {
+        Project synced = new Project(99999, "test-token");
+        ProjectState state = synced.getState();
+        synced.state = new ProjectState(synced, state.stories, state.current_iteration, new UserLookup(), state.getLastUpdate());
+        assertTrue(synced.synchronize("test-token"));
+        assertEquals("Alice Test", synced.getState().users.getUser("1001"));
+        assertEquals("Alice Test", synced.getStories().get(2).getOwner());
+    }
+
+    @Test
+    public void testStateTakenBeforeSynchronizeIsKept() {
+        Project synced = new Project(99999, "test-token");
+        ProjectState before = synced.getState();
+        ProjectState state = synced.getState();
+        synced.state = new ProjectState(synced, state.stories, 9, state.users, state.getLastUpdate());
+        ProjectState old = synced.getState();
+        assertTrue(synced.synchronize("test-token"));
+        ProjectState after = synced.getState();
+        assertNotSame(old, after);
+        // Stories and iteration of a taken state always go together
+        assertEquals(9, old.getCurrentIteration());
+        assertEquals(2, old.getStories().size());
+        assertEquals(10, after.getCurrentIteration());
+        assertEquals(3, after.getStories().size());
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(after.getVersion(), synced.getVersion());
+    }
+
+    @Test
+    public void testStoriesAreFrozen() {
+        assertTrue(project.getStories().isFrozen());
+        assertEquals(project.getStories().getVersion(), project.getVersion());
+        assertTrue(project.getVersion() > 0);
+    }
+
+    @Test
+    public void testSynchronizeGivesNewVersion() {
+        Project synced = new Project(99999, "test-token");
+        TicketSet before = synced.getStories();
+        long version = synced.getVersion();
+        assertTrue(synced.synchronize("test-token"));
+        assertTrue(synced.getVersion() > version);
+        assertTrue(synced.getStories().isFrozen());
+        // The old set is untouched
+        assertEquals(2, before.size());
+        assertEquals(version, before.getVersion());
+    }
 }
@@ -0,0 +1,87 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StoryHandlerTest {
+
+    private TicketSet stories;
+    private StoryHandler handler;
+
+    private static String story(long id, String type, String labels) {
+        return "{\"id\":" + id + ",\"story_type\":\"" + type + "\"," +
+            "\"url\":\"https://www.pivotaltracker.com/story/show/" + id + "\"," +
+            "\"estimate\":2,\"current_state\":\"started\",\"name\":\"Story " + id + "\"," +
+            "\"requested_by_id\":1,\"owner_ids\":[1]," +
+            "\"created_at\":\"2023-01-01T00:00:00Z\",\"labels\":" + labels + "}";
+    }
+
+    @Before
+    public void setUp() {
+        UserLookup users = new UserLookup();
+        JSONObject user = new JSONObject();
+        user.put("id", Long.valueOf(1L));
+        user.put("name", "Alice");
+        users.addUser(user);
+        stories = new TicketSet();
+        handler = new StoryHandler(stories, users);
+    }
+
+    @Test
+    public void testIceboxStories() throws Exception {
+        handler.expectIcebox();
+        new JSONParser().parse("[" + story(1, "feature", "[]") + "," + story(2, "bug", "[]") + "]", handler);
+        assertEquals(2, stories.size());
+        assertEquals("Story 1", stories.get(0).getTitle());
+        assertEquals("Alice", stories.get(0).getOwner());
+        assertNull(stories.get(0).getLabels());
+    }
+
+    @Test
+    public void testIterationStoriesAreLabeled() throws Exception {
+        handler.expectIterations(0);
+        new JSONParser().parse("[{\"number\":1,\"stories\":[" + story(1, "feature", "[]") + "]}," +
+            "{\"number\":2,\"stories\":[" + story(2, "feature", "[{\"id\":5,\"name\":\"backend\"}]") + "]}]", handler);
+        assertEquals(2, stories.size());
+        assertEquals("[1]", stories.get(0).getLabels());
+        assertEquals("backend,[2]", stories.get(1).getLabels());
+    }
+
+    @Test
+    public void testIterationOffsetFromPagination() throws Exception {
+        handler.expectIterations(10);
+        new JSONParser().parse("[{\"number\":11,\"stories\":[" + story(1, "feature", "[]") + "]}]", handler);
+        assertEquals("[11]", stories.get(0).getLabels());
+    }
+
+    @Test
+    public void testIterationNumberIsTakenFromPivotal() throws Exception {
+        handler.expectIterations(0);
+        new JSONParser().parse("[{\"number\":7,\"stories\":[" + story(1, "feature", "[]") + "]}," +
+            "{\"stories\":[" + story(2, "feature", "[]") + "]}]", handler);
+        assertEquals("[7]", stories.get(0).getLabels());
+        assertEquals("[8]", stories.get(1).getLabels());
+    }
+
+    @Test
+    public void testIterationContentOutsideStoriesIsSkipped() throws Exception {
+        handler.expectIterations(0);
+        new JSONParser().parse("[{\"number\":1,\"team\":{\"members\":[{\"id\":7}]},\"dates\":[\"a\",\"b\"]," +
+            "\"stories\":[" + story(1, "bug", "[]") + "],\"kind\":\"iteration\"}]", handler);
+        assertEquals(1, stories.size());
+        assertEquals("bug", stories.get(0).getType());
+    }
+
+    @Test
+    public void testEmptyDocuments() throws Exception {
+        handler.expectIcebox();
+        new JSONParser().parse("[]", handler);
+        handler.expectIterations(0);
+        new JSONParser().parse("[{\"number\":1,\"stories\":[]}]", handler);
+        assertEquals(0, stories.size());
+    }
+}
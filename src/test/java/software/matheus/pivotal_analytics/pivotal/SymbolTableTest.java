@@ -0,0 +1,99 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testKnownSymbolsKeepOrder() {
+        SymbolTable table = new SymbolTable("bug", "chore", "feature");
+        assertEquals(0, table.find("bug"));
+        assertEquals(2, table.find("feature"));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testInternReturnsSameCode() {
+        SymbolTable table = new SymbolTable();
+        int code = table.intern("Alice");
+        assertEquals(code, table.intern(new String("Alice")));
+        assertEquals("Alice", table.get(code));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testNullAndUnknown() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(-1, table.intern(null));
+        assertEquals(-1, table.find(null));
+        assertEquals(-1, table.find("missing"));
+        assertNull(table.get(-1));
+        assertNull(table.get(100));
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, table.intern("label" + i));
+        }
+        assertEquals("label99", table.get(99));
+        assertEquals(100, table.size());
+    }
+
+    @Test
+    public void testMatching() {
+        SymbolTable table = new SymbolTable("backend", "frontend", "[1]");
+        boolean[] matching = table.matching("end");
+        assertTrue(matching[0]);
+        assertTrue(matching[1]);
+        assertFalse(matching[2]);
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        final SymbolTable table = new SymbolTable();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 500; i++) {
+                        table.intern("s" + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(500, table.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("s" + i, table.get(table.find("s" + i)));
+        }
+    }
+
+    @Test
+    public void testWeightGrowsWithNewSymbolsOnly() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(0, table.estimateWeight());
+        table.intern("label");
+        long weight = table.estimateWeight();
+        assertTrue(weight > 0);
+        table.intern("label");
+        table.find("other");
+        assertEquals(weight, table.estimateWeight());
+        table.intern("longer label");
+        assertTrue(table.estimateWeight() > 2 * weight);
+    }
+
+    @Test
+    public void testSharedSymbolsAreWeighed() {
+        long weight = Ticket.estimateSymbolWeight();
+        assertTrue(weight > 0);
+        Ticket.LABELS.intern("weighed-label-" + System.nanoTime());
+        assertTrue(Ticket.estimateSymbolWeight() > weight);
+    }
+}
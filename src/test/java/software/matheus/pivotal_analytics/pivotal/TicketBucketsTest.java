@@ -0,0 +1,68 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TicketBucketsTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void testBucketLimitsAreExcluded() {
+        TicketBuckets buckets = new TicketBuckets(1000, 100, 3, TicketBuckets.ALL);
+        assertEquals(-1, buckets.bucket(1000));
+        assertEquals(0, buckets.bucket(1001));
+        assertEquals(0, buckets.bucket(1099));
+        assertEquals(-1, buckets.bucket(1100));
+        assertEquals(2, buckets.bucket(1299));
+        assertEquals(-1, buckets.bucket(1300));
+        assertEquals(-1, buckets.bucket(999));
+        assertEquals(-1, buckets.bucket(Ticket.NONE));
+    }
+
+    @Test
+    public void testRecordAll() {
+        TicketBuckets buckets = new TicketBuckets(0, 10, 2, TicketBuckets.ALL);
+        buckets.record(-1, 0, 1, 3, 4);
+        buckets.record(-1, 0, 1, 2, 10);
+        buckets.record(-1, 1, -1, 5, 0);
+        assertArrayEquals(new int[]{2, 1}, buckets.getCreated(null));
+        assertArrayEquals(new int[]{0, 2}, buckets.getAccepted(null));
+        assertArrayEquals(new int[]{0, 5}, buckets.getPoints(null));
+        assertArrayEquals(new int[]{0, 4}, buckets.getShortest(null));
+        assertArrayEquals(new int[]{0, 10}, buckets.getLongest(null));
+        assertArrayEquals(new int[]{0, 7}, buckets.getAverage(null));
+        assertEquals(2, buckets.size());
+        assertEquals(10, buckets.getStart(1));
+    }
+
+    @Test
+    public void testGroups() {
+        TicketBuckets buckets = new TicketBuckets(0, 10, 1, TicketBuckets.TYPE);
+        buckets.record(Ticket.BUG, 0, -1, 0, 0);
+        assertArrayEquals(new String[]{"bug"}, buckets.getGroups());
+        assertArrayEquals(new int[]{1}, buckets.getCreated("bug"));
+        assertArrayEquals(new int[]{0}, buckets.getCreated("feature"));
+        assertArrayEquals(new int[]{0}, buckets.getCreated("nothing"));
+    }
+
+    @Test
+    public void testSeriesAreCopies() {
+        TicketBuckets buckets = new TicketBuckets(0, 10, 1, TicketBuckets.ALL);
+        buckets.record(-1, 0, -1, 0, 0);
+        buckets.getCreated(null)[0] = 9;
+        assertEquals(1, buckets.getCreated(null)[0]);
+    }
+
+    @Test
+    public void testDays() {
+        assertEquals(2, TicketBuckets.days(0, 2 * DAY + 5));
+        assertEquals(0, TicketBuckets.days(Ticket.NONE, DAY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWidthMustBePositive() {
+        new TicketBuckets(0, 0, 1, TicketBuckets.ALL);
+    }
+}
@@ -0,0 +1,57 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TicketColumnsTest {
+
+    private static Ticket feature(long id) {
+        Ticket t = new Ticket();
+        t.ID = id;
+        t.type = Ticket.FEATURE;
+        return t;
+    }
+
+    @Test
+    public void testRelabelsOnlyTellTheColumnsHoldingTheTicket() {
+        TicketColumns mine = new TicketColumns();
+        TicketColumns others = new TicketColumns();
+        Ticket t = feature(1);
+        mine.append(t);
+        others.append(feature(2));
+
+        t.addMissingIterationLabel(3);
+        assertEquals(1, mine.relabels());
+        assertEquals(0, others.relabels());
+        assertEquals("[3]", Ticket.LABELS.get(mine.labels()[0][0]));
+        assertEquals(0, others.labels()[0].length);
+    }
+
+    @Test
+    public void testTicketHeldTwiceTellsBoth() {
+        TicketColumns first = new TicketColumns();
+        TicketColumns second = new TicketColumns();
+        Ticket t = feature(1);
+        first.append(t);
+        second.append(t);
+        first.append(t);
+
+        t.addMissingIterationLabel(4);
+        assertEquals(1, first.relabels());
+        assertEquals(1, second.relabels());
+        assertEquals(1, second.labels()[0].length);
+    }
+
+    @Test
+    public void testFrozenColumnsAreNoLongerTold() {
+        TicketColumns frozen = new TicketColumns();
+        TicketColumns open = new TicketColumns();
+        Ticket t = feature(1);
+        frozen.append(t);
+        frozen.freeze();
+        open.append(t);
+        assertEquals(0, open.relabels());
+        assertTrue(t.frozen);
+    }
+}
@@ -0,0 +1,49 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class TicketIndexTest {
+
+    @Test
+    public void testSelectSingleCode() {
+        int[] codes = {0, 1, 0, 2, 1};
+        int[] at = {0, 1, 2, 3, 4};
+        TicketIndex index = new TicketIndex(3, codes, at, 5, 0, 0);
+        BitSet selected = index.select(new boolean[]{false, true}, 5);
+        assertEquals(2, selected.cardinality());
+        assertTrue(selected.get(1));
+        assertTrue(selected.get(4));
+    }
+
+    @Test
+    public void testSelectManyCodes() {
+        int[] codes = {0, 1, 0, 2, 1};
+        int[] at = {0, 1, 2, 3, 4};
+        TicketIndex index = new TicketIndex(3, codes, at, 5, 0, 0);
+        BitSet selected = index.select(new boolean[]{true, false, true}, 5);
+        assertEquals("{0, 2, 3}", selected.toString());
+    }
+
+    @Test
+    public void testNegativeAndUnknownCodesAreSkipped() {
+        int[] codes = {-1, 5, 0};
+        int[] at = {0, 1, 2};
+        TicketIndex index = new TicketIndex(1, codes, at, 3, 0, 0);
+        assertEquals("{2}", index.select(new boolean[]{true, true, true, true, true, true}, 3).toString());
+    }
+
+    @Test
+    public void testManyEntriesPerPosition() {
+        // Position 0 has labels 0 and 1, position 1 has label 1
+        int[] codes = {0, 1, 1};
+        int[] at = {0, 0, 1};
+        TicketIndex index = new TicketIndex(2, codes, at, 3, 7, 3);
+        assertEquals("{0, 1}", index.select(new boolean[]{false, true}, 2).toString());
+        assertEquals(7, index.modification);
+        assertEquals(3, index.relabels);
+    }
+}
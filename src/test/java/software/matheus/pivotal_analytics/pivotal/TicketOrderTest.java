@@ -0,0 +1,42 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TicketOrderTest {
+
+    private static final long N = Ticket.NONE;
+
+    private static String list(TicketOrder order, int size, boolean descending) {
+        StringBuilder listed = new StringBuilder();
+        for (int e = 0; e < size; e++) {
+            listed.append(order.position(e, descending));
+        }
+        return listed.toString();
+    }
+
+    @Test
+    public void testDatesMissingListedLast() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{30, N, 10, 20, N}, 5, 0);
+        TicketOrder order = new TicketOrder(timeline, 5, 2);
+        assertEquals("23014", list(order, 5, false));
+        assertEquals("03214", list(order, 5, true));
+        assertEquals(2, order.modification);
+    }
+
+    @Test
+    public void testCodesKeepPositionOrder() {
+        TicketOrder order = new TicketOrder(new int[]{2, 0, -1, 2, 0, 1}, 6, 0);
+        assertEquals("145032", list(order, 6, false));
+        assertEquals("305412", list(order, 6, true));
+    }
+
+    @Test
+    public void testEmpty() {
+        TicketOrder order = new TicketOrder(new int[0], 0, 0);
+        assertEquals("", list(order, 0, false));
+        order = new TicketOrder(new TicketTimeline(new long[0], 0, 0), 0, 0);
+        assertEquals("", list(order, 0, true));
+    }
+}
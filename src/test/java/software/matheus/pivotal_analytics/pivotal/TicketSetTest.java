@@ -4,8 +4,13 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
 import static org.junit.Assert.*;
 
 public class TicketSetTest {
@@ -215,6 +220,32 @@ public class TicketSetTest {
         assertEquals(2, owners.length);
     }
 
+    @Test
+    public void testSharedTicketsBelongToEachOwner() {
+        JSONObject jo = new JSONObject();
+        jo.put("id", Long.valueOf(4L));
+        jo.put("story_type", "feature");
+        jo.put("url", "http://www.pivotaltracker.com/story/show/4");
+        jo.put("current_state", "started");
+        jo.put("name", "Pair 1");
+        jo.put("requested_by_id", Long.valueOf(1L));
+        JSONArray owners = new JSONArray();
+        owners.add(Long.valueOf(1L));
+        owners.add(Long.valueOf(2L));
+        jo.put("owner_ids", owners);
+        jo.put("created_at", "2023-02-01T00:00:00Z");
+        ticketSet.add(new Ticket(jo, users));
+
+        assertEquals("Alice,Bob", ticketSet.queryOwner("Alice").queryState("started").get(0).getOwner());
+        assertEquals(2, ticketSet.queryOwner("Alice").size());
+        assertEquals(2, ticketSet.queryOwner("Bob").size());
+        assertEquals(0, ticketSet.queryOwner("Ali").size());
+        assertEquals(0, ticketSet.queryOwner("Alice,Bob").size());
+        String[] unique = ticketSet.queryUniqueOwners();
+        Arrays.sort(unique);
+        assertArrayEquals(new String[]{"Alice", "Bob"}, unique);
+    }
+
     @Test
     public void testQueryUniqueStates() {
         String[] states = ticketSet.queryUniqueStates();
@@ -275,4 +306,599 @@ public class TicketSetTest {
         assertEquals(0, empty.queryActive().size());
         assertEquals(0, empty.queryType("feature").size());
     }
+
+    @Test
+    public void testQueryResultsAreIndependentOfLaterChanges() {
+        TicketSet active = ticketSet.queryActive();
+        TicketSet all = new TicketSet();
+        all.addAll(ticketSet);
+        all.set(1, ticketSet.get(0));
+        all.add(ticketSet.get(2));
+        // Replacing and adding in one set does not change the others
+        assertEquals(2, active.size());
+        assertEquals("Bug 1", active.get(0).getTitle());
+        assertEquals("Bug 1", ticketSet.get(1).getTitle());
+        assertEquals(3, ticketSet.size());
+        assertEquals("Feature 1", all.get(1).getTitle());
+        assertEquals(4, all.size());
+    }
+
+    @Test
+    public void testAddToQueryResult() {
+        TicketSet bugs = ticketSet.queryType("bug");
+        bugs.add(ticketSet.get(2));
+        assertEquals(2, bugs.size());
+        assertEquals("Chore 1", bugs.get(1).getTitle());
+        assertEquals(1, bugs.queryType("chore").size());
+        assertEquals(3, ticketSet.size());
+    }
+
+    @Test
+    public void testChainedQueries() {
+        TicketSet result = ticketSet.queryActive().queryOwner("Bob").queryLabel("front");
+        assertEquals(1, result.size());
+        assertEquals("Bug 1", result.get(0).getTitle());
+    }
+
+    @Test
+    public void testLabelAddedAfterInsertIsQueried() {
+        assertEquals(0, ticketSet.queryLabel("[7]").size());
+        ticketSet.get(0).addMissingIterationLabel(7);
+        assertEquals(1, ticketSet.queryLabel("[7]").size());
+        assertEquals(2, ticketSet.queryNotLabel("[7]").size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullTicketsAreRejected() {
+        ticketSet.add(null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        ticketSet.queryActive().get(2);
+    }
+
+    @Test
+    public void testManyTickets() {
+        TicketSet many = new TicketSet();
+        for (int i = 0; i < 1000; i++) {
+            many.add(ticketSet.get(i % 3));
+        }
+        assertEquals(1000, many.size());
+        assertEquals(334, many.queryType("feature").size());
+        assertEquals(333, many.queryState("started").size());
+        assertEquals(334, many.queryAcceptedBetween(pastDate, futureDate).size());
+    }
+
+    private TicketSet buildLargeSet() {
+        String[] types = {"feature", "bug", "chore", "release"};
+        String[] states = {"accepted", "started", "unstarted", "delivered"};
+        TicketSet large = new TicketSet();
+        for (int i = 0; i < 300; i++) {
+            JSONObject jo = new JSONObject();
+            jo.put("id", Long.valueOf(1000 + i));
+            jo.put("story_type", types[i % 4]);
+            jo.put("url", "http://www.pivotaltracker.com/story/show/" + (1000 + i));
+            jo.put("current_state", states[i % 3]);
+            jo.put("name", "Story " + i);
+            jo.put("requested_by_id", Long.valueOf(1L));
+            JSONArray owners = new JSONArray();
+            if (i % 5 != 0) {
+                owners.add(Long.valueOf(1 + i % 2));
+            }
+            jo.put("owner_ids", owners);
+            jo.put("created_at", "2023-02-01T00:00:00Z");
+            jo.put("accepted_at", "2023-03-01T00:00:00Z");
+            JSONArray labels = new JSONArray();
+            if (i % 7 == 0) {
+                JSONObject label = new JSONObject();
+                label.put("name", "lane" + (i % 3));
+                labels.add(label);
+            }
+            jo.put("labels", labels);
+            large.add(new Ticket(jo, users));
+        }
+        return large;
+    }
+
+    private int countNaive(TicketSet set, String type, String state, String owner, String label) {
+        int count = 0;
+        for (Ticket t : set) {
+            if ((type == null || type.equals(t.getType()))
+                    && (state == null || state.equals(t.getState()))
+                    && (owner == null || (t.getOwner() != null && Arrays.asList(t.getOwner().split(",")).contains(owner)))
+                    && (label == null || (t.getLabels() != null && t.getLabels().contains(label)))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testIndexedLookupsMatchScans() {
+        TicketSet large = buildLargeSet();
+        for (int round = 0; round < 3; round++) {
+            assertEquals(countNaive(large, "bug", null, null, null), large.queryType("bug").size());
+            assertEquals(countNaive(large, null, "started", null, null), large.queryState("started").size());
+            assertEquals(countNaive(large, null, null, "Bob", null), large.queryOwner("Bob").size());
+            assertEquals(countNaive(large, null, null, null, "lane"), large.queryLabel("lane").size());
+            assertEquals(300 - countNaive(large, null, null, null, "lane1"), large.queryNotLabel("lane1").size());
+            assertEquals(300 - countNaive(large, null, "accepted", null, null), large.queryActive().size());
+        }
+    }
+
+    @Test
+    public void testChainedLookupsIntersect() {
+        TicketSet large = buildLargeSet();
+        large.queryType("chore");
+        for (int round = 0; round < 2; round++) {
+            TicketSet chained = large.queryOwner("Alice").queryType("feature").queryState("accepted");
+            assertEquals(countNaive(large, "feature", "accepted", "Alice", null), chained.size());
+            for (Ticket t : chained) {
+                assertEquals("feature", t.getType());
+                assertEquals("accepted", t.getState());
+                assertEquals("Alice", t.getOwner());
+            }
+        }
+        TicketSet notStarted = large.queryType("bug").queryNotState("started");
+        assertEquals(countNaive(large, "bug", null, null, null) - countNaive(large, "bug", "started", null, null), notStarted.size());
+    }
+
+    @Test
+    public void testChainedLookupsKeepOrder() {
+        TicketSet large = buildLargeSet();
+        large.queryType("bug");
+        TicketSet bugs = large.queryType("bug").queryOwner("Bob");
+        long previous = -1;
+        for (Ticket t : bugs) {
+            assertTrue(t.getID() > previous);
+            previous = t.getID();
+        }
+    }
+
+    @Test
+    public void testIndexDroppedWhenTicketsAdded() {
+        ticketSet.queryType("bug");
+        assertEquals(1, ticketSet.queryType("bug").size());
+        ticketSet.add(ticketSet.get(1));
+        assertEquals(2, ticketSet.queryType("bug").size());
+        ticketSet.set(0, ticketSet.get(1));
+        assertEquals(3, ticketSet.queryType("bug").size());
+    }
+
+    @Test
+    public void testResultsOfChangedOriginStillFilter() {
+        ticketSet.queryType("bug");
+        TicketSet active = ticketSet.queryActive();
+        ticketSet.set(1, ticketSet.get(0));
+        // The origin changed, the result keeps its own Tickets
+        assertEquals(1, active.queryType("bug").size());
+        assertEquals(0, ticketSet.queryType("bug").size());
+    }
+
+    @Test
+    public void testLabelIndexFollowsRelabels() {
+        ticketSet.queryLabel("[9]");
+        assertEquals(0, ticketSet.queryLabel("[9]").size());
+        ticketSet.get(0).addMissingIterationLabel(9);
+        assertEquals(1, ticketSet.queryLabel("[9]").size());
+        assertEquals(1, ticketSet.queryType("feature").queryLabel("[9]").size());
+    }
+
+    private TicketSet buildDatedSet() {
+        TicketSet dated = new TicketSet();
+        for (int i = 0; i < 400; i++) {
+            JSONObject jo = new JSONObject();
+            jo.put("id", Long.valueOf(5000 + i));
+            jo.put("story_type", i % 2 == 0 ? "feature" : "bug");
+            jo.put("url", "http://www.pivotaltracker.com/story/show/" + (5000 + i));
+            jo.put("current_state", i % 3 == 0 ? "accepted" : "started");
+            jo.put("name", "Story " + i);
+            jo.put("requested_by_id", Long.valueOf(1L));
+            jo.put("owner_ids", new JSONArray());
+            jo.put("created_at", String.format("2023-%02d-%02dT00:00:00Z", 1 + (i * 7) % 6, 1 + (i * 13) % 28));
+            if (i % 3 == 0) {
+                jo.put("accepted_at", String.format("2023-%02d-%02dT00:00:00Z", 7 + i % 6, 1 + i % 28));
+            }
+            jo.put("labels", new JSONArray());
+            dated.add(new Ticket(jo, users));
+        }
+        return dated;
+    }
+
+    private int countBetween(TicketSet set, Date start, Date end, boolean accepted) {
+        int count = 0;
+        for (Ticket t : set) {
+            Date date = accepted ? t.getAccepted() : t.getCreated();
+            if (date != null && date.after(start) && date.before(end)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testOrderedRangesMatchScans() {
+        TicketSet dated = buildDatedSet();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(2022, Calendar.DECEMBER, 25);
+        for (int week = 0; week < 60; week++) {
+            Date start = cal.getTime();
+            cal.add(Calendar.WEEK_OF_YEAR, 1);
+            Date end = cal.getTime();
+            assertEquals(countBetween(dated, start, end, false), dated.queryCreatedBetween(start, end).size());
+            assertEquals(countBetween(dated, start, end, true), dated.queryAcceptedBetween(start, end).size());
+        }
+    }
+
+    @Test
+    public void testOrderedRangesExcludeBounds() {
+        TicketSet dated = buildDatedSet();
+        Date created = dated.get(0).getCreated();
+        for (int round = 0; round < 2; round++) {
+            for (Ticket t : dated.queryCreatedBetween(created, new Date(created.getTime() + 86400000L))) {
+                assertTrue(t.getCreated().after(created));
+            }
+            assertTrue(dated.queryCreatedBetween(new Date(created.getTime() - 1), new Date(created.getTime() + 1)).contains(dated.get(0)));
+        }
+    }
+
+    @Test
+    public void testOrderedRangesKeepSetOrder() {
+        TicketSet dated = buildDatedSet();
+        Date start = new Date(0);
+        Date end = new Date(Long.MAX_VALUE);
+        dated.queryCreatedBetween(start, end);
+        TicketSet all = dated.queryCreatedBetween(start, end);
+        assertEquals(400, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertSame(dated.get(i), all.get(i));
+        }
+    }
+
+    @Test
+    public void testChainedRangesIntersect() {
+        TicketSet dated = buildDatedSet();
+        dated.queryAcceptedBetween(pastDate, futureDate);
+        for (int round = 0; round < 2; round++) {
+            TicketSet both = dated.queryCreatedAndAcceptedBetween(pastDate, midDate);
+            TicketSet created = dated.queryCreatedBetween(pastDate, midDate);
+            assertEquals(countBetween(created, pastDate, midDate, true), both.size());
+            assertEquals(countBetween(dated.queryType("bug"), pastDate, midDate, false),
+                dated.queryType("bug").queryCreatedBetween(pastDate, midDate).size());
+        }
+    }
+
+    @Test
+    public void testOrderedRangesFollowChanges() {
+        // Only the accepted ticket was accepted, the others never were
+        ticketSet.queryAcceptedBetween(pastDate, futureDate);
+        assertEquals(1, ticketSet.queryAcceptedBetween(pastDate, futureDate).size());
+        ticketSet.add(ticketSet.get(0));
+        assertEquals(2, ticketSet.queryAcceptedBetween(pastDate, futureDate).size());
+        ticketSet.set(0, ticketSet.get(1));
+        assertEquals(1, ticketSet.queryAcceptedBetween(pastDate, futureDate).size());
+    }
+
+    @Test
+    public void testAggregateMatchesRangeQueries() {
+        TicketSet dated = buildDatedSet();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(2022, Calendar.DECEMBER, 25);
+        long start = cal.getTimeInMillis();
+        long week = 7 * 24 * 60 * 60 * 1000L;
+        TicketBuckets buckets = dated.aggregate(start, week, 60, TicketBuckets.TYPE);
+        for (int b = 0; b < 60; b++) {
+            Date current = new Date(start + b * week);
+            Date next = new Date(start + (b + 1) * week);
+            assertEquals(dated.queryCreatedBetween(current, next).size(), buckets.getCreated(null)[b]);
+            assertEquals(dated.queryAcceptedBetween(current, next).size(), buckets.getAccepted(null)[b]);
+            for (String type : new String[]{"bug", "feature"}) {
+                TicketSet typed = dated.queryType(type);
+                assertEquals(typed.queryCreatedBetween(current, next).size(), buckets.getCreated(type)[b]);
+                assertEquals(typed.queryAcceptedBetween(current, next).size(), buckets.getAccepted(type)[b]);
+            }
+        }
+    }
+
+    @Test
+    public void testAggregateByLabelAndOwner() {
+        TicketSet large = buildLargeSet();
+        Date start = new Date(0);
+        Date end = new Date(Long.MAX_VALUE / 2);
+        TicketBuckets byLabel = large.aggregate(0, Long.MAX_VALUE / 2, 1, TicketBuckets.LABEL);
+        TicketBuckets byOwner = large.aggregate(0, Long.MAX_VALUE / 2, 1, TicketBuckets.OWNER);
+        assertEquals(300, byLabel.getCreated(null)[0]);
+        for (String label : new String[]{"lane0", "lane1", "lane2"}) {
+            assertEquals(large.queryLabel(label).queryCreatedBetween(start, end).size(), byLabel.getCreated(label)[0]);
+        }
+        assertEquals(large.queryOwner("Alice").queryAcceptedBetween(start, end).size(), byOwner.getAccepted("Alice")[0]);
+        assertEquals(large.queryOwner("Bob").size(), byOwner.getCreated("Bob")[0]);
+    }
+
+    @Test
+    public void testAggregateMeasuresAcceptedTickets() {
+        // The accepted ticket: 3 points, created 2023-02-01, accepted 2023-07-01
+        TicketBuckets buckets = ticketSet.aggregate(pastDate.getTime(), futureDate.getTime() - pastDate.getTime(), 1, TicketBuckets.ALL);
+        assertArrayEquals(new int[]{1}, buckets.getAccepted(null));
+        assertArrayEquals(new int[]{ticketSet.get(0).getPoints()}, buckets.getPoints(null));
+        assertArrayEquals(new int[]{150}, buckets.getLongest(null));
+        assertArrayEquals(new int[]{150}, buckets.getShortest(null));
+        assertArrayEquals(new int[]{150}, buckets.getAverage(null));
+        assertEquals(0, buckets.getGroups().length);
+    }
+
+    @Test
+    public void testCumulativeFlowMatchesRangeQueries() {
+        TicketSet dated = buildDatedSet();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(2023, Calendar.MARCH, 1);
+        long start = cal.getTimeInMillis();
+        long day = 24 * 60 * 60 * 1000L;
+        int[][] flow = dated.cumulativeFlow(start, day, 400);
+        for (int i = 0; i < 400; i++) {
+            Date from = new Date(start);
+            Date to = new Date(start + i * day);
+            assertEquals(dated.queryCreatedBetween(from, to).size(), flow[0][i]);
+            assertEquals(dated.queryCreatedAndAcceptedBetween(from, to).size(), flow[1][i]);
+        }
+    }
+
+    @Test
+    public void testCumulativeFlowStartsEmpty() {
+        int[][] flow = ticketSet.cumulativeFlow(pastDate.getTime(), 1000, 1);
+        assertArrayEquals(new int[]{0}, flow[0]);
+        assertArrayEquals(new int[]{0}, flow[1]);
+        assertEquals(0, ticketSet.cumulativeFlow(0, 1000, 0)[0].length);
+    }
+
+    @Test
+    public void testBurnDownMatchesLabelQueries() {
+        TicketSet planned = new TicketSet();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(2023, Calendar.JANUARY, 1);
+        long start = cal.getTimeInMillis();
+        long day = 24 * 60 * 60 * 1000L;
+        for (int i = 0; i < 300; i++) {
+            JSONObject jo = new JSONObject();
+            jo.put("id", Long.valueOf(7000 + i));
+            jo.put("story_type", "feature");
+            jo.put("url", "http://www.pivotaltracker.com/story/show/" + (7000 + i));
+            jo.put("current_state", i % 4 == 0 ? "started" : "accepted");
+            jo.put("name", "Story " + i);
+            jo.put("requested_by_id", Long.valueOf(1L));
+            jo.put("owner_ids", new JSONArray());
+            jo.put("created_at", "2022-12-01T00:00:00Z");
+            if (i % 4 != 0) {
+                jo.put("accepted_at", String.format("2023-%02d-%02dT00:00:00Z", 1 + i % 3, 1 + i % 28));
+            }
+            JSONArray labels = new JSONArray();
+            JSONObject label = new JSONObject();
+            label.put("name", "[" + (1 + i % 60) + "]");
+            labels.add(label);
+            if (i % 10 == 0) {
+                JSONObject extra = new JSONObject();
+                extra.put("name", "release [" + (1 + i % 60) + "]");
+                labels.add(extra);
+            }
+            jo.put("labels", labels);
+            planned.add(new Ticket(jo, users));
+        }
+        int[][] remaining = planned.burnDown(1, 60, start, day, 100);
+        assertEquals(60, remaining.length);
+        for (int iteration = 1; iteration <= 60; iteration += 7) {
+            TicketSet labeled = planned.queryLabel("[" + iteration + "]");
+            for (int m = 0; m < 100; m += 3) {
+                int accepted = labeled.queryAcceptedBetween(new Date(start), new Date(start + m * day)).size();
+                assertEquals(labeled.size() - accepted, remaining[iteration - 1][m]);
+            }
+        }
+    }
+
+    @Test
+    public void testBurnDownOfUnknownIterations() {
+        int[][] remaining = ticketSet.burnDown(500, 501, pastDate.getTime(), 1000, 2);
+        assertArrayEquals(new int[]{0, 0}, remaining[0]);
+        assertEquals(0, ticketSet.burnDown(3, 2, 0, 1000, 2).length);
+    }
+
+    @Test
+    public void testFreezeGivesIncreasingVersions() {
+        assertFalse(ticketSet.isFrozen());
+        assertEquals(0, ticketSet.getVersion());
+        TicketSet other = buildLargeSet();
+        assertSame(ticketSet, ticketSet.freeze());
+        other.freeze();
+        assertTrue(ticketSet.isFrozen());
+        assertTrue(ticketSet.getVersion() > 0);
+        assertTrue(other.getVersion() > ticketSet.getVersion());
+        long version = ticketSet.getVersion();
+        ticketSet.freeze();
+        assertEquals(version, ticketSet.getVersion());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenSetRejectsAdd() {
+        Ticket first = ticketSet.get(0);
+        ticketSet.freeze().add(first);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenSetRejectsSet() {
+        Ticket first = ticketSet.get(0);
+        ticketSet.freeze().set(0, first);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFrozenTicketsRejectRelabel() {
+        ticketSet.freeze().get(0).addMissingIterationLabel(7);
+    }
+
+    @Test
+    public void testQueriesOfFrozenSetShareVersion() {
+        ticketSet.freeze();
+        TicketSet features = ticketSet.queryType("feature");
+        assertTrue(features.isFrozen());
+        assertEquals(ticketSet.getVersion(), features.getVersion());
+        TicketSet accepted = features.queryAcceptedBetween(new Date(0), new Date(Long.MAX_VALUE));
+        assertEquals(ticketSet.getVersion(), accepted.getVersion());
+    }
+
+    @Test
+    public void testFrozenCopyCanBeChanged() {
+        ticketSet.freeze();
+        TicketSet copy = new TicketSet();
+        copy.addAll(ticketSet);
+        copy.add(ticketSet.get(0));
+        assertEquals(ticketSet.size() + 1, copy.size());
+        assertEquals(0, copy.getVersion());
+    }
+
+    @Test
+    public void testFrozenSetReadConcurrently() throws Exception {
+        final TicketSet large = buildLargeSet().freeze();
+        final int features = countNaive(large, "feature", null, null, null);
+        final int accepted = countNaive(large, null, "accepted", null, null);
+        final boolean[] failed = new boolean[1];
+        Thread[] readers = new Thread[8];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 50; i++) {
+                        if (large.queryType("feature").size() != features
+                                || large.queryState("accepted").size() != accepted
+                                || large.queryOwnerStatistics() == null) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertFalse(failed[0]);
+    }
+
+    private TicketSet buildPagedSet() {
+        String[] states = {"accepted", "started", "unscheduled", "delivered"};
+        TicketSet dated = new TicketSet();
+        for (int i = 0; i < 60; i++) {
+            int day = (i * 37) % 60;
+            JSONObject jo = new JSONObject();
+            jo.put("id", Long.valueOf(5000 + i));
+            jo.put("story_type", i % 2 == 0 ? "bug" : "feature");
+            jo.put("url", "http://www.pivotaltracker.com/story/show/" + (5000 + i));
+            jo.put("current_state", states[i % 4]);
+            jo.put("name", "Dated " + i);
+            jo.put("requested_by_id", Long.valueOf(1L));
+            jo.put("owner_ids", new JSONArray());
+            jo.put("created_at", String.format("2023-%02d-%02dT00:00:00Z", 1 + day / 20, 1 + day % 20));
+            if (i % 4 == 0) {
+                jo.put("accepted_at", String.format("2023-06-%02dT00:00:00Z", 1 + i % 28));
+            }
+            jo.put("labels", new JSONArray());
+            dated.add(new Ticket(jo, users));
+        }
+        return dated;
+    }
+
+    private List<Ticket> allPages(TicketSet set, int order, boolean descending, int limit) {
+        List<Ticket> listed = new ArrayList<Ticket>();
+        for (int offset = 0; offset < set.size(); offset += limit) {
+            TicketSet page = set.queryPage(order, descending, offset, limit);
+            assertTrue(page.size() <= limit);
+            listed.addAll(page);
+        }
+        return listed;
+    }
+
+    @Test
+    public void testPagesInCreatedOrder() {
+        TicketSet dated = buildPagedSet().freeze();
+        List<Ticket> ascending = allPages(dated, TicketSet.BY_CREATED, false, 7);
+        assertEquals(dated.size(), ascending.size());
+        for (int i = 1; i < ascending.size(); i++) {
+            assertFalse(ascending.get(i).getCreated().before(ascending.get(i - 1).getCreated()));
+        }
+        List<Ticket> descending = allPages(dated, TicketSet.BY_CREATED, true, 7);
+        Collections.reverse(descending);
+        assertEquals(ascending, descending);
+    }
+
+    @Test
+    public void testPagesListTicketsWithoutDateLast() {
+        TicketSet dated = buildPagedSet().freeze();
+        int accepted = dated.queryState("accepted").size();
+        for (boolean descending : new boolean[]{false, true}) {
+            List<Ticket> listed = allPages(dated, TicketSet.BY_ACCEPTED, descending, 10);
+            for (int i = 0; i < listed.size(); i++) {
+                assertEquals(i < accepted, listed.get(i).getAccepted() != null);
+            }
+        }
+    }
+
+    @Test
+    public void testPagesOfQueryResults() {
+        TicketSet dated = buildPagedSet().freeze();
+        TicketSet bugs = dated.queryType("bug");
+        List<Ticket> listed = allPages(bugs, TicketSet.BY_STATE, false, 4);
+        assertEquals(bugs.size(), listed.size());
+        List<String> order = Arrays.asList(dated.queryUniqueStates());
+        for (int i = 0; i < listed.size(); i++) {
+            assertEquals("bug", listed.get(i).getType());
+            if (i > 0) {
+                assertTrue(order.indexOf(listed.get(i - 1).getState()) <= order.indexOf(listed.get(i).getState()));
+            }
+        }
+        assertEquals(dated.getVersion(), bugs.queryPage(TicketSet.BY_STATE, false, 0, 4).getVersion());
+    }
+
+    @Test
+    public void testPagePastTheEndIsEmpty() {
+        TicketSet dated = buildPagedSet();
+        assertEquals(0, dated.queryPage(TicketSet.BY_CREATED, false, dated.size(), 10).size());
+        assertEquals(5, dated.queryPage(TicketSet.BY_CREATED, true, dated.size() - 5, 10).size());
+    }
+
+    @Test
+    public void testWritesToAQueryDoNotReachTheOrigin() {
+        TicketSet features = ticketSet.queryType("feature");
+        assertEquals(1, ticketSet.queryType("feature").size());
+        features.add(ticketSet.get(1));
+        features.set(0, ticketSet.get(2));
+        assertEquals(2, features.size());
+        assertEquals(ticketSet.get(2), features.get(0));
+        assertEquals(1, features.queryType("bug").size());
+        assertEquals(3, ticketSet.size());
+        assertEquals(1, ticketSet.queryType("feature").size());
+        assertEquals("Feature 1", ticketSet.queryType("feature").get(0).getTitle());
+    }
+
+    @Test
+    public void testRangesOfRangesAndFiltersMatchScans() {
+        TicketSet dated = buildDatedSet();
+        dated.queryCreatedBetween(new Date(0), new Date(1));
+        dated.queryType("feature");
+        Date start = new Date(1675209600000L); // 2023-02-01
+        Date middle = new Date(1688169600000L); // 2023-07-01
+        Date end = new Date(1696118400000L); // 2023-10-01
+        int expected = 0;
+        for (Ticket t : dated) {
+            if (t.getType().equals("feature") && t.getCreated().after(start) && t.getCreated().before(middle)
+                    && t.getAccepted() != null && t.getAccepted().after(middle) && t.getAccepted().before(end)) {
+                expected++;
+            }
+        }
+        TicketSet created = dated.queryCreatedBetween(start, middle);
+        TicketSet both = created.queryAcceptedBetween(middle, end);
+        assertEquals(expected, both.queryType("feature").size());
+        assertEquals(expected, dated.queryType("feature").queryCreatedBetween(start, middle).queryAcceptedBetween(middle, end).size());
+        assertEquals(created.size(), created.queryPage(TicketSet.BY_STATE, false, 0, 1000).size());
+    }
 }
@@ -218,4 +218,59 @@ public class TicketTest {
         // URL would be null if malformed
         assertNull(t.getURL());
     }
+
+    @Test
+    public void testTicketUpdatedDate() {
+        JSONObject jo = buildTicketJSON("feature", "started", true, false, false, false);
+        assertNull(new Ticket(jo, users).getUpdated());
+        jo.put("updated_at", "2023-01-20T00:00:00Z");
+        Ticket t = new Ticket(jo, users);
+        assertNotNull(t.getUpdated());
+        assertTrue(t.getUpdated().after(t.getCreated()));
+    }
+
+    @Test
+    public void testAddMissingIterationLabelKeepsIteration() {
+        Ticket feature = new Ticket(buildTicketJSON("feature", "started", true, false, false, false), users);
+        Ticket bug = new Ticket(buildTicketJSON("bug", "started", true, false, false, false), users);
+        assertEquals(0, feature.getIteration());
+        feature.addMissingIterationLabel(4);
+        bug.addMissingIterationLabel(4);
+        assertEquals(4, feature.getIteration());
+        assertEquals(4, bug.getIteration());
+    }
+
+    @Test
+    public void testTicketSharesRepeatedValues() {
+        Ticket a = new Ticket(buildTicketJSON("feature", "started", true, true, true, false), users);
+        Ticket b = new Ticket(buildTicketJSON("feature", "started", true, true, true, false), users);
+        assertEquals(Ticket.FEATURE, a.type);
+        assertEquals(Ticket.STARTED, a.state);
+        assertArrayEquals(a.owners, b.owners);
+        assertArrayEquals(a.labels, b.labels);
+        assertSame(a.getOwner(), b.getOwner());
+    }
+
+    @Test
+    public void testTicketDatesAsMillis() {
+        Ticket t = new Ticket(buildTicketJSON("feature", "accepted", true, false, false, true), users);
+        assertEquals(t.created, t.getCreated().getTime());
+        assertEquals(t.accepted, t.getAccepted().getTime());
+        assertEquals(Ticket.NONE, t.updated);
+    }
+
+    @Test
+    public void testTicketURLNotEndingWithID() {
+        JSONObject jo = buildTicketJSON("feature", "started", true, false, false, false);
+        jo.put("url", "http://example.com/stories/other");
+        Ticket t = new Ticket(jo, users);
+        assertEquals("http://example.com/stories/other", t.getURL().toString());
+    }
+
+    @Test
+    public void testUnknownTypeAndState() {
+        Ticket t = new Ticket(buildTicketJSON("epic", "archived", true, false, false, false), users);
+        assertEquals("epic", t.getType());
+        assertEquals("archived", t.getState());
+    }
 }
@@ -0,0 +1,67 @@
+package software.matheus.pivotal_analytics.pivotal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TicketTimelineTest {
+
+    private static final long N = Ticket.NONE;
+
+    @Test
+    public void testRangeIsStrict() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{30, 10, 20, 40}, 4, 0);
+        assertEquals(1, timeline.from(10));
+        assertEquals(3, timeline.to(40));
+        assertEquals(0, timeline.from(9));
+        assertEquals(4, timeline.to(41));
+        assertEquals(timeline.from(20), timeline.to(21));
+    }
+
+    @Test
+    public void testEntriesInDateOrder() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{30, 10, 20, 40}, 4, 0);
+        assertEquals(4, timeline.entries());
+        assertEquals(1, timeline.position(0));
+        assertEquals(2, timeline.position(1));
+        assertEquals(0, timeline.position(2));
+        assertEquals(3, timeline.position(3));
+    }
+
+    @Test
+    public void testMissingDatesAreLeftOut() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{N, 5, N, 7}, 4, 3);
+        assertEquals(2, timeline.entries());
+        assertEquals(1, timeline.position(0));
+        assertEquals(3, timeline.position(1));
+        assertEquals(3, timeline.modification);
+    }
+
+    @Test
+    public void testRepeatedDates() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{5, 5, 1, 5, 9, 5}, 6, 0);
+        assertEquals(1, timeline.from(4));
+        assertEquals(5, timeline.to(6));
+        assertEquals(0, timeline.position(1));
+        assertEquals(1, timeline.position(2));
+        assertEquals(3, timeline.position(3));
+        assertEquals(5, timeline.position(4));
+        assertEquals(timeline.from(5), timeline.to(9));
+    }
+
+    @Test
+    public void testOnlyGivenSizeIsOrdered() {
+        TicketTimeline timeline = new TicketTimeline(new long[]{3, 2, 1, 0}, 2, 0);
+        assertEquals(2, timeline.entries());
+        assertEquals(1, timeline.position(0));
+        assertEquals(0, timeline.position(1));
+    }
+
+    @Test
+    public void testEmpty() {
+        TicketTimeline timeline = new TicketTimeline(new long[0], 0, 0);
+        assertEquals(0, timeline.entries());
+        assertEquals(0, timeline.from(0));
+        assertEquals(0, timeline.to(100));
+    }
+}
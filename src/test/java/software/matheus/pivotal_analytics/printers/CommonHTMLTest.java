@@ -7,6 +7,10 @@ import org.junit.Test;
 import software.matheus.pivotal_analytics.pivotal.Ticket;
 import software.matheus.pivotal_analytics.pivotal.TicketSet;
 import software.matheus.pivotal_analytics.pivotal.UserLookup;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 import static org.junit.Assert.*;
 
 public class CommonHTMLTest {
@@ -138,4 +142,53 @@ public class CommonHTMLTest {
         // Should render without labels span and without owner text
         assertTrue(result.contains("Chore Story"));
     }
+
+    @Test
+    public void testOpenAndCloseWindowMatchWrapWindow() {
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        CommonHTML.openWindow(page, "extra-class", "My Title", "  ");
+        page.print("<p>Content</p>\n");
+        CommonHTML.closeWindow(page, "  ");
+        page.flush();
+        assertEquals(CommonHTML.wrapWindow("extra-class", "My Title", "<p>Content</p>\n", "  "), out.toString());
+    }
+
+    @Test
+    public void testPrintedTagsMatchReturnedTags() {
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        CommonHTML.printBasicHeaders(page, "Test Page");
+        CommonHTML.printMenu(page, "  ");
+        CommonHTML.printFooter(page, "  ");
+        page.flush();
+        assertEquals(CommonHTML.getBasicHeaders("Test Page") + CommonHTML.getMenu("  ") + CommonHTML.getFooter("  "), out.toString());
+    }
+
+    @Test
+    public void testTicketTableWritesToPage() {
+        TicketSet ts = new TicketSet();
+
+        JSONObject jo = new JSONObject();
+        jo.put("id", Long.valueOf(7L));
+        jo.put("story_type", "bug");
+        jo.put("url", "http://www.pivotaltracker.com/story/show/7");
+        jo.put("current_state", "started");
+        jo.put("name", "Streamed Story");
+        jo.put("requested_by_id", Long.valueOf(1L));
+        JSONArray owners = new JSONArray();
+        owners.add(Long.valueOf(1L));
+        jo.put("owner_ids", owners);
+        jo.put("created_at", "2023-01-01T00:00:00Z");
+        jo.put("labels", new JSONArray());
+
+        ts.add(new Ticket(jo, users));
+
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        CommonHTML.ticketTable(page, "Stories", ts, "  ");
+        page.flush();
+        assertTrue(out.toString().contains("Streamed Story"));
+        assertEquals(CommonHTML.ticketTable("Stories", ts, "  "), out.toString());
+    }
 }
@@ -0,0 +1,160 @@
+package software.matheus.pivotal_analytics.printers;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import software.matheus.pivotal_analytics.TestApiServer;
+import software.matheus.pivotal_analytics.pivotal.PivotalAPI;
+import software.matheus.pivotal_analytics.pivotal.Project;
+import software.matheus.pivotal_analytics.pivotal.ProjectState;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class FragmentCacheTest {
+
+    private static TestApiServer server;
+    private static Project project;
+    private long maxWeight;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new TestApiServer();
+        PivotalAPI.API_LOCATION_URL = server.getBaseUrl() + "/services/v5";
+        project = new Project(99999, "fragment-token");
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (server != null) server.stop();
+    }
+
+    @Before
+    public void setUp() {
+        maxWeight = FragmentCache.MAX_WEIGHT;
+        FragmentCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        FragmentCache.MAX_WEIGHT = maxWeight;
+        FragmentCache.clear();
+    }
+
+    private static class Counting implements FragmentCache.Fragment {
+        int renders = 0;
+        final String text;
+
+        Counting(String text) {
+            this.text = text;
+        }
+
+        public void render(PrintWriter page) {
+            renders++;
+            page.print(text);
+        }
+    }
+
+    private static String print(Project p, String view, String[] settings, FragmentCache.Fragment fragment) {
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        FragmentCache.print(page, p.getState(), view, settings, fragment);
+        page.flush();
+        return out.toString();
+    }
+
+    @Test
+    public void testSecondPrintIsServedFromCache() {
+        assertTrue(project.getVersion() > 0);
+        Counting fragment = new Counting("<p>content</p>\n");
+        long hits = FragmentCache.getHits();
+        long misses = FragmentCache.getMisses();
+
+        assertEquals("<p>content</p>\n", print(project, "View", new String[]{"a"}, fragment));
+        assertEquals("<p>content</p>\n", print(project, "View", new String[]{"a"}, fragment));
+
+        assertEquals(1, fragment.renders);
+        assertEquals(hits + 1, FragmentCache.getHits());
+        assertEquals(misses + 1, FragmentCache.getMisses());
+        assertTrue(FragmentCache.getWeight() > 0);
+    }
+
+    @Test
+    public void testSettingsAndViewAreTold() {
+        Counting fragment = new Counting("x");
+        print(project, "View", new String[]{"a", null}, fragment);
+        print(project, "View", new String[]{"b", null}, fragment);
+        print(project, "View", new String[]{"a", ""}, fragment);
+        print(project, "Other", new String[]{"a", null}, fragment);
+        assertEquals(4, fragment.renders);
+        print(project, "View", new String[]{"a", null}, fragment);
+        assertEquals(4, fragment.renders);
+    }
+
+    @Test
+    public void testKeptUnderTheVersionOfTheStateRendered() {
+        Project synced = new Project(99999, "fragment-token");
+        ProjectState old = synced.getState();
+        assertTrue(synced.synchronize("fragment-token"));
+        Counting fragment = new Counting("x");
+        StringWriter out = new StringWriter();
+        // A request which took its state before the synchronization
+        FragmentCache.print(new PrintWriter(out), old, "View", new String[0], fragment);
+        assertEquals(1, fragment.renders);
+        print(synced, "View", new String[0], fragment);
+        assertEquals(2, fragment.renders);
+        FragmentCache.print(new PrintWriter(out), old, "View", new String[0], fragment);
+        assertEquals(2, fragment.renders);
+    }
+
+    @Test
+    public void testKeyDependsOnVersionAndDay() {
+        String[] settings = {"a"};
+        assertFalse(FragmentCache.key(1, "View", 10, settings).equals(FragmentCache.key(2, "View", 10, settings)));
+        assertFalse(FragmentCache.key(1, "View", 10, settings).equals(FragmentCache.key(1, "View", 11, settings)));
+        assertEquals(FragmentCache.key(1, "View", 10, settings), FragmentCache.key(1, "View", 10, new String[]{"a"}));
+    }
+
+    @Test
+    public void testDisabledAlwaysRenders() {
+        FragmentCache.MAX_WEIGHT = 0;
+        Counting fragment = new Counting("x");
+        print(project, "View", new String[0], fragment);
+        print(project, "View", new String[0], fragment);
+        assertEquals(2, fragment.renders);
+        assertEquals(0, FragmentCache.getWeight());
+    }
+
+    @Test
+    public void testLeastRecentlyReadIsDropped() {
+        Counting first = new Counting(new String(new char[1000]));
+        Counting second = new Counting(new String(new char[1000]));
+        Counting third = new Counting(new String(new char[1000]));
+        FragmentCache.MAX_WEIGHT = 5000;
+
+        print(project, "First", new String[0], first);
+        print(project, "Second", new String[0], second);
+        print(project, "First", new String[0], first);
+        print(project, "Third", new String[0], third);
+        assertTrue(FragmentCache.getWeight() <= 5000);
+
+        print(project, "First", new String[0], first);
+        print(project, "Second", new String[0], second);
+        assertEquals(1, first.renders);
+        assertEquals(2, second.renders);
+    }
+
+    @Test
+    public void testTooHeavyIsNotKept() {
+        FragmentCache.MAX_WEIGHT = 1000;
+        Counting fragment = new Counting(new String(new char[1000]));
+        assertEquals(1000, print(project, "View", new String[0], fragment).length());
+        print(project, "View", new String[0], fragment);
+        assertEquals(2, fragment.renders);
+        assertEquals(0, FragmentCache.getWeight());
+    }
+}
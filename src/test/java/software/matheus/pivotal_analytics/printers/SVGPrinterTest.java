@@ -1,6 +1,9 @@
 package software.matheus.pivotal_analytics.printers;
 
 import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import static org.junit.Assert.*;
@@ -260,4 +263,36 @@ public class SVGPrinterTest {
         assertNotNull(result);
         assertTrue(result.contains("#F00000"));
     }
+
+    @Test
+    public void testLabeledLineGraphWritesToPage() {
+        Map<String, int[]> data = new LinkedHashMap<String, int[]>();
+        data.put("Series1", new int[]{5, 10, 3, 8});
+        data.put("Series2", new int[]{1});
+        String[] points = new String[]{"a", "b", "c", "d"};
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        SVGPrinter.labeledLineGraph(page, data, 0, 10, points, "  ", 1);
+        page.flush();
+        assertEquals(SVGPrinter.labeledLineGraph(data, 0, 10, points, "  ", 1), out.toString());
+        // The last curve of each series is closed with a line to the axis
+        assertTrue(out.toString().contains(" L 32 300' "));
+        assertFalse(out.toString().contains(" S ' "));
+    }
+
+    @Test
+    public void testChartsWriteToPage() {
+        Map<String, float[]> data = new LinkedHashMap<String, float[]>();
+        data.put("SliceA", new float[]{0.3f});
+        data.put("SliceB", new float[]{0.7f});
+        StringWriter out = new StringWriter();
+        PrintWriter page = new PrintWriter(out);
+        SVGPrinter.percentualPieChart(page, data, 300, 200, " ");
+        SVGPrinter.horizontalProgressBar(page, 50, 100, 20, 200, "red", "black", " ");
+        SVGPrinter.horizontalLoadBar(page, 1.1f, 1.2f, 20, 200, " ");
+        page.flush();
+        assertEquals(SVGPrinter.percentualPieChart(data, 300, 200, " ")
+                + SVGPrinter.horizontalProgressBar(50, 100, 20, 200, "red", "black", " ")
+                + SVGPrinter.horizontalLoadBar(1.1f, 1.2f, 20, 200, " "), out.toString());
+    }
 }
@@ -62,4 +62,67 @@ public class AllTest {
         String output = res.getOutput();
         assertTrue(output.contains("Stories") || output.contains("stories") || output.contains("table"));
     }
+
+    @Test
+    public void testDeniedTokenIsForbidden() throws Exception {
+        All servlet = new All();
+        MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeDeniedCookies(), new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertEquals(403, res.getStatus());
+    }
+
+    @Test
+    public void testPagesAreLimited() throws Exception {
+        int size = All.PAGE_SIZE;
+        try {
+            All.PAGE_SIZE = 1;
+            All servlet = new All();
+            HashMap<String, String> params = new HashMap<String, String>();
+            params.put("page", "2");
+            params.put("sort", "state");
+            MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeFullCookies(), params, new HashMap<String, String>());
+            MockHttpResponse res = new MockHttpResponse();
+            servlet.doGet(req, res);
+            String output = res.getOutput();
+            assertTrue(output.contains("Stories 2 to 2 of "));
+            assertTrue(output.contains("Page 2 of "));
+            assertTrue(output.contains(">Previous</a>"));
+            assertTrue(output.contains("sort=state&amp;order=asc"));
+        } finally {
+            All.PAGE_SIZE = size;
+        }
+    }
+
+    @Test
+    public void testFilterAndBadPage() throws Exception {
+        All servlet = new All();
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("page", "not-a-number");
+        params.put("type", "no-such-type");
+        MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeFullCookies(), params, new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        String output = res.getOutput();
+        assertTrue(output.contains("No Stories"));
+        assertTrue(output.contains("Page 1 of 1"));
+        assertTrue(output.contains("type=no-such-type"));
+    }
+
+    @Test
+    public void testSpecialLabelsChangeTheTag() throws Exception {
+        MockHttpResponse first = new MockHttpResponse();
+        new All().doGet(new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), new HashMap<String, String>()), first);
+
+        Cookie[] cookies = ViewTestBase.makeFullCookies();
+        for (int i = 0; i < cookies.length; i++) {
+            if (cookies[i].getName().equals("special_labels")) cookies[i] = new Cookie("special_labels", "[2]");
+        }
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", first.getHeader("ETag"));
+        MockHttpResponse second = new MockHttpResponse();
+        new All().doGet(new MockHttpRequest(cookies, new HashMap<String, String>(), headers), second);
+        assertEquals(200, second.getStatus());
+        assertFalse(first.getHeader("ETag").equals(second.getHeader("ETag")));
+    }
 }
@@ -124,4 +124,32 @@ public class ConfigTest {
         servlet.doPost(req, res);
         assertEquals("Overview", res.getRedirect());
     }
+
+    @Test
+    public void testDoPostSavesBurnDownIterations() throws Exception {
+        Config servlet = new Config();
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("token", "");
+        params.put("project_id", "");
+        params.put("special_labels", "");
+        params.put("iteration_start", "");
+        params.put("date_start", "");
+        params.put("burndown_iterations", "52");
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], params, new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doPost(req, res);
+        assertEquals(1, res.getAddedCookies().size());
+        assertEquals("burndown_iterations", res.getAddedCookies().get(0).getName());
+        assertEquals("52", res.getAddedCookies().get(0).getValue());
+    }
+
+    @Test
+    public void testDoGetShowsBurnDownDefault() throws Exception {
+        Config servlet = new Config();
+        MockHttpRequest req = new MockHttpRequest(new Cookie[0], new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertTrue(res.getOutput().contains("name='burndown_iterations'"));
+        assertTrue(res.getOutput().contains(Overview.BURNDOWN_ITERATIONS + " (default)"));
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import software.matheus.pivotal_analytics.MockHttpRequest;
 import software.matheus.pivotal_analytics.MockHttpResponse;
+import software.matheus.pivotal_analytics.printers.FragmentCache;
 
 import javax.servlet.http.Cookie;
 import java.util.HashMap;
@@ -63,4 +64,72 @@ public class OverviewTest {
         assertTrue("Expected project name in output", output.contains("Test Project"));
         assertTrue("Expected account ID in output", output.contains("100001"));
     }
+
+    private String renderWithBurnDown(String iterations) throws Exception {
+        Cookie[] full = ViewTestBase.makeFullCookies();
+        Cookie[] cookies = new Cookie[full.length + 1];
+        System.arraycopy(full, 0, cookies, 0, full.length);
+        cookies[full.length] = new Cookie("burndown_iterations", iterations);
+        MockHttpRequest req = new MockHttpRequest(cookies, new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        new Overview().doGet(req, res);
+        return res.getOutput();
+    }
+
+    @Test
+    public void testBurnDownCappedByDefault() throws Exception {
+        // Current iteration is 10, so by default iteration 1 is not plotted
+        MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        new Overview().doGet(req, res);
+        assertFalse(res.getOutput().contains("Iteration 1'"));
+    }
+
+    @Test
+    public void testBurnDownIterationsFromCookie() throws Exception {
+        assertTrue(renderWithBurnDown("60").contains("Iteration 1'"));
+        assertFalse(renderWithBurnDown("3").contains("Iteration 1'"));
+    }
+
+    @Test
+    public void testInvalidBurnDownIterationsUsesDefault() throws Exception {
+        String output = renderWithBurnDown("many");
+        assertTrue(output.contains("Planning Daily Burn-Down"));
+        assertFalse(output.contains("Iteration 1'"));
+    }
+
+    @Test
+    public void testDeniedTokenIsForbidden() throws Exception {
+        Overview servlet = new Overview();
+        MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeDeniedCookies(), new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertEquals(403, res.getStatus());
+    }
+
+    @Test
+    public void testRepeatedViewIsServedFromCache() throws Exception {
+        MockHttpResponse first = new MockHttpResponse();
+        new Overview().doGet(new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), new HashMap<String, String>()), first);
+        long hits = FragmentCache.getHits();
+        MockHttpResponse second = new MockHttpResponse();
+        new Overview().doGet(new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), new HashMap<String, String>()), second);
+        assertEquals(hits + 1, FragmentCache.getHits());
+        assertEquals(first.getOutput(), second.getOutput());
+    }
+
+    @Test
+    public void testMatchingETagIsNotModified() throws Exception {
+        MockHttpResponse first = new MockHttpResponse();
+        new Overview().doGet(new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), new HashMap<String, String>()), first);
+        String tag = first.getHeader("ETag");
+        assertNotNull(tag);
+
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", tag);
+        MockHttpResponse second = new MockHttpResponse();
+        new Overview().doGet(new MockHttpRequest(ViewTestBase.makeFullCookies(), new HashMap<String, String>(), headers), second);
+        assertEquals(304, second.getStatus());
+        assertEquals("", second.getOutput());
+    }
 }
@@ -57,4 +57,13 @@ public class PlanningFollowupTest {
         assertNotNull(output);
         assertTrue(output.contains("<html>"));
     }
+
+    @Test
+    public void testDeniedTokenIsForbidden() throws Exception {
+        PlanningFollowup servlet = new PlanningFollowup();
+        MockHttpRequest req = new MockHttpRequest(ViewTestBase.makeDeniedCookies(), new HashMap<String, String>(), new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        assertEquals(403, res.getStatus());
+    }
 }
@@ -57,4 +57,26 @@ public class RefreshTest {
         assertTrue("Expected flush confirmation message", output.contains("flushed"));
         assertFalse("Expected cookies to be cleared", res.getAddedCookies().isEmpty());
     }
+
+    @Test
+    public void testPurgeClearsBurndownSetting() throws Exception {
+        Refresh servlet = new Refresh();
+        Cookie[] full = ViewTestBase.makeFullCookies();
+        Cookie[] cookies = new Cookie[full.length + 1];
+        System.arraycopy(full, 0, cookies, 0, full.length);
+        cookies[full.length] = new Cookie("burndown_iterations", "8");
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("purge", "true");
+        MockHttpRequest req = new MockHttpRequest(cookies, params, new HashMap<String, String>());
+        MockHttpResponse res = new MockHttpResponse();
+        servlet.doGet(req, res);
+        boolean cleared = false;
+        for (Cookie c : res.getAddedCookies()) {
+            if (c.getName().equals("burndown_iterations")) {
+                assertEquals(0, c.getMaxAge());
+                cleared = true;
+            }
+        }
+        assertTrue("Expected the burn-down setting to be cleared", cleared);
+    }
 }
@@ -46,4 +46,10 @@ abstract class ViewTestBase {
             new Cookie("date_start", "2023/01/01 00:00:00")
         };
     }
+
+    static Cookie[] makeDeniedCookies() {
+        Cookie[] cookies = makeFullCookies();
+        cookies[0] = new Cookie("token", TestApiServer.DENIED_TOKEN + "-view");
+        return cookies;
+    }
 }